@@ -0,0 +1,210 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.cluster.hazelcast;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geoserver.flow.controller.RateCounter;
+import org.geotools.util.logging.Logging;
+
+import com.hazelcast.core.IMap;
+import com.hazelcast.map.AbstractEntryProcessor;
+
+/**
+ * A {@link RateCounter} sharing the request counts among the cluster members. Requests are
+ * counted in fixed time windows, one per user and time interval, stored in a Hazelcast map.
+ * <p>
+ * Counting happens locally, against the last known cluster wide count, so that requests never
+ * wait on the network: the local counts are sent to the cluster, and the cluster wide counts
+ * refreshed, by {@link #sync(long)}, called periodically from a background thread. All the
+ * windows of a counter are synchronized in a single batch, using
+ * {@link IMap#executeOnKeys(Set, com.hazelcast.map.EntryProcessor)}. The cluster can thus
+ * exceed the rate by the requests made between two synchronizations.
+ * </p>
+ */
+public class HzRateCounter implements RateCounter {
+
+    static final Logger LOGGER = Logging.getLogger("org.geoserver.cluster.hazelcast");
+
+    /**
+     * The requests of a user in a time interval
+     */
+    static final class Window {
+        final String key;
+
+        final long periodId;
+
+        /**
+         * Requests not sent to the cluster yet
+         */
+        long pending;
+
+        /**
+         * Requests not included in the cluster count yet
+         */
+        long unconfirmed;
+
+        /**
+         * The last known cluster wide count
+         */
+        long clusterCount;
+
+        Window(String key, long periodId) {
+            this.key = key;
+            this.periodId = periodId;
+        }
+
+        synchronized long consume(int maxRequests) {
+            pending++;
+            unconfirmed++;
+            return maxRequests - clusterCount - unconfirmed;
+        }
+
+        synchronized long drain() {
+            long delta = pending;
+            pending = 0;
+            return delta;
+        }
+
+        synchronized void synced(long delta, long total) {
+            unconfirmed -= delta;
+            // responses can come back out of order
+            clusterCount = Math.max(clusterCount, total);
+        }
+
+        synchronized void failed(long delta) {
+            pending += delta;
+        }
+
+        synchronized boolean isIdle() {
+            return unconfirmed == 0;
+        }
+    }
+
+    /**
+     * Adds a delta to each counter, returning the new totals. A zero delta just reads the
+     * counter without creating it.
+     */
+    static final class AddProcessor extends AbstractEntryProcessor<String, Long> {
+        private static final long serialVersionUID = -3617450563520485473L;
+
+        final HashMap<String, Long> deltas;
+
+        AddProcessor(HashMap<String, Long> deltas) {
+            this.deltas = deltas;
+        }
+
+        @Override
+        public Object process(Map.Entry<String, Long> entry) {
+            Long delta = deltas.get(entry.getKey());
+            Long value = entry.getValue();
+            long total = (value == null ? 0 : value) + (delta == null ? 0 : delta);
+            if (delta != null && delta != 0) {
+                entry.setValue(total);
+            }
+            return total;
+        }
+    }
+
+    String name;
+
+    int maxRequests;
+
+    long timeInterval;
+
+    IMap<String, Long> map;
+
+    ConcurrentMap<String, Window> windows = new ConcurrentHashMap<>();
+
+    /**
+     * @param name identifies the counter across the cluster
+     * @param maxRequests the requests allowed in the time interval
+     * @param timeInterval the time interval, in milliseconds
+     * @param map the cluster map holding the counts
+     */
+    public HzRateCounter(String name, int maxRequests, long timeInterval, IMap<String, Long> map) {
+        this.name = name;
+        this.maxRequests = maxRequests;
+        this.timeInterval = timeInterval;
+        this.map = map;
+    }
+
+    @Override
+    public long consume(String userKey, long now) {
+        long periodId = now / timeInterval;
+        String key = name + "|" + userKey + "|" + periodId;
+        Window window = windows.get(key);
+        if (window == null) {
+            window = new Window(key, periodId);
+            Window existing = windows.putIfAbsent(key, window);
+            if (existing != null) {
+                window = existing;
+            }
+        }
+        return window.consume(maxRequests);
+    }
+
+    @Override
+    public long getResetTime(String userKey, long now) {
+        return (now / timeInterval + 1) * timeInterval;
+    }
+
+    /**
+     * Sends the local counts to the cluster and refreshes the cluster wide ones, dropping the
+     * windows of past time intervals once they are synchronized. On failure the counts are sent
+     * again on the next synchronization.
+     */
+    public void sync(long now) {
+        long periodId = now / timeInterval;
+        HashMap<String, Long> deltas = new HashMap<String, Long>();
+        Map<String, Window> synced = new HashMap<String, Window>();
+        for (Window window : windows.values()) {
+            if (window.periodId < periodId) {
+                // give up on windows we could not synchronize for a whole interval
+                if (window.isIdle() || window.periodId < periodId - 1) {
+                    windows.remove(window.key, window);
+                    map.removeAsync(window.key);
+                    continue;
+                }
+            }
+            long delta = window.drain();
+            // past windows only need their last counts sent, current ones their totals read
+            if (delta > 0 || window.periodId == periodId) {
+                deltas.put(window.key, delta);
+                synced.put(window.key, window);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        Map<String, Object> totals;
+        try {
+            totals = map.executeOnKeys(deltas.keySet(), new AddProcessor(deltas));
+        } catch (RuntimeException e) {
+            for (Window window : synced.values()) {
+                window.failed(deltas.get(window.key));
+            }
+            LOGGER.log(Level.FINE, "Failed to synchronize " + this, e);
+            return;
+        }
+        for (Window window : synced.values()) {
+            Object total = totals.get(window.key);
+            window.synced(deltas.get(window.key),
+                    total == null ? 0 : ((Number) total).longValue());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HzRateCounter(" + name + "," + maxRequests + "/" + timeInterval + "ms)";
+    }
+}
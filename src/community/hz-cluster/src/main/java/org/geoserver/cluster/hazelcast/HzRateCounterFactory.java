@@ -0,0 +1,135 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.cluster.hazelcast;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geoserver.flow.controller.LocalRateCounter;
+import org.geoserver.flow.controller.RateCounter;
+import org.geoserver.flow.controller.RateCounterFactory;
+import org.geotools.util.logging.Logging;
+import org.springframework.beans.factory.DisposableBean;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.hazelcast.core.IMap;
+
+/**
+ * {@link RateCounterFactory} making the control flow rate limits apply to the whole cluster.
+ * Looked up by interface by the control flow configuration, hence shall be declared in
+ * {@code applicationContext.xml}.
+ * <p>
+ * The cluster state is checked each time a counter is created, falling back on local counters
+ * when clustering is not enabled or not running. Counters are created again on each control
+ * flow configuration reload. While the cluster is down the cluster counters keep counting
+ * locally, and send their counts once it is back.
+ * </p>
+ */
+public class HzRateCounterFactory implements RateCounterFactory, DisposableBean {
+
+    static final Logger LOGGER = Logging.getLogger("org.geoserver.cluster.hazelcast");
+
+    /**
+     * The Hazelcast map holding the request counts
+     */
+    public static final String MAP_NAME = "geoserver-rate-counters";
+
+    static final long DEFAULT_SYNC_INTERVAL = 250;
+
+    HzCluster cluster;
+
+    long syncInterval = DEFAULT_SYNC_INTERVAL;
+
+    ScheduledExecutorService executor;
+
+    /**
+     * The counters in use, old ones go away when the configuration is reloaded
+     */
+    Set<HzRateCounter> counters = Collections
+            .newSetFromMap(new WeakHashMap<HzRateCounter, Boolean>());
+
+    public HzRateCounterFactory(HzCluster cluster) {
+        this.cluster = cluster;
+    }
+
+    /**
+     * Sets how often the local counts are synchronized with the cluster, in milliseconds
+     */
+    public void setSyncInterval(long syncInterval) {
+        this.syncInterval = syncInterval;
+    }
+
+    public long getSyncInterval() {
+        return syncInterval;
+    }
+
+    @Override
+    public synchronized RateCounter createCounter(String name, int maxRequests,
+            long timeInterval) {
+        IMap<String, Long> map = null;
+        if (cluster.isRunning()) {
+            try {
+                map = cluster.getHz().<String, Long> getMap(MAP_NAME);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to get the cluster rate counters, "
+                        + "falling back on local ones", e);
+            }
+        }
+        if (map == null) {
+            return new LocalRateCounter(maxRequests, timeInterval);
+        }
+
+        HzRateCounter counter = new HzRateCounter(name, maxRequests, timeInterval, map);
+        counters.add(counter);
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setDaemon(true).setNameFormat("Hz-GeoServer-RateCounters-%d").build());
+            executor.scheduleWithFixedDelay(new Runnable() {
+
+                @Override
+                public void run() {
+                    sync();
+                }
+            }, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+        }
+        return counter;
+    }
+
+    void sync() {
+        if (!cluster.isRunning()) {
+            // keep the counts, they will be sent when the cluster is back
+            return;
+        }
+        List<HzRateCounter> current;
+        synchronized (this) {
+            current = new ArrayList<HzRateCounter>(counters);
+        }
+        long now = System.currentTimeMillis();
+        for (HzRateCounter counter : current) {
+            try {
+                counter.sync(now);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Failed to synchronize " + counter, e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void destroy() throws Exception {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        counters.clear();
+    }
+}
@@ -0,0 +1,150 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.cluster.hazelcast;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.easymock.Capture;
+import org.geoserver.flow.controller.LocalRateCounter;
+import org.geoserver.flow.controller.RateCounter;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.map.EntryProcessor;
+
+public class HzRateCounterTest {
+
+    static final long INTERVAL = 1000;
+
+    static final String KEY = "ows|user|0";
+
+    IMap<String, Long> map;
+
+    HzRateCounter counter;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        map = createMock(IMap.class);
+        counter = new HzRateCounter("ows", 10, INTERVAL, map);
+    }
+
+    @SuppressWarnings("unchecked")
+    Capture<EntryProcessor<String, Long>> expectSync(String key, long total) {
+        Capture<EntryProcessor<String, Long>> processor = new Capture<EntryProcessor<String, Long>>();
+        Map<String, Object> totals = new HashMap<String, Object>();
+        totals.put(key, total);
+        expect(map.executeOnKeys(eq(Collections.singleton(key)), capture(processor)))
+                .andReturn(totals);
+        return processor;
+    }
+
+    long delta(Capture<EntryProcessor<String, Long>> processor, String key) {
+        return ((HzRateCounter.AddProcessor) processor.getValue()).deltas.get(key);
+    }
+
+    @Test
+    public void testWindowSync() {
+        // other members made five requests meanwhile
+        Capture<EntryProcessor<String, Long>> processor = expectSync(KEY, 7);
+        replay(map);
+
+        assertEquals(9, counter.consume("user", 0));
+        assertEquals(8, counter.consume("user", 10));
+        counter.sync(100);
+        assertEquals(2, delta(processor, KEY));
+
+        // counting goes on against the cluster total
+        assertEquals(2, counter.consume("user", 200));
+        verify(map);
+    }
+
+    @Test
+    public void testPastWindowsRemoved() {
+        expectSync(KEY, 1);
+        expect(map.removeAsync(KEY)).andReturn(null);
+        replay(map);
+
+        counter.consume("user", 0);
+        counter.sync(100);
+        // the window is synchronized, nothing else to send once its interval is over
+        counter.sync(INTERVAL + 100);
+        assertTrue(counter.windows.isEmpty());
+        verify(map);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFailedSyncRequeued() {
+        expect(map.executeOnKeys(anyObject(Set.class), anyObject(EntryProcessor.class)))
+                .andThrow(new IllegalStateException("cluster down"));
+        Capture<EntryProcessor<String, Long>> processor = expectSync(KEY, 3);
+        replay(map);
+
+        counter.consume("user", 0);
+        counter.consume("user", 10);
+        counter.sync(100);
+        // the failed counts are still not confirmed
+        assertEquals(7, counter.consume("user", 200));
+
+        // and are sent again along with the new one
+        counter.sync(300);
+        assertEquals(3, delta(processor, KEY));
+        assertEquals(6, counter.consume("user", 400));
+        verify(map);
+    }
+
+    @Test
+    public void testAddProcessor() {
+        HashMap<String, Long> deltas = new HashMap<String, Long>();
+        deltas.put("a", 3l);
+        deltas.put("b", 0l);
+        HzRateCounter.AddProcessor processor = new HzRateCounter.AddProcessor(deltas);
+
+        SimpleEntry<String, Long> a = new SimpleEntry<String, Long>("a", 2l);
+        assertEquals(5l, processor.process(a));
+        assertEquals(5l, a.getValue().longValue());
+
+        // a zero delta reads without creating the counter
+        SimpleEntry<String, Long> b = new SimpleEntry<String, Long>("b", null);
+        assertEquals(0l, processor.process(b));
+        assertNull(b.getValue());
+    }
+
+    @Test
+    public void testFactoryFallback() throws Exception {
+        HzCluster cluster = createMock(HzCluster.class);
+        HazelcastInstance hz = createMock(HazelcastInstance.class);
+        expect(cluster.isRunning()).andReturn(false);
+        expect(cluster.isRunning()).andReturn(true);
+        expect(cluster.getHz()).andReturn(hz);
+        expect(hz.<String, Long> getMap(HzRateCounterFactory.MAP_NAME)).andReturn(map);
+        replay(cluster, hz);
+
+        HzRateCounterFactory factory = new HzRateCounterFactory(cluster);
+        // keep the background synchronization off the mocks
+        factory.setSyncInterval(60000);
+        try {
+            // the cluster state is checked for each counter
+            RateCounter local = factory.createCounter("ows", 10, INTERVAL);
+            assertTrue(local instanceof LocalRateCounter);
+            RateCounter clustered = factory.createCounter("ows", 10, INTERVAL);
+            assertTrue(clustered instanceof HzRateCounter);
+            assertTrue(factory.counters.contains(clustered));
+        } finally {
+            factory.destroy();
+        }
+        verify(cluster, hz);
+    }
+}
@@ -0,0 +1,90 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.geoserver.flow.controller.AdaptiveFlowController;
+import org.geoserver.flow.controller.AdaptiveLimitStatus;
+import org.geotools.util.logging.Logging;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * Registers the control flow state in the platform MBean server, as
+ * <code>org.geoserver:type=ControlFlow</code>.
+ * <p>
+ * The registered bean looks up the flow controllers on each call, so it keeps working when the
+ * configuration is reloaded and the controllers are replaced.
+ * </p>
+ */
+public class ControlFlowExporter implements InitializingBean, DisposableBean, ControlFlowMXBean {
+
+    static final Logger LOGGER = Logging.getLogger(ControlFlowCallback.class);
+
+    ControlFlowCallback callback;
+
+    ObjectName name;
+
+    public ControlFlowExporter(ControlFlowCallback callback) {
+        this.callback = callback;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        try {
+            ObjectName name = new ObjectName("org.geoserver:type=ControlFlow");
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            this.name = name;
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Unable to register the control flow state in JMX", e);
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (name != null) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                LOGGER.log(Level.FINE, "Unable to unregister " + name + " from JMX", e);
+            }
+            name = null;
+        }
+    }
+
+    @Override
+    public long getRunningRequests() {
+        return callback.getRunningRequests();
+    }
+
+    @Override
+    public long getBlockedRequests() {
+        return callback.getBlockedRequests();
+    }
+
+    @Override
+    public List<AdaptiveLimitStatus> getAdaptiveLimits() {
+        List<AdaptiveLimitStatus> result = new ArrayList<AdaptiveLimitStatus>();
+        // only the default provider has a fixed list of controllers we can look at
+        if (callback.provider instanceof DefaultFlowControllerProvider) {
+            for (FlowController controller : ((DefaultFlowControllerProvider) callback.provider).controllers) {
+                if (controller instanceof AdaptiveFlowController) {
+                    result.addAll(((AdaptiveFlowController) controller).getStatus());
+                }
+            }
+        }
+        return result;
+    }
+}
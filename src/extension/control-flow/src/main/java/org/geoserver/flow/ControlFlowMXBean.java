@@ -0,0 +1,32 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow;
+
+import java.util.List;
+
+import org.geoserver.flow.controller.AdaptiveFlowController;
+import org.geoserver.flow.controller.AdaptiveLimitStatus;
+
+/**
+ * Management interface of the control flow, exposed in JMX by {@link ControlFlowExporter}
+ */
+public interface ControlFlowMXBean {
+
+    /**
+     * The requests currently running
+     */
+    long getRunningRequests();
+
+    /**
+     * The requests currently waiting in the flow controllers
+     */
+    long getBlockedRequests();
+
+    /**
+     * The current limits and queues of each operation handled by an
+     * {@link AdaptiveFlowController}
+     */
+    List<AdaptiveLimitStatus> getAdaptiveLimits();
+}
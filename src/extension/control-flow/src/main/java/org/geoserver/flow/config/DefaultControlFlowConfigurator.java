@@ -6,6 +6,8 @@
 package org.geoserver.flow.config;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Properties;
 import java.util.StringTokenizer;
@@ -15,14 +17,23 @@ import java.util.regex.Pattern;
 
 import org.geoserver.flow.ControlFlowConfigurator;
 import org.geoserver.flow.FlowController;
+import org.geoserver.flow.controller.AdaptiveFlowController;
 import org.geoserver.flow.controller.BasicOWSController;
 import org.geoserver.flow.controller.CookieKeyGenerator;
+import org.geoserver.flow.controller.CostFlowController;
+import org.geoserver.flow.controller.FairShareFlowController;
+import org.geoserver.flow.controller.FairShareRule;
 import org.geoserver.flow.controller.GlobalFlowController;
 import org.geoserver.flow.controller.IpFlowController;
 import org.geoserver.flow.controller.IpKeyGenerator;
 import org.geoserver.flow.controller.KeyGenerator;
+import org.geoserver.flow.controller.LocalRateCounterFactory;
+import org.geoserver.flow.controller.OWSRequestCostEstimator;
 import org.geoserver.flow.controller.OWSRequestMatcher;
+import org.geoserver.flow.controller.RateCounter;
+import org.geoserver.flow.controller.RateCounterFactory;
 import org.geoserver.flow.controller.RateFlowController;
+import org.geoserver.flow.controller.RequestCostEstimator;
 import org.geoserver.flow.controller.SingleIpFlowController;
 import org.geoserver.flow.controller.UserConcurrentFlowController;
 import org.geoserver.platform.GeoServerExtensions;
@@ -31,6 +42,8 @@ import org.geoserver.platform.resource.Resource;
 import org.geoserver.security.PropertyFileWatcher;
 import org.geotools.util.logging.Logging;
 
+import com.google.common.base.Joiner;
+
 /**
  * Basic property file based {@link ControlFlowConfigurator} implementation
  * 
@@ -40,6 +53,15 @@ import org.geotools.util.logging.Logging;
 public class DefaultControlFlowConfigurator implements ControlFlowConfigurator {
     static final Pattern RATE_PATTERN = Pattern.compile("(\\d+)/([smhd])(;(\\d+)s)?");
 
+    static final Pattern COST_PATTERN = Pattern.compile("\\s*(\\d+)\\s*(,\\s*(\\d+)\\s*)?");
+
+    /**
+     * Cost of the requests the estimators know nothing about, 64KB
+     */
+    static final long DEFAULT_COST = 64 * 1024;
+
+    static final Pattern ADAPTIVE_PATTERN = Pattern.compile("\\s*((\\d+)\\s*,)?\\s*(\\d+)\\s*");
+
     static final Logger LOGGER = Logging.getLogger(DefaultControlFlowConfigurator.class);
     static final String PROPERTYFILENAME="controlflow.properties";
 
@@ -50,6 +72,12 @@ public class DefaultControlFlowConfigurator implements ControlFlowConfigurator {
      * 
      */
     static abstract class RateControllerBuilder {
+        RateCounterFactory counterFactory;
+
+        public RateControllerBuilder(RateCounterFactory counterFactory) {
+            this.counterFactory = counterFactory;
+        }
+
         public FlowController build(String[] keys, String value) {
             Matcher matcher = RATE_PATTERN.matcher(value);
             if (!matcher.matches()) {
@@ -71,7 +99,10 @@ public class DefaultControlFlowConfigurator implements ControlFlowConfigurator {
             String format = keys.length >= 5 ? keys[4] : null;
             OWSRequestMatcher requestMatcher = new OWSRequestMatcher(service, request, format);
             KeyGenerator keyGenerator = buildKeyGenerator(keys, value);
-            return new RateFlowController(requestMatcher, rate, interval, delay, keyGenerator);
+            RateCounter counter = counterFactory.createCounter(Joiner.on('.').join(keys), rate,
+                    interval);
+            return new RateFlowController(requestMatcher, rate, interval, delay, keyGenerator,
+                    counter);
         }
 
         protected abstract KeyGenerator buildKeyGenerator(String[] keys, String value);
@@ -101,6 +132,10 @@ public class DefaultControlFlowConfigurator implements ControlFlowConfigurator {
 
         Properties p = configFile.getProperties();
         List<FlowController> newControllers = new ArrayList<FlowController>();
+        int fairSlots = 0;
+        KeyGenerator fairKeyGenerator = null;
+        List<FairShareRule> fairRules = new ArrayList<FairShareRule>();
+        RateCounterFactory counterFactory = getRateCounterFactory();
         for (Object okey : p.keySet()) {
             String key = ((String) okey).trim();
             String value = (String) p.get(okey);
@@ -149,7 +184,7 @@ public class DefaultControlFlowConfigurator implements ControlFlowConfigurator {
                 if (keys.length == 1) {
                     controller = new UserConcurrentFlowController(queueSize);
                 } else if ("ows".equals(keys[1])) {
-                    controller = new RateControllerBuilder() {
+                    controller = new RateControllerBuilder(counterFactory) {
 
                         @Override
                         protected KeyGenerator buildKeyGenerator(String[] keys, String value) {
@@ -162,7 +197,7 @@ public class DefaultControlFlowConfigurator implements ControlFlowConfigurator {
                 if (keys.length == 1) {
                     controller = new IpFlowController(queueSize);
                 } else if (keys.length > 1 && "ows".equals(keys[1])) {
-                    controller = new RateControllerBuilder() {
+                    controller = new RateControllerBuilder(counterFactory) {
 
                         @Override
                         protected KeyGenerator buildKeyGenerator(String[] keys, String value) {
@@ -176,6 +211,27 @@ public class DefaultControlFlowConfigurator implements ControlFlowConfigurator {
                 		controller = new SingleIpFlowController(queueSize, ip);
                 	}
                 }
+            } else if ("adaptive".equals(keys[0]) && keys.length > 1 && "ows".equals(keys[1])) {
+                controller = buildAdaptiveController(keys, value);
+            } else if ("cost".equals(keys[0]) && keys.length == 1) {
+                controller = buildCostController(value);
+            } else if ("fair".equals(keys[0])) {
+                // the fair share rules are all gathered in a single controller
+                if (keys.length == 1) {
+                    // an invalid rule is skipped, the fair share controller is not set up
+                    KeyGenerator keyGenerator = buildFairKeyGenerator(value);
+                    if (keyGenerator != null) {
+                        fairSlots = queueSize;
+                        fairKeyGenerator = keyGenerator;
+                        continue;
+                    }
+                } else if ("ows".equals(keys[1])) {
+                    FairShareRule rule = buildFairShareRule(keys, value);
+                    if (rule != null) {
+                        fairRules.add(rule);
+                        continue;
+                    }
+                }
             }
             if (controller == null) {
                 LOGGER.severe("Could not parse rule '" + okey + "=" + value);
@@ -184,9 +240,136 @@ public class DefaultControlFlowConfigurator implements ControlFlowConfigurator {
             }
         }
 
+        if (fairSlots > 0) {
+            // most specific rules first
+            Collections.sort(fairRules, new Comparator<FairShareRule>() {
+
+                @Override
+                public int compare(FairShareRule r1, FairShareRule r2) {
+                    return specificity(r2) - specificity(r1);
+                }
+
+                int specificity(FairShareRule rule) {
+                    OWSRequestMatcher matcher = (OWSRequestMatcher) rule.getMatcher();
+                    return (matcher.getService() != null ? 1 : 0)
+                            + (matcher.getMethod() != null ? 1 : 0)
+                            + (matcher.getOutputFormat() != null ? 1 : 0);
+                }
+            });
+            newControllers.add(new FairShareFlowController(fairSlots, fairKeyGenerator,
+                    fairRules));
+        } else if (!fairRules.isEmpty()) {
+            LOGGER.severe("Fair share rules found, but the fair=<count> rule is missing, "
+                    + "they will be ignored");
+        }
+
         return newControllers;
     }
 
+    /**
+     * Looks up the rate counter factory in the application context, if none is found uses the
+     * local one
+     */
+    RateCounterFactory getRateCounterFactory() {
+        RateCounterFactory factory = GeoServerExtensions.bean(RateCounterFactory.class);
+        if (factory == null) {
+            factory = new LocalRateCounterFactory();
+        }
+        return factory;
+    }
+
+    /**
+     * Builds an adaptive controller out of a adaptive.ows[.service[.request[.format]]] key and a
+     * [min,]max value
+     */
+    FlowController buildAdaptiveController(String[] keys, String value) {
+        Matcher matcher = ADAPTIVE_PATTERN.matcher(value);
+        if (!matcher.matches()) {
+            LOGGER.severe("Adaptive rule values should be expressed as [<min>,]<max>, "
+                    + "this one is invalid: " + value);
+            return null;
+        }
+        int min = matcher.group(2) != null ? Integer.parseInt(matcher.group(2)) : 1;
+        int max = Integer.parseInt(matcher.group(3));
+        if (min < 1 || max < min) {
+            LOGGER.severe("Adaptive rule limits should be positive, with the minimum not "
+                    + "greater than the maximum. This one is invalid: " + value);
+            return null;
+        }
+
+        String service = keys.length >= 3 ? keys[2] : null;
+        String request = keys.length >= 4 ? keys[3] : null;
+        String format = keys.length >= 5 ? keys[4] : null;
+        OWSRequestMatcher requestMatcher = new OWSRequestMatcher(service, request, format);
+        return new AdaptiveFlowController(requestMatcher, min, max);
+    }
+
+    /**
+     * Builds a cost controller out of a <budget MB>[,<default cost KB>] value
+     */
+    FlowController buildCostController(String value) {
+        Matcher matcher = COST_PATTERN.matcher(value);
+        if (!matcher.matches() || Long.parseLong(matcher.group(1)) == 0) {
+            LOGGER.severe("Cost rule values should be expressed as <budget MB>[,<default cost KB>] "
+                    + "with a positive budget, this one is invalid: " + value);
+            return null;
+        }
+        long budget = Long.parseLong(matcher.group(1)) * 1024 * 1024;
+        long defaultCost = matcher.group(3) != null ? Long.parseLong(matcher.group(3)) * 1024
+                : DEFAULT_COST;
+
+        // the pluggable estimators first, then the built-in one
+        List<RequestCostEstimator> estimators = new ArrayList<RequestCostEstimator>(
+                GeoServerExtensions.extensions(RequestCostEstimator.class));
+        estimators.add(new OWSRequestCostEstimator());
+        return new CostFlowController(budget, defaultCost, estimators);
+    }
+
+    /**
+     * Parses the key generator out of a fair=<count>[,ip|user] value
+     */
+    KeyGenerator buildFairKeyGenerator(String value) {
+        String[] values = value.split("\\s*,\\s*");
+        String key = values.length > 1 ? values[1].trim() : "ip";
+        if ("ip".equalsIgnoreCase(key)) {
+            return new IpKeyGenerator();
+        } else if ("user".equalsIgnoreCase(key)) {
+            return new CookieKeyGenerator();
+        }
+        LOGGER.severe("The fair share rule value should be expressed as <count>[,ip|user], "
+                + "this one is invalid: " + value);
+        return null;
+    }
+
+    /**
+     * Builds a fair share rule out of a fair.ows[.service[.request[.format]]] key and a
+     * weight[,priority] value
+     */
+    FairShareRule buildFairShareRule(String[] keys, String value) {
+        String[] values = value.trim().split("\\s*,\\s*");
+        int weight;
+        int priority = 0;
+        try {
+            weight = Integer.parseInt(values[0]);
+            if (values.length > 1) {
+                priority = Integer.parseInt(values[1]);
+            }
+        } catch (NumberFormatException e) {
+            weight = 0;
+        }
+        if (weight < 1 || values.length > 2) {
+            LOGGER.severe("Fair share rule values should be expressed as <weight>[,<priority>], "
+                    + "with a positive weight. This one is invalid: " + value);
+            return null;
+        }
+
+        String service = keys.length >= 3 ? keys[2] : null;
+        String request = keys.length >= 4 ? keys[3] : null;
+        String format = keys.length >= 5 ? keys[4] : null;
+        return new FairShareRule(new OWSRequestMatcher(service, request, format), weight,
+                priority);
+    }
+
     public boolean isStale() {
         return configFile.isStale();
     }
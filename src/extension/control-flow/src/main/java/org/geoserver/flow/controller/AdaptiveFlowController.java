@@ -0,0 +1,319 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geoserver.flow.ControlFlowCallback;
+import org.geoserver.flow.FlowController;
+import org.geoserver.ows.Request;
+import org.geotools.util.logging.Logging;
+
+import com.google.common.base.Predicate;
+
+/**
+ * A flow controller whose concurrency limit is not fixed, but adapts to the observed request
+ * latency, separately for each OWS operation (service and request) it matches.
+ * <p>
+ * Each operation starts with the minimum limit. Whenever a request completes its latency is
+ * compared with the operation baseline, a slowly moving average of the latencies that tracks
+ * the best recent ones: as long as the recent latency stays within a tolerance of the baseline
+ * the limit grows by about one slot per round trip, once it goes beyond the limit shrinks in
+ * proportion to the latency increase. This keeps the cores busy without letting requests queue
+ * up inside GeoServer, where they would only get slower. The limit does not grow when the
+ * operation is not using at least half of it, and is always kept between the configured minimum
+ * and maximum.
+ * </p>
+ * <p>
+ * Requests exceeding the current limit wait in a FIFO queue, honoring the timeout provided by
+ * the {@link ControlFlowCallback}.
+ * </p>
+ *
+ * @see AdaptiveLimitStatus
+ */
+public class AdaptiveFlowController implements FlowController {
+    static final Logger LOGGER = Logging.getLogger(ControlFlowCallback.class);
+
+    /**
+     * How much the recent latency can exceed the baseline before the limit is reduced
+     */
+    static final double TOLERANCE = 1.5;
+
+    /**
+     * Weight of a new sample in the recent latency average
+     */
+    static final double RECENT_WEIGHT = 0.1;
+
+    /**
+     * Weight of a new sample in the baseline latency average
+     */
+    static final double BASELINE_WEIGHT = 0.01;
+
+    Predicate<Request> matcher;
+
+    int minLimit;
+
+    int maxLimit;
+
+    ConcurrentMap<String, OperationLimit> limits = new ConcurrentHashMap<String, OperationLimit>();
+
+    /**
+     * The limit acquired by the current request, and when
+     */
+    ThreadLocal<Acquired> acquired = new ThreadLocal<Acquired>();
+
+    public AdaptiveFlowController(Predicate<Request> matcher, int minLimit, int maxLimit) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid adaptive limits, the minimum should "
+                    + "be positive and not greater than the maximum: " + minLimit + ","
+                    + maxLimit);
+        }
+        this.matcher = matcher;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * The priority is the max limit, same as a queue based controller allowing as many requests
+     */
+    public int getPriority() {
+        return maxLimit;
+    }
+
+    public boolean requestIncoming(Request request, long timeout) {
+        if (!matcher.apply(request)) {
+            return true;
+        }
+
+        OperationLimit limit = getLimit(request);
+        try {
+            if (!limit.acquire(timeout)) {
+                return false;
+            }
+            acquired.set(new Acquired(limit, System.nanoTime()));
+        } catch (InterruptedException e) {
+            LOGGER.log(Level.WARNING, "Unexpected interruption while "
+                    + "blocking on the request queue");
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine(this + " " + limit.getStatus());
+        }
+        return true;
+    }
+
+    public void requestComplete(Request request) {
+        Acquired current = acquired.get();
+        if (current != null) {
+            acquired.remove();
+            current.limit.release(System.nanoTime() - current.start);
+        }
+    }
+
+    OperationLimit getLimit(Request request) {
+        String key = String.valueOf(request.getService()).toLowerCase() + "."
+                + String.valueOf(request.getRequest()).toLowerCase();
+        OperationLimit limit = limits.get(key);
+        if (limit == null) {
+            limit = new OperationLimit(key, minLimit, maxLimit);
+            OperationLimit existing = limits.putIfAbsent(key, limit);
+            if (existing != null) {
+                limit = existing;
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * Returns the current state of the limit of each operation seen so far
+     */
+    public List<AdaptiveLimitStatus> getStatus() {
+        List<AdaptiveLimitStatus> result = new ArrayList<AdaptiveLimitStatus>();
+        for (OperationLimit limit : limits.values()) {
+            result.add(limit.getStatus());
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    public Predicate<Request> getMatcher() {
+        return matcher;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveFlowController(" + matcher + "," + minLimit + "," + maxLimit + ")";
+    }
+
+    static final class Acquired {
+        final OperationLimit limit;
+
+        final long start;
+
+        Acquired(OperationLimit limit, long start) {
+            this.limit = limit;
+            this.start = start;
+        }
+    }
+
+    /**
+     * The adaptive limit of a single operation
+     */
+    static class OperationLimit {
+
+        final String name;
+
+        final int minLimit;
+
+        final int maxLimit;
+
+        final ReentrantLock lock = new ReentrantLock();
+
+        final Condition available = lock.newCondition();
+
+        double limit;
+
+        int running;
+
+        int queued;
+
+        /**
+         * Recent and baseline latency averages, in nanoseconds
+         */
+        double latency;
+
+        double baseline;
+
+        long completed;
+
+        long rejected;
+
+        OperationLimit(String name, int minLimit, int maxLimit) {
+            this.name = name;
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            this.limit = minLimit;
+        }
+
+        /**
+         * Waits for the running requests to go below the limit
+         *
+         * @param timeout the max wait in milliseconds, zero or negative to wait indefinitely
+         * @return false if the timeout expired
+         */
+        boolean acquire(long timeout) throws InterruptedException {
+            lock.lock();
+            try {
+                // no jumping ahead of the queued requests
+                if (queued == 0 && running < (int) limit) {
+                    running++;
+                    return true;
+                }
+
+                queued++;
+                boolean acquired = false;
+                try {
+                    long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+                    while (running >= (int) limit) {
+                        if (timeout <= 0) {
+                            available.await();
+                        } else if (nanos > 0) {
+                            nanos = available.awaitNanos(nanos);
+                        } else {
+                            rejected++;
+                            return false;
+                        }
+                    }
+                    running++;
+                    acquired = true;
+                    return true;
+                } finally {
+                    queued--;
+                    // pass on a wake up we might have consumed without taking the slot
+                    if (!acquired && queued > 0 && running < (int) limit) {
+                        available.signal();
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Releases a slot and adapts the limit based on the request latency
+         */
+        void release(long elapsed) {
+            lock.lock();
+            try {
+                int inflight = running;
+                running--;
+                completed++;
+                update(elapsed, inflight);
+
+                // wake up as many waiting requests as there are free slots
+                int free = Math.min((int) limit - running, queued);
+                for (int i = 0; i < free; i++) {
+                    available.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void update(double elapsed, int inflight) {
+            if (completed == 1) {
+                latency = baseline = elapsed;
+            } else {
+                latency += (elapsed - latency) * RECENT_WEIGHT;
+                baseline += (elapsed - baseline) * BASELINE_WEIGHT;
+                // quickly recover the baseline after a period of overload
+                if (baseline > latency) {
+                    baseline = latency;
+                }
+            }
+
+            double gradient = Math.max(0.5, Math.min(1, TOLERANCE * baseline / latency));
+            if (gradient < 1) {
+                // shrink to limit * gradient over a round trip, limit requests completing
+                limit -= 1 - gradient;
+            } else if (inflight * 2 >= limit) {
+                // grow by one over a round trip, if the current limit is actually used
+                limit += 1 / limit;
+            }
+            limit = Math.max(minLimit, Math.min(maxLimit, limit));
+        }
+
+        AdaptiveLimitStatus getStatus() {
+            lock.lock();
+            try {
+                return new AdaptiveLimitStatus(name, (int) limit, minLimit, maxLimit, running,
+                        queued, toMillis(latency), toMillis(baseline), completed, rejected);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        static double toMillis(double nanos) {
+            return nanos / 1000000d;
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * A snapshot of the state of an {@link AdaptiveFlowController} operation limit, as exposed in
+ * JMX
+ */
+public class AdaptiveLimitStatus implements Comparable<AdaptiveLimitStatus> {
+
+    String operation;
+
+    int limit;
+
+    int minLimit;
+
+    int maxLimit;
+
+    int running;
+
+    int queued;
+
+    double latency;
+
+    double baselineLatency;
+
+    long completed;
+
+    long rejected;
+
+    @ConstructorProperties({ "operation", "limit", "minLimit", "maxLimit", "running", "queued",
+            "latency", "baselineLatency", "completed", "rejected" })
+    public AdaptiveLimitStatus(String operation, int limit, int minLimit, int maxLimit,
+            int running, int queued, double latency, double baselineLatency, long completed,
+            long rejected) {
+        this.operation = operation;
+        this.limit = limit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.running = running;
+        this.queued = queued;
+        this.latency = latency;
+        this.baselineLatency = baselineLatency;
+        this.completed = completed;
+        this.rejected = rejected;
+    }
+
+    /**
+     * The operation, as service.request in lower case
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * The current concurrency limit
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * The requests currently running
+     */
+    public int getRunning() {
+        return running;
+    }
+
+    /**
+     * The requests currently waiting for a slot
+     */
+    public int getQueued() {
+        return queued;
+    }
+
+    /**
+     * The recent average latency, in milliseconds
+     */
+    public double getLatency() {
+        return latency;
+    }
+
+    /**
+     * The baseline latency the recent one is compared to, in milliseconds
+     */
+    public double getBaselineLatency() {
+        return baselineLatency;
+    }
+
+    /**
+     * The requests completed so far
+     */
+    public long getCompleted() {
+        return completed;
+    }
+
+    /**
+     * The requests that timed out waiting for a slot
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    @Override
+    public int compareTo(AdaptiveLimitStatus other) {
+        return operation.compareTo(other.operation);
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveLimitStatus[" + operation + ", limit=" + limit + ", running=" + running
+                + ", queued=" + queued + ", latency=" + latency + "ms, baseline="
+                + baselineLatency + "ms]";
+    }
+}
@@ -0,0 +1,261 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geoserver.flow.ControlFlowCallback;
+import org.geoserver.flow.FlowController;
+import org.geoserver.ows.Request;
+import org.geotools.util.logging.Logging;
+
+/**
+ * A flow controller admitting requests against a shared cost budget, instead of counting them.
+ * The cost of each request is estimated before execution by the {@link RequestCostEstimator}
+ * objects, requests whose cost cannot be estimated get the default cost.
+ * <p>
+ * Requests are admitted as long as the cost of the running ones, plus their own, fits in the
+ * budget, so many small requests can run in parallel while few large ones can. A request larger
+ * than the whole budget is admitted only when nothing else runs. Requests that do not fit wait
+ * in arrival order, honoring the timeout provided by the {@link ControlFlowCallback}: a large
+ * request is not overtaken forever by the small ones coming after it.
+ * </p>
+ */
+public class CostFlowController implements FlowController {
+    static final Logger LOGGER = Logging.getLogger(ControlFlowCallback.class);
+
+    static final long MB = 1024 * 1024;
+
+    long budget;
+
+    long defaultCost;
+
+    List<RequestCostEstimator> estimators;
+
+    ReentrantLock lock = new ReentrantLock();
+
+    ArrayDeque<Waiter> waiting = new ArrayDeque<Waiter>();
+
+    long used;
+
+    int running;
+
+    long rejected;
+
+    /**
+     * The cost acquired by the current request
+     */
+    ThreadLocal<Long> acquired = new ThreadLocal<Long>();
+
+    /**
+     * @param budget the total cost of the requests allowed to run in parallel
+     * @param defaultCost the cost of requests the estimators know nothing about
+     * @param estimators the cost estimators, the first one returning a cost wins
+     */
+    public CostFlowController(long budget, long defaultCost, List<RequestCostEstimator> estimators) {
+        this.budget = budget;
+        this.defaultCost = defaultCost;
+        this.estimators = new ArrayList<RequestCostEstimator>(estimators);
+    }
+
+    /**
+     * The priority is the budget in MB, a budget controller is usually less strict than the
+     * queue based ones
+     */
+    public int getPriority() {
+        return (int) Math.min(Integer.MAX_VALUE, budget / MB);
+    }
+
+    public boolean requestIncoming(Request request, long timeout) {
+        long cost = getCost(request);
+
+        lock.lock();
+        try {
+            if (waiting.isEmpty() && fits(cost)) {
+                admit(cost);
+                return true;
+            }
+
+            Waiter waiter = new Waiter(cost, lock.newCondition());
+            waiting.add(waiter);
+            try {
+                long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+                while (!waiter.admitted) {
+                    if (timeout <= 0) {
+                        waiter.condition.await();
+                    } else if (nanos > 0) {
+                        nanos = waiter.condition.awaitNanos(nanos);
+                    } else {
+                        giveUp(waiter);
+                        rejected++;
+                        return false;
+                    }
+                }
+            } catch (InterruptedException e) {
+                LOGGER.log(Level.WARNING, "Unexpected interruption while "
+                        + "blocking on the request queue");
+                if (!waiter.admitted) {
+                    giveUp(waiter);
+                    return true;
+                }
+            }
+            acquired.set(cost);
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine(this + " admitted request with cost " + cost + ", used " + used
+                        + ", waiting " + waiting.size());
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void requestComplete(Request request) {
+        Long cost = acquired.get();
+        if (cost == null) {
+            return;
+        }
+        acquired.remove();
+
+        lock.lock();
+        try {
+            used -= cost;
+            running--;
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the estimated cost of the request
+     */
+    long getCost(Request request) {
+        for (RequestCostEstimator estimator : estimators) {
+            long cost = estimator.getCost(request);
+            if (cost >= 0) {
+                return cost;
+            }
+        }
+        return defaultCost;
+    }
+
+    boolean fits(long cost) {
+        return running == 0 || used + cost <= budget;
+    }
+
+    void admit(long cost) {
+        used += cost;
+        running++;
+        acquired.set(cost);
+    }
+
+    /**
+     * Admits the waiting requests in order, as long as they fit in the budget
+     */
+    void dispatch() {
+        while (!waiting.isEmpty() && fits(waiting.peek().cost)) {
+            Waiter next = waiting.poll();
+            next.admitted = true;
+            used += next.cost;
+            running++;
+            next.condition.signal();
+        }
+    }
+
+    void giveUp(Waiter waiter) {
+        boolean first = waiting.peek() == waiter;
+        waiting.remove(waiter);
+        // the ones behind might fit now
+        if (first) {
+            dispatch();
+        }
+    }
+
+    /**
+     * The total cost of the running requests
+     */
+    public long getUsed() {
+        lock.lock();
+        try {
+            return used;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The requests currently running
+     */
+    public int getRunning() {
+        lock.lock();
+        try {
+            return running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The requests currently waiting for the budget
+     */
+    public int getQueued() {
+        lock.lock();
+        try {
+            return waiting.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The requests that timed out waiting for the budget
+     */
+    public long getRejected() {
+        lock.lock();
+        try {
+            return rejected;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    public long getDefaultCost() {
+        return defaultCost;
+    }
+
+    public List<RequestCostEstimator> getEstimators() {
+        return estimators;
+    }
+
+    @Override
+    public String toString() {
+        return "CostFlowController(" + budget + "," + defaultCost + ")";
+    }
+
+    static final class Waiter {
+        final long cost;
+
+        final Condition condition;
+
+        boolean admitted;
+
+        Waiter(long cost, Condition condition) {
+            this.cost = cost;
+            this.condition = condition;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geoserver.flow.ControlFlowCallback;
+import org.geoserver.flow.FlowController;
+import org.geoserver.ows.Request;
+import org.geotools.util.logging.Logging;
+
+/**
+ * A flow controller allowing a fixed amount of requests to run in parallel, like
+ * {@link GlobalFlowController}, but scheduling the waiting ones fairly instead of in arrival
+ * order.
+ * <p>
+ * Waiting requests are grouped in flows, one for each user (as identified by the
+ * {@link KeyGenerator}) and {@link FairShareRule}. Requests with a higher rule priority always
+ * run first, among the ones with the same priority the flows take turns, each running as many
+ * requests as its rule weight for each request of a flow with weight one (start time fair
+ * queuing). A client sending hundreds of requests at once will thus only delay the requests of
+ * the other users by the few of its own requests that are already running.
+ * </p>
+ * <p>
+ * Requests matching no rule have weight one and priority zero. The timeout provided by the
+ * {@link ControlFlowCallback} is honored while waiting.
+ * </p>
+ */
+public class FairShareFlowController implements FlowController {
+    static final Logger LOGGER = Logging.getLogger(ControlFlowCallback.class);
+
+    /**
+     * Number of tracked flows at which we start purging the ones that do not affect scheduling
+     * anymore
+     */
+    static final int MAX_FLOWS = 1000;
+
+    static final FairShareRule DEFAULT_RULE = new FairShareRule(new OWSRequestMatcher(), 1, 0);
+
+    int slots;
+
+    KeyGenerator keyGenerator;
+
+    List<FairShareRule> rules;
+
+    ReentrantLock lock = new ReentrantLock();
+
+    PriorityQueue<Waiter> waiting = new PriorityQueue<Waiter>();
+
+    /**
+     * The finish tag of the last request scheduled for each flow
+     */
+    Map<String, Double> finishTags = new HashMap<String, Double>();
+
+    /**
+     * The start tag of the last request that entered execution
+     */
+    double virtualTime;
+
+    long sequence;
+
+    int running;
+
+    long rejected;
+
+    /**
+     * Whether the current request took a slot
+     */
+    ThreadLocal<Boolean> acquired = new ThreadLocal<Boolean>();
+
+    /**
+     * @param slots the number of requests allowed to run in parallel
+     * @param keyGenerator identifies the user making a request
+     * @param rules the weight and priority of the requests, the first matching rule applies
+     */
+    public FairShareFlowController(int slots, KeyGenerator keyGenerator, List<FairShareRule> rules) {
+        this.slots = slots;
+        this.keyGenerator = keyGenerator;
+        this.rules = new ArrayList<FairShareRule>(rules);
+    }
+
+    public int getPriority() {
+        return slots;
+    }
+
+    public boolean requestIncoming(Request request, long timeout) {
+        FairShareRule rule = getRule(request);
+        String flow = getUser(request) + "|" + rules.indexOf(rule);
+
+        lock.lock();
+        try {
+            double start = virtualTime;
+            Double lastFinish = finishTags.get(flow);
+            if (lastFinish != null && lastFinish > start) {
+                start = lastFinish;
+            }
+            if (finishTags.size() > MAX_FLOWS) {
+                purgeFlows();
+            }
+            finishTags.put(flow, start + 1d / rule.weight);
+
+            // run right away if no one else is waiting
+            if (running < slots && waiting.isEmpty()) {
+                running++;
+                virtualTime = start;
+                acquired.set(Boolean.TRUE);
+                return true;
+            }
+
+            Waiter waiter = new Waiter(flow, rule.priority, start, 1d / rule.weight,
+                    sequence++, lock.newCondition());
+            waiting.add(waiter);
+            try {
+                long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+                while (!waiter.admitted) {
+                    if (timeout <= 0) {
+                        waiter.condition.await();
+                    } else if (nanos > 0) {
+                        nanos = waiter.condition.awaitNanos(nanos);
+                    } else {
+                        withdraw(waiter);
+                        rejected++;
+                        return false;
+                    }
+                }
+            } catch (InterruptedException e) {
+                LOGGER.log(Level.WARNING, "Unexpected interruption while "
+                        + "blocking on the request queue");
+                if (!waiter.admitted) {
+                    withdraw(waiter);
+                    return true;
+                }
+            }
+            acquired.set(Boolean.TRUE);
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine(this + " running " + running + ", waiting " + waiting.size());
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void requestComplete(Request request) {
+        if (acquired.get() == null) {
+            return;
+        }
+        acquired.remove();
+
+        lock.lock();
+        try {
+            running--;
+            // the slot goes straight to the next scheduled request, no one can jump ahead
+            while (running < slots && !waiting.isEmpty()) {
+                Waiter next = waiting.poll();
+                next.admitted = true;
+                running++;
+                virtualTime = next.start;
+                next.condition.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a request that gave up waiting, along with its share of the flow finish tag, so
+     * that a flow is only charged for the requests that actually run: the later requests of the
+     * same flow move up in its place, as if it never arrived. Called with the lock held.
+     */
+    void withdraw(Waiter waiter) {
+        waiting.remove(waiter);
+
+        List<Waiter> later = new ArrayList<Waiter>();
+        for (Iterator<Waiter> it = waiting.iterator(); it.hasNext();) {
+            Waiter other = it.next();
+            if (other.flow.equals(waiter.flow) && other.start > waiter.start) {
+                it.remove();
+                later.add(other);
+            }
+        }
+        for (Waiter other : later) {
+            other.start = Math.max(virtualTime, other.start - waiter.cost);
+            waiting.add(other);
+        }
+
+        Double lastFinish = finishTags.get(waiter.flow);
+        if (lastFinish != null) {
+            double finish = lastFinish - waiter.cost;
+            if (finish > virtualTime) {
+                finishTags.put(waiter.flow, finish);
+            } else {
+                finishTags.remove(waiter.flow);
+            }
+        }
+    }
+
+    FairShareRule getRule(Request request) {
+        for (FairShareRule rule : rules) {
+            if (rule.matcher.apply(request)) {
+                return rule;
+            }
+        }
+        return DEFAULT_RULE;
+    }
+
+    String getUser(Request request) {
+        if (request.getHttpRequest() == null) {
+            return "";
+        }
+        return keyGenerator.getUserKey(request);
+    }
+
+    /**
+     * Removes the flows whose last request started already, they would get the current virtual
+     * time as their start tag anyways
+     */
+    void purgeFlows() {
+        for (Iterator<Double> it = finishTags.values().iterator(); it.hasNext();) {
+            if (it.next() <= virtualTime) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * The requests currently running
+     */
+    public int getRunning() {
+        lock.lock();
+        try {
+            return running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The requests currently waiting for a slot
+     */
+    public int getQueued() {
+        lock.lock();
+        try {
+            return waiting.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The requests that timed out waiting for a slot
+     */
+    public long getRejected() {
+        lock.lock();
+        try {
+            return rejected;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public KeyGenerator getKeyGenerator() {
+        return keyGenerator;
+    }
+
+    public List<FairShareRule> getRules() {
+        return rules;
+    }
+
+    @Override
+    public String toString() {
+        return "FairShareFlowController(" + slots + "," + rules + ")";
+    }
+
+    /**
+     * A request waiting for a slot
+     */
+    static final class Waiter implements Comparable<Waiter> {
+        final String flow;
+
+        final int priority;
+
+        /**
+         * The start tag, moved up if an earlier request of the same flow gives up waiting
+         */
+        double start;
+
+        /**
+         * The amount the request advanced the flow finish tag by
+         */
+        final double cost;
+
+        final long sequence;
+
+        final Condition condition;
+
+        boolean admitted;
+
+        Waiter(String flow, int priority, double start, double cost, long sequence,
+                Condition condition) {
+            this.flow = flow;
+            this.priority = priority;
+            this.start = start;
+            this.cost = cost;
+            this.sequence = sequence;
+            this.condition = condition;
+        }
+
+        @Override
+        public int compareTo(Waiter other) {
+            if (priority != other.priority) {
+                return priority > other.priority ? -1 : 1;
+            }
+            if (start != other.start) {
+                return start < other.start ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence > other.sequence ? 1 : 0);
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import org.geoserver.ows.Request;
+
+import com.google.common.base.Predicate;
+
+/**
+ * The share of the {@link FairShareFlowController} slots given to the requests matching a
+ * predicate
+ */
+public class FairShareRule {
+
+    Predicate<Request> matcher;
+
+    int weight;
+
+    int priority;
+
+    /**
+     * @param matcher the requests the rule applies to
+     * @param weight how many requests of a user are run for each one of a user making requests
+     *        with weight one, when both are waiting
+     * @param priority requests with a higher priority are always run before the lower priority
+     *        ones, regardless of weights
+     */
+    public FairShareRule(Predicate<Request> matcher, int weight, int priority) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("The weight should be positive: " + weight);
+        }
+        this.matcher = matcher;
+        this.weight = weight;
+        this.priority = priority;
+    }
+
+    public Predicate<Request> getMatcher() {
+        return matcher;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    @Override
+    public String toString() {
+        return "FairShareRule(" + matcher + "," + weight + "," + priority + ")";
+    }
+}
@@ -0,0 +1,141 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geoserver.flow.ControlFlowCallback;
+import org.geotools.util.logging.Logging;
+
+/**
+ * A {@link RateCounter} keeping a token bucket per user in memory. Each bucket holds up to the
+ * max number of requests and is refilled continuously at the configured rate, a request takes a
+ * token. Requests exceeding the rate still take a token, up to one time interval worth of them,
+ * so that clients ignoring the rate limits keep on being limited.
+ */
+public class LocalRateCounter implements RateCounter {
+
+    static final Logger LOGGER = Logging.getLogger(ControlFlowCallback.class);
+
+    /**
+     * The minimum number of buckets we have need to have around before a cleanup is initiated
+     */
+    static int COUNTERS_CLEANUP_THRESHOLD = Integer.parseInt(System.getProperty(
+            "org.geoserver.flow.countersCleanupThreshold", "200"));
+
+    /**
+     * The cleanup interval before a cleanup is initiated
+     */
+    static int COUNTERS_CLEANUP_INTERVAL = Integer.parseInt(System.getProperty(
+            "org.geoserver.flow.countersCleanupInterval", "10000"));
+
+    final class Bucket {
+        double tokens = maxRequests;
+
+        long lastUpdate;
+
+        Bucket(long now) {
+            this.lastUpdate = now;
+        }
+
+        synchronized long consume(long now) {
+            refill(now);
+            tokens = Math.max(tokens - 1, -maxRequests);
+            return (long) Math.floor(tokens);
+        }
+
+        synchronized long getResetTime(long now) {
+            refill(now);
+            double wait = Math.ceil((maxRequests - tokens) / rate);
+            return wait >= Long.MAX_VALUE - now ? Long.MAX_VALUE : now + (long) wait;
+        }
+
+        synchronized boolean isFull(long now) {
+            refill(now);
+            return tokens >= maxRequests;
+        }
+
+        void refill(long now) {
+            if (now > lastUpdate) {
+                tokens = Math.min(maxRequests, tokens + (now - lastUpdate) * rate);
+                lastUpdate = now;
+            }
+        }
+    }
+
+    int maxRequests;
+
+    long timeInterval;
+
+    /**
+     * Tokens per millisecond
+     */
+    double rate;
+
+    ConcurrentMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * Last time we've performed a bucket cleanup
+     */
+    volatile long lastCleanup = System.currentTimeMillis();
+
+    public LocalRateCounter(int maxRequests, long timeInterval) {
+        this.maxRequests = maxRequests;
+        this.timeInterval = timeInterval;
+        this.rate = (double) maxRequests / timeInterval;
+    }
+
+    @Override
+    public long consume(String userKey, long now) {
+        Bucket bucket = buckets.get(userKey);
+        if (bucket == null) {
+            bucket = new Bucket(now);
+            Bucket existing = buckets.putIfAbsent(userKey, bucket);
+            if (existing != null) {
+                bucket = existing;
+            }
+        }
+        long residual = bucket.consume(now);
+
+        // cleanup full buckets if necessary, they are the same as missing ones
+        long last = lastCleanup;
+        long elapsed = now - last;
+        if (buckets.size() > COUNTERS_CLEANUP_THRESHOLD
+                && (elapsed > timeInterval || elapsed > COUNTERS_CLEANUP_INTERVAL)) {
+            synchronized (buckets) {
+                if (lastCleanup == last) {
+                    int cleanupCount = 0;
+                    for (Iterator<Bucket> it = buckets.values().iterator(); it.hasNext();) {
+                        if (it.next().isFull(now)) {
+                            it.remove();
+                            cleanupCount++;
+                        }
+                    }
+                    lastCleanup = now;
+                    if (LOGGER.isLoggable(Level.FINE)) {
+                        LOGGER.fine(this + ", purged " + cleanupCount + " stale counters");
+                    }
+                }
+            }
+        }
+
+        return residual;
+    }
+
+    @Override
+    public long getResetTime(String userKey, long now) {
+        Bucket bucket = buckets.get(userKey);
+        return bucket != null ? bucket.getResetTime(now) : now;
+    }
+
+    @Override
+    public String toString() {
+        return "LocalRateCounter(" + maxRequests + "/" + timeInterval + "ms)";
+    }
+}
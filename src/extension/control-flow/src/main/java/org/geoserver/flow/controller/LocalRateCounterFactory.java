@@ -0,0 +1,17 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+/**
+ * Creates {@link LocalRateCounter} instances, counting requests on this node only
+ */
+public class LocalRateCounterFactory implements RateCounterFactory {
+
+    @Override
+    public RateCounter createCounter(String name, int maxRequests, long timeInterval) {
+        return new LocalRateCounter(maxRequests, timeInterval);
+    }
+
+}
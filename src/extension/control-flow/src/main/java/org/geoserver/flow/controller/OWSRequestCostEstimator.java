@@ -0,0 +1,110 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import java.util.Collection;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.geoserver.ows.Request;
+import org.geoserver.ows.util.OwsUtils;
+import org.geoserver.platform.Operation;
+
+/**
+ * Estimates the cost of the common OWS requests looking at the parsed request object, without
+ * depending on the services classes:
+ * <ul>
+ * <li>GetMap: the image size, four bytes per pixel, times the number of layers to be painted on
+ * it</li>
+ * <li>GetFeature: the max number of features requested (<code>maxFeatures</code> or
+ * <code>count</code>) times a fixed size per feature, or {@link #getUnboundedFeatures()} features
+ * if no limit was given</li>
+ * <li>Execute: the size of the request body, which contains the inline inputs. The inputs are
+ * parsed only during execution, after the request was admitted</li>
+ * </ul>
+ * The cost of other requests is unknown.
+ */
+public class OWSRequestCostEstimator implements RequestCostEstimator {
+
+    static final int BYTES_PER_PIXEL = 4;
+
+    int featureSize = 1024;
+
+    int unboundedFeatures = 100000;
+
+    @Override
+    public long getCost(Request request) {
+        Operation operation = request.getOperation();
+        if (operation == null || operation.getParameters() == null
+                || operation.getParameters().length == 0 || operation.getParameters()[0] == null) {
+            return UNKNOWN_COST;
+        }
+        String id = operation.getId();
+        Object bean = operation.getParameters()[0];
+
+        if ("GetMap".equalsIgnoreCase(id)) {
+            Number width = number(bean, "width");
+            Number height = number(bean, "height");
+            if (width == null || height == null) {
+                return UNKNOWN_COST;
+            }
+            long layers = 1;
+            if (OwsUtils.has(bean, "layers")) {
+                Object value = OwsUtils.get(bean, "layers");
+                if (value instanceof Collection && !((Collection) value).isEmpty()) {
+                    layers = ((Collection) value).size();
+                }
+            }
+            return width.longValue() * height.longValue() * BYTES_PER_PIXEL * layers;
+        } else if ("GetFeature".equalsIgnoreCase(id) || "GetFeatureWithLock".equalsIgnoreCase(id)) {
+            // WFS 1.x and 2.0 names for the same thing
+            Number features = number(bean, "maxFeatures");
+            if (features == null) {
+                features = number(bean, "count");
+            }
+            long count = features != null && features.longValue() > 0 ? Math.min(
+                    features.longValue(), unboundedFeatures) : unboundedFeatures;
+            return count * featureSize;
+        } else if ("Execute".equalsIgnoreCase(id)) {
+            HttpServletRequest httpRequest = request.getHttpRequest();
+            if (httpRequest != null && httpRequest.getContentLength() > 0) {
+                return httpRequest.getContentLength();
+            }
+        }
+
+        return UNKNOWN_COST;
+    }
+
+    Number number(Object bean, String property) {
+        if (!OwsUtils.has(bean, property)) {
+            return null;
+        }
+        Object value = OwsUtils.get(bean, property);
+        return value instanceof Number ? (Number) value : null;
+    }
+
+    /**
+     * The estimated size of a feature, in bytes
+     */
+    public int getFeatureSize() {
+        return featureSize;
+    }
+
+    public void setFeatureSize(int featureSize) {
+        this.featureSize = featureSize;
+    }
+
+    /**
+     * The number of features a GetFeature without limits is assumed to return, also the max
+     * number of features considered
+     */
+    public int getUnboundedFeatures() {
+        return unboundedFeatures;
+    }
+
+    public void setUnboundedFeatures(int unboundedFeatures) {
+        this.unboundedFeatures = unboundedFeatures;
+    }
+}
@@ -0,0 +1,30 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+/**
+ * Keeps track of the requests made by each user for a {@link RateFlowController}. Called for
+ * every controlled request, implementations should not perform any remote call while counting.
+ * 
+ * @see RateCounterFactory
+ */
+public interface RateCounter {
+
+    /**
+     * Counts a new request made by the user
+     * 
+     * @param userKey the user key, see {@link KeyGenerator}
+     * @param now the current time, in milliseconds
+     * @return how many more requests the user can make before exceeding the rate, negative if the
+     *         rate has been exceeded already
+     */
+    public long consume(String userKey, long now);
+
+    /**
+     * Returns the time at which the user will be allowed the full amount of requests again, in
+     * milliseconds
+     */
+    public long getResetTime(String userKey, long now);
+}
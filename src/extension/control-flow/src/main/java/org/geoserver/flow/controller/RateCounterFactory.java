@@ -0,0 +1,22 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+/**
+ * Builds the {@link RateCounter} of the rate flow controllers. The configuration looks up a
+ * factory in the application context, falling back on {@link LocalRateCounterFactory} if none is
+ * found: a clustering module can thus make the rate limits apply to the whole cluster.
+ */
+public interface RateCounterFactory {
+
+    /**
+     * Creates a new counter
+     * 
+     * @param name the rule the counter is for, identifies the counter across the cluster
+     * @param maxRequests the requests allowed in the time interval
+     * @param timeInterval the time interval, in milliseconds
+     */
+    public RateCounter createCounter(String name, int maxRequests, long timeInterval);
+}
@@ -4,9 +4,6 @@
  */
 package org.geoserver.flow.controller;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -16,7 +13,6 @@ import org.geoserver.flow.ControlFlowCallback;
 import org.geoserver.flow.FlowController;
 import org.geoserver.ows.HttpErrorCodeException;
 import org.geoserver.ows.Request;
-import org.geotools.util.CanonicalSet;
 import org.geotools.util.logging.Logging;
 
 import com.google.common.base.Predicate;
@@ -51,62 +47,15 @@ public class RateFlowController implements FlowController {
 
     static final Logger LOGGER = Logging.getLogger(ControlFlowCallback.class);
 
-    /**
-     * The minimum number of counters we have need to have around before a cleanup is initiated
-     */
-    static int COUNTERS_CLEANUP_THRESHOLD = Integer.parseInt(System.getProperty(
-            "org.geoserver.flow.countersCleanupThreshold", "200"));
-
-    /**
-     * The cleanup interval before a cleanup is initiated
-     */
-    static int COUNTERS_CLEANUP_INTERVAL = Integer.parseInt(System.getProperty(
-            "org.geoserver.flow.countersCleanupInterval", "10000"));
-
-    final class Counter {
-        volatile long timePeriodId;
-
-        AtomicInteger requests = new AtomicInteger(0);
-
-        public int addRequest(long currPeriodId) {
-            if (currPeriodId != timePeriodId) {
-                synchronized (this) {
-                    if (currPeriodId != timePeriodId) {
-                        timePeriodId = currPeriodId;
-                        requests.set(0);
-                    }
-                }
-            }
-
-            // increment and return if we have gone above the limit
-            return requests.incrementAndGet();
-        }
-
-        public synchronized long getTimePeriodId() {
-            return timePeriodId;
-        }
-
-    }
-
-    /**
-     * Thread local holding the current user id
-     */
-    static ThreadLocal<String> USER_ID = new ThreadLocal<String>();
-
     /**
      * Generates a unique key identifying the user making the request
      */
     KeyGenerator keyGenerator;
 
     /**
-     * Contains all active counters
-     */
-    Map<String, Counter> counters = new ConcurrentHashMap<>();
-
-    /**
-     * Used to make user keys unique before using them as synchronization locks
+     * Counts the requests of each user
      */
-    CanonicalSet<String> canonicalizer = CanonicalSet.newInstance(String.class);
+    RateCounter counter;
 
     /**
      * Checks if we should apply this request rate limit to the request
@@ -121,11 +70,6 @@ public class RateFlowController implements FlowController {
 
     String action;
 
-    /**
-     * Last time we've performed a queue cleanup
-     */
-    volatile long lastCleanup = System.currentTimeMillis();
-
     /**
      * Builds a UserFlowController that will trigger stale queue expiration once 100 queues have
      * been accumulated and
@@ -134,7 +78,18 @@ public class RateFlowController implements FlowController {
      */
     public RateFlowController(Predicate<Request> matcher,
             int maxRequests, long timeInterval, long delay, KeyGenerator keyGenerator) {
+        this(matcher, maxRequests, timeInterval, delay, keyGenerator, new LocalRateCounter(
+                maxRequests, timeInterval));
+    }
+
+    /**
+     * Builds a new {@link RateFlowController} keeping track of the requests with the specified
+     * counter
+     */
+    public RateFlowController(Predicate<Request> matcher, int maxRequests, long timeInterval,
+            long delay, KeyGenerator keyGenerator, RateCounter counter) {
         this.matcher = matcher;
+        this.counter = counter;
         this.maxRequests = maxRequests;
         this.timeInterval = timeInterval;
         this.delay = delay;
@@ -159,34 +114,18 @@ public class RateFlowController implements FlowController {
 
         boolean retval = true;
         long now = System.currentTimeMillis();
-        long currPeriodId = now / timeInterval;
         String userKey = keyGenerator.getUserKey(request);
 
-        // grab/generate the counter
-        Counter counter = counters.get(userKey);
-        if (counter == null) {
-            userKey = canonicalizer.unique(userKey);
-            synchronized (userKey) {
-                counter = counters.get(userKey);
-                if (counter == null) {
-                    counter = new Counter();
-                    counters.put(userKey, counter);
-                }
-            }
-        }
-
         // update the counters
-        int requests = counter.addRequest(currPeriodId);
-        int residual = maxRequests - requests;
+        long residual = counter.consume(userKey, now);
         
         // set the headers
         HttpServletResponse response = request.getHttpResponse();
         response.addHeader(X_RATE_LIMIT_CONTEXT, matcher.toString());
         response.addIntHeader(X_RATE_LIMIT_LIMIT, maxRequests);
-        response.addIntHeader(X_RATE_LIMIT_REMAINING, Math.max(residual, 0));
-        response.addDateHeader(X_RATE_LIMIT_RESET, ((currPeriodId + 1) * timeInterval));
+        response.addIntHeader(X_RATE_LIMIT_REMAINING, (int) Math.max(residual, 0));
+        response.addDateHeader(X_RATE_LIMIT_RESET, counter.getResetTime(userKey, now));
         response.addHeader("X-Rate-Limit-Action", action);
-        // counter cleanup handling
         if (LOGGER.isLoggable(Level.FINE)) {
             LOGGER.fine(this + ", residual in current time period " + residual);
         }
@@ -209,28 +148,6 @@ public class RateFlowController implements FlowController {
             }
         }
 
-        // cleanup stale counters if necessary
-        long elapsed = now - lastCleanup;
-        if (counters.size() > COUNTERS_CLEANUP_THRESHOLD
-                && (elapsed > (timeInterval) || (elapsed > 10000))) {
-            int cleanupCount = 0;
-            synchronized (counters) {
-                for(Map.Entry<String, Counter> entry : counters.entrySet()) {
-                    Counter c = entry.getValue();
-                    long timePeriodId = c.getTimePeriodId();
-                    long age = (currPeriodId - timePeriodId) * timeInterval;
-                    if(age > COUNTERS_CLEANUP_THRESHOLD) {
-                        counters.remove(entry.getKey());
-                    }
-                }
-                lastCleanup = now;
-                if (LOGGER.isLoggable(Level.FINE)) {
-                    LOGGER.fine(this + ", purged " + cleanupCount
-                            + " stale counters");
-                }
-            }
-        }
-
         return retval;
     }
 
@@ -254,6 +171,10 @@ public class RateFlowController implements FlowController {
         return delay;
     }
 
+    public RateCounter getCounter() {
+        return counter;
+    }
+
     @Override
     public int getPriority() {
         // higher priority, we want to go thought the rate limiters before going through
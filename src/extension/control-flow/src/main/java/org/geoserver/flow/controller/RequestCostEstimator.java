@@ -0,0 +1,28 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import org.geoserver.ows.Request;
+
+/**
+ * Estimates the cost of a request before it is executed, for the {@link CostFlowController}.
+ * Implementations found in the application context are consulted before the built-in
+ * {@link OWSRequestCostEstimator}.
+ */
+public interface RequestCostEstimator {
+
+    /**
+     * The value returned when the cost cannot be estimated
+     */
+    public static long UNKNOWN_COST = -1;
+
+    /**
+     * Returns the estimated cost of the request, roughly the bytes of memory it will need to run,
+     * or {@link #UNKNOWN_COST}
+     * 
+     * @param request the request, with the operation already set
+     */
+    public long getCost(Request request);
+}
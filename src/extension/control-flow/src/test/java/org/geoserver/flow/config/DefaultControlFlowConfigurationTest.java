@@ -14,11 +14,19 @@ import java.util.Properties;
 
 import org.geoserver.flow.ControllerPriorityComparator;
 import org.geoserver.flow.FlowController;
+import org.geoserver.flow.controller.AdaptiveFlowController;
 import org.geoserver.flow.controller.BasicOWSController;
+import org.geoserver.flow.controller.CookieKeyGenerator;
+import org.geoserver.flow.controller.CostFlowController;
+import org.geoserver.flow.controller.FairShareFlowController;
+import org.geoserver.flow.controller.FairShareRule;
 import org.geoserver.flow.controller.GlobalFlowController;
 import org.geoserver.flow.controller.IpFlowController;
+import org.geoserver.flow.controller.IpKeyGenerator;
 import org.geoserver.flow.controller.IpRequestMatcher;
+import org.geoserver.flow.controller.OWSRequestCostEstimator;
 import org.geoserver.flow.controller.RateFlowController;
+import org.geoserver.flow.controller.RequestCostEstimator;
 import org.geoserver.flow.controller.SingleIpFlowController;
 import org.geoserver.flow.controller.UserConcurrentFlowController;
 import org.geoserver.platform.resource.Resource;
@@ -108,6 +116,116 @@ public class DefaultControlFlowConfigurationTest {
         assertEquals(100, gc.getPriority());
     }
 
+    @Test
+    public void testAdaptive() throws Exception {
+        Properties p = new Properties();
+        p.put("adaptive.ows.wms.getmap", "2,32");
+        p.put("adaptive.ows", "8");
+        p.put("adaptive.ows.wfs", "4,2");
+
+        DefaultControlFlowConfigurator configurator = new DefaultControlFlowConfigurator(
+                new FixedWatcher(p));
+        List<FlowController> controllers = configurator.buildFlowControllers();
+        Collections.sort(controllers, new ControllerPriorityComparator());
+
+        // the rule with min greater than max is skipped
+        assertEquals(2, controllers.size());
+
+        assertTrue(controllers.get(0) instanceof AdaptiveFlowController);
+        AdaptiveFlowController ac = (AdaptiveFlowController) controllers.get(0);
+        assertEquals("Any OGC request", ac.getMatcher().toString());
+        assertEquals(1, ac.getMinLimit());
+        assertEquals(8, ac.getMaxLimit());
+
+        assertTrue(controllers.get(1) instanceof AdaptiveFlowController);
+        ac = (AdaptiveFlowController) controllers.get(1);
+        assertEquals("wms.getmap", ac.getMatcher().toString());
+        assertEquals(2, ac.getMinLimit());
+        assertEquals(32, ac.getMaxLimit());
+    }
+
+    @Test
+    public void testCost() throws Exception {
+        Properties p = new Properties();
+        p.put("cost", "512,128");
+
+        DefaultControlFlowConfigurator configurator = new DefaultControlFlowConfigurator(
+                new FixedWatcher(p));
+        List<FlowController> controllers = configurator.buildFlowControllers();
+        assertEquals(1, controllers.size());
+        assertTrue(controllers.get(0) instanceof CostFlowController);
+        CostFlowController cc = (CostFlowController) controllers.get(0);
+        assertEquals(512 * 1024 * 1024, cc.getBudget());
+        assertEquals(128 * 1024, cc.getDefaultCost());
+        assertEquals(512, cc.getPriority());
+        // the built-in estimator is always there, last
+        List<RequestCostEstimator> estimators = cc.getEstimators();
+        assertTrue(estimators.get(estimators.size() - 1) instanceof OWSRequestCostEstimator);
+
+        // default cost
+        p.put("cost", "256");
+        configurator = new DefaultControlFlowConfigurator(new FixedWatcher(p));
+        cc = (CostFlowController) configurator.buildFlowControllers().get(0);
+        assertEquals(64 * 1024, cc.getDefaultCost());
+    }
+
+    @Test
+    public void testFairShare() throws Exception {
+        Properties p = new Properties();
+        p.put("fair", "16,user");
+        p.put("fair.ows.wps", "1");
+        p.put("fair.ows.gwc", "4,1");
+        p.put("fair.ows.wms.getmap", "2");
+        p.put("fair.ows.wfs", "zero");
+
+        DefaultControlFlowConfigurator configurator = new DefaultControlFlowConfigurator(
+                new FixedWatcher(p));
+        List<FlowController> controllers = configurator.buildFlowControllers();
+
+        assertEquals(1, controllers.size());
+        assertTrue(controllers.get(0) instanceof FairShareFlowController);
+        FairShareFlowController fc = (FairShareFlowController) controllers.get(0);
+        assertEquals(16, fc.getPriority());
+        assertTrue(fc.getKeyGenerator() instanceof CookieKeyGenerator);
+
+        // the invalid rule is skipped, the most specific rules come first
+        List<FairShareRule> rules = fc.getRules();
+        assertEquals(3, rules.size());
+        assertEquals("wms.getmap", rules.get(0).getMatcher().toString());
+        assertEquals(2, rules.get(0).getWeight());
+        assertEquals(0, rules.get(0).getPriority());
+        FairShareRule gwc = rules.get(1).getMatcher().toString().equals("gwc") ? rules.get(1)
+                : rules.get(2);
+        assertEquals(4, gwc.getWeight());
+        assertEquals(1, gwc.getPriority());
+    }
+
+    @Test
+    public void testFairShareDefaultKey() throws Exception {
+        Properties p = new Properties();
+        p.put("fair", "8");
+
+        DefaultControlFlowConfigurator configurator = new DefaultControlFlowConfigurator(
+                new FixedWatcher(p));
+        List<FlowController> controllers = configurator.buildFlowControllers();
+        assertEquals(1, controllers.size());
+        FairShareFlowController fc = (FairShareFlowController) controllers.get(0);
+        assertTrue(fc.getKeyGenerator() instanceof IpKeyGenerator);
+        assertTrue(fc.getRules().isEmpty());
+    }
+
+    @Test
+    public void testFairShareInvalidKey() throws Exception {
+        Properties p = new Properties();
+        p.put("fair", "8,foo");
+        p.put("fair.ows.wms", "2");
+
+        DefaultControlFlowConfigurator configurator = new DefaultControlFlowConfigurator(
+                new FixedWatcher(p));
+        List<FlowController> controllers = configurator.buildFlowControllers();
+        assertTrue(controllers.isEmpty());
+    }
+
     static class FixedWatcher extends PropertyFileWatcher {
         boolean stale = true;
 
@@ -0,0 +1,180 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.geoserver.flow.controller.AdaptiveFlowController.OperationLimit;
+import org.geoserver.flow.controller.FlowControllerTestingThread.ThreadState;
+import org.geoserver.ows.Request;
+import org.junit.Test;
+
+public class AdaptiveFlowControllerTest extends AbstractFlowControllerTest {
+    private static final long MAX_WAIT = 1000;
+
+    @Test
+    public void testPriority() {
+        AdaptiveFlowController controller = new AdaptiveFlowController(new OWSRequestMatcher(),
+                2, 16);
+        // priority == max limit
+        assertEquals(16, controller.getPriority());
+    }
+
+    @Test
+    public void testInvalidLimits() {
+        try {
+            new AdaptiveFlowController(new OWSRequestMatcher(), 4, 2);
+            fail("The minimum cannot be greater than the maximum");
+        } catch (IllegalArgumentException e) {
+            // fine
+        }
+    }
+
+    @Test
+    public void testGrowWithStableLatency() throws Exception {
+        OperationLimit limit = new OperationLimit("wms.getmap", 1, 8);
+        for (int i = 0; i < 100; i++) {
+            // keep the limit in use, otherwise there is no reason to grow
+            int current = (int) limit.limit;
+            for (int j = 0; j < current; j++) {
+                assertTrue(limit.acquire(-1));
+            }
+            for (int j = 0; j < current; j++) {
+                limit.release(10000000);
+            }
+        }
+        assertEquals(8, limit.getStatus().getLimit());
+        assertEquals(0, limit.getStatus().getRunning());
+    }
+
+    @Test
+    public void testNoGrowthWhenUnused() throws Exception {
+        OperationLimit limit = new OperationLimit("wms.getmap", 4, 8);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limit.acquire(-1));
+            limit.release(10000000);
+        }
+        assertEquals(4, limit.getStatus().getLimit());
+    }
+
+    @Test
+    public void testShrinkWithGrowingLatency() throws Exception {
+        OperationLimit limit = new OperationLimit("wms.getmap", 2, 16);
+        limit.limit = 16;
+        // establish a baseline
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limit.acquire(-1));
+            limit.release(10000000);
+        }
+        assertEquals(16, limit.getStatus().getLimit());
+
+        // latencies four times higher, the server is overloaded
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limit.acquire(-1));
+            limit.release(40000000);
+        }
+        AdaptiveLimitStatus status = limit.getStatus();
+        assertEquals(2, status.getLimit());
+        assertEquals(110, status.getCompleted());
+        assertTrue(status.getLatency() > status.getBaselineLatency());
+    }
+
+    @Test
+    public void testSingleDelay() throws Exception {
+        // a fixed limit of one
+        AdaptiveFlowController controller = new AdaptiveFlowController(new OWSRequestMatcher(),
+                1, 1);
+
+        FlowControllerTestingThread t1 = new FlowControllerTestingThread(getMap(), 0,
+                Long.MAX_VALUE, controller);
+        FlowControllerTestingThread t2 = new FlowControllerTestingThread(getMap(), 0,
+                Long.MAX_VALUE, controller);
+        try {
+            t1.start();
+            waitBlocked(t1, MAX_WAIT);
+            t2.start();
+            waitBlocked(t2, MAX_WAIT);
+
+            assertEquals(ThreadState.PROCESSING, t1.state);
+            assertEquals(ThreadState.STARTED, t2.state);
+            List<AdaptiveLimitStatus> status = controller.getStatus();
+            assertEquals(1, status.size());
+            assertEquals("wms.getmap", status.get(0).getOperation());
+            assertEquals(1, status.get(0).getRunning());
+            assertEquals(1, status.get(0).getQueued());
+
+            // let t1 go, this should allow t2 to run
+            t1.interrupt();
+            waitTerminated(t1, MAX_WAIT);
+
+            assertEquals(ThreadState.COMPLETE, t1.state);
+            assertEquals(ThreadState.PROCESSING, t2.state);
+
+            t2.interrupt();
+        } finally {
+            waitAndKill(t1, MAX_WAIT);
+            waitAndKill(t2, MAX_WAIT);
+        }
+    }
+
+    @Test
+    public void testTimeout() {
+        AdaptiveFlowController controller = new AdaptiveFlowController(new OWSRequestMatcher(),
+                1, 1);
+
+        FlowControllerTestingThread t1 = new FlowControllerTestingThread(getMap(), 100, 400,
+                controller);
+        FlowControllerTestingThread t2 = new FlowControllerTestingThread(getMap(), 100, 400,
+                controller);
+        try {
+            t1.start();
+            waitBlocked(t1, MAX_WAIT);
+            t2.start();
+
+            waitTerminated(t1, MAX_WAIT);
+            waitTerminated(t2, MAX_WAIT);
+
+            assertEquals(ThreadState.COMPLETE, t1.state);
+            assertEquals(ThreadState.TIMED_OUT, t2.state);
+            assertEquals(1, controller.getStatus().get(0).getRejected());
+        } finally {
+            waitAndKill(t1, MAX_WAIT);
+            waitAndKill(t2, MAX_WAIT);
+        }
+    }
+
+    @Test
+    public void testSeparateOperations() throws Exception {
+        AdaptiveFlowController controller = new AdaptiveFlowController(new OWSRequestMatcher(
+                "wms"), 1, 1);
+
+        // the two operations do not share the limit
+        assertTrue(controller.requestIncoming(getMap(), 10));
+        Request featureInfo = new Request();
+        featureInfo.setService("WMS");
+        featureInfo.setRequest("GetFeatureInfo");
+        assertTrue(controller.getLimit(featureInfo).acquire(10));
+        assertFalse(controller.getLimit(getMap()).acquire(10));
+
+        // requests not matching are not controlled
+        Request getFeature = new Request();
+        getFeature.setService("WFS");
+        getFeature.setRequest("GetFeature");
+        assertTrue(controller.requestIncoming(getFeature, 10));
+        assertEquals(2, controller.getStatus().size());
+
+        controller.requestComplete(getMap());
+        assertEquals(0, controller.getLimit(getMap()).getStatus().getRunning());
+    }
+
+    Request getMap() {
+        Request request = new Request();
+        request.setService("WMS");
+        request.setRequest("GetMap");
+        return request;
+    }
+}
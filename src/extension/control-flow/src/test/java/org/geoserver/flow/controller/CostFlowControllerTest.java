@@ -0,0 +1,154 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.geoserver.flow.controller.FlowControllerTestingThread.ThreadState;
+import org.geoserver.ows.Request;
+import org.junit.Test;
+
+public class CostFlowControllerTest extends AbstractFlowControllerTest {
+    private static final long MAX_WAIT = 1000;
+
+    /**
+     * Uses the request "request" as the cost
+     */
+    static final RequestCostEstimator ESTIMATOR = new RequestCostEstimator() {
+
+        @Override
+        public long getCost(Request request) {
+            return request.getRequest() != null ? Long.parseLong(request.getRequest())
+                    : UNKNOWN_COST;
+        }
+    };
+
+    @Test
+    public void testPriority() {
+        CostFlowController controller = new CostFlowController(256 * 1024 * 1024, 1024,
+                Collections.<RequestCostEstimator> emptyList());
+        // priority == budget in MB
+        assertEquals(256, controller.getPriority());
+    }
+
+    @Test
+    public void testEstimators() {
+        CostFlowController controller = new CostFlowController(100, 5, Arrays.asList(ESTIMATOR));
+        assertEquals(30, controller.getCost(request(30)));
+        // unknown, the default applies
+        assertEquals(5, controller.getCost(new Request()));
+    }
+
+    @Test
+    public void testBudget() throws Exception {
+        CostFlowController controller = new CostFlowController(100, 5, Arrays.asList(ESTIMATOR));
+
+        FlowControllerTestingThread small1 = thread(request(30), controller);
+        FlowControllerTestingThread small2 = thread(request(30), controller);
+        FlowControllerTestingThread large = thread(request(60), controller);
+        FlowControllerTestingThread small3 = thread(request(10), controller);
+        try {
+            for (FlowControllerTestingThread t : Arrays.asList(small1, small2, large, small3)) {
+                t.start();
+                waitBlocked(t, MAX_WAIT);
+            }
+            // the two small ones fit, the large one waits, and the small one after it too
+            assertEquals(ThreadState.PROCESSING, small1.state);
+            assertEquals(ThreadState.PROCESSING, small2.state);
+            assertEquals(ThreadState.STARTED, large.state);
+            assertEquals(ThreadState.STARTED, small3.state);
+            assertEquals(60, controller.getUsed());
+            assertEquals(2, controller.getQueued());
+
+            // still not enough room for the large one
+            small1.interrupt();
+            waitTerminated(small1, MAX_WAIT);
+            assertEquals(ThreadState.STARTED, large.state);
+            assertEquals(ThreadState.STARTED, small3.state);
+
+            // now both fit
+            small2.interrupt();
+            waitTerminated(small2, MAX_WAIT);
+            waitBlocked(small3, MAX_WAIT);
+            assertEquals(ThreadState.PROCESSING, large.state);
+            assertEquals(ThreadState.PROCESSING, small3.state);
+            assertEquals(70, controller.getUsed());
+
+            large.interrupt();
+            small3.interrupt();
+        } finally {
+            for (FlowControllerTestingThread t : Arrays.asList(small1, small2, large, small3)) {
+                waitAndKill(t, MAX_WAIT);
+            }
+        }
+        assertEquals(0, controller.getUsed());
+        assertEquals(0, controller.getRunning());
+    }
+
+    @Test
+    public void testLargerThanBudget() throws Exception {
+        CostFlowController controller = new CostFlowController(100, 5, Arrays.asList(ESTIMATOR));
+
+        // runs, as nothing else is running
+        assertTrue(controller.requestIncoming(request(500), 10));
+        assertEquals(500, controller.getUsed());
+        // but nothing else can run along with it
+        FlowControllerTestingThread t = new FlowControllerTestingThread(request(1), 50, 0,
+                controller);
+        t.start();
+        waitTerminated(t, MAX_WAIT);
+        assertEquals(ThreadState.TIMED_OUT, t.state);
+        assertEquals(1, controller.getRejected());
+        assertEquals(0, controller.getQueued());
+
+        controller.requestComplete(null);
+        assertEquals(0, controller.getUsed());
+    }
+
+    @Test
+    public void testTimeoutLetsOthersThrough() throws Exception {
+        CostFlowController controller = new CostFlowController(100, 5, Arrays.asList(ESTIMATOR));
+
+        FlowControllerTestingThread running = thread(request(50), controller);
+        FlowControllerTestingThread large = new FlowControllerTestingThread(request(80), 100,
+                0, controller);
+        FlowControllerTestingThread small = thread(request(10), controller);
+        try {
+            running.start();
+            waitBlocked(running, MAX_WAIT);
+            large.start();
+            waitBlocked(large, MAX_WAIT);
+            small.start();
+            waitBlocked(small, MAX_WAIT);
+            assertEquals(ThreadState.STARTED, small.state);
+
+            // once the large one gives up the small one behind it fits
+            waitTerminated(large, MAX_WAIT);
+            assertEquals(ThreadState.TIMED_OUT, large.state);
+            waitBlocked(small, MAX_WAIT);
+            assertEquals(ThreadState.PROCESSING, small.state);
+
+            running.interrupt();
+            small.interrupt();
+        } finally {
+            for (FlowControllerTestingThread t : Arrays.asList(running, large, small)) {
+                waitAndKill(t, MAX_WAIT);
+            }
+        }
+    }
+
+    FlowControllerTestingThread thread(Request request, CostFlowController controller) {
+        return new FlowControllerTestingThread(request, 0, Long.MAX_VALUE, controller);
+    }
+
+    Request request(long cost) {
+        Request request = new Request();
+        request.setRequest(String.valueOf(cost));
+        return request;
+    }
+}
@@ -0,0 +1,202 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.geoserver.flow.controller.FlowControllerTestingThread.ThreadState;
+import org.geoserver.ows.Request;
+import org.junit.Test;
+
+public class FairShareFlowControllerTest extends AbstractFlowControllerTest {
+    private static final long MAX_WAIT = 1000;
+
+    @Test
+    public void testPriority() {
+        FairShareFlowController controller = new FairShareFlowController(4,
+                new IpKeyGenerator(), Collections.<FairShareRule> emptyList());
+        // priority == number of slots
+        assertEquals(4, controller.getPriority());
+    }
+
+    @Test
+    public void testFairShare() throws Exception {
+        FairShareFlowController controller = new FairShareFlowController(1,
+                new IpKeyGenerator(), Collections.<FairShareRule> emptyList());
+
+        // the batch client grabs the slot and queues up two more requests, then a second
+        // client comes in
+        FlowControllerTestingThread a1 = thread(request("192.168.1.1", "WFS", "GetFeature"),
+                controller);
+        FlowControllerTestingThread a2 = thread(request("192.168.1.1", "WFS", "GetFeature"),
+                controller);
+        FlowControllerTestingThread a3 = thread(request("192.168.1.1", "WFS", "GetFeature"),
+                controller);
+        FlowControllerTestingThread b1 = thread(request("192.168.1.2", "WMS", "GetMap"),
+                controller);
+        try {
+            for (FlowControllerTestingThread t : Arrays.asList(a1, a2, a3, b1)) {
+                t.start();
+                waitBlocked(t, MAX_WAIT);
+            }
+            assertEquals(ThreadState.PROCESSING, a1.state);
+            assertEquals(1, controller.getRunning());
+            assertEquals(3, controller.getQueued());
+
+            // the second client goes before the batch requests queued earlier
+            a1.interrupt();
+            waitTerminated(a1, MAX_WAIT);
+            assertEquals(ThreadState.PROCESSING, b1.state);
+            assertEquals(ThreadState.STARTED, a2.state);
+            assertEquals(ThreadState.STARTED, a3.state);
+
+            // then the batch requests, in order
+            b1.interrupt();
+            waitTerminated(b1, MAX_WAIT);
+            assertEquals(ThreadState.PROCESSING, a2.state);
+            assertEquals(ThreadState.STARTED, a3.state);
+
+            a2.interrupt();
+            waitTerminated(a2, MAX_WAIT);
+            assertEquals(ThreadState.PROCESSING, a3.state);
+            a3.interrupt();
+        } finally {
+            for (FlowControllerTestingThread t : Arrays.asList(a1, a2, a3, b1)) {
+                waitAndKill(t, MAX_WAIT);
+            }
+        }
+        assertEquals(0, controller.getRunning());
+        assertEquals(0, controller.getQueued());
+    }
+
+    @Test
+    public void testRulePriority() throws Exception {
+        FairShareRule tiles = new FairShareRule(new OWSRequestMatcher("gwc"), 1, 1);
+        FairShareRule wps = new FairShareRule(new OWSRequestMatcher("wps"), 1, 0);
+        FairShareFlowController controller = new FairShareFlowController(1,
+                new IpKeyGenerator(), Arrays.asList(tiles, wps));
+
+        FlowControllerTestingThread t1 = thread(request("192.168.1.1", "WPS", "Execute"),
+                controller);
+        FlowControllerTestingThread t2 = thread(request("192.168.1.2", "WPS", "Execute"),
+                controller);
+        FlowControllerTestingThread t3 = thread(request("192.168.1.1", "GWC", "GetTile"),
+                controller);
+        try {
+            for (FlowControllerTestingThread t : Arrays.asList(t1, t2, t3)) {
+                t.start();
+                waitBlocked(t, MAX_WAIT);
+            }
+
+            // the tile request comes first, even if its user is already running a request
+            t1.interrupt();
+            waitTerminated(t1, MAX_WAIT);
+            assertEquals(ThreadState.PROCESSING, t3.state);
+            assertEquals(ThreadState.STARTED, t2.state);
+
+            t3.interrupt();
+            waitTerminated(t3, MAX_WAIT);
+            assertEquals(ThreadState.PROCESSING, t2.state);
+            t2.interrupt();
+        } finally {
+            for (FlowControllerTestingThread t : Arrays.asList(t1, t2, t3)) {
+                waitAndKill(t, MAX_WAIT);
+            }
+        }
+    }
+
+    @Test
+    public void testWeights() throws Exception {
+        FairShareFlowController controller = new FairShareFlowController(1,
+                new IpKeyGenerator(), Arrays.asList(new FairShareRule(new OWSRequestMatcher(
+                        "wms"), 2, 0)));
+
+        // the weight two flow gets two requests scheduled for each of the weight one flow
+        assertTrue(controller.requestIncoming(request("192.168.1.1", "WFS", "GetFeature"), -1));
+        controller.requestComplete(null);
+        assertEquals(1d, controller.finishTags.get("192.168.1.1|-1"), 0d);
+        assertTrue(controller.requestIncoming(request("192.168.1.2", "WMS", "GetMap"), -1));
+        controller.requestComplete(null);
+        assertEquals(0.5d, controller.finishTags.get("192.168.1.2|0"), 0d);
+    }
+
+    @Test
+    public void testTimeout() {
+        FairShareFlowController controller = new FairShareFlowController(1,
+                new IpKeyGenerator(), Collections.<FairShareRule> emptyList());
+
+        FlowControllerTestingThread t1 = new FlowControllerTestingThread(request("192.168.1.1",
+                "WMS", "GetMap"), 100, 400, controller);
+        FlowControllerTestingThread t2 = new FlowControllerTestingThread(request("192.168.1.2",
+                "WMS", "GetMap"), 100, 400, controller);
+        try {
+            t1.start();
+            waitBlocked(t1, MAX_WAIT);
+            t2.start();
+
+            waitTerminated(t1, MAX_WAIT);
+            waitTerminated(t2, MAX_WAIT);
+
+            assertEquals(ThreadState.COMPLETE, t1.state);
+            assertEquals(ThreadState.TIMED_OUT, t2.state);
+            assertEquals(1, controller.getRejected());
+            assertEquals(0, controller.getQueued());
+            // the flow is not charged for the request that did not run
+            assertNull(controller.finishTags.get("192.168.1.2|-1"));
+        } finally {
+            waitAndKill(t1, MAX_WAIT);
+            waitAndKill(t2, MAX_WAIT);
+        }
+    }
+
+    @Test
+    public void testTimeoutWithdrawsFromFlow() throws Exception {
+        FairShareFlowController controller = new FairShareFlowController(1,
+                new IpKeyGenerator(), Collections.<FairShareRule> emptyList());
+
+        FlowControllerTestingThread a1 = thread(request("192.168.1.1", "WMS", "GetMap"),
+                controller);
+        FlowControllerTestingThread a2 = new FlowControllerTestingThread(request("192.168.1.1",
+                "WMS", "GetMap"), 500, 0, controller);
+        FlowControllerTestingThread a3 = thread(request("192.168.1.1", "WMS", "GetMap"),
+                controller);
+        try {
+            for (FlowControllerTestingThread t : Arrays.asList(a1, a2, a3)) {
+                t.start();
+                waitBlocked(t, MAX_WAIT);
+            }
+            assertEquals(3d, controller.finishTags.get("192.168.1.1|-1"), 0d);
+
+            // the request giving up hands its place to the next one of the same flow
+            waitTerminated(a2, MAX_WAIT);
+            assertEquals(ThreadState.TIMED_OUT, a2.state);
+            assertEquals(2d, controller.finishTags.get("192.168.1.1|-1"), 0d);
+            assertEquals(1, controller.getQueued());
+
+            a1.interrupt();
+            waitTerminated(a1, MAX_WAIT);
+            assertEquals(ThreadState.PROCESSING, a3.state);
+            a3.interrupt();
+        } finally {
+            for (FlowControllerTestingThread t : Arrays.asList(a1, a2, a3)) {
+                waitAndKill(t, MAX_WAIT);
+            }
+        }
+    }
+
+    FlowControllerTestingThread thread(Request request, FairShareFlowController controller) {
+        return new FlowControllerTestingThread(request, 0, Long.MAX_VALUE, controller);
+    }
+
+    Request request(String ip, String service, String operation) {
+        Request request = buildIpRequest(ip, "");
+        request.setService(service);
+        request.setRequest(operation);
+        return request;
+    }
+}
@@ -0,0 +1,59 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LocalRateCounterTest {
+
+    @Test
+    public void testConsume() {
+        // 10 requests per second
+        LocalRateCounter counter = new LocalRateCounter(10, 1000);
+        for (int i = 9; i >= 0; i--) {
+            assertEquals(i, counter.consume("user", 0));
+        }
+        assertEquals(-1, counter.consume("user", 0));
+        // other users have their own bucket
+        assertEquals(9, counter.consume("other", 0));
+    }
+
+    @Test
+    public void testRefill() {
+        LocalRateCounter counter = new LocalRateCounter(10, 1000);
+        for (int i = 0; i < 10; i++) {
+            counter.consume("user", 0);
+        }
+        // one token every 100ms, no burst after the initial one
+        assertEquals(-1, counter.consume("user", 50));
+        assertEquals(0, counter.consume("user", 200));
+        // a full second refills the whole bucket
+        assertEquals(9, counter.consume("user", 2000));
+    }
+
+    @Test
+    public void testDebtCap() {
+        LocalRateCounter counter = new LocalRateCounter(10, 1000);
+        for (int i = 0; i < 100; i++) {
+            counter.consume("user", 0);
+        }
+        // the debt is capped at one interval worth of requests
+        assertEquals(-10, counter.consume("user", 0));
+        assertEquals(9, counter.consume("user", 2000));
+    }
+
+    @Test
+    public void testResetTime() {
+        LocalRateCounter counter = new LocalRateCounter(10, 1000);
+        // unknown users are at full allowance already
+        assertEquals(500, counter.getResetTime("user", 500));
+        counter.consume("user", 0);
+        counter.consume("user", 0);
+        assertEquals(200, counter.getResetTime("user", 0));
+        assertEquals(200, counter.getResetTime("user", 100));
+    }
+}
@@ -0,0 +1,117 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import static org.junit.Assert.*;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequestWrapper;
+
+import org.geoserver.ows.Request;
+import org.geoserver.platform.Operation;
+import org.junit.Test;
+
+import com.mockrunner.mock.web.MockHttpServletRequest;
+
+public class OWSRequestCostEstimatorTest {
+
+    OWSRequestCostEstimator estimator = new OWSRequestCostEstimator();
+
+    @Test
+    public void testGetMap() {
+        MapBean map = new MapBean();
+        map.setWidth(256);
+        map.setHeight(256);
+        map.setLayers(Arrays.asList("roads", "rivers", "places"));
+        assertEquals(256 * 256 * 4 * 3, estimator.getCost(request("GetMap", map)));
+
+        // no layers, still one image
+        map.setLayers(null);
+        assertEquals(256 * 256 * 4, estimator.getCost(request("GetMap", map)));
+    }
+
+    @Test
+    public void testGetFeature() {
+        FeatureBean features = new FeatureBean();
+        features.setMaxFeatures(BigInteger.valueOf(50));
+        assertEquals(50 * 1024, estimator.getCost(request("GetFeature", features)));
+
+        // unbounded
+        features.setMaxFeatures(null);
+        assertEquals(100000 * 1024, estimator.getCost(request("GetFeature", features)));
+    }
+
+    @Test
+    public void testExecute() {
+        Request request = request("Execute", new Object());
+        request.setHttpRequest(new HttpServletRequestWrapper(new MockHttpServletRequest()) {
+            @Override
+            public int getContentLength() {
+                return 12345;
+            }
+        });
+        assertEquals(12345, estimator.getCost(request));
+    }
+
+    @Test
+    public void testUnknown() {
+        assertEquals(RequestCostEstimator.UNKNOWN_COST, estimator.getCost(new Request()));
+        assertEquals(RequestCostEstimator.UNKNOWN_COST,
+                estimator.getCost(request("GetCapabilities", new Object())));
+    }
+
+    Request request(String operation, Object bean) {
+        Request request = new Request();
+        request.setOperation(new Operation(operation, null, null, new Object[] { bean }));
+        return request;
+    }
+
+    public static class MapBean {
+        int width;
+
+        int height;
+
+        List<String> layers;
+
+        public int getWidth() {
+            return width;
+        }
+
+        public void setWidth(int width) {
+            this.width = width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public void setHeight(int height) {
+            this.height = height;
+        }
+
+        public List<String> getLayers() {
+            return layers;
+        }
+
+        public void setLayers(List<String> layers) {
+            this.layers = layers;
+        }
+    }
+
+    public static class FeatureBean {
+        BigInteger maxFeatures;
+
+        public BigInteger getMaxFeatures() {
+            return maxFeatures;
+        }
+
+        public void setMaxFeatures(BigInteger maxFeatures) {
+            this.maxFeatures = maxFeatures;
+        }
+    }
+}
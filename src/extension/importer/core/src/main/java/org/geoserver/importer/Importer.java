@@ -17,6 +17,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -34,6 +35,7 @@ import org.geoserver.catalog.ResourceInfo;
 import org.geoserver.catalog.StoreInfo;
 import org.geoserver.catalog.StyleInfo;
 import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.impl.CatalogImpl;
 import org.geoserver.config.util.XStreamPersister;
 import org.geoserver.config.util.XStreamPersister.CRSConverter;
 import org.geoserver.config.util.XStreamPersisterFactory;
@@ -1160,7 +1162,26 @@ public class Importer implements DisposableBean, ApplicationListener {
         return catalog.getDefaultDataStore(ws);
     }
 
-    void addToCatalog(ImportTask task) throws IOException {
+    void addToCatalog(final ImportTask task) throws IOException {
+        // publish the resource, style and layer to the catalog listings at once
+        try {
+            CatalogImpl.batch(catalog, new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    doAddToCatalog(task);
+                    return null;
+                }
+            });
+        } catch (IOException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    void doAddToCatalog(ImportTask task) throws IOException {
         LayerInfo layer = task.getLayer();
         ResourceInfo resource = layer.getResource();
         resource.setStore(task.getStore());
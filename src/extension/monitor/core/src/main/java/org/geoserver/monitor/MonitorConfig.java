@@ -124,6 +124,13 @@ public class MonitorConfig implements ApplicationContextAware {
         return BboxMode.valueOf(mode.toUpperCase());
     }
     
+    /**
+     * Whether the time spent in each request processing phase is recorded
+     */
+    public boolean isPhaseTimes() {
+        return Boolean.parseBoolean(props().getProperty("phaseTimes", "false"));
+    }
+
     public boolean isEnabled() {
         return enabled;
     }
@@ -0,0 +1,115 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.logging.Logger;
+
+import org.geoserver.catalog.ResourcePoolWarmer;
+import org.geoserver.catalog.WarmupLayerSource;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geotools.util.logging.Logging;
+
+/**
+ * Contributes the most requested layers recorded by the monitor to the
+ * {@link ResourcePoolWarmer resource pool warm up}.
+ * <p>
+ * The requests of the last {@value #WARMUP_DAYS} days are considered, the layers are not
+ * contributed unless the variable is set. Only useful with a persistent monitor storage, the
+ * in memory one is empty at startup.
+ * </p>
+ */
+public class MonitorWarmupLayerSource implements WarmupLayerSource {
+
+    static final Logger LOGGER = Logging.getLogger(MonitorWarmupLayerSource.class);
+
+    public static final String WARMUP_DAYS = "GEOSERVER_WARMUP_MONITOR_DAYS";
+
+    static final long DAY = 24 * 60 * 60 * 1000l;
+
+    Monitor monitor;
+
+    public MonitorWarmupLayerSource(Monitor monitor) {
+        this.monitor = monitor;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return getDays() > 0 && monitor.getDAO() != null;
+    }
+
+    @Override
+    public List<String> getLayers(int max) throws Exception {
+        int days = getDays();
+        if (days <= 0 || monitor.getDAO() == null) {
+            return Collections.emptyList();
+        }
+
+        // count the requests per layer, grouping in the storage when it supports it
+        final Map<String, Long> counts = new HashMap<String, Long>();
+        Date to = new Date();
+        Date from = new Date(to.getTime() - days * DAY);
+        Query query = new Query().properties("resource").aggregate("count()").between(from, to)
+                .group("resource");
+        monitor.query(query, new RequestDataVisitor() {
+            @Override
+            public void visit(RequestData data, Object... aggregates) {
+                if (data.getResources() == null) {
+                    return;
+                }
+                long requests = 1;
+                if (aggregates != null && aggregates.length > 0
+                        && aggregates[0] instanceof Number) {
+                    requests = ((Number) aggregates[0]).longValue();
+                }
+                for (String resource : data.getResources()) {
+                    if (resource == null) {
+                        // requests without layers
+                        continue;
+                    }
+                    Long count = counts.get(resource);
+                    counts.put(resource, count == null ? requests : count + requests);
+                }
+            }
+        });
+
+        List<Entry<String, Long>> entries = new ArrayList<Entry<String, Long>>(counts.entrySet());
+        Collections.sort(entries, new Comparator<Entry<String, Long>>() {
+            @Override
+            public int compare(Entry<String, Long> e1, Entry<String, Long> e2) {
+                return e2.getValue().compareTo(e1.getValue());
+            }
+        });
+        List<String> layers = new ArrayList<String>();
+        for (Entry<String, Long> entry : entries.subList(0, Math.min(max, entries.size()))) {
+            layers.add(entry.getKey());
+        }
+        return layers;
+    }
+
+    /**
+     * The number of days of requests to consider, zero if not set or invalid
+     */
+    int getDays() {
+        String value = GeoServerExtensions.getProperty(WARMUP_DAYS);
+        if (value == null || value.trim().isEmpty()) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            LOGGER.warning("Invalid value for " + WARMUP_DAYS + ": " + value
+                    + ", not warming up the most requested layers");
+            return 0;
+        }
+    }
+}
@@ -8,7 +8,9 @@ package org.geoserver.monitor;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.geoserver.platform.ServiceException;
@@ -184,6 +186,12 @@ public class RequestData implements Serializable {
      */
     private List<String> resources = new ArrayList<String>(1);
 
+    /**
+     * The time spent in each request processing phase, in milliseconds, empty unless phase
+     * timings are enabled
+     */
+    private Map<String, Double> phaseTimes = new LinkedHashMap<String, Double>();
+
     /**
      * The HTTP response length, in bytes
      */
@@ -457,6 +465,14 @@ public class RequestData implements Serializable {
     public void setResources(List<String> resources) {
         this.resources = resources;
     }
+
+    public Map<String, Double> getPhaseTimes() {
+        return phaseTimes;
+    }
+
+    public void setPhaseTimes(Map<String, Double> phaseTimes) {
+        this.phaseTimes = phaseTimes;
+    }
     
     public long getResponseLength() {
         return responseLength;
@@ -494,9 +510,12 @@ public class RequestData implements Serializable {
         RequestData clone = new RequestData();
         clone.setId(id);
         clone.setStatus(status);
+        clone.setCategory(category);
         clone.setPath(path);
         clone.setQueryString(queryString);
         clone.setBody(body);
+        clone.setBodyContentLength(bodyContentLength);
+        clone.setBodyContentType(bodyContentType);
         clone.setHttpMethod(httpMethod);
         clone.setStartTime(startTime);
         clone.setEndTime(endTime);
@@ -506,11 +525,17 @@ public class RequestData implements Serializable {
         clone.setHost(host);
         clone.setInternalHost(internalHost);
         clone.setRemoteUser(remoteUser);
+        clone.setRemoteUserAgent(remoteUserAgent);
+        clone.setRemoteCountry(remoteCountry);
+        clone.setRemoteCity(remoteCity);
+        clone.setRemoteLat(remoteLat);
+        clone.setRemoteLon(remoteLon);
         clone.setService(service);
         clone.setOperation(operation);
         clone.setSubOperation(subOperation);
         clone.setOwsVersion(owsVersion);
         clone.setResources(new ArrayList(resources));
+        clone.setPhaseTimes(new LinkedHashMap<String, Double>(phaseTimes));
         clone.setResponseLength(responseLength);
         clone.setResponseContentType(responseContentType);
         clone.setErrorMessage(errorMessage);
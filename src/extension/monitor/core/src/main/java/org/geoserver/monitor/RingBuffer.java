@@ -0,0 +1,132 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock free, multi producer multi consumer queue backed by an array. Each slot carries
+ * a sequence number telling producers and consumers whether the slot is free or filled for the
+ * current lap around the ring, so that neither ever blocks: {@link #offer(Object)} fails when
+ * the buffer is full, {@link #poll()} returns null when it is empty.
+ * 
+ * @param <T> The element type.
+ */
+public class RingBuffer<T> {
+
+    final AtomicReferenceArray<T> items;
+
+    final AtomicLongArray sequences;
+
+    final int mask;
+
+    final AtomicLong head = new AtomicLong();
+
+    final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param capacity the buffer capacity, rounded up to the next power of two
+     */
+    public RingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        items = new AtomicReferenceArray<T>(size);
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Adds an element at the end of the buffer
+     * 
+     * @return false if the buffer is full
+     */
+    public boolean offer(T item) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+        while (true) {
+            long pos = head.get();
+            int idx = (int) (pos & mask);
+            long diff = sequences.get(idx) - pos;
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    items.lazySet(idx, item);
+                    // publishes the item to the consumers
+                    sequences.set(idx, pos + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                // the slot still holds the item of the previous lap
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Removes the element at the head of the buffer
+     * 
+     * @return the element, or null if the buffer is empty
+     */
+    public T poll() {
+        while (true) {
+            long pos = tail.get();
+            int idx = (int) (pos & mask);
+            long diff = sequences.get(idx) - (pos + 1);
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    T item = items.get(idx);
+                    items.lazySet(idx, null);
+                    // hands the slot over to the producers of the next lap
+                    sequences.set(idx, pos + mask + 1);
+                    return item;
+                }
+            } else if (diff < 0) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Moves up to max elements into the target collection
+     * 
+     * @return the number of elements moved
+     */
+    public int drainTo(Collection<? super T> target, int max) {
+        int count = 0;
+        T item;
+        while (count < max && (item = poll()) != null) {
+            target.add(item);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * The number of elements in the buffer, an estimate if producers or consumers are active
+     */
+    public int size() {
+        long size = head.get() - tail.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
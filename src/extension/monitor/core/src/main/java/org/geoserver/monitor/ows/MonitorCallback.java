@@ -26,6 +26,7 @@ import org.geoserver.monitor.ows.wms.GetLegendGraphicHandler;
 import org.geoserver.monitor.ows.wms.GetMapHandler;
 import org.geoserver.ows.DispatcherCallback;
 import org.geoserver.ows.Request;
+import org.geoserver.ows.RequestTimings;
 import org.geoserver.ows.Response;
 import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.Operation;
@@ -62,6 +63,9 @@ public class MonitorCallback implements DispatcherCallback {
     }
     
     public Request init(Request request) {
+        if (request.getTimings() == null && monitor.getConfig().isPhaseTimes()) {
+            request.setTimings(new RequestTimings());
+        }
         return null;
     }
 
@@ -107,6 +111,12 @@ public class MonitorCallback implements DispatcherCallback {
     }
     
     public void finished(Request request) {
+        if (request.getTimings() != null) {
+            RequestData data = monitor.current();
+            if (data != null) {
+                data.setPhaseTimes(request.getTimings().getMillis());
+            }
+        }
         if (request.getError() != null) {
             RequestData data = monitor.current();
             if (data == null) {
@@ -0,0 +1,68 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor.rest;
+
+import org.geoserver.monitor.stats.RequestStats;
+import org.geoserver.monitor.stats.StatsAggregator;
+import org.geoserver.monitor.stats.StatsAggregator.Dimension;
+import org.geoserver.rest.ReflectiveResource;
+import org.geoserver.rest.RestletException;
+import org.restlet.data.Form;
+import org.restlet.data.Status;
+
+import com.thoughtworks.xstream.XStream;
+
+/**
+ * Exposes the aggregated request statistics of a {@link StatsAggregator}, by service, operation
+ * or layer. The optional "minutes" parameter restricts the time window.
+ */
+public class StatsResource extends ReflectiveResource {
+
+    StatsAggregator aggregator;
+
+    public StatsResource(StatsAggregator aggregator) {
+        this.aggregator = aggregator;
+    }
+
+    @Override
+    public boolean allowGet() {
+        return true;
+    }
+
+    @Override
+    protected Object handleObjectGet() throws Exception {
+        String dim = getAttribute("dimension");
+        Dimension dimension = null;
+        for (Dimension d : Dimension.values()) {
+            if (d.name().equalsIgnoreCase(dim)) {
+                dimension = d;
+            }
+        }
+        if (dimension == null) {
+            throw new RestletException("No such statistics: " + dim,
+                    Status.CLIENT_ERROR_NOT_FOUND);
+        }
+
+        int minutes = 0;
+        Form form = getRequest().getResourceRef() != null ? getRequest().getResourceRef()
+                .getQueryAsForm() : new Form();
+        String value = form.getFirstValue("minutes");
+        if (value != null) {
+            try {
+                minutes = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new RestletException("Invalid minutes: " + value,
+                        Status.CLIENT_ERROR_BAD_REQUEST, e);
+            }
+        }
+
+        return aggregator.getStats(dimension, minutes);
+    }
+
+    @Override
+    protected void configureXStream(XStream xstream) {
+        xstream.alias("stats", RequestStats.class);
+    }
+}
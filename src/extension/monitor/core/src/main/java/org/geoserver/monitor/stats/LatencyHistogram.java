@@ -0,0 +1,138 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size, lock free histogram of request times in milliseconds, with buckets growing
+ * exponentially like the HDR histograms. Times below 32ms are counted exactly, larger ones in
+ * buckets whose width is at most 1/16th of their value, so percentiles are accurate to about 6%
+ * whatever the time scale, using a few hundred counters.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Values counted exactly
+     */
+    static final int LINEAR = 32;
+
+    /**
+     * Buckets for each power of two above the linear range
+     */
+    static final int SUB_BUCKETS = 16;
+
+    static final int SUB_BITS = 4;
+
+    /**
+     * Times are clamped to about 24 days
+     */
+    static final long MAX_VALUE = Integer.MAX_VALUE;
+
+    static final int BUCKETS = bucketIndex(MAX_VALUE) + 1;
+
+    final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    final AtomicLong count = new AtomicLong();
+
+    final AtomicLong sum = new AtomicLong();
+
+    final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a request time
+     */
+    public void record(long value) {
+        value = Math.max(0, Math.min(value, MAX_VALUE));
+        counts.incrementAndGet(bucketIndex(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long current;
+        while (value > (current = max.get())) {
+            if (max.compareAndSet(current, value)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Adds the values recorded by another histogram to this one
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = other.counts.get(i);
+            if (c > 0) {
+                counts.addAndGet(i, c);
+            }
+        }
+        count.addAndGet(other.count.get());
+        sum.addAndGet(other.sum.get());
+        long otherMax = other.max.get();
+        long current;
+        while (otherMax > (current = max.get())) {
+            if (max.compareAndSet(current, otherMax)) {
+                break;
+            }
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long c = count.get();
+        return c == 0 ? 0 : (double) sum.get() / c;
+    }
+
+    /**
+     * Returns the value below which the given percentage of the recorded values fall, as the
+     * highest value of the bucket holding it, or 0 if nothing was recorded
+     * 
+     * @param percentile the percentile, between 0 and 100
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * Math.min(percentile, 100) / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestValue(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    static int bucketIndex(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR + (exp - 5) * SUB_BUCKETS + sub;
+    }
+
+    static long highestValue(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int exp = (index - LINEAR) / SUB_BUCKETS + 5;
+        int sub = (index - LINEAR) % SUB_BUCKETS;
+        long width = 1L << (exp - SUB_BITS);
+        return (SUB_BUCKETS + sub) * width + width - 1;
+    }
+}
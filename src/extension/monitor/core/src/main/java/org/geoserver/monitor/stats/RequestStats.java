@@ -0,0 +1,117 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor.stats;
+
+import java.io.Serializable;
+
+/**
+ * Summary of the requests made to a service, operation or layer in a time window. Times are in
+ * milliseconds, the throughput in requests per second.
+ */
+public class RequestStats implements Serializable, Comparable<RequestStats> {
+
+    private static final long serialVersionUID = -3592816937158271538L;
+
+    private String name;
+
+    private long count;
+
+    private long errors;
+
+    private double throughput;
+
+    private double meanTime;
+
+    private long medianTime;
+
+    private long p90Time;
+
+    private long p99Time;
+
+    private long maxTime;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public void setErrors(long errors) {
+        this.errors = errors;
+    }
+
+    public double getThroughput() {
+        return throughput;
+    }
+
+    public void setThroughput(double throughput) {
+        this.throughput = throughput;
+    }
+
+    public double getMeanTime() {
+        return meanTime;
+    }
+
+    public void setMeanTime(double meanTime) {
+        this.meanTime = meanTime;
+    }
+
+    public long getMedianTime() {
+        return medianTime;
+    }
+
+    public void setMedianTime(long medianTime) {
+        this.medianTime = medianTime;
+    }
+
+    public long getP90Time() {
+        return p90Time;
+    }
+
+    public void setP90Time(long p90Time) {
+        this.p90Time = p90Time;
+    }
+
+    public long getP99Time() {
+        return p99Time;
+    }
+
+    public void setP99Time(long p99Time) {
+        this.p99Time = p99Time;
+    }
+
+    public long getMaxTime() {
+        return maxTime;
+    }
+
+    public void setMaxTime(long maxTime) {
+        this.maxTime = maxTime;
+    }
+
+    @Override
+    public int compareTo(RequestStats other) {
+        return name.compareTo(other.name);
+    }
+
+    @Override
+    public String toString() {
+        return "RequestStats(" + name + ", count=" + count + ", errors=" + errors + ", p50="
+                + medianTime + ", p99=" + p99Time + ")";
+    }
+}
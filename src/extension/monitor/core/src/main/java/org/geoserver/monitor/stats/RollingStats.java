@@ -0,0 +1,133 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Request statistics over a rolling time window, split in fixed length slots: each slot holds
+ * the latency histogram and error count of the requests completed in it, and gets recycled once
+ * it falls out of the window.
+ */
+public class RollingStats {
+
+    static final class Slot {
+        final long id;
+
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        final AtomicLong errors = new AtomicLong();
+
+        Slot(long id) {
+            this.id = id;
+        }
+    }
+
+    final String name;
+
+    final long slotMillis;
+
+    final AtomicReferenceArray<Slot> slots;
+
+    /**
+     * @param name the name of the service, operation or layer the statistics are for
+     * @param slotMillis the length of a slot, in milliseconds
+     * @param slotCount the number of slots in the window
+     */
+    public RollingStats(String name, long slotMillis, int slotCount) {
+        this.name = name;
+        this.slotMillis = slotMillis;
+        this.slots = new AtomicReferenceArray<Slot>(slotCount);
+    }
+
+    /**
+     * Records a request
+     * 
+     * @param now the time the request completed, in milliseconds
+     * @param time the request time, in milliseconds
+     * @param error whether the request failed
+     */
+    public void record(long now, long time, boolean error) {
+        Slot slot = getSlot(now / slotMillis);
+        if (slot == null) {
+            return;
+        }
+        slot.histogram.record(time);
+        if (error) {
+            slot.errors.incrementAndGet();
+        }
+    }
+
+    Slot getSlot(long id) {
+        int idx = (int) (id % slots.length());
+        while (true) {
+            Slot slot = slots.get(idx);
+            if (slot != null && slot.id == id) {
+                return slot;
+            }
+            if (slot != null && slot.id > id) {
+                // a request from the past, its slot is gone already
+                return null;
+            }
+            Slot fresh = new Slot(id);
+            if (slots.compareAndSet(idx, slot, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    /**
+     * Summarizes the requests of the last slots
+     * 
+     * @param now the current time, in milliseconds
+     * @param slotCount the number of slots to summarize, the current one included
+     */
+    public RequestStats summarize(long now, int slotCount) {
+        slotCount = Math.max(1, Math.min(slotCount, slots.length()));
+        long current = now / slotMillis;
+        LatencyHistogram histogram = new LatencyHistogram();
+        long errors = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            Slot slot = slots.get(i);
+            if (slot != null && slot.id <= current && slot.id > current - slotCount) {
+                histogram.add(slot.histogram);
+                errors += slot.errors.get();
+            }
+        }
+
+        // the current slot is only partially elapsed
+        long elapsed = (slotCount - 1) * slotMillis + (now - current * slotMillis);
+        RequestStats stats = new RequestStats();
+        stats.setName(name);
+        stats.setCount(histogram.getCount());
+        stats.setErrors(errors);
+        stats.setThroughput(histogram.getCount() * 1000d / Math.max(1, elapsed));
+        stats.setMeanTime(histogram.getMean());
+        stats.setMedianTime(histogram.getValueAtPercentile(50));
+        stats.setP90Time(histogram.getValueAtPercentile(90));
+        stats.setP99Time(histogram.getValueAtPercentile(99));
+        stats.setMaxTime(histogram.getMax());
+        return stats;
+    }
+
+    /**
+     * Returns true if no request was recorded in the whole window
+     */
+    public boolean isIdle(long now) {
+        long current = now / slotMillis;
+        for (int i = 0; i < slots.length(); i++) {
+            Slot slot = slots.get(i);
+            if (slot != null && slot.id > current - slots.length()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,210 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor.stats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.geoserver.monitor.RequestData;
+import org.geoserver.monitor.RequestData.Status;
+import org.geoserver.monitor.RequestDataListener;
+
+/**
+ * Aggregates the completed requests by service, operation and layer as they go, keeping latency
+ * histograms, throughput and error counts over a rolling time window, so that percentiles can be
+ * computed without storing or scanning the individual requests.
+ * <p>
+ * Requests are recorded once post processed, when the layer names have been normalized. The
+ * number of names tracked for each dimension is capped, requests for names in excess are
+ * accounted under {@link #OTHER}.
+ * </p>
+ */
+public class StatsAggregator implements RequestDataListener {
+
+    /**
+     * The ways requests are grouped
+     */
+    public static enum Dimension {
+        SERVICE, OPERATION, LAYER;
+    }
+
+    /**
+     * The name used for requests without a service, and for names in excess
+     */
+    public static final String OTHER = "other";
+
+    static final long DEFAULT_SLOT_MILLIS = 60 * 1000;
+
+    static final int DEFAULT_SLOTS = 15;
+
+    static final int DEFAULT_MAX_NAMES = 1000;
+
+    long slotMillis = DEFAULT_SLOT_MILLIS;
+
+    int slots = DEFAULT_SLOTS;
+
+    int maxNames = DEFAULT_MAX_NAMES;
+
+    Map<Dimension, ConcurrentMap<String, RollingStats>> stats = 
+            new EnumMap<Dimension, ConcurrentMap<String, RollingStats>>(Dimension.class);
+
+    AtomicLong lastCleanup = new AtomicLong();
+
+    public StatsAggregator() {
+        for (Dimension dimension : Dimension.values()) {
+            stats.put(dimension, new ConcurrentHashMap<String, RollingStats>());
+        }
+    }
+
+    /**
+     * The length of each slot of the rolling window, in milliseconds
+     */
+    public void setSlotMillis(long slotMillis) {
+        this.slotMillis = slotMillis;
+        clear();
+    }
+
+    public long getSlotMillis() {
+        return slotMillis;
+    }
+
+    /**
+     * The number of slots in the rolling window
+     */
+    public void setSlots(int slots) {
+        this.slots = slots;
+        clear();
+    }
+
+    public int getSlots() {
+        return slots;
+    }
+
+    /**
+     * The maximum number of services, operations or layers tracked
+     */
+    public void setMaxNames(int maxNames) {
+        this.maxNames = maxNames;
+    }
+
+    public int getMaxNames() {
+        return maxNames;
+    }
+
+    public void requestStarted(RequestData rd) {
+        // nothing to do
+    }
+
+    public void requestUpdated(RequestData rd) {
+        // nothing to do
+    }
+
+    public void requestCompleted(RequestData rd) {
+        // nothing to do, we wait for the layer names to be normalized
+    }
+
+    public void requestPostProcessed(RequestData rd) {
+        record(rd, System.currentTimeMillis());
+    }
+
+    void record(RequestData rd, long now) {
+        long time = rd.getTotalTime();
+        boolean error = rd.getStatus() == Status.FAILED || rd.getError() != null;
+
+        String service = rd.getService();
+        if (service == null) {
+            getStats(Dimension.SERVICE, OTHER).record(now, time, error);
+        } else {
+            service = service.toUpperCase();
+            getStats(Dimension.SERVICE, service).record(now, time, error);
+            if (rd.getOperation() != null) {
+                getStats(Dimension.OPERATION, service + "." + rd.getOperation()).record(now,
+                        time, error);
+            }
+        }
+        for (String layer : rd.getResources()) {
+            if (layer != null) {
+                getStats(Dimension.LAYER, layer).record(now, time, error);
+            }
+        }
+
+        long last = lastCleanup.get();
+        if (now - last > slotMillis && lastCleanup.compareAndSet(last, now)) {
+            cleanup(now);
+        }
+    }
+
+    RollingStats getStats(Dimension dimension, String name) {
+        ConcurrentMap<String, RollingStats> map = stats.get(dimension);
+        RollingStats result = map.get(name);
+        if (result == null) {
+            if (map.size() >= maxNames && !OTHER.equals(name)) {
+                return getStats(dimension, OTHER);
+            }
+            result = new RollingStats(name, slotMillis, slots);
+            RollingStats existing = map.putIfAbsent(name, result);
+            if (existing != null) {
+                result = existing;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Drops the names that had no requests in the whole window
+     */
+    void cleanup(long now) {
+        for (ConcurrentMap<String, RollingStats> map : stats.values()) {
+            for (Iterator<RollingStats> it = map.values().iterator(); it.hasNext();) {
+                if (it.next().isIdle(now)) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the statistics of the requests in the last minutes, sorted by name
+     * 
+     * @param dimension how requests are grouped
+     * @param minutes the length of the time window, the whole rolling window is used if not
+     *        positive
+     */
+    public List<RequestStats> getStats(Dimension dimension, int minutes) {
+        return getStats(dimension, minutes, System.currentTimeMillis());
+    }
+
+    List<RequestStats> getStats(Dimension dimension, int minutes, long now) {
+        int count = slots;
+        if (minutes > 0) {
+            count = (int) Math.ceil(minutes * 60000d / slotMillis);
+        }
+        List<RequestStats> result = new ArrayList<RequestStats>();
+        for (RollingStats rolling : stats.get(dimension).values()) {
+            RequestStats summary = rolling.summarize(now, count);
+            if (summary.getCount() > 0) {
+                result.add(summary);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Forgets all the recorded requests
+     */
+    public void clear() {
+        for (ConcurrentMap<String, RollingStats> map : stats.values()) {
+            map.clear();
+        }
+    }
+}
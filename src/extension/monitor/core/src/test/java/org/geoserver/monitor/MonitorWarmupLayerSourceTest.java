@@ -0,0 +1,67 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MonitorWarmupLayerSourceTest {
+
+    MemoryMonitorDAO dao;
+
+    MonitorWarmupLayerSource source;
+
+    @Before
+    public void setUp() {
+        dao = new MemoryMonitorDAO();
+        source = new MonitorWarmupLayerSource(new Monitor(dao));
+        request(new Date(), "sf:roads", "sf:streams");
+        request(new Date(), "sf:streams");
+        request(new Date(), "sf:streams", "sf:bugsites");
+        request(new Date(), "sf:bugsites");
+        // too old to be considered
+        request(new Date(System.currentTimeMillis() - 3 * MonitorWarmupLayerSource.DAY),
+                "sf:archsites", "sf:archsites", "sf:archsites");
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(MonitorWarmupLayerSource.WARMUP_DAYS);
+    }
+
+    void request(Date start, String... layers) {
+        RequestData data = dao.init(new RequestData());
+        data.setStartTime(start);
+        data.setResources(Arrays.asList(layers));
+        dao.add(data);
+    }
+
+    @Test
+    public void testDisabledByDefault() throws Exception {
+        assertFalse(source.isEnabled());
+        assertTrue(source.getLayers(10).isEmpty());
+    }
+
+    @Test
+    public void testInvalidDays() throws Exception {
+        System.setProperty(MonitorWarmupLayerSource.WARMUP_DAYS, "a week");
+        assertFalse(source.isEnabled());
+        assertTrue(source.getLayers(10).isEmpty());
+    }
+
+    @Test
+    public void testMostRequested() throws Exception {
+        System.setProperty(MonitorWarmupLayerSource.WARMUP_DAYS, "1");
+        assertTrue(source.isEnabled());
+        assertEquals(Arrays.asList("sf:streams", "sf:bugsites", "sf:roads"), source.getLayers(10));
+        assertEquals(Arrays.asList("sf:streams"), source.getLayers(1));
+    }
+}
@@ -0,0 +1,101 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class RingBufferTest {
+
+    @Test
+    public void testCapacity() {
+        assertEquals(8, new RingBuffer<Integer>(5).capacity());
+        assertEquals(8, new RingBuffer<Integer>(8).capacity());
+        assertEquals(1, new RingBuffer<Integer>(1).capacity());
+    }
+
+    @Test
+    public void testOfferPoll() {
+        RingBuffer<Integer> buffer = new RingBuffer<Integer>(4);
+        assertNull(buffer.poll());
+        assertTrue(buffer.isEmpty());
+
+        // go around the ring a few times
+        for (int lap = 0; lap < 3; lap++) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(buffer.offer(i));
+            }
+            assertFalse(buffer.offer(4));
+            assertEquals(4, buffer.size());
+            for (int i = 0; i < 4; i++) {
+                assertEquals(Integer.valueOf(i), buffer.poll());
+            }
+            assertNull(buffer.poll());
+        }
+    }
+
+    @Test
+    public void testDrain() {
+        RingBuffer<Integer> buffer = new RingBuffer<Integer>(8);
+        for (int i = 0; i < 5; i++) {
+            buffer.offer(i);
+        }
+        List<Integer> target = new ArrayList<Integer>();
+        assertEquals(3, buffer.drainTo(target, 3));
+        assertEquals(3, target.size());
+        assertEquals(2, buffer.drainTo(target, 3));
+        assertEquals(0, buffer.drainTo(target, 3));
+        assertEquals(5, target.size());
+    }
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        final RingBuffer<Integer> buffer = new RingBuffer<Integer>(64);
+        final int producers = 4;
+        final int count = 10000;
+        final CountDownLatch done = new CountDownLatch(producers);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        try {
+            for (int p = 0; p < producers; p++) {
+                executor.submit(new Runnable() {
+                    public void run() {
+                        for (int i = 0; i < count; i++) {
+                            while (!buffer.offer(i)) {
+                                Thread.yield();
+                            }
+                        }
+                        done.countDown();
+                    }
+                });
+            }
+
+            // consume everything, no element must get lost
+            long sum = 0;
+            int received = 0;
+            while (received < producers * count) {
+                Integer item = buffer.poll();
+                if (item == null) {
+                    Thread.yield();
+                    continue;
+                }
+                sum += item;
+                received++;
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertEquals((long) producers * count * (count - 1) / 2, sum);
+            assertNull(buffer.poll());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
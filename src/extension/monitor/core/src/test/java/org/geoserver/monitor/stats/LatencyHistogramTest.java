@@ -0,0 +1,66 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor.stats;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBuckets() {
+        // buckets are contiguous and cover the whole range
+        long expected = 0;
+        for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+            assertEquals(i, LatencyHistogram.bucketIndex(expected));
+            long highest = LatencyHistogram.highestValue(i);
+            assertEquals(i, LatencyHistogram.bucketIndex(highest));
+            // bucket width within 1/16th of the value
+            assertTrue(highest - expected <= Math.max(0, expected / 16));
+            expected = highest + 1;
+        }
+        assertEquals(LatencyHistogram.MAX_VALUE + 1, expected);
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(500.5, histogram.getMean(), 0d);
+        assertEquals(500, histogram.getValueAtPercentile(50), 500 / 16);
+        assertEquals(990, histogram.getValueAtPercentile(99), 990 / 16);
+        assertEquals(1000, histogram.getValueAtPercentile(100));
+        // exact in the linear range
+        assertEquals(10, histogram.getValueAtPercentile(1));
+    }
+
+    @Test
+    public void testAdd() {
+        LatencyHistogram h1 = new LatencyHistogram();
+        h1.record(10);
+        LatencyHistogram h2 = new LatencyHistogram();
+        h2.record(20);
+        h2.record(30);
+        h1.add(h2);
+        assertEquals(3, h1.getCount());
+        assertEquals(30, h1.getMax());
+        assertEquals(20, h1.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void testClamp() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(LatencyHistogram.MAX_VALUE, histogram.getValueAtPercentile(100));
+    }
+}
@@ -0,0 +1,115 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor.stats;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.geoserver.monitor.RequestData;
+import org.geoserver.monitor.RequestData.Status;
+import org.geoserver.monitor.stats.StatsAggregator.Dimension;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StatsAggregatorTest {
+
+    static final long MINUTE = 60000;
+
+    StatsAggregator aggregator;
+
+    @Before
+    public void setUp() {
+        aggregator = new StatsAggregator();
+    }
+
+    @Test
+    public void testDimensions() {
+        aggregator.record(request("wms", "GetMap", 100, "topp:states", "sf:roads"), 0);
+        aggregator.record(request("wms", "GetFeatureInfo", 10, "topp:states"), 0);
+        aggregator.record(request("WFS", "GetFeature", 50, "sf:roads"), 0);
+        aggregator.record(request(null, null, 5), 0);
+
+        List<RequestStats> services = aggregator.getStats(Dimension.SERVICE, 0, MINUTE / 2);
+        assertEquals(3, services.size());
+        assertEquals("WFS", services.get(0).getName());
+        assertEquals("WMS", services.get(1).getName());
+        assertEquals(2, services.get(1).getCount());
+        assertEquals(StatsAggregator.OTHER, services.get(2).getName());
+
+        List<RequestStats> operations = aggregator.getStats(Dimension.OPERATION, 0, MINUTE / 2);
+        assertEquals(3, operations.size());
+        assertEquals("WMS.GetMap", operations.get(2).getName());
+
+        List<RequestStats> layers = aggregator.getStats(Dimension.LAYER, 0, MINUTE / 2);
+        assertEquals(2, layers.size());
+        RequestStats roads = layers.get(0);
+        assertEquals("sf:roads", roads.getName());
+        assertEquals(2, roads.getCount());
+        assertEquals(75, roads.getMeanTime(), 0d);
+        assertEquals(100, roads.getMaxTime());
+        // within the bucket resolution
+        assertEquals(50, roads.getMedianTime(), 50 / 16);
+    }
+
+    @Test
+    public void testErrors() {
+        RequestData failed = request("wms", "GetMap", 100, "topp:states");
+        failed.setStatus(Status.FAILED);
+        aggregator.record(failed, 0);
+        aggregator.record(request("wms", "GetMap", 100, "topp:states"), 0);
+
+        RequestStats stats = aggregator.getStats(Dimension.LAYER, 0, MINUTE / 2).get(0);
+        assertEquals(2, stats.getCount());
+        assertEquals(1, stats.getErrors());
+    }
+
+    @Test
+    public void testRollingWindow() {
+        // one request per minute
+        for (int i = 0; i < 20; i++) {
+            aggregator.record(request("wms", "GetMap", i), i * MINUTE);
+        }
+        long now = 19 * MINUTE + MINUTE / 2;
+
+        // the whole window only covers the last 15 minutes
+        RequestStats all = aggregator.getStats(Dimension.SERVICE, 0, now).get(0);
+        assertEquals(15, all.getCount());
+        assertEquals(19, all.getMaxTime());
+
+        // the last two minutes, one and a half elapsed
+        RequestStats recent = aggregator.getStats(Dimension.SERVICE, 2, now).get(0);
+        assertEquals(2, recent.getCount());
+        assertEquals(2d / 90, recent.getThroughput(), 1e-6);
+
+        // nothing recorded in the last fifteen minutes, the name goes away
+        aggregator.cleanup(35 * MINUTE);
+        assertTrue(aggregator.getStats(Dimension.SERVICE, 0, 35 * MINUTE).isEmpty());
+        assertTrue(aggregator.stats.get(Dimension.SERVICE).isEmpty());
+    }
+
+    @Test
+    public void testMaxNames() {
+        aggregator.setMaxNames(2);
+        for (int i = 0; i < 5; i++) {
+            aggregator.record(request("wms", "GetMap", 10, "layer" + i), 0);
+        }
+        List<RequestStats> layers = aggregator.getStats(Dimension.LAYER, 0, MINUTE / 2);
+        assertEquals(3, layers.size());
+        assertEquals("other", layers.get(2).getName());
+        assertEquals(3, layers.get(2).getCount());
+    }
+
+    RequestData request(String service, String operation, long time, String... layers) {
+        RequestData data = new RequestData();
+        data.setService(service);
+        data.setOperation(operation);
+        data.setTotalTime(time);
+        data.setStatus(Status.FINISHED);
+        data.setResources(Arrays.asList(layers));
+        return data;
+    }
+}
@@ -0,0 +1,368 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor.hib;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geoserver.monitor.Monitor;
+import org.geoserver.monitor.RequestData;
+import org.geoserver.monitor.RingBuffer;
+import org.geotools.util.logging.Logging;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.springframework.orm.hibernate3.HibernateCallback;
+import org.springframework.orm.hibernate3.HibernateTemplate;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * Persists request data in batches from a dedicated thread. Requests are handed over through a
+ * bounded {@link RingBuffer}, so that request threads never wait on the database, and written
+ * one batch per transaction, letting Hibernate group the inserts in JDBC batches.
+ * <p>
+ * When the database cannot keep up the buffer fills up and requests are dropped, or, with the
+ * {@link Overload#SAMPLE} policy, only one new request every {@code sampleRate} is queued once
+ * the buffer is half full. Dropped and sampled out requests are counted and periodically logged.
+ * </p>
+ * <p>
+ * The sampling decision is taken once per request, when it is first offered, and applies to all
+ * its later states: the updates of a request whose insert is still queued are never sampled out.
+ * </p>
+ */
+public class BatchWriter implements Runnable {
+
+    static Logger LOGGER = Logging.getLogger(Monitor.class);
+
+    /**
+     * What to do when requests come in faster than they can be written
+     */
+    public static enum Overload {
+        /**
+         * Drop the requests that do not fit in the buffer
+         */
+        DROP,
+        /**
+         * Start sampling new requests when the buffer is half full, drop when full
+         */
+        SAMPLE;
+    }
+
+    static final long REPORT_INTERVAL = 60000;
+
+    HibernateTemplate hib;
+
+    RingBuffer<RequestData> buffer;
+
+    int batchSize;
+
+    long delay;
+
+    Overload overload;
+
+    int sampleRate;
+
+    AtomicLong sampleCounter = new AtomicLong();
+
+    /**
+     * The sampling decision of the requests offered so far, weak keys compare by identity and go
+     * away along with the requests
+     */
+    ConcurrentMap<RequestData, Boolean> sampling = new MapMaker().weakKeys().makeMap();
+
+    AtomicLong queued = new AtomicLong();
+
+    AtomicLong written = new AtomicLong();
+
+    AtomicLong dropped = new AtomicLong();
+
+    AtomicLong sampled = new AtomicLong();
+
+    AtomicLong failed = new AtomicLong();
+
+    volatile boolean running;
+
+    Thread thread;
+
+    long lastReport;
+
+    long reportedLosses;
+
+    /**
+     * @param hib the template used to write the requests
+     * @param capacity the maximum number of requests waiting to be written
+     * @param batchSize the maximum number of requests written in a single transaction
+     * @param delay the maximum time a request waits for a batch to fill up, in milliseconds
+     * @param overload the overload policy
+     * @param sampleRate the sampling rate used by {@link Overload#SAMPLE}
+     */
+    public BatchWriter(HibernateTemplate hib, int capacity, int batchSize, long delay,
+            Overload overload, int sampleRate) {
+        this.hib = hib;
+        this.buffer = new RingBuffer<RequestData>(capacity);
+        this.batchSize = batchSize;
+        this.delay = delay;
+        this.overload = overload;
+        this.sampleRate = Math.max(1, sampleRate);
+    }
+
+    public synchronized void start() {
+        if (thread == null) {
+            running = true;
+            thread = new Thread(this, "GeoServer monitor writer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the writer thread, after writing the requests still in the buffer
+     */
+    public synchronized void stop() {
+        if (thread != null) {
+            running = false;
+            LockSupport.unpark(thread);
+            try {
+                thread.join(10000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    /**
+     * Queues a request for writing, inserting it if it has not been written yet or updating it
+     * otherwise.
+     * 
+     * @return false if the request got dropped
+     */
+    public boolean offer(RequestData data) {
+        if (overload == Overload.SAMPLE && !isSampledIn(data)) {
+            return false;
+        }
+        if (!buffer.offer(data)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        queued.incrementAndGet();
+
+        // wake up the writer as soon as a batch is ready
+        Thread t = thread;
+        if (t != null && buffer.size() >= batchSize) {
+            LockSupport.unpark(t);
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the request is to be recorded, deciding on the first offer of a new request
+     */
+    boolean isSampledIn(RequestData data) {
+        Boolean sampledIn = sampling.get(data);
+        if (sampledIn != null) {
+            return sampledIn;
+        }
+        if (data.getId() != -1) {
+            // recorded outside of the writer
+            return true;
+        }
+        sampledIn = buffer.size() <= buffer.capacity() / 2
+                || sampleCounter.incrementAndGet() % sampleRate == 0;
+        Boolean previous = sampling.putIfAbsent(data, sampledIn);
+        if (previous != null) {
+            return previous;
+        }
+        if (!sampledIn) {
+            sampled.incrementAndGet();
+        }
+        return sampledIn;
+    }
+
+    public void run() {
+        while (running) {
+            if (buffer.size() < batchSize) {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(delay));
+            }
+            flush();
+        }
+        flush();
+    }
+
+    /**
+     * Writes all the requests in the buffer
+     */
+    void flush() {
+        List<RequestData> batch = new ArrayList<RequestData>(batchSize);
+        while (buffer.drainTo(batch, batchSize) > 0) {
+            try {
+                write(batch);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Failed to write monitoring batch", e);
+            }
+            batch.clear();
+        }
+        report();
+    }
+
+    void write(List<RequestData> batch) {
+        // the same request may be queued more than once, its latest state is all we need
+        Set<RequestData> seen = Collections
+                .newSetFromMap(new IdentityHashMap<RequestData, Boolean>());
+        List<RequestData> requests = new ArrayList<RequestData>(batch.size());
+        for (RequestData data : batch) {
+            if (seen.add(data)) {
+                requests.add(data);
+            }
+        }
+        persist(requests);
+    }
+
+    /**
+     * Writes the requests in a single transaction, falling back on writing them one by one if
+     * that fails
+     */
+    void persist(final List<RequestData> requests) {
+        try {
+            hib.execute(new HibernateCallback() {
+                public Object doInHibernate(Session session) throws HibernateException,
+                        SQLException {
+                    Transaction tx = session.beginTransaction();
+                    try {
+                        List<Long> ids = new ArrayList<Long>(requests.size());
+                        for (RequestData data : requests) {
+                            ids.add(save(session, data));
+                        }
+                        tx.commit();
+                        for (int i = 0; i < requests.size(); i++) {
+                            setId(requests.get(i), ids.get(i));
+                        }
+                    } catch (HibernateException e) {
+                        tx.rollback();
+                        throw e;
+                    }
+                    return null;
+                }
+            });
+            written.addAndGet(requests.size());
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Batch write failed, writing requests one by one", e);
+            for (final RequestData data : requests) {
+                try {
+                    hib.execute(new HibernateCallback() {
+                        public Object doInHibernate(Session session) throws HibernateException,
+                                SQLException {
+                            Transaction tx = session.beginTransaction();
+                            try {
+                                long id = save(session, data);
+                                tx.commit();
+                                setId(data, id);
+                            } catch (HibernateException e) {
+                                tx.rollback();
+                                throw e;
+                            }
+                            return null;
+                        }
+                    });
+                    written.incrementAndGet();
+                } catch (Exception e1) {
+                    failed.incrementAndGet();
+                    LOGGER.log(Level.WARNING, "Failed to write " + data, e1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves a snapshot of the request, the request itself keeps on changing in the request
+     * thread and the post processors
+     */
+    long save(Session session, RequestData data) {
+        RequestData copy;
+        synchronized (data) {
+            copy = data.clone();
+        }
+        if (copy.getId() == -1) {
+            return (Long) session.save(copy);
+        }
+        session.update(copy);
+        return copy.getId();
+    }
+
+    void setId(RequestData data, long id) {
+        synchronized (data) {
+            data.setId(id);
+        }
+    }
+
+    /**
+     * Logs the requests lost due to overload, at most once per report interval
+     */
+    void report() {
+        long losses = dropped.get() + sampled.get();
+        long now = System.currentTimeMillis();
+        if (losses > reportedLosses && now - lastReport > REPORT_INTERVAL) {
+            LOGGER.warning("Monitoring database cannot keep up with the requests, "
+                    + (losses - reportedLosses) + " requests not recorded since last report ("
+                    + dropped.get() + " dropped and " + sampled.get()
+                    + " sampled out in total)");
+            reportedLosses = losses;
+            lastReport = now;
+        }
+    }
+
+    /**
+     * The requests queued for writing
+     */
+    public long getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * The requests written to the database
+     */
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * The requests dropped because the buffer was full
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * The requests not queued by the sampling policy
+     */
+    public long getSampled() {
+        return sampled.get();
+    }
+
+    /**
+     * The requests that could not be written
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * The requests currently waiting in the buffer
+     */
+    public int getPending() {
+        return buffer.size();
+    }
+}
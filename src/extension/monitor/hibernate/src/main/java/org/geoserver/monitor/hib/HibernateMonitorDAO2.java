@@ -11,6 +11,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
 
+import org.geoserver.hibernate.HibUtil;
 import org.geoserver.monitor.CompositeFilter;
 import org.geoserver.monitor.Filter;
 import org.geoserver.monitor.FilterVisitorSupport;
@@ -31,17 +32,25 @@ import org.hibernate.Transaction;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.orm.hibernate3.HibernateCallback;
 import org.springframework.orm.hibernate3.HibernateTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.google.common.base.FinalizableReference;
 
 public class HibernateMonitorDAO2 implements MonitorDAO , DisposableBean {
 
     public static enum Sync {
-        SYNC, ASYNC, ASYNC_UPDATE;
+        SYNC, ASYNC, ASYNC_UPDATE, BATCH;
     }
 
     HibernateTemplate hib;
     PipeliningTaskQueue<Thread> tasks;
+    BatchWriter writer;
+
+    int batchCapacity = 8192;
+    int batchSize = 100;
+    long batchDelay = 500;
+    BatchWriter.Overload batchOverload = BatchWriter.Overload.SAMPLE;
+    int batchSampleRate = 10;
 
     Mode mode = Mode.HISTORY;
     Sync sync = Sync.ASYNC;
@@ -58,6 +67,17 @@ public class HibernateMonitorDAO2 implements MonitorDAO , DisposableBean {
     @Override
     public void init(MonitorConfig config) {
         setMode(config.getMode());
+        Properties props = config.getProperties();
+        batchCapacity = Integer.parseInt(props.getProperty("hibernate.batch.capacity",
+                String.valueOf(batchCapacity)));
+        batchSize = Integer.parseInt(props.getProperty("hibernate.batch.size",
+                String.valueOf(batchSize)));
+        batchDelay = Long.parseLong(props.getProperty("hibernate.batch.delay",
+                String.valueOf(batchDelay)));
+        batchOverload = BatchWriter.Overload.valueOf(props.getProperty(
+                "hibernate.batch.overload", batchOverload.name()).toUpperCase());
+        batchSampleRate = Integer.parseInt(props.getProperty("hibernate.batch.sampleRate",
+                String.valueOf(batchSampleRate)));
         setSync(getSync(config));
     }
 
@@ -67,18 +87,40 @@ public class HibernateMonitorDAO2 implements MonitorDAO , DisposableBean {
 
     public void setSync(Sync sync) {
         this.sync = sync;
-        if (sync != Sync.SYNC) {
+        if (sync == Sync.BATCH) {
+            dispose();
+            startWriter();
+        }
+        else if (sync != Sync.SYNC) {
+            if (writer != null) {
+                dispose();
+            }
             if (tasks == null) {
                 tasks = new PipeliningTaskQueue<Thread>();
                 tasks.start();
             }
         }
         else {
-            if (tasks != null) {
-                dispose();
-            }
+            dispose();
         }
     }
+
+    void startWriter() {
+        //the writer needs the session factory, it will be started once available
+        if (hib != null && writer == null) {
+            writer = new BatchWriter(hib, batchCapacity, batchSize, batchDelay, batchOverload,
+                    batchSampleRate);
+            writer.start();
+        }
+    }
+
+    /**
+     * The writer used by the {@link Sync#BATCH} synchronization mode, null in other modes
+     */
+    public BatchWriter getBatchWriter() {
+        return writer;
+    }
+
     public void setMode(Mode mode) {
         this.mode = mode;
     }
@@ -86,6 +128,9 @@ public class HibernateMonitorDAO2 implements MonitorDAO , DisposableBean {
     public void setSessionFactory(SessionFactory sessionFactory) {
         hib = new HibernateTemplate(sessionFactory);
         hib.setFetchSize(1000);
+        if (sync == Sync.BATCH) {
+            startWriter();
+        }
     }
     
     public SessionFactory getSessionFactory() {
@@ -141,6 +186,10 @@ public class HibernateMonitorDAO2 implements MonitorDAO , DisposableBean {
             tasks.shutdown();
             tasks = null;
         }
+        if (writer != null) {
+            writer.stop();
+            writer = null;
+        }
     }
 
     public List<RequestData> getOwsRequests() {
@@ -166,7 +215,18 @@ public class HibernateMonitorDAO2 implements MonitorDAO , DisposableBean {
     }
 
     public void getRequests(Query q, RequestDataVisitor visitor) {
-        query(q, visitor);
+        // callers outside of a request, such as the startup warm up, have no session bound
+        boolean bind = !TransactionSynchronizationManager.hasResource(getSessionFactory());
+        if (bind) {
+            HibUtil.setUpSession(getSessionFactory());
+        }
+        try {
+            query(q, visitor);
+        } finally {
+            if (bind) {
+                HibUtil.tearDownSession(getSessionFactory(), null);
+            }
+        }
     }
     
     public long getCount(Query q) {
@@ -577,7 +637,10 @@ public class HibernateMonitorDAO2 implements MonitorDAO , DisposableBean {
 //    }
     
     protected void run(Task task) {
-        if (tasks != null) {
+        if (writer != null) {
+            writer.offer(task.data);
+        }
+        else if (tasks != null) {
             tasks.execute(Thread.currentThread(), new Async(task), task.desc);
         }
         else {
@@ -682,6 +745,7 @@ public class HibernateMonitorDAO2 implements MonitorDAO , DisposableBean {
 
 	@Override
 	public void destroy() throws Exception {
+		dispose();
 		getSessionFactory().close();
 	}
 }
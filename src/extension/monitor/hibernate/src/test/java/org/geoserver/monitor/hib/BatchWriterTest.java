@@ -0,0 +1,125 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor.hib;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.geoserver.monitor.RequestData;
+import org.geoserver.monitor.RequestData.Status;
+import org.geoserver.monitor.hib.BatchWriter.Overload;
+import org.junit.Test;
+
+public class BatchWriterTest {
+
+    @Test
+    public void testDrop() {
+        RecordingWriter writer = new RecordingWriter(4, Overload.DROP);
+        for (int i = 0; i < 6; i++) {
+            writer.offer(new RequestData());
+        }
+        assertEquals(4, writer.getQueued());
+        assertEquals(2, writer.getDropped());
+        assertEquals(0, writer.getSampled());
+
+        writer.flush();
+        assertEquals(4, writer.written.get());
+        assertEquals(0, writer.getPending());
+    }
+
+    @Test
+    public void testSample() {
+        RecordingWriter writer = new RecordingWriter(8, Overload.SAMPLE);
+        // the first half goes in, then one every two
+        for (int i = 0; i < 8; i++) {
+            writer.offer(new RequestData());
+        }
+        assertEquals(6, writer.getQueued());
+        assertEquals(2, writer.getSampled());
+
+        // updates of requests already recorded are not sampled
+        RequestData recorded = new RequestData();
+        recorded.setId(10);
+        assertTrue(writer.offer(recorded));
+        assertEquals(7, writer.getQueued());
+    }
+
+    @Test
+    public void testSampleKeepsRequestStates() {
+        RecordingWriter writer = new RecordingWriter(8, Overload.SAMPLE);
+        // the insert goes in while the buffer is still empty
+        RequestData data = new RequestData();
+        assertTrue(writer.offer(data));
+        for (int i = 0; i < 4; i++) {
+            writer.offer(new RequestData());
+        }
+
+        // update and completion of the queued request are not sampled, although past half
+        data.setStatus(Status.RUNNING);
+        assertTrue(writer.offer(data));
+        data.setStatus(Status.FINISHED);
+        assertTrue(writer.offer(data));
+        assertEquals(7, writer.getQueued());
+        assertEquals(0, writer.getSampled());
+
+        // a sampled out request stays out
+        RequestData other = new RequestData();
+        assertFalse(writer.offer(other));
+        other.setStatus(Status.FINISHED);
+        assertFalse(writer.offer(other));
+        assertEquals(1, writer.getSampled());
+
+        writer.flush();
+        assertTrue(writer.batches.get(0).contains(data));
+        assertTrue(writer.batches.get(1).contains(data));
+        assertFalse(writer.batches.get(1).contains(other));
+    }
+
+    @Test
+    public void testBatches() {
+        RecordingWriter writer = new RecordingWriter(16, Overload.DROP);
+        RequestData data = new RequestData();
+        for (int i = 0; i < 5; i++) {
+            writer.offer(new RequestData());
+        }
+        // the same request queued twice in the same batch is written once
+        writer.offer(data);
+        writer.offer(data);
+        writer.flush();
+
+        assertEquals(2, writer.batches.size());
+        assertEquals(4, writer.batches.get(0).size());
+        assertEquals(2, writer.batches.get(1).size());
+        assertEquals(6, writer.getWritten());
+    }
+
+    @Test
+    public void testStopFlushes() {
+        RecordingWriter writer = new RecordingWriter(16, Overload.DROP);
+        writer.start();
+        for (int i = 0; i < 3; i++) {
+            writer.offer(new RequestData());
+        }
+        writer.stop();
+        assertEquals(3, writer.getWritten());
+    }
+
+    static class RecordingWriter extends BatchWriter {
+
+        List<List<RequestData>> batches = new ArrayList<List<RequestData>>();
+
+        RecordingWriter(int capacity, Overload overload) {
+            super(null, capacity, 4, 10000, overload, 2);
+        }
+
+        @Override
+        void persist(List<RequestData> requests) {
+            batches.add(new ArrayList<RequestData>(requests));
+            written.addAndGet(requests.size());
+        }
+    }
+}
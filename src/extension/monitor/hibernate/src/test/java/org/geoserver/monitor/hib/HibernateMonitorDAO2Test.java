@@ -10,16 +10,21 @@ import static org.geoserver.monitor.MonitorTestData.assertCovered;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
 
 import org.apache.commons.io.IOUtils;
 import org.geoserver.hibernate.HibUtil;
 import org.geoserver.monitor.Filter;
+import org.geoserver.monitor.Monitor;
 import org.geoserver.monitor.MonitorConfig.Mode;
 import org.geoserver.monitor.MonitorDAOTestSupport;
+import org.geoserver.monitor.MonitorWarmupLayerSource;
 import org.geoserver.monitor.Query;
 import org.geoserver.monitor.Query.Comparison;
 import org.geoserver.monitor.Query.SortOrder;
@@ -27,11 +32,15 @@ import org.geoserver.monitor.RequestData;
 import org.geoserver.monitor.RequestDataVisitor;
 import org.geoserver.monitor.hib.HibernateMonitorDAO2.Sync;
 import org.h2.tools.DeleteDbFiles;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.springframework.orm.hibernate3.HibernateCallback;
 import org.springframework.web.context.support.XmlWebApplicationContext;
 
 public class HibernateMonitorDAO2Test extends MonitorDAOTestSupport {
@@ -238,6 +247,91 @@ public class HibernateMonitorDAO2Test extends MonitorDAOTestSupport {
         assertCovered(datas, 4, 11);
     }
     
+    @Test
+    public void testBatchWriter() throws Exception {
+        HibernateMonitorDAO2 hibdao = (HibernateMonitorDAO2) dao;
+        BatchWriter writer = new BatchWriter(hibdao.hib, 16, 4, 10000,
+                BatchWriter.Overload.DROP, 1);
+        List<RequestData> requests = new ArrayList<RequestData>();
+        for (int i = 0; i < 4; i++) {
+            RequestData data = new RequestData();
+            data.setPath("/batch");
+            requests.add(data);
+        }
+        // too long for its column, fails the whole batch
+        RequestData bad = requests.get(1);
+        char[] agent = new char[2048];
+        Arrays.fill(agent, 'x');
+        bad.setRemoteUserAgent(new String(agent));
+
+        // written from the writer thread, in its own sessions
+        writer.start();
+        try {
+            for (RequestData data : requests) {
+                assertTrue(writer.offer(data));
+            }
+        } finally {
+            writer.stop();
+        }
+
+        try {
+            // the one by one fallback only loses the bad request
+            assertEquals(3, writer.getWritten());
+            assertEquals(1, writer.getFailed());
+            assertEquals(-1, bad.getId());
+            List<RequestData> datas = dao.getRequests(new Query().filter("path", "/batch",
+                    Comparison.EQ));
+            assertEquals(3, datas.size());
+            for (RequestData data : requests) {
+                if (data != bad) {
+                    assertNotNull(dao.getRequest(data.getId()));
+                }
+            }
+        } finally {
+            // leave the test data as it was
+            hibdao.hib.execute(new HibernateCallback() {
+                public Object doInHibernate(Session session) throws HibernateException,
+                        SQLException {
+                    Transaction tx = session.beginTransaction();
+                    session.createSQLQuery("DELETE FROM REQUEST WHERE PATH = '/batch'")
+                            .executeUpdate();
+                    tx.commit();
+                    return null;
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testWarmupLayers() throws Exception {
+        System.setProperty(MonitorWarmupLayerSource.WARMUP_DAYS, "36500");
+        try {
+            final MonitorWarmupLayerSource source = new MonitorWarmupLayerSource(new Monitor(dao));
+            final List<String> layers = new ArrayList<String>();
+            final List<Exception> errors = new ArrayList<Exception>();
+            // the warm up runs in its own thread, without a session bound
+            Thread warmup = new Thread() {
+                public void run() {
+                    try {
+                        layers.addAll(source.getLayers(3));
+                    } catch (Exception e) {
+                        errors.add(e);
+                    }
+                }
+            };
+            warmup.start();
+            warmup.join();
+
+            assertEquals(Collections.emptyList(), errors);
+            assertEquals(3, layers.size());
+            assertEquals(new HashSet<String>(Arrays.asList("things", "stuff")),
+                    new HashSet<String>(layers.subList(0, 2)));
+            assertEquals("widgets", layers.get(2));
+        } finally {
+            System.clearProperty(MonitorWarmupLayerSource.WARMUP_DAYS);
+        }
+    }
+
 //    @Test
 //    public void testFoo() throws Exception {
 //        SessionFactory sessionFactory = ((HibernateMonitorDAO2)dao).getSessionFactory();
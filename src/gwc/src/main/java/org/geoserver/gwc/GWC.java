@@ -441,7 +441,7 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
             mimeTypes = layer.getMimeTypes();
         } else {
             try {
-                mimeTypes = Collections.singletonList(MimeType.createFromFormat(format));
+                mimeTypes = Collections.singletonList(VectorTileMime.createFromFormat(format));
             } catch (MimeException e) {
                 throw new RuntimeException();
             }
@@ -665,7 +665,7 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
 
         final MimeType mimeType;
         try {
-            mimeType = MimeType.createFromFormat(request.getFormat());
+            mimeType = VectorTileMime.createFromFormat(request.getFormat());
             List<MimeType> tileLayerFormats = tileLayer.getMimeTypes();
             if (!tileLayerFormats.contains(mimeType)) {
                 requestMistmatchTarget.append("no tile cache for requested format");
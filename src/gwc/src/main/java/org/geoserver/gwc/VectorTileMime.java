@@ -0,0 +1,49 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc;
+
+import org.geoserver.wms.vector.VectorTileMapOutputFormat;
+import org.geowebcache.mime.MimeException;
+import org.geowebcache.mime.MimeType;
+
+/**
+ * The {@link MimeType} of the Mapbox vector tiles produced by {@link VectorTileMapOutputFormat},
+ * allowing to cache them as any other tile format.
+ * <p>
+ * Vector tiles cannot be cut out of a meta tile, so the format does not support tiling and each
+ * tile is requested on its own. GeoWebCache does not know about the format, use
+ * {@link #createFromFormat(String)} instead of {@link MimeType#createFromFormat(String)} to
+ * look up the tile formats.
+ * </p>
+ */
+public class VectorTileMime extends MimeType {
+
+    public static final VectorTileMime MAPBOX_VECTOR = new VectorTileMime(
+            VectorTileMapOutputFormat.MIME_TYPE, "pbf", "mapbox-vector",
+            VectorTileMapOutputFormat.MIME_TYPE);
+
+    private VectorTileMime(String mimeType, String fileExtension, String internalName,
+            String format) {
+        super(mimeType, fileExtension, internalName, format, false);
+    }
+
+    /**
+     * Same as {@link MimeType#createFromFormat(String)}, but knowing about the vector tile
+     * formats as well
+     */
+    public static MimeType createFromFormat(String formatStr) throws MimeException {
+        if (MAPBOX_VECTOR.getFormat().equalsIgnoreCase(formatStr)) {
+            return MAPBOX_VECTOR;
+        }
+        return MimeType.createFromFormat(formatStr);
+    }
+
+    /**
+     * Returns true if the format is a vector tile one, which is not split out of meta tiles
+     */
+    public static boolean isVectorTile(MimeType mime) {
+        return mime instanceof VectorTileMime;
+    }
+}
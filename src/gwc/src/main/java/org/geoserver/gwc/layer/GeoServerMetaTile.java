@@ -21,6 +21,8 @@ import javax.media.jai.RenderedOp;
 import org.geoserver.gwc.GWC;
 import org.geoserver.ows.Response;
 import org.geoserver.wms.WMSMapContent;
+import org.geoserver.wms.WebMap;
+import org.geoserver.wms.map.RawMap;
 import org.geoserver.wms.map.RenderedImageMap;
 import org.geoserver.wms.map.RenderedImageMapResponse;
 import org.geotools.geometry.jts.ReferencedEnvelope;
@@ -36,7 +38,7 @@ import org.geowebcache.mime.MimeType;
 
 public class GeoServerMetaTile extends MetaTile {
 
-    private RenderedImageMap metaTileMap;
+    private WebMap metaTileMap;
 
     public GeoServerMetaTile(GridSubset gridSubset, MimeType responseFormat,
             FormatModifier formatModifier, long[] tileGridPosition, int metaX, int metaY,
@@ -45,15 +47,21 @@ public class GeoServerMetaTile extends MetaTile {
         super(gridSubset, responseFormat, formatModifier, tileGridPosition, metaX, metaY, gutter);
     }
 
-    public void setWebMap(RenderedImageMap webMap) {
+    public void setWebMap(WebMap webMap) {
         this.metaTileMap = webMap;
-        setImage(webMap.getImage());
+        if (webMap instanceof RenderedImageMap) {
+            setImage(((RenderedImageMap) webMap).getImage());
+        }
     }
 
     /**
      * Creates the {@link RenderedImage} corresponding to the tile at index {@code tileIdx} and uses
      * a {@link RenderedImageMapResponse} to encode it into the {@link #getResponseFormat() response
      * format}.
+     * <p>
+     * Maps already encoded by the WMS, such as vector tiles, cannot be split and are written as
+     * they are, so they are only supported for single tile meta tiles without a gutter.
+     * </p>
      * 
      * @see org.geowebcache.layer.MetaTile#writeTileToStream(int, org.geowebcache.io.Resource)
      * @see RenderedImageMapResponse#write
@@ -63,20 +71,34 @@ public class GeoServerMetaTile extends MetaTile {
     public boolean writeTileToStream(final int tileIdx, Resource target) throws IOException {
 
         checkNotNull(metaTileMap, "webMap is not set");
+        if (metaTileMap instanceof RawMap) {
+            if (this.tiles.length > 1 || metaHasGutter()) {
+                throw new IllegalArgumentException("Encoded maps cannot be split into tiles: "
+                        + metaTileMap.getClass().getName());
+            }
+            OutputStream outStream = target.getOutputStream();
+            try {
+                ((RawMap) metaTileMap).writeTo(outStream);
+                return true;
+            } finally {
+                outStream.close();
+            }
+        }
         if (!(metaTileMap instanceof RenderedImageMap)) {
-            throw new IllegalArgumentException("Only RenderedImageMaps are supported so far: "
-                    + metaTileMap.getClass().getName());
+            throw new IllegalArgumentException("Only RenderedImageMaps and RawMaps are supported "
+                    + "so far: " + metaTileMap.getClass().getName());
         }
+        final RenderedImageMap imageMap = (RenderedImageMap) metaTileMap;
         final RenderedImageMapResponse mapEncoder;
         {
             final GWC mediator = GWC.get();
             final Response responseEncoder = mediator.getResponseEncoder(responseFormat,
-                    metaTileMap);
+                    imageMap);
             mapEncoder = (RenderedImageMapResponse) responseEncoder;
         }
 
-        RenderedImage tile = metaTileMap.getImage();
-        WMSMapContent tileContext = metaTileMap.getMapContext();
+        RenderedImage tile = imageMap.getImage();
+        WMSMapContent tileContext = imageMap.getMapContext();
 
         if (this.tiles.length > 1 || (this.tiles.length == 1 && metaHasGutter())) {
             final Rectangle tileDim = this.tiles[tileIdx];
@@ -35,11 +35,13 @@ import org.geoserver.catalog.PublishedInfo;
 import org.geoserver.catalog.ResourceInfo;
 import org.geoserver.catalog.StyleInfo;
 import org.geoserver.gwc.GWC;
+import org.geoserver.gwc.VectorTileMime;
 import org.geoserver.gwc.config.GWCConfig;
 import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.wms.GetMapRequest;
 import org.geoserver.wms.WMS;
 import org.geoserver.wms.WebMap;
+import org.geoserver.wms.map.RawMap;
 import org.geoserver.wms.map.RenderedImageMap;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
@@ -557,7 +559,7 @@ public class GeoServerTileLayer extends TileLayer implements ProxyLayer {
                 LOGGER.finer("--> " + Thread.currentThread().getName()
                         + " submitting getMap request for meta grid location "
                         + Arrays.toString(metaTile.getMetaGridPos()) + " on " + metaTile);
-                RenderedImageMap map;
+                WebMap map;
                 try {
                     long requestTime = System.currentTimeMillis();
                     map = dispatchGetMap(tile, metaTile);
@@ -606,7 +608,7 @@ public class GeoServerTileLayer extends TileLayer implements ProxyLayer {
         return metaKey.toString();
     }
 
-    private RenderedImageMap dispatchGetMap(final ConveyorTile tile, final MetaTile metaTile)
+    private WebMap dispatchGetMap(final ConveyorTile tile, final MetaTile metaTile)
             throws Exception {
 
         Map<String, String> params = buildGetMap(tile, metaTile);
@@ -617,14 +619,15 @@ public class GeoServerTileLayer extends TileLayer implements ProxyLayer {
 
             GWC.get().dispatchOwsRequest(params, cookies);
             map = WEB_MAP.get();
-            if (!(map instanceof RenderedImageMap)) {
-                throw new IllegalStateException("Expected: RenderedImageMap, got " + map);
+            if (!(map instanceof RenderedImageMap || map instanceof RawMap)) {
+                throw new IllegalStateException("Expected: RenderedImageMap or RawMap, got "
+                        + map);
             }
         } finally {
             WEB_MAP.remove();
         }
 
-        return (RenderedImageMap) map;
+        return map;
     }
 
     private GeoServerMetaTile createMetaTile(ConveyorTile tile, final int metaX, final int metaY) {
@@ -635,7 +638,8 @@ public class GeoServerTileLayer extends TileLayer implements ProxyLayer {
         MimeType responseFormat = tile.getMimeType();
         FormatModifier formatModifier = null;
         long[] tileGridPosition = tile.getTileIndex();
-        int gutter = info.getGutter();
+        // vector tiles are clipped with their own buffer, and written out as is
+        int gutter = VectorTileMime.isVectorTile(responseFormat) ? 0 : info.getGutter();
         metaTile = new GeoServerMetaTile(gridSubset, responseFormat, formatModifier,
                 tileGridPosition, metaX, metaY, gutter);
 
@@ -1017,7 +1021,7 @@ public class GeoServerTileLayer extends TileLayer implements ProxyLayer {
         List<MimeType> mimeTypes = new ArrayList<MimeType>(mimeFormats.size());
         for (String format : mimeFormats) {
             try {
-                mimeTypes.add(MimeType.createFromFormat(format));
+                mimeTypes.add(VectorTileMime.createFromFormat(format));
             } catch (MimeException e) {
                 LOGGER.log(Level.WARNING, "Can't create MimeType from format " + format, e);
             }
@@ -13,12 +13,14 @@ import static junit.framework.Assert.assertSame;
 import static junit.framework.Assert.assertTrue;
 import static junit.framework.Assert.fail;
 import static org.geoserver.gwc.GWC.tileLayerName;
+import static org.junit.Assert.assertArrayEquals;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isA;
 import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -36,6 +38,8 @@ import java.util.Set;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.io.IOUtils;
+
 import org.geoserver.catalog.Catalog;
 import org.geoserver.catalog.Keyword;
 import org.geoserver.catalog.LayerInfo;
@@ -50,10 +54,13 @@ import org.geoserver.catalog.impl.LayerInfoImpl;
 import org.geoserver.catalog.impl.NamespaceInfoImpl;
 import org.geoserver.catalog.impl.StyleInfoImpl;
 import org.geoserver.gwc.GWC;
+import org.geoserver.gwc.VectorTileMime;
 import org.geoserver.gwc.config.GWCConfig;
 import org.geoserver.wms.WMSMapContent;
+import org.geoserver.wms.map.RawMap;
 import org.geoserver.wms.map.RenderedImageMap;
 import org.geoserver.wms.map.RenderedImageMapResponse;
+import org.geoserver.wms.vector.VectorTileMapOutputFormat;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
 import org.geotools.referencing.crs.DefaultGeographicCRS;
@@ -548,6 +555,49 @@ public class GeoServerTileLayerTest {
         verify(mockGWC, times(1)).getResponseEncoder(eq(mimeType), isA(RenderedImageMap.class));
     }
 
+    @Test
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void testGetVectorTile() throws Exception {
+
+        Resource mockResult = mock(Resource.class);
+        ArgumentCaptor<Map> argument = ArgumentCaptor.forClass(Map.class);
+        Mockito.when(mockGWC.dispatchOwsRequest(argument.capture(), (Cookie[]) anyObject()))
+                .thenReturn(mockResult);
+
+        byte[] encoded = new byte[] { 26, 0 };
+        RawMap fakeDispatchedMap = new RawMap(new WMSMapContent(), encoded,
+                VectorTileMapOutputFormat.MIME_TYPE);
+        MimeType mimeType = VectorTileMime.createFromFormat(VectorTileMapOutputFormat.MIME_TYPE);
+        assertSame(VectorTileMime.MAPBOX_VECTOR, mimeType);
+
+        StorageBroker storageBroker = mock(StorageBroker.class);
+        when(storageBroker.get((TileObject) anyObject())).thenReturn(false);
+
+        layerInfoTileLayer = new GeoServerTileLayer(layerInfo, defaults, gridSetBroker);
+        layerInfoTileLayer.getInfo().getMimeFormats().add(mimeType.getFormat());
+
+        MockHttpServletRequest servletReq = new MockHttpServletRequest();
+        HttpServletResponse servletResp = new MockHttpServletResponse();
+        long[] tileIndex = { 0, 0, 0 };
+
+        ConveyorTile tile = new ConveyorTile(storageBroker, layerInfoTileLayer.getName(),
+                "EPSG:4326", tileIndex, mimeType, null, servletReq, servletResp);
+
+        GeoServerTileLayer.WEB_MAP.set(fakeDispatchedMap);
+        ConveyorTile returned = layerInfoTileLayer.getTile(tile);
+        assertEquals(CacheResult.MISS, returned.getCacheResult());
+        assertEquals(200, returned.getStatus());
+
+        // no meta tiling, the tile is requested on its own and written as encoded by the WMS
+        Map<String, String> params = argument.getValue();
+        assertEquals("256", params.get("WIDTH"));
+        assertEquals("256", params.get("HEIGHT"));
+        assertEquals(VectorTileMapOutputFormat.MIME_TYPE, params.get("FORMAT"));
+        assertArrayEquals(encoded, IOUtils.toByteArray(returned.getBlob().getInputStream()));
+        verify(mockGWC, never()).getResponseEncoder((MimeType) anyObject(),
+                (RenderedImageMap) anyObject());
+    }
+
     @Test
     public void testGetMimeTypes() throws Exception {
 
@@ -561,6 +611,11 @@ public class GeoServerTileLayerTest {
         mimeTypes = layerInfoTileLayer.getMimeTypes();
         assertEquals(1, mimeTypes.size());
         assertEquals(MimeType.createFromFormat("image/gif"), mimeTypes.get(0));
+
+        layerInfoTileLayer.getInfo().getMimeFormats().add(VectorTileMapOutputFormat.MIME_TYPE);
+        mimeTypes = layerInfoTileLayer.getMimeTypes();
+        assertEquals(2, mimeTypes.size());
+        assertTrue(mimeTypes.contains(VectorTileMime.MAPBOX_VECTOR));
     }
     
     @Test
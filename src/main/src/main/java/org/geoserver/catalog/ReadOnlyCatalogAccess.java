@@ -0,0 +1,56 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog;
+
+/**
+ * A thread local flag signalling the current thread only reads the catalog objects it looks
+ * up.
+ * <p>
+ * While the flag is set the in memory catalog hands out shared read only views of its objects
+ * instead of creating a new modification proxy for each of them on every lookup. Calling a
+ * setter, or modifying a collection, on a read only view throws an
+ * {@link UnsupportedOperationException}. Code setting the flag should restore the previous
+ * value when done:
+ *
+ * <pre>
+ * boolean previous = ReadOnlyCatalogAccess.set(true);
+ * try {
+ *     ...
+ * } finally {
+ *     ReadOnlyCatalogAccess.set(previous);
+ * }
+ * </pre>
+ * </p>
+ */
+public class ReadOnlyCatalogAccess {
+
+    /**
+     * the read only thread local
+     */
+    static ThreadLocal<Boolean> readOnly = new ThreadLocal<Boolean>();
+
+    /**
+     * Sets the read only flag for the current thread
+     *
+     * @return the previous value of the flag
+     */
+    public static boolean set(boolean enabled) {
+        boolean previous = isEnabled();
+        if (enabled) {
+            readOnly.set(Boolean.TRUE);
+        } else {
+            readOnly.remove();
+        }
+        return previous;
+    }
+
+    public static boolean isEnabled() {
+        return readOnly.get() != null;
+    }
+
+    public static void remove() {
+        readOnly.remove();
+    }
+}
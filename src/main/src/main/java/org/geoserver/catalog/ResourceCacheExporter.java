@@ -0,0 +1,140 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.geotools.util.logging.Logging;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * Registers the {@link ResourcePool} caches statistics in the platform MBean server, as
+ * <code>org.geoserver:type=ResourcePool,name=&lt;cache name&gt;</code>.
+ * <p>
+ * The registered beans look up the cache by name on each call, so they keep working when the
+ * resource pool or its caches are replaced.
+ * </p>
+ */
+public class ResourceCacheExporter implements InitializingBean, DisposableBean {
+
+    static final Logger LOGGER = Logging.getLogger("org.geoserver.catalog");
+
+    Catalog catalog;
+
+    List<ObjectName> names = new ArrayList<ObjectName>();
+
+    public ResourceCacheExporter(Catalog catalog) {
+        this.catalog = catalog;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ResourceCacheMXBean cache : catalog.getResourcePool().getCaches()) {
+            try {
+                ObjectName name = new ObjectName("org.geoserver:type=ResourcePool,name="
+                        + cache.getName());
+                server.registerMBean(new CacheView(cache.getName()), name);
+                names.add(name);
+            } catch (JMException e) {
+                LOGGER.log(Level.WARNING, "Unable to register the " + cache.getName()
+                        + " cache statistics in JMX", e);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : names) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                LOGGER.log(Level.FINE, "Unable to unregister " + name + " from JMX", e);
+            }
+        }
+        names.clear();
+    }
+
+    /**
+     * Delegates to the current cache with a given name
+     */
+    class CacheView implements ResourceCacheMXBean {
+
+        String name;
+
+        CacheView(String name) {
+            this.name = name;
+        }
+
+        ResourceCacheMXBean cache() {
+            for (ResourceCacheMXBean cache : catalog.getResourcePool().getCaches()) {
+                if (name.equals(cache.getName())) {
+                    return cache;
+                }
+            }
+            throw new IllegalStateException("The " + name + " cache is no longer available");
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public long getSize() {
+            return cache().getSize();
+        }
+
+        @Override
+        public int getHardReferences() {
+            return cache().getHardReferences();
+        }
+
+        @Override
+        public long getMaxEntries() {
+            return cache().getMaxEntries();
+        }
+
+        @Override
+        public long getMaxWeight() {
+            return cache().getMaxWeight();
+        }
+
+        @Override
+        public long getExpiry() {
+            return cache().getExpiry();
+        }
+
+        @Override
+        public long getHitCount() {
+            return cache().getHitCount();
+        }
+
+        @Override
+        public long getMissCount() {
+            return cache().getMissCount();
+        }
+
+        @Override
+        public double getHitRate() {
+            return cache().getHitRate();
+        }
+
+        @Override
+        public long getEvictionCount() {
+            return cache().getEvictionCount();
+        }
+    }
+}
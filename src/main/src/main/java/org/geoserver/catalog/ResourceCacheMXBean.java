@@ -0,0 +1,68 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog;
+
+/**
+ * Configuration and usage statistics of one of the {@link ResourcePool} caches.
+ * <p>
+ * The statistics are cumulative since the cache was created, a cache is created again when its
+ * size is changed, for example by {@link ResourcePool#setFeatureTypeCacheSize(int)}.
+ * </p>
+ */
+public interface ResourceCacheMXBean {
+
+    /**
+     * The cache name, such as <code>dataStores</code> or <code>coverageReaders</code>
+     */
+    String getName();
+
+    /**
+     * The current number of entries
+     */
+    long getSize();
+
+    /**
+     * The number of entries kept strongly referenced, the others are softly referenced and can be
+     * reclaimed by the garbage collector, or -1 if all entries are strongly referenced
+     */
+    int getHardReferences();
+
+    /**
+     * The maximum number of entries, or -1 if not bounded by count
+     */
+    long getMaxEntries();
+
+    /**
+     * The maximum total weight of the entries, or -1 if not bounded by weight
+     */
+    long getMaxWeight();
+
+    /**
+     * The number of seconds an entry can go unused before being evicted, or -1 if entries do
+     * not expire
+     */
+    long getExpiry();
+
+    /**
+     * The number of lookups that found a cached entry
+     */
+    long getHitCount();
+
+    /**
+     * The number of lookups that did not find a cached entry
+     */
+    long getMissCount();
+
+    /**
+     * The ratio of lookups that found a cached entry, 1.0 when there were no lookups
+     */
+    double getHitRate();
+
+    /**
+     * The number of entries evicted because of size constraints or expiry, including the ones
+     * moved to soft references, explicit removals are not counted
+     */
+    long getEvictionCount();
+}
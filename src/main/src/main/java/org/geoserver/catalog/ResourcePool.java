@@ -18,6 +18,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.Serializable;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.net.URL;
@@ -30,9 +31,17 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -96,7 +105,6 @@ import org.geotools.gml2.GML;
 import org.geotools.measure.Measure;
 import org.geotools.referencing.CRS;
 import org.geotools.styling.Style;
-import org.geotools.util.SoftValueHashMap;
 import org.geotools.util.logging.Logging;
 import org.geotools.xml.Schemas;
 import org.opengis.coverage.grid.GridCoverage;
@@ -119,6 +127,19 @@ import org.springframework.context.ApplicationContext;
 import org.vfny.geoserver.global.GeoServerFeatureLocking;
 import org.vfny.geoserver.util.DataStoreUtils;
 
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ForwardingConcurrentMap;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
 /**
  * Provides access to resources such as datastores, coverage readers, and 
  * feature types.
@@ -135,6 +156,10 @@ import org.vfny.geoserver.util.DataStoreUtils;
  * <li>{@link #hintCoverageReaderCache} </li>
  * <li>{@link #styleCache} </li>
  * </p>
+ * <p>
+ * The size and expiry of the caches can be configured, and their usage statistics are
+ * available through {@link #getCaches()}, see {@link CatalogResourceCache} for details.
+ * </p>
  * 
  * @author Justin Deoliveira, Boundless
  */
@@ -271,7 +296,7 @@ public class ResourcePool {
     }
 
     protected Map<String,CoordinateReferenceSystem> createCrsCache() {
-        return new HashMap<String, CoordinateReferenceSystem>();
+        return new CrsCache();
     }
 
     /**
@@ -377,7 +402,7 @@ public class ResourcePool {
     }
 
     protected Map<StyleInfo, Style> createStyleCache() {
-        return new HashMap<StyleInfo, Style>();
+        return new StyleCache();
     }
 
     /**
@@ -411,6 +436,26 @@ public class ResourcePool {
             featureTypeAttributeCache = createFeatureTypeAttributeCache(featureTypeCacheSize);
         }
     }
+
+    /**
+     * Returns the configuration and usage statistics of the caches, see
+     * {@link CatalogResourceCache} for their configuration.
+     * <p>
+     * Caches replaced by subclasses with maps not implementing {@link ResourceCacheMXBean} are
+     * not included.
+     * </p>
+     */
+    public List<ResourceCacheMXBean> getCaches() {
+        List<ResourceCacheMXBean> result = new ArrayList<ResourceCacheMXBean>();
+        for (Map<?, ?> cache : Arrays.<Map<?, ?>> asList(crsCache, dataStoreCache,
+                featureTypeCache, featureTypeAttributeCache, coverageReaderCache,
+                hintCoverageReaderCache, wmsCache, styleCache)) {
+            if (cache instanceof ResourceCacheMXBean) {
+                result.add((ResourceCacheMXBean) cache);
+            }
+        }
+        return result;
+    }
     
     /**
      * Sets the size of the feature type cache.
@@ -518,113 +563,88 @@ public class ResourcePool {
      * @throws IOException Any errors that occur connecting to the resource.
      */
     @SuppressWarnings({ "rawtypes", "unchecked" })
-    public DataAccess<? extends FeatureType, ? extends Feature> getDataStore( DataStoreInfo info ) throws IOException {
-        DataAccess<? extends FeatureType, ? extends Feature> dataStore = null;
-        try {
-            String id = info.getId();
-            dataStore = dataStoreCache.get(id);
-            if ( dataStore == null ) {
-                synchronized (dataStoreCache) {
-                    dataStore = dataStoreCache.get( id );
-                    if ( dataStore == null ) {
-                        //create data store
-                        Map<String, Serializable> connectionParameters = info.getConnectionParameters();
-                        
-                        // call this method to execute the hack which recognizes 
-                        // urls which are relative to the data directory
-                        // TODO: find a better way to do this
-                        connectionParameters = ResourcePool.getParams(connectionParameters, catalog.getResourceLoader() );
-                        
-                        // obtain the factory
-                        DataAccessFactory factory = null;
-                        try {
-                            factory = getDataStoreFactory(info);
-                        } catch(IOException e) {
-                            throw new IOException("Failed to find the datastore factory for " + info.getName() 
-                                    + ", did you forget to install the store extension jar?");
-                        }
-                        Param[] params = factory.getParametersInfo();
-                        
-                        //ensure that the namespace parameter is set for the datastore
-                        if (!connectionParameters.containsKey( "namespace") && params != null) {
-                            //if we grabbed the factory, check that the factory actually supports
-                            // a namespace parameter, if we could not get the factory, assume that
-                            // it does
-                            boolean supportsNamespace = true;
-                            supportsNamespace = false;
-                            
-                            for ( Param p : params ) {
-                                if ( "namespace".equalsIgnoreCase( p.key ) ) {
-                                    supportsNamespace = true;
-                                    break;
-                                }
-                            }
-                            
-                            if ( supportsNamespace ) {
-                                WorkspaceInfo ws = info.getWorkspace();
-                                NamespaceInfo ns = info.getCatalog().getNamespaceByPrefix( ws.getName() );
-                                if ( ns == null ) {
-                                    ns = info.getCatalog().getDefaultNamespace();
-                                }
-                                if ( ns != null ) {
-                                    connectionParameters.put( "namespace", ns.getURI() );
-                                }    
-                            }
-                        }
-                        
-                        // see if the store has a repository param, if so, pass the one wrapping
-                        // the store
-                        if(params != null) {
-                            for ( Param p : params ) {
-                                if(Repository.class.equals(p.getType())) {
-                                    connectionParameters.put(p.getName(), repository);
-                                }
-                            }
-                        }
-                        
-                        dataStore = DataStoreUtils.getDataAccess(connectionParameters);
-                        if (dataStore == null) {
-                            /*
-                             * Preserve DataStore retyping behaviour by calling
-                             * DataAccessFinder.getDataStore after the call to
-                             * DataStoreUtils.getDataStore above.
-                             * 
-                             * TODO: DataAccessFinder can also find DataStores, and when retyping is
-                             * supported for DataAccess, we can use a single mechanism.
-                             */
-                            dataStore = DataAccessFinder.getDataStore(connectionParameters);
+    public DataAccess<? extends FeatureType, ? extends Feature> getDataStore( final DataStoreInfo info ) throws IOException {
+        // cache only if the id is not null, no need to cache the stores
+        // returned from un-saved DataStoreInfo objects (it would be actually
+        // harmful, NPE when trying to dispose of them)
+        return load(dataStoreCache, info.getId(), new Callable<DataAccess>() {
+
+            @Override
+            public DataAccess call() throws Exception {
+                //create data store
+                Map<String, Serializable> connectionParameters = info.getConnectionParameters();
+                
+                // call this method to execute the hack which recognizes 
+                // urls which are relative to the data directory
+                // TODO: find a better way to do this
+                connectionParameters = ResourcePool.getParams(connectionParameters, catalog.getResourceLoader() );
+                
+                // obtain the factory
+                DataAccessFactory factory = null;
+                try {
+                    factory = getDataStoreFactory(info);
+                } catch(IOException e) {
+                    throw new IOException("Failed to find the datastore factory for " + info.getName() 
+                            + ", did you forget to install the store extension jar?");
+                }
+                Param[] params = factory.getParametersInfo();
+                
+                //ensure that the namespace parameter is set for the datastore
+                if (!connectionParameters.containsKey( "namespace") && params != null) {
+                    //if we grabbed the factory, check that the factory actually supports
+                    // a namespace parameter, if we could not get the factory, assume that
+                    // it does
+                    boolean supportsNamespace = true;
+                    supportsNamespace = false;
+                    
+                    for ( Param p : params ) {
+                        if ( "namespace".equalsIgnoreCase( p.key ) ) {
+                            supportsNamespace = true;
+                            break;
                         }
-                        
-                        if ( dataStore == null ) {
-                            throw new NullPointerException("Could not acquire data access '" + info.getName() + "'");
+                    }
+                    
+                    if ( supportsNamespace ) {
+                        WorkspaceInfo ws = info.getWorkspace();
+                        NamespaceInfo ns = info.getCatalog().getNamespaceByPrefix( ws.getName() );
+                        if ( ns == null ) {
+                            ns = info.getCatalog().getDefaultNamespace();
                         }
-                        
-                        // cache only if the id is not null, no need to cache the stores
-                        // returned from un-saved DataStoreInfo objects (it would be actually
-                        // harmful, NPE when trying to dispose of them)
-                        if(id != null) {
-                            dataStoreCache.put( id, dataStore );
+                        if ( ns != null ) {
+                            connectionParameters.put( "namespace", ns.getURI() );
+                        }    
+                    }
+                }
+                
+                // see if the store has a repository param, if so, pass the one wrapping
+                // the store
+                if(params != null) {
+                    for ( Param p : params ) {
+                        if(Repository.class.equals(p.getType())) {
+                            connectionParameters.put(p.getName(), repository);
                         }
                     }
-                } 
-            }
-            
-            return dataStore;
-        } catch (Exception e) {
-            // if anything goes wrong we have to clean up the store anyways
-            if(dataStore != null) {
-                try {
-                    dataStore.dispose();
-                } catch(Exception ex) {
-                    // fine, we had to try
                 }
+                
+                DataAccess dataStore = DataStoreUtils.getDataAccess(connectionParameters);
+                if (dataStore == null) {
+                    /*
+                     * Preserve DataStore retyping behaviour by calling
+                     * DataAccessFinder.getDataStore after the call to
+                     * DataStoreUtils.getDataStore above.
+                     * 
+                     * TODO: DataAccessFinder can also find DataStores, and when retyping is
+                     * supported for DataAccess, we can use a single mechanism.
+                     */
+                    dataStore = DataAccessFinder.getDataStore(connectionParameters);
+                }
+                
+                if ( dataStore == null ) {
+                    throw new NullPointerException("Could not acquire data access '" + info.getName() + "'");
+                }
+                return dataStore;
             }
-            if(e instanceof IOException) {
-                throw (IOException) e;
-            } else {
-                throw (IOException) new IOException().initCause(e);
-            }
-        }
+        });
     }
         
     /**
@@ -1374,7 +1394,7 @@ public class ResourcePool {
      * @throws IOException Any errors that occur loading the reader.
      */
     @SuppressWarnings("deprecation")
-    private GridCoverageReader getGridCoverageReader(CoverageStoreInfo info, CoverageInfo coverageInfo, String coverageName, Hints hints) 
+    private GridCoverageReader getGridCoverageReader(final CoverageStoreInfo info, CoverageInfo coverageInfo, String coverageName, Hints hints) 
         throws IOException {
         
         final AbstractGridFormat gridFormat = info.getFormat();
@@ -1382,11 +1402,8 @@ public class ResourcePool {
             throw new IOException("Could not find the raster plugin for format " + info.getType());
         }
         
-        // look into the cache
-        GridCoverageReader reader = null;
-        Object key;
+        // expand the hints if necessary
         if ( hints != null && info.getId() != null) {
-            // expand the hints if necessary
             final String formatName = gridFormat.getName();
             if (formatName.equalsIgnoreCase(IMAGE_MOSAIC) || formatName.equalsIgnoreCase(IMAGE_PYRAMID)){
                 if (coverageExecutor != null){
@@ -1399,53 +1416,40 @@ public class ResourcePool {
                     }
                 }
             }
-            
-            key = new CoverageHintReaderKey(info.getId(), hints);
-            reader = hintCoverageReaderCache.get( key );
-        } else {
-            key = info.getId();
-            if(key != null) {
-                reader = coverageReaderCache.get( key );
-            }
         }
-        
-        // if not found in cache, create it
-        if(reader == null) {
-            synchronized ( hints != null ? hintCoverageReaderCache : coverageReaderCache ) {
-                if (key != null) {
-                    if (hints != null) {
-                        reader = hintCoverageReaderCache.get(key);
-                    } else {
-                        reader = coverageReaderCache.get(key);
-                    }
-                }
-                if (reader == null) {
-                    /////////////////////////////////////////////////////////
-                    //
-                    // Getting coverage reader using the format and the real path.
-                    //
-                    // /////////////////////////////////////////////////////////
-                    final String url = info.getURL();
-                    GeoServerResourceLoader loader = catalog.getResourceLoader();
-                    final File obj = loader.url(url);
-
-                    // In case no File is returned, provide the original String url
-                    final Object input = obj != null ? obj : url;  
-
-                    // readers might change the provided hints, pass down a defensive copy
-                    reader = gridFormat.getReader(input, new Hints(hints));
-                    if(reader == null) {
-                        throw new IOException("Failed to create reader from " + url + " and hints " + hints);
-                    }
-                    if(key != null) {
-                        if(hints != null) {
-                            hintCoverageReaderCache.put((CoverageHintReaderKey) key, reader);
-                        } else {
-                            coverageReaderCache.put((String) key, reader);
-                        }
-                    }
+        final Hints readerHints = hints;
+
+        // look into the cache, if not found create the reader
+        Callable<GridCoverageReader> loader = new Callable<GridCoverageReader>() {
+
+            @Override
+            public GridCoverageReader call() throws Exception {
+                /////////////////////////////////////////////////////////
+                //
+                // Getting coverage reader using the format and the real path.
+                //
+                // /////////////////////////////////////////////////////////
+                final String url = info.getURL();
+                GeoServerResourceLoader loader = catalog.getResourceLoader();
+                final File obj = loader.url(url);
+
+                // In case no File is returned, provide the original String url
+                final Object input = obj != null ? obj : url;  
+
+                // readers might change the provided hints, pass down a defensive copy
+                GridCoverageReader reader = gridFormat.getReader(input, new Hints(readerHints));
+                if(reader == null) {
+                    throw new IOException("Failed to create reader from " + url + " and hints " + readerHints);
                 }
+                return reader;
             }
+        };
+        GridCoverageReader reader;
+        if ( hints != null && info.getId() != null) {
+            CoverageHintReaderKey key = new CoverageHintReaderKey(info.getId(), hints);
+            reader = load(hintCoverageReaderCache, key, loader);
+        } else {
+            reader = load(coverageReaderCache, info.getId(), loader);
         }
 
         if (coverageInfo != null) {
@@ -1915,58 +1919,404 @@ public class ResourcePool {
     
     /**
      * Base class for all the resource caches, ensures type safety and provides
-     * an easier way to handle with resource disposal 
+     * an easier way to handle with resource disposal.
+     * <p>
+     * By default the caches keep a number of hard references to the most recently used values,
+     * and soft references to the others, so that the garbage collector can reclaim them under
+     * memory pressure. Values reclaimed this way cannot be disposed. A negative number of hard
+     * references keeps all the values strongly referenced.
+     * </p>
+     * <p>
+     * The caches can instead be bounded by number of entries or, when a maximum weight is set, by
+     * the total {@link #weigh(Object, Object) weight} of the entries, holding them all strongly
+     * and evicting the least recently used ones, and can expire the entries that have not been
+     * used for a while. The limits are set by the
+     * <code>GEOSERVER_&lt;NAME&gt;_CACHE_MAX_ENTRIES</code>,
+     * <code>GEOSERVER_&lt;NAME&gt;_CACHE_MAX_WEIGHT</code> and
+     * <code>GEOSERVER_&lt;NAME&gt;_CACHE_EXPIRY</code> (in seconds) system properties,
+     * environment variables or servlet context parameters, where the name is the cache name in
+     * upper case with words separated by underscores, e.g.
+     * <code>GEOSERVER_DATA_STORES_CACHE_EXPIRY</code>. None is set by default, a negative value
+     * disables the limit.
+     * </p>
+     * <p>
+     * Evicted, expired and removed entries are disposed, entries replaced by a put, or moved from
+     * hard to soft references, are not. Mind that an entry may still be in use when evicted,
+     * limits on the caches of live resources such as data stores and coverage readers should be
+     * generous enough for this to be rare.
+     * </p>
      * @author Andrea Aime
      *
      * @param <K>
      * @param <V>
      */
-    abstract class CatalogResourceCache<K, V> extends SoftValueHashMap<K, V> {
+    abstract class CatalogResourceCache<K, V> extends ForwardingConcurrentMap<K, V> implements
+            ResourceCacheMXBean {
 
-        public CatalogResourceCache() {
-            this(100);
-        }
+        final String name;
+
+        final int hardReferences;
 
-        public CatalogResourceCache(int hardReferences) {
-            super(hardReferences);
-            super.cleaner = new ValueCleaner() {
+        final long maxEntries;
+
+        final long maxWeight;
+
+        final long expiry;
+
+        /**
+         * The strongly referenced values
+         */
+        final Cache<K, V> cache;
 
+        /**
+         * The softly referenced values pushed out of {@link #cache} by the hard references limit,
+         * null if the cache is bounded or keeps all values strongly referenced
+         */
+        final Cache<K, V> overflow;
+
+        public CatalogResourceCache(String name) {
+            this(name, 100);
+        }
+
+        public CatalogResourceCache(String name, int hardReferences) {
+            this.name = name;
+            this.maxWeight = cacheProperty(name, "MAX_WEIGHT", -1);
+            this.maxEntries = maxWeight >= 0 ? -1 : cacheProperty(name, "MAX_ENTRIES", -1);
+            this.expiry = cacheProperty(name, "EXPIRY", -1);
+            boolean bounded = maxWeight >= 0 || maxEntries >= 0;
+            this.hardReferences = bounded ? -1 : hardReferences;
+
+            CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().recordStats();
+            if (this.maxWeight >= 0) {
+                builder.maximumWeight(this.maxWeight).weigher(new Weigher<Object, Object>() {
+                    @Override
+                    public int weigh(Object key, Object value) {
+                        return CatalogResourceCache.this.weigh((K) key, (V) value);
+                    }
+                });
+            } else if (this.maxEntries >= 0) {
+                builder.maximumSize(this.maxEntries);
+            } else if (this.hardReferences >= 0) {
+                builder.maximumSize(this.hardReferences);
+            }
+            if (expiry > 0) {
+                builder.expireAfterAccess(expiry, TimeUnit.SECONDS);
+            }
+            cache = builder.removalListener(new RemovalListener<K, V>() {
                 @Override
-                public void clean(Object key, Object object) {
-                    dispose((K) key, (V) object);
+                public void onRemoval(RemovalNotification<K, V> notification) {
+                    if (notification.getCause() == RemovalCause.REPLACED) {
+                        // still in use
+                        return;
+                    } else if (notification.getCause() == RemovalCause.SIZE && overflow != null) {
+                        // past the hard references, keep it softly
+                        overflow.put(notification.getKey(), notification.getValue());
+                        return;
+                    }
+                    dispose(notification);
+                }
+            }).build();
+
+            if (this.hardReferences >= 0) {
+                CacheBuilder<Object, Object> overflowBuilder = CacheBuilder.newBuilder()
+                        .softValues();
+                if (expiry > 0) {
+                    overflowBuilder.expireAfterAccess(expiry, TimeUnit.SECONDS);
+                }
+                overflow = overflowBuilder.removalListener(new RemovalListener<K, V>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<K, V> notification) {
+                        // collected values are gone already, the others are moved or removed
+                        if (notification.getCause() == RemovalCause.EXPIRED) {
+                            dispose(notification);
+                        }
+                    }
+                }).build();
+            } else {
+                overflow = null;
+            }
+
+            if (expiry > 0) {
+                // expired entries are otherwise only cleaned up when the cache is used
+                CacheCleanUp.schedule(cache, expiry);
+                if (overflow != null) {
+                    CacheCleanUp.schedule(overflow, expiry);
                 }
-            };
+            }
+        }
+
+        void dispose(RemovalNotification<K, V> notification) {
+            if (notification.getValue() == null) {
+                return;
+            }
+            try {
+                dispose(notification.getKey(), notification.getValue());
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Error dispoing entry: " + notification, e);
+            }
+        }
+
+        @Override
+        protected ConcurrentMap<K, V> delegate() {
+            return cache.asMap();
+        }
+
+        @Override
+        public V get(Object key) {
+            if (key == null) {
+                return null;
+            }
+            // the map view does not record statistics
+            V value = cache.getIfPresent(key);
+            if (value == null && overflow != null) {
+                value = overflow.asMap().remove(key);
+                if (value != null) {
+                    // back among the most recently used
+                    cache.asMap().putIfAbsent((K) key, value);
+                }
+            }
+            return value;
+        }
+
+        /**
+         * Returns the cached value, using the loader to create and cache it if missing. While a
+         * value is being loaded, other callers asking for the same key wait for it, callers
+         * asking for other keys are not blocked.
+         */
+        public V get(final K key, final Callable<? extends V> loader) throws Exception {
+            try {
+                if (overflow == null) {
+                    return cache.get(key, loader);
+                }
+                return cache.get(key, new Callable<V>() {
+
+                    @Override
+                    public V call() throws Exception {
+                        V value = overflow.asMap().remove(key);
+                        return value != null ? value : loader.call();
+                    }
+                });
+            } catch (ExecutionException e) {
+                throw (Exception) e.getCause();
+            } catch (UncheckedExecutionException e) {
+                Throwables.propagateIfPossible(e.getCause());
+                throw e;
+            } catch (ExecutionError e) {
+                throw (Error) e.getCause();
+            }
+        }
+
+        @Override
+        public V put(K key, V value) {
+            if (overflow != null) {
+                overflow.asMap().remove(key);
+            }
+            return super.put(key, value);
         }
 
         @Override
         public V remove(Object key) {
-            V object = super.remove(key);
-            if (object != null) {
-                dispose((K) key, object);
+            V value = super.remove(key);
+            if (overflow != null) {
+                V softValue = overflow.asMap().remove(key);
+                if (softValue != null) {
+                    dispose((K) key, softValue);
+                    value = value != null ? value : softValue;
+                }
             }
-            return object;
+            return value;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return super.containsKey(key)
+                    || (overflow != null && overflow.asMap().containsKey(key));
+        }
+
+        @Override
+        public Set<K> keySet() {
+            if (overflow == null) {
+                return super.keySet();
+            }
+            return Collections.unmodifiableSet(Sets.union(super.keySet(),
+                    overflow.asMap().keySet()));
         }
 
         @Override
         public void clear() {
-            for (Entry entry : entrySet()) {
-                try {
-                    dispose((K) entry.getKey(), (V) entry.getValue());
-                }
-                catch(Exception e) {
-                    LOGGER.log(Level.WARNING, "Error dispoing entry: " + entry, e);
+            cache.invalidateAll();
+            if (overflow != null) {
+                for (Entry<K, V> entry : overflow.asMap().entrySet()) {
+                    try {
+                        dispose(entry.getKey(), entry.getValue());
+                    } catch (Exception e) {
+                        LOGGER.log(Level.WARNING, "Error dispoing entry: " + entry, e);
+                    }
                 }
+                overflow.invalidateAll();
             }
-            super.clear();
+        }
+
+        @Override
+        public int getHardReferences() {
+            return hardReferences;
+        }
+
+        /**
+         * The weight of an entry, used when the cache is bounded by weight. Defaults to one,
+         * subclasses should return a value roughly proportional to the memory and resources
+         * held by the entry.
+         */
+        protected int weigh(K key, V value) {
+            return 1;
         }
 
         protected abstract void dispose(K key, V object);
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public long getSize() {
+            return cache.size() + (overflow != null ? overflow.size() : 0);
+        }
+
+        @Override
+        public long getMaxEntries() {
+            return maxEntries;
+        }
+
+        @Override
+        public long getMaxWeight() {
+            return maxWeight;
+        }
+
+        @Override
+        public long getExpiry() {
+            return expiry;
+        }
+
+        @Override
+        public long getHitCount() {
+            return cache.stats().hitCount();
+        }
+
+        @Override
+        public long getMissCount() {
+            return cache.stats().missCount();
+        }
+
+        @Override
+        public double getHitRate() {
+            return cache.stats().hitRate();
+        }
+
+        @Override
+        public long getEvictionCount() {
+            return cache.stats().evictionCount();
+        }
     }
-    
+
+    /**
+     * Returns the resource cached under the specified key, loading and caching it if missing.
+     * <p>
+     * Concurrent calls for the same missing key wait for a single load, while different keys
+     * are loaded in parallel. Resources with a null key are loaded and not cached. Caches not
+     * extending {@link CatalogResourceCache} are locked for the duration of the load.
+     * </p>
+     */
+    <K, V> V load(Map<K, V> cache, K key, Callable<? extends V> loader) throws IOException {
+        try {
+            if (key == null) {
+                return loader.call();
+            } else if (cache instanceof CatalogResourceCache) {
+                return ((CatalogResourceCache<K, V>) cache).get(key, loader);
+            }
+
+            V value = cache.get(key);
+            if (value == null) {
+                synchronized (cache) {
+                    value = cache.get(key);
+                    if (value == null) {
+                        value = loader.call();
+                        cache.put(key, value);
+                    }
+                }
+            }
+            return value;
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw (IOException) new IOException().initCause(e);
+        }
+    }
+
+    /**
+     * Looks up a cache setting, see {@link CatalogResourceCache}
+     */
+    static long cacheProperty(String cache, String setting, long defaultValue) {
+        String property = "GEOSERVER_" + cache.replaceAll("([a-z])([A-Z])", "$1_$2").toUpperCase()
+                + "_CACHE_" + setting;
+        String value = GeoServerExtensions.getProperty(property);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            LOGGER.warning("Invalid value for " + property + ": " + value + ", using "
+                    + defaultValue + " instead");
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Periodically cleans up a cache with expiring entries, so that idle resources are disposed
+     * even if the cache is no longer used. Stops once the cache has been garbage collected.
+     */
+    static class CacheCleanUp implements Runnable {
+
+        static final ScheduledExecutorService EXECUTOR = Executors
+                .newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true)
+                        .setNameFormat("GeoServer resource pool clean up").build());
+
+        static void schedule(Cache<?, ?> cache, long expiry) {
+            CacheCleanUp cleanUp = new CacheCleanUp(cache);
+            long period = Math.max(1, expiry / 2);
+            cleanUp.future = EXECUTOR.scheduleWithFixedDelay(cleanUp, period, period,
+                    TimeUnit.SECONDS);
+        }
+
+        final WeakReference<Cache<?, ?>> cache;
+
+        volatile ScheduledFuture<?> future;
+
+        CacheCleanUp(Cache<?, ?> cache) {
+            this.cache = new WeakReference<Cache<?, ?>>(cache);
+        }
+
+        @Override
+        public void run() {
+            Cache<?, ?> target = cache.get();
+            if (target != null) {
+                target.cleanUp();
+            } else if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+
     class FeatureTypeCache extends CatalogResourceCache<String, FeatureType> {
         
         public FeatureTypeCache(int maxSize) {
-            super(maxSize);
+            super("featureTypes", maxSize);
+        }
+
+        @Override
+        protected int weigh(String key, FeatureType featureType) {
+            return Math.max(1, featureType.getDescriptors().size());
         }
         
         protected void dispose(String key, FeatureType featureType) {
@@ -1991,6 +2341,11 @@ public class ResourcePool {
      */
     @SuppressWarnings("rawtypes")
     class DataStoreCache extends CatalogResourceCache<String, DataAccess> {
+
+        public DataStoreCache() {
+            super("dataStores");
+        }
+
         /**
          * Ensure data access entry is removed from catalog, and
          * ensure DataAccess dispose is called to return system resources.
@@ -2024,6 +2379,15 @@ public class ResourcePool {
     }
     
     class CoverageReaderCache extends CatalogResourceCache<String, GridCoverageReader> {
+
+        public CoverageReaderCache() {
+            super("coverageReaders");
+        }
+
+        @Override
+        protected int weigh(String id, GridCoverageReader reader) {
+            return readerWeight(reader);
+        }
         
         protected void dispose(String id, GridCoverageReader reader) {
         	CoverageStoreInfo info = catalog.getCoverageStore(id);
@@ -2044,6 +2408,15 @@ public class ResourcePool {
     }
     
     class CoverageHintReaderCache extends CatalogResourceCache<CoverageHintReaderKey, GridCoverageReader> {
+
+        public CoverageHintReaderCache() {
+            super("hintCoverageReaders");
+        }
+
+        @Override
+        protected int weigh(CoverageHintReaderKey key, GridCoverageReader reader) {
+            return readerWeight(reader);
+        }
         
         protected void dispose(CoverageHintReaderKey key, GridCoverageReader reader) {
         	CoverageStoreInfo info = catalog.getCoverageStore(key.id);
@@ -2114,7 +2487,12 @@ public class ResourcePool {
     class FeatureTypeAttributeCache extends CatalogResourceCache<String, List<AttributeTypeInfo>> {
 
         FeatureTypeAttributeCache(int size) {
-            super(size);
+            super("featureTypeAttributes", size);
+        }
+
+        @Override
+        protected int weigh(String key, List<AttributeTypeInfo> attributes) {
+            return Math.max(1, attributes.size());
         }
 
         @Override
@@ -2125,6 +2503,10 @@ public class ResourcePool {
 
     class WMSCache extends CatalogResourceCache<String, WebMapServer> {
 
+        public WMSCache() {
+            super("wmsServers");
+        }
+
         @Override
         protected void dispose(String key, WebMapServer server) {
             HTTPClient client = server.getHTTPClient();
@@ -2144,6 +2526,44 @@ public class ResourcePool {
 
     }
     
+    class CrsCache extends CatalogResourceCache<String, CoordinateReferenceSystem> {
+
+        public CrsCache() {
+            // strongly referenced, like the plain maps used before
+            super("crs", -1);
+        }
+
+        @Override
+        protected void dispose(String key, CoordinateReferenceSystem crs) {
+            // nothing to do
+        }
+    }
+
+    class StyleCache extends CatalogResourceCache<StyleInfo, Style> {
+
+        public StyleCache() {
+            // strongly referenced, like the plain maps used before
+            super("styles", -1);
+        }
+
+        @Override
+        protected void dispose(StyleInfo key, Style style) {
+            // nothing to do
+        }
+    }
+
+    /**
+     * The weight of a coverage reader, the number of coverages it serves
+     */
+    static int readerWeight(GridCoverageReader reader) {
+        try {
+            String[] names = reader.getGridCoverageNames();
+            return names == null ? 1 : Math.max(1, names.length);
+        } catch (Exception e) {
+            return 1;
+        }
+    }
+
     /**
      * Listens to catalog events clearing cache entires when resources are modified.
      */
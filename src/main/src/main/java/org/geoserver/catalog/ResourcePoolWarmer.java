@@ -0,0 +1,255 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geoserver.config.GeoServer;
+import org.geoserver.config.GeoServerInitializer;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geotools.util.logging.Logging;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Warms up the {@link ResourcePool} in the background once the configuration is loaded, so that
+ * the first requests to the most used layers do not pay for opening their stores, reading their
+ * feature types, building their coverage readers and parsing their styles.
+ * <p>
+ * The layers to warm up are listed in the {@value #WARMUP_LAYERS} system property, environment
+ * variable or servlet context parameter, as a comma separated list of layer or layer group
+ * names, or <code>*</code> for all the layers, and are contributed by the
+ * {@link WarmupLayerSource} extensions. At most {@value #WARMUP_MAX_LAYERS} layers (100 by
+ * default) are warmed up, using {@value #WARMUP_THREADS} threads (4 by default). The warm up
+ * thread is not even started unless some of the configured layers exist or a source is
+ * enabled.
+ * </p>
+ * <p>
+ * Progress is logged, and can be checked with {@link #getTotal()}, {@link #getWarmed()} and
+ * {@link #getFailed()}. A failure to warm up a layer is logged and does not affect GeoServer,
+ * the layer will just be loaded on first use as usual.
+ * </p>
+ */
+public class ResourcePoolWarmer implements GeoServerInitializer {
+
+    static final Logger LOGGER = Logging.getLogger("org.geoserver.catalog");
+
+    public static final String WARMUP_LAYERS = "GEOSERVER_WARMUP_LAYERS";
+
+    public static final String WARMUP_MAX_LAYERS = "GEOSERVER_WARMUP_MAX_LAYERS";
+
+    public static final String WARMUP_THREADS = "GEOSERVER_WARMUP_THREADS";
+
+    Catalog catalog;
+
+    volatile int total;
+
+    AtomicInteger warmed = new AtomicInteger();
+
+    AtomicInteger failed = new AtomicInteger();
+
+    /**
+     * The warm up thread, if one was started
+     */
+    volatile Thread thread;
+
+    public ResourcePoolWarmer(Catalog catalog) {
+        this.catalog = catalog;
+    }
+
+    /**
+     * The number of layers being warmed up by the last warm up
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * The number of layers warmed up so far
+     */
+    public int getWarmed() {
+        return warmed.get();
+    }
+
+    /**
+     * The number of layers that failed to warm up so far
+     */
+    public int getFailed() {
+        return failed.get();
+    }
+
+    @Override
+    public void initialize(GeoServer geoServer) throws Exception {
+        final int max = intProperty(WARMUP_MAX_LAYERS, 100);
+        final int threads = intProperty(WARMUP_THREADS, 4);
+        if (max <= 0) {
+            return;
+        }
+        final Set<LayerInfo> layers = new LinkedHashSet<LayerInfo>();
+        collect(GeoServerExtensions.getProperty(WARMUP_LAYERS), layers);
+        final List<WarmupLayerSource> sources = new ArrayList<WarmupLayerSource>();
+        for (WarmupLayerSource source : GeoServerExtensions.extensions(WarmupLayerSource.class)) {
+            if (source.isEnabled()) {
+                sources.add(source);
+            }
+        }
+        if (layers.isEmpty() && sources.isEmpty()) {
+            return;
+        }
+
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                warmup(layers, sources, max, threads);
+            }
+        }, "GeoServer resource pool warm up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Warms up the configured layers and the ones contributed by the sources, using the
+     * specified number of threads, returning when done
+     */
+    void warmup(String names, List<WarmupLayerSource> sources, int max, int threads) {
+        Set<LayerInfo> layers = new LinkedHashSet<LayerInfo>();
+        collect(names, layers);
+        warmup(layers, sources, max, threads);
+    }
+
+    void warmup(Set<LayerInfo> layers, List<WarmupLayerSource> sources, int max, int threads) {
+        for (WarmupLayerSource source : sources) {
+            try {
+                collect(source.getLayers(max), layers);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Failed to get the layers to warm up from " + source, e);
+            }
+        }
+        List<LayerInfo> targets = new ArrayList<LayerInfo>(layers);
+        if (targets.size() > max) {
+            targets = targets.subList(0, max);
+        }
+        if (targets.isEmpty()) {
+            return;
+        }
+
+        total = targets.size();
+        warmed.set(0);
+        failed.set(0);
+        LOGGER.info("Warming up " + total + " layers");
+        long start = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads),
+                new ThreadFactoryBuilder().setDaemon(true)
+                        .setNameFormat("GeoServer resource pool warm up %d").build());
+        try {
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+            for (final LayerInfo layer : targets) {
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        warmup(layer);
+                        return null;
+                    }
+                });
+            }
+            executor.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            LOGGER.fine("Resource pool warm up interrupted");
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        LOGGER.info("Warmed up " + warmed.get() + " layers in "
+                + (System.currentTimeMillis() - start) + "ms, " + failed.get() + " failed");
+    }
+
+    /**
+     * Resolves the configured layer names, <code>*</code> standing for all the layers
+     */
+    void collect(String names, Set<LayerInfo> layers) {
+        if (names != null && names.trim().equals("*")) {
+            layers.addAll(catalog.getLayers());
+        } else if (names != null) {
+            collect(Arrays.asList(names.split(",")), layers);
+        }
+    }
+
+    /**
+     * Resolves the names into layers, expanding layer groups
+     */
+    void collect(List<String> names, Set<LayerInfo> layers) {
+        for (String name : names) {
+            name = name.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            LayerInfo layer = catalog.getLayerByName(name);
+            if (layer != null) {
+                layers.add(layer);
+                continue;
+            }
+            LayerGroupInfo group = catalog.getLayerGroupByName(name);
+            if (group != null) {
+                layers.addAll(group.layers());
+            } else {
+                LOGGER.fine("Skipping unknown layer " + name + " in the resource pool warm up");
+            }
+        }
+    }
+
+    /**
+     * Loads the resources of a single layer in the resource pool
+     */
+    void warmup(LayerInfo layer) {
+        try {
+            ResourceInfo resource = layer.getResource();
+            if (resource instanceof FeatureTypeInfo) {
+                ((FeatureTypeInfo) resource).getFeatureType();
+            } else if (resource instanceof CoverageInfo) {
+                ((CoverageInfo) resource).getGridCoverageReader(null, null);
+            } else if (resource instanceof WMSLayerInfo) {
+                ((WMSLayerInfo) resource).getStore().getWebMapServer(null);
+            }
+            if (layer.getDefaultStyle() != null) {
+                layer.getDefaultStyle().getStyle();
+            }
+            for (StyleInfo style : layer.getStyles()) {
+                style.getStyle();
+            }
+            warmed.incrementAndGet();
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            LOGGER.log(Level.WARNING, "Failed to warm up layer " + layer.prefixedName(), e);
+        }
+
+        int done = warmed.get() + failed.get();
+        if (done % 10 == 0 && done < total) {
+            LOGGER.info("Resource pool warm up: " + done + "/" + total + " layers");
+        }
+    }
+
+    static int intProperty(String name, int defaultValue) {
+        String value = GeoServerExtensions.getProperty(name);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid value for " + name + ": " + value + ", using "
+                        + defaultValue + " instead");
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,33 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog;
+
+import java.util.List;
+
+/**
+ * Extension point contributing the layers that {@link ResourcePoolWarmer} should warm up at
+ * startup, in addition to the configured ones.
+ * <p>
+ * Implementations are looked up in the application context, and called from a background
+ * thread once the configuration is loaded.
+ * </p>
+ */
+public interface WarmupLayerSource {
+
+    /**
+     * Returns true if the source is configured to contribute layers. Called before starting
+     * the warm up, so it should be quick, the warm up does not start unless a source is
+     * enabled or layers are configured.
+     */
+    boolean isEnabled();
+
+    /**
+     * Returns the names of the layers or layer groups to warm up, most important first.
+     * 
+     * @param max The maximum number of names to return
+     * @return The layer names, prefixed or not, or an empty list if there is nothing to warm up
+     */
+    List<String> getLayers(int max) throws Exception;
+}
@@ -14,6 +14,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -46,6 +47,7 @@ import org.geoserver.catalog.PublishedType;
 import org.geoserver.catalog.ValidationResult;
 import org.geoserver.catalog.WMSLayerInfo;
 import org.geoserver.catalog.WMSStoreInfo;
+import org.geoserver.catalog.Wrapper;
 import org.geoserver.catalog.WorkspaceInfo;
 import org.geoserver.catalog.event.CatalogAddEvent;
 import org.geoserver.catalog.event.CatalogEvent;
@@ -136,6 +138,61 @@ public class CatalogImpl implements Catalog {
         this.facade = facade;
         facade.setCatalog(this);
     }
+
+    /**
+     * Runs many catalog changes, such as a bulk import, as a single batch.
+     * <p>
+     * With the default in memory facade the objects added by the batch are published to the
+     * catalog listings at once at the end of it, instead of one at a time, see
+     * {@link DefaultCatalogFacade#batch(Runnable)}. With other facades the changes are simply
+     * run.
+     * </p>
+     */
+    public void batch(Runnable changes) {
+        if (facade instanceof DefaultCatalogFacade) {
+            ((DefaultCatalogFacade) facade).batch(changes);
+        } else {
+            changes.run();
+        }
+    }
+
+    /**
+     * Runs the changes as a batch of the {@link CatalogImpl} behind the catalog, see
+     * {@link #batch(Runnable)}, or simply runs them if the catalog is not backed by one.
+     * <p>
+     * Batches are bound to the current thread, so the changes can keep going through the
+     * catalog decorators, such as the secured catalog, as usual.
+     * </p>
+     */
+    public static <T> T batch(Catalog catalog, final Callable<T> changes) throws Exception {
+        CatalogImpl impl = null;
+        if (catalog instanceof CatalogImpl) {
+            impl = (CatalogImpl) catalog;
+        } else if (catalog instanceof Wrapper
+                && ((Wrapper) catalog).isWrapperFor(CatalogImpl.class)) {
+            impl = ((Wrapper) catalog).unwrap(CatalogImpl.class);
+        }
+        if (impl == null) {
+            return changes.call();
+        }
+
+        final List<T> result = new ArrayList<T>(1);
+        final Exception[] error = new Exception[1];
+        impl.batch(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    result.add(changes.call());
+                } catch (Exception e) {
+                    error[0] = e;
+                }
+            }
+        });
+        if (error[0] != null) {
+            throw error[0];
+        }
+        return result.get(0);
+    }
     
     public String getId() {
         return "catalog";
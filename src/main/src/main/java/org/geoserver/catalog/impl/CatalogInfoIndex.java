@@ -0,0 +1,171 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog.impl;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.google.common.collect.Iterables;
+
+/**
+ * Multi valued index used by {@link DefaultCatalogFacade} to look up catalog objects by key
+ * (id, name, referenced object id) without scanning the full collections.
+ * <p>
+ * Reads are lock free. Writes are expected to be synchronized by the caller against the
+ * collection the index refers to, so that the index never disagrees with it.
+ * </p>
+ * <p>
+ * A sorted index keeps its keys in their natural order, and can be walked in key order, or
+ * within a key range, with {@link #values(Object, Object, boolean)}.
+ * </p>
+ */
+class CatalogInfoIndex<K, V> {
+
+    private final ConcurrentMap<K, List<V>> map;
+
+    /**
+     * The values with a <code>null</code> key, only tracked by sorted indexes so that walking
+     * them returns all the indexed values
+     */
+    private final List<V> nulls;
+
+    public CatalogInfoIndex() {
+        this(false);
+    }
+
+    public CatalogInfoIndex(boolean sorted) {
+        if (sorted) {
+            map = new ConcurrentSkipListMap<K, List<V>>();
+            nulls = new CopyOnWriteArrayList<V>();
+        } else {
+            map = new ConcurrentHashMap<K, List<V>>();
+            nulls = null;
+        }
+    }
+
+    /**
+     * Adds a value under the specified key, <code>null</code> keys are ignored by unsorted
+     * indexes.
+     */
+    public void add(K key, V value) {
+        if (key == null) {
+            if (nulls != null) {
+                nulls.add(value);
+            }
+            return;
+        }
+        List<V> values = map.get(key);
+        if (values == null) {
+            values = new CopyOnWriteArrayList<V>();
+            List<V> existing = map.putIfAbsent(key, values);
+            if (existing != null) {
+                values = existing;
+            }
+        }
+        values.add(value);
+    }
+
+    /**
+     * Removes a value from the specified key. The value is looked up by identity first, and by
+     * equality if not found, to cope with callers passing copies of the indexed objects.
+     */
+    public void remove(K key, V value) {
+        if (key == null) {
+            if (nulls != null) {
+                remove(nulls, value);
+            }
+            return;
+        }
+        List<V> values = map.get(key);
+        if (values == null) {
+            return;
+        }
+
+        remove(values, value);
+        if (values.isEmpty()) {
+            map.remove(key, values);
+        }
+    }
+
+    private void remove(List<V> values, V value) {
+        int idx = -1;
+        for (int i = 0; i < values.size(); i++) {
+            if (values.get(i) == value) {
+                idx = i;
+                break;
+            }
+        }
+        if (idx == -1) {
+            idx = values.indexOf(value);
+        }
+        if (idx != -1) {
+            values.remove(idx);
+        }
+    }
+
+    /**
+     * Returns the values stored under the specified key, or an empty list. The returned list
+     * must not be modified.
+     */
+    public List<V> get(K key) {
+        if (key == null) {
+            return Collections.emptyList();
+        }
+        List<V> values = map.get(key);
+        return values != null ? values : Collections.<V> emptyList();
+    }
+
+    /**
+     * Returns the first value stored under the specified key, or null
+     */
+    public V first(K key) {
+        Iterator<V> it = get(key).iterator();
+        return it.hasNext() ? it.next() : null;
+    }
+
+    /**
+     * Walks the values of a sorted index in key order, lazily. The values with a
+     * <code>null</code> key sort before all the others, and are only returned when walking the
+     * whole index.
+     * 
+     * @param from the lowest key, inclusive, or <code>null</code> to start from the first key
+     * @param to the highest key, exclusive, or <code>null</code> to walk up to the last key
+     * @param ascending whether to walk the keys in ascending or descending order
+     */
+    public Iterable<V> values(K from, K to, boolean ascending) {
+        if (nulls == null) {
+            throw new IllegalStateException("Index is not sorted");
+        }
+        ConcurrentNavigableMap<K, List<V>> range = (ConcurrentNavigableMap<K, List<V>>) map;
+        if (from != null) {
+            range = range.tailMap(from, true);
+        }
+        if (to != null) {
+            range = range.headMap(to, false);
+        }
+        if (!ascending) {
+            range = range.descendingMap();
+        }
+
+        Iterable<V> values = Iterables.concat(range.values());
+        if (from == null && to == null) {
+            values = ascending ? Iterables.concat(nulls, values) : Iterables.concat(values, nulls);
+        }
+        return values;
+    }
+
+    public void clear() {
+        map.clear();
+        if (nulls != null) {
+            nulls.clear();
+        }
+    }
+}
@@ -10,11 +10,15 @@ import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.annotation.Nullable;
@@ -29,6 +33,7 @@ import org.geoserver.catalog.LayerInfo;
 import org.geoserver.catalog.MapInfo;
 import org.geoserver.catalog.NamespaceInfo;
 import org.geoserver.catalog.PublishedInfo;
+import org.geoserver.catalog.ReadOnlyCatalogAccess;
 import org.geoserver.catalog.ResourceInfo;
 import org.geoserver.catalog.StoreInfo;
 import org.geoserver.catalog.StyleInfo;
@@ -36,11 +41,20 @@ import org.geoserver.catalog.WorkspaceInfo;
 import org.geoserver.catalog.util.CloseableIterator;
 import org.geoserver.catalog.util.CloseableIteratorAdapter;
 import org.geoserver.ows.util.OwsUtils;
+import org.opengis.filter.And;
 import org.opengis.filter.Filter;
+import org.opengis.filter.PropertyIsEqualTo;
+import org.opengis.filter.PropertyIsLike;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
 import org.opengis.filter.sort.SortBy;
 import org.opengis.filter.sort.SortOrder;
 
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
 
 /**
@@ -100,6 +114,72 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
      */
     protected List<StyleInfo> styles = new CopyOnWriteArrayList<StyleInfo>();
 
+    /**
+     * stores and resources, in the order they were added. Along with the layers, layer groups
+     * and styles lists they are the listings, read without locking by the catalog listing
+     * methods. Each change publishes a new copy of the listing, or a single one per listing at
+     * the end of a {@link #batch(Runnable) batch}.
+     */
+    protected transient List<StoreInfo> storeList = new CopyOnWriteArrayList<StoreInfo>();
+
+    protected transient List<ResourceInfo> resourceList = new CopyOnWriteArrayList<ResourceInfo>();
+
+    /**
+     * the batch run by the current thread, if any
+     */
+    protected transient ThreadLocal<Batch> batch = new ThreadLocal<Batch>();
+
+    //
+    // Lookup indexes. They are not persisted, but rebuilt from the collections above in
+    // resolve(), and are kept in sync with them by the add/remove/save methods, while holding
+    // the same lock that protects the collection being indexed. The name indexes are sorted,
+    // so that list() can page through objects in name order without sorting them all
+    //
+    /**
+     * stores by id, by name and by workspace id
+     */
+    protected transient CatalogInfoIndex<String, StoreInfo> storesById = new CatalogInfoIndex<String, StoreInfo>();
+
+    protected transient CatalogInfoIndex<String, StoreInfo> storesByName = new CatalogInfoIndex<String, StoreInfo>(true);
+
+    protected transient CatalogInfoIndex<String, StoreInfo> storesByWorkspace = new CatalogInfoIndex<String, StoreInfo>();
+
+    /**
+     * resources by id, by name and by store id
+     */
+    protected transient CatalogInfoIndex<String, ResourceInfo> resourcesById = new CatalogInfoIndex<String, ResourceInfo>();
+
+    protected transient CatalogInfoIndex<String, ResourceInfo> resourcesByName = new CatalogInfoIndex<String, ResourceInfo>(true);
+
+    protected transient CatalogInfoIndex<String, ResourceInfo> resourcesByStore = new CatalogInfoIndex<String, ResourceInfo>();
+
+    /**
+     * layers by id, by resource id and by style id (both default and alternate styles)
+     */
+    protected transient CatalogInfoIndex<String, LayerInfo> layersById = new CatalogInfoIndex<String, LayerInfo>();
+
+    protected transient CatalogInfoIndex<String, LayerInfo> layersByResource = new CatalogInfoIndex<String, LayerInfo>();
+
+    protected transient CatalogInfoIndex<String, LayerInfo> layersByStyle = new CatalogInfoIndex<String, LayerInfo>();
+
+    /**
+     * layer groups by id, by name and by workspace id
+     */
+    protected transient CatalogInfoIndex<String, LayerGroupInfo> layerGroupsById = new CatalogInfoIndex<String, LayerGroupInfo>();
+
+    protected transient CatalogInfoIndex<String, LayerGroupInfo> layerGroupsByName = new CatalogInfoIndex<String, LayerGroupInfo>(true);
+
+    protected transient CatalogInfoIndex<String, LayerGroupInfo> layerGroupsByWorkspace = new CatalogInfoIndex<String, LayerGroupInfo>();
+
+    /**
+     * styles by id, by name and by workspace id
+     */
+    protected transient CatalogInfoIndex<String, StyleInfo> stylesById = new CatalogInfoIndex<String, StyleInfo>();
+
+    protected transient CatalogInfoIndex<String, StyleInfo> stylesByName = new CatalogInfoIndex<String, StyleInfo>(true);
+
+    protected transient CatalogInfoIndex<String, StyleInfo> stylesByWorkspace = new CatalogInfoIndex<String, StyleInfo>();
+
     /**
      * the catalog
      */
@@ -124,6 +204,8 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         resolve(store);
         synchronized(stores) {
             stores.put(store.getClass(), store);
+            append(storeList, store);
+            index(store);
         }
         return ModificationProxy.create(store, StoreInfo.class);
     }
@@ -133,11 +215,24 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
 
         synchronized(stores) {
             stores.remove(store.getClass(),store);
+            discard(storeList, store);
+            unindex(store);
         }
     }
     
     public void save(StoreInfo store) {
-        saved(store);
+        beforeSaved(store);
+        synchronized (stores) {
+            StoreInfo stored = storesById.first(store.getId());
+            String oldName = stored != null ? stored.getName() : null;
+            String oldWorkspace = stored != null ? id(stored.getWorkspace()) : null;
+            commitProxy(store);
+            if (stored != null) {
+                move(storesByName, stored, oldName, stored.getName());
+                move(storesByWorkspace, stored, oldWorkspace, id(stored.getWorkspace()));
+            }
+        }
+        afterSaved(store);
     }
     
     public <T extends StoreInfo> T detach(T store) {
@@ -145,12 +240,9 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     }
 
     public <T extends StoreInfo> T getStore(String id, Class<T> clazz) {
-        List l = lookup(clazz, stores);
-        for (Iterator i = l.iterator(); i.hasNext();) {
-            StoreInfo store = (StoreInfo) i.next();
-            if (id.equals(store.getId())) {
-                return ModificationProxy.create( (T) store, clazz );
-            }
+        StoreInfo store = storesById.first(id);
+        if (clazz.isInstance(store)) {
+            return proxy( (T) store, clazz );
         }
 
         return null;
@@ -159,27 +251,25 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     public <T extends StoreInfo> T getStoreByName(WorkspaceInfo workspace,
             String name, Class<T> clazz) {
         
-        List l = lookup(clazz, stores);
+        List<StoreInfo> l = storesByName.get(name);
         if (workspace == ANY_WORKSPACE) {
             //do an exhaustive search through all workspaces
             ArrayList matches = new ArrayList();
-            for (Iterator i = l.iterator(); i.hasNext();) {
-                T store = (T) i.next();
-                if ( name.equals( store.getName() ) ) {
+            for (StoreInfo store : l) {
+                if ( clazz.isInstance( store ) ) {
                     matches.add( store );
                 }
             }
             
             if ( matches.size() == 1 ) {
-                return ModificationProxy.create( (T) matches.get( 0 ), clazz);
+                return proxy( (T) matches.get( 0 ), clazz);
             }
         }
         else {
             
-            for (Iterator i = l.iterator(); i.hasNext();) {
-                StoreInfo store = (StoreInfo) i.next();
-                if (name.equals(store.getName()) && store.getWorkspace().equals( workspace )) {
-                    return ModificationProxy.create( (T) store, clazz );
+            for (StoreInfo store : l) {
+                if (clazz.isInstance(store) && store.getWorkspace().equals( workspace )) {
+                    return proxy( (T) store, clazz );
                 }
             }
         }
@@ -195,27 +285,24 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
             workspace = getDefaultWorkspace();
         }
 
-        List all = lookup(clazz, stores);
         List matches = new ArrayList();
-
-        for (Iterator s = all.iterator(); s.hasNext();) {
-            StoreInfo store = (StoreInfo) s.next();
-            if (workspace.equals(store.getWorkspace())) {
+        for (StoreInfo store : storesByWorkspace.get(workspace.getId())) {
+            if (clazz.isInstance(store) && workspace.equals(store.getWorkspace())) {
                 matches.add(store);
             }
         }
 
-        return ModificationProxy.createList(matches,clazz);
+        return proxyList(matches,clazz);
     }
     
     public List getStores(Class clazz) {
-        return ModificationProxy.createList(lookup(clazz, stores) , clazz);
+        return proxyList(lookup(clazz, visible(storeList)) , clazz);
     }
     
     public DataStoreInfo getDefaultDataStore(WorkspaceInfo workspace) {
         if(defaultStores.containsKey(workspace.getId())) {
             DataStoreInfo defaultStore = defaultStores.get(workspace.getId());
-            return ModificationProxy.create(defaultStore, DataStoreInfo.class);
+            return proxy(defaultStore, DataStoreInfo.class);
         } else {
             return null;
         }
@@ -244,6 +331,8 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         resolve(resource);
         synchronized(resources) {
             resources.put(resource.getClass(), resource);
+            append(resourceList, resource);
+            index(resource);
         }
         return ModificationProxy.create(resource, ResourceInfo.class);
     }
@@ -252,12 +341,25 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         resource = unwrap(resource);
         synchronized(resources) {
             resources.remove(resource.getClass(), resource);
+            discard(resourceList, resource);
+            unindex(resource);
         }
     }
     
    
     public void save(ResourceInfo resource) {
-        saved(resource);
+        beforeSaved(resource);
+        synchronized (resources) {
+            ResourceInfo stored = resourcesById.first(resource.getId());
+            String oldName = stored != null ? stored.getName() : null;
+            String oldStore = stored != null ? id(stored.getStore()) : null;
+            commitProxy(resource);
+            if (stored != null) {
+                move(resourcesByName, stored, oldName, stored.getName());
+                move(resourcesByStore, stored, oldStore, id(stored.getStore()));
+            }
+        }
+        afterSaved(resource);
     }
     
     public <T extends ResourceInfo> T detach(T resource) {
@@ -265,12 +367,9 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     }
     
     public <T extends ResourceInfo> T getResource(String id, Class<T> clazz) {
-        List l = lookup(clazz, resources);
-        for (Iterator i = l.iterator(); i.hasNext();) {
-            ResourceInfo resource = (ResourceInfo) i.next();
-            if (id.equals(resource.getId())) {
-                return ModificationProxy.create((T) resource, clazz );
-            }
+        ResourceInfo resource = resourcesById.first(id);
+        if (clazz.isInstance(resource)) {
+            return proxy((T) resource, clazz );
         }
 
         return null;
@@ -278,29 +377,27 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     
     public <T extends ResourceInfo> T getResourceByName(NamespaceInfo namespace, String name, Class<T> clazz) {
         
-        List l = lookup(clazz, resources);
+        List<ResourceInfo> l = resourcesByName.get(name);
         
         if (namespace == ANY_NAMESPACE) {
             //do an exhaustive lookup
             List matches = new ArrayList();
-            for (Iterator i = l.iterator(); i.hasNext();) {
-                ResourceInfo resource = (ResourceInfo) i.next();
-                if (name.equals(resource.getName())) {
+            for (ResourceInfo resource : l) {
+                if (clazz.isInstance(resource)) {
                     matches.add( resource );
                 }
             }
             
             if ( matches.size() == 1 ) {
-                return ModificationProxy.create( (T) matches.get( 0 ), clazz );
+                return proxy( (T) matches.get( 0 ), clazz );
             }
         }
         else {
-            for (Iterator i = l.iterator(); i.hasNext();) {
-                ResourceInfo resource = (ResourceInfo) i.next();
-                if (name.equals(resource.getName())) {
+            for (ResourceInfo resource : l) {
+                if (clazz.isInstance(resource)) {
                     NamespaceInfo namespace1 = resource.getNamespace();
                     if (namespace1 != null && namespace1.equals( namespace )) {
-                            return ModificationProxy.create( (T) resource, clazz );
+                            return proxy( (T) resource, clazz );
                     }
                 }
             }
@@ -310,13 +407,13 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     }
  
     public List getResources(Class clazz) {
-        return ModificationProxy.createList( lookup(clazz,resources), clazz );
+        return proxyList( lookup(clazz, visible(resourceList)), clazz );
     }
     
     public List getResourcesByNamespace(NamespaceInfo namespace, Class clazz) {
         //TODO: support ANY_NAMESPACE?
         
-        List all = lookup(clazz, resources);
+        List all = lookup(clazz, visible(resourceList));
         List matches = new ArrayList();
 
         if ( namespace == null ) {
@@ -335,16 +432,14 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
             }
         }
 
-        return ModificationProxy.createList( matches, clazz );
+        return proxyList( matches, clazz );
     }
     
     public <T extends ResourceInfo> T getResourceByStore(StoreInfo store,
             String name, Class<T> clazz) {
-        List all = lookup(clazz,resources);
-        for (Iterator r = all.iterator(); r.hasNext(); ) {
-            ResourceInfo resource = (ResourceInfo) r.next();
-            if ( name.equals( resource.getName() ) && store.equals( resource.getStore() ) ) {
-                return ModificationProxy.create((T)resource, clazz);
+        for (ResourceInfo resource : resourcesByName.get(name)) {
+            if ( clazz.isInstance( resource ) && store.equals( resource.getStore() ) ) {
+                return proxy((T)resource, clazz);
             }
         }
         
@@ -353,17 +448,14 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     
     public <T extends ResourceInfo> List<T> getResourcesByStore(
             StoreInfo store, Class<T> clazz) {
-        List all = lookup(clazz,resources);
         List matches = new ArrayList();
-        
-        for (Iterator r = all.iterator(); r.hasNext();) {
-            ResourceInfo resource = (ResourceInfo) r.next();
-            if (store.equals(resource.getStore())) {
+        for (ResourceInfo resource : resourcesByStore.get(store.getId())) {
+            if (clazz.isInstance(resource) && store.equals(resource.getStore())) {
                 matches.add(resource);
             }
         }
 
-        return  ModificationProxy.createList( matches, clazz );
+        return  proxyList( matches, clazz );
     }
     
     //
@@ -371,17 +463,65 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     //
     public LayerInfo add(LayerInfo layer) {
         resolve(layer);
-        layers.add(layer);
+        synchronized(layers) {
+            append(layers, layer);
+            index(layer);
+        }
         
         return ModificationProxy.create(layer, LayerInfo.class);
     }
     
     public void remove(LayerInfo layer) {
-        layers.remove(unwrap(layer));
+        layer = unwrap(layer);
+        synchronized(layers) {
+            discard(layers, layer);
+            unindex(layer);
+        }
     }
     
     public void save(LayerInfo layer) {
-        saved(layer);
+        beforeSaved(layer);
+        // the layer name is the resource one, saving the layer might rename the resource
+        synchronized (resources) {
+            synchronized (layers) {
+                LayerInfo stored = layersById.first(layer.getId());
+                String oldResource = null;
+                Set<String> oldStyles = null;
+                ResourceInfo resource = null;
+                String oldName = null;
+                String oldStore = null;
+                if (stored != null) {
+                    oldResource = id(stored.getResource());
+                    oldStyles = styleIds(stored);
+                    resource = resourcesById.first(oldResource);
+                    if (resource != null) {
+                        oldName = resource.getName();
+                        oldStore = id(resource.getStore());
+                    }
+                }
+                commitProxy(layer);
+                if (stored != null) {
+                    // move the layer keys that changed only, so that lookups never miss it
+                    move(layersByResource, stored, oldResource, id(stored.getResource()));
+                    Set<String> newStyles = styleIds(stored);
+                    for (String styleId : newStyles) {
+                        if (!oldStyles.contains(styleId)) {
+                            layersByStyle.add(styleId, stored);
+                        }
+                    }
+                    for (String styleId : oldStyles) {
+                        if (!newStyles.contains(styleId)) {
+                            layersByStyle.remove(styleId, stored);
+                        }
+                    }
+                }
+                if (resource != null) {
+                    move(resourcesByName, resource, oldName, resource.getName());
+                    move(resourcesByStore, resource, oldStore, id(resource.getStore()));
+                }
+            }
+        }
+        afterSaved(layer);
     }
     
     public LayerInfo detach(LayerInfo layer) {
@@ -389,19 +529,21 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     }
     
     public LayerInfo getLayer(String id) {
-        for (LayerInfo layer : layers) {
-            if (id.equals(layer.getId())) {
-                return ModificationProxy.create( layer, LayerInfo.class );
-            }
+        LayerInfo layer = layersById.first(id);
+        if (layer != null) {
+            return proxy( layer, LayerInfo.class );
         }
 
         return null;
     }
     
     public LayerInfo getLayerByName(String name) {
-        for (LayerInfo layer : layers) {
-            if ( name.equals( layer.getName() ) ) {
-                return ModificationProxy.create( layer, LayerInfo.class );
+        // the layer name is the resource name
+        for (ResourceInfo resource : resourcesByName.get(name)) {
+            for (LayerInfo layer : layersByResource.get(resource.getId())) {
+                if ( name.equals( layer.getName() ) ) {
+                    return proxy( layer, LayerInfo.class );
+                }
             }
         }
       
@@ -410,28 +552,28 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     
     public List<LayerInfo> getLayers(ResourceInfo resource) {
         List<LayerInfo> matches = new ArrayList<LayerInfo>();
-        for (LayerInfo layer : layers) {
+        for (LayerInfo layer : layersByResource.get(resource.getId())) {
             if ( resource.equals( layer.getResource() ) ) {
                 matches.add( layer );
             }
         }
 
-        return ModificationProxy.createList(matches,LayerInfo.class);
+        return proxyList(matches,LayerInfo.class);
     }
     
     public List<LayerInfo> getLayers(StyleInfo style) {
         List<LayerInfo> matches = new ArrayList<LayerInfo>();
-        for (LayerInfo layer : layers) {
+        for (LayerInfo layer : layersByStyle.get(style.getId())) {
             if ( style.equals( layer.getDefaultStyle() ) || layer.getStyles().contains( style ) ) {
                 matches.add( layer );
             }
         }
 
-        return ModificationProxy.createList(matches,LayerInfo.class);
+        return proxyList(matches,LayerInfo.class);
     }
     
     public List<LayerInfo> getLayers() {
-        return ModificationProxy.createList( new ArrayList(layers), LayerInfo.class );
+        return proxyList( new ArrayList(visible(layers)), LayerInfo.class );
     }
     
     //
@@ -463,7 +605,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     public MapInfo getMap(String id) {
         for (MapInfo map : maps) {
             if (id.equals(map.getId())) {
-                return ModificationProxy.create(map,MapInfo.class);
+                return proxy(map,MapInfo.class);
             }
         }
 
@@ -473,7 +615,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     public MapInfo getMapByName(String name) {
         for (MapInfo map : maps) {
             if (name.equals(map.getName())) {
-                return ModificationProxy.create(map,MapInfo.class);
+                return proxy(map,MapInfo.class);
             }
         }
 
@@ -481,7 +623,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     }
     
     public List<MapInfo> getMaps() {
-        return ModificationProxy.createList( new ArrayList(maps), MapInfo.class );
+        return proxyList( new ArrayList(maps), MapInfo.class );
     }
     
     //
@@ -490,7 +632,8 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     public LayerGroupInfo add (LayerGroupInfo layerGroup) {
         resolve(layerGroup);
         synchronized(layerGroups) {
-            layerGroups.add( layerGroup );
+            append( layerGroups, layerGroup );
+            index( layerGroup );
         }
         return ModificationProxy.create(layerGroup, LayerGroupInfo.class);
     }
@@ -499,8 +642,10 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
      * @see org.geoserver.catalog.impl.CatalogDAO#remove(org.geoserver.catalog.LayerGroupInfo)
      */
     public void remove(LayerGroupInfo layerGroup) {
+        layerGroup = unwrap(layerGroup);
         synchronized(layerGroups) {
-            layerGroups.remove( unwrap(layerGroup) );
+            discard( layerGroups, layerGroup );
+            unindex( layerGroup );
         }
     }
     
@@ -508,7 +653,18 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
      * @see org.geoserver.catalog.impl.CatalogDAO#save(org.geoserver.catalog.LayerGroupInfo)
      */
     public void save(LayerGroupInfo layerGroup) {
-        saved(layerGroup);
+        beforeSaved(layerGroup);
+        synchronized (layerGroups) {
+            LayerGroupInfo stored = layerGroupsById.first(layerGroup.getId());
+            String oldName = stored != null ? stored.getName() : null;
+            String oldWorkspace = stored != null ? id(stored.getWorkspace()) : null;
+            commitProxy(layerGroup);
+            if (stored != null) {
+                move(layerGroupsByName, stored, oldName, stored.getName());
+                move(layerGroupsByWorkspace, stored, oldWorkspace, id(stored.getWorkspace()));
+            }
+        }
+        afterSaved(layerGroup);
     }
     
     public LayerGroupInfo detach(LayerGroupInfo layerGroup) {
@@ -516,7 +672,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     }
     
     public List<LayerGroupInfo> getLayerGroups() {
-        return ModificationProxy.createList( new ArrayList(layerGroups), LayerGroupInfo.class );
+        return proxyList( new ArrayList(visible(layerGroups)), LayerGroupInfo.class );
     }
 
 
@@ -529,7 +685,9 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
 
         List<LayerGroupInfo> matches = new ArrayList();
 
-        for (Iterator s = layerGroups.iterator(); s.hasNext();) {
+        Iterable<LayerGroupInfo> candidates = workspace == NO_WORKSPACE ? visible(layerGroups)
+                : layerGroupsByWorkspace.get(workspace.getId());
+        for (Iterator s = candidates.iterator(); s.hasNext();) {
             LayerGroupInfo layerGroup = (LayerGroupInfo) s.next();
             boolean match = false;
             if (workspace == NO_WORKSPACE) {
@@ -544,15 +702,14 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         }
 
 
-        return ModificationProxy.createList(matches,LayerGroupInfo.class);
+        return proxyList(matches,LayerGroupInfo.class);
 
     }
 
     public LayerGroupInfo getLayerGroup(String id) {
-        for (LayerGroupInfo layerGroup : layerGroups ) {
-            if ( id.equals( layerGroup.getId() ) ) {
-                return ModificationProxy.create(layerGroup,LayerGroupInfo.class);
-            }
+        LayerGroupInfo layerGroup = layerGroupsById.first(id);
+        if ( layerGroup != null ) {
+            return proxy(layerGroup,LayerGroupInfo.class);
         }
         
         return null;
@@ -568,10 +725,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
 
         ArrayList<LayerGroupInfo> matches = new ArrayList<LayerGroupInfo>(2);
 
-        for (LayerGroupInfo layerGroup : layerGroups) {
-            if (!name.equals(layerGroup.getName())) {
-                continue;
-            }
+        for (LayerGroupInfo layerGroup : layerGroupsByName.get(name)) {
             WorkspaceInfo lgWorkspace = layerGroup.getWorkspace();
             if (NO_WORKSPACE == workspace) {
                 if (lgWorkspace == null) {
@@ -588,7 +742,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         }
 
         if (matches.size() == 1) {
-            return ModificationProxy.create(matches.get(0), LayerGroupInfo.class);
+            return proxy(matches.get(0), LayerGroupInfo.class);
         }
         return null;
     }
@@ -638,7 +792,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     
     public NamespaceInfo getDefaultNamespace() {
         return namespaces.get(null) != null ? 
-                ModificationProxy.create(namespaces.get( null ),NamespaceInfo.class) : null;
+                proxy(namespaces.get( null ),NamespaceInfo.class) : null;
     }
 
     public void setDefaultNamespace(NamespaceInfo defaultNamespace) {
@@ -661,7 +815,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     public NamespaceInfo getNamespace(String id) {
         for (NamespaceInfo namespace : namespaces.values() ) {
             if (id.equals(namespace.getId())) {
-                return ModificationProxy.create( namespace, NamespaceInfo.class ); 
+                return proxy( namespace, NamespaceInfo.class ); 
             }
         }
 
@@ -670,13 +824,13 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
 
     public NamespaceInfo getNamespaceByPrefix(String prefix) {
         NamespaceInfo ns = namespaces.get( prefix ); 
-        return ns != null ? ModificationProxy.create(ns, NamespaceInfo.class ) : null;
+        return ns != null ? proxy(ns, NamespaceInfo.class ) : null;
     }
 
     public NamespaceInfo getNamespaceByURI(String uri) {
         for (NamespaceInfo namespace : namespaces.values() ) {
             if (uri.equals(namespace.getURI())) {
-                return ModificationProxy.create( namespace, NamespaceInfo.class );
+                return proxy( namespace, NamespaceInfo.class );
             }
         }
 
@@ -684,6 +838,10 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     }
 
     public List getNamespaces() {
+        return proxyList( namespaceList(), NamespaceInfo.class );
+    }
+
+    List<NamespaceInfo> namespaceList() {
         ArrayList<NamespaceInfo> ns = new ArrayList<NamespaceInfo>();
         for ( Map.Entry<String,NamespaceInfo> e : namespaces.entrySet() ) {
             if ( e.getKey() == null || e.getKey().equals(Catalog.DEFAULT)) 
@@ -691,7 +849,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
             ns.add( e.getValue() );
         }
         
-        return ModificationProxy.createList( ns, NamespaceInfo.class );
+        return ns;
     }
 
     //
@@ -733,7 +891,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
 
     public WorkspaceInfo getDefaultWorkspace() {
         return workspaces.containsKey( null ) ? 
-                ModificationProxy.create( workspaces.get( null ), WorkspaceInfo.class ) : null;
+                proxy( workspaces.get( null ), WorkspaceInfo.class ) : null;
     }
     
     public void setDefaultWorkspace(WorkspaceInfo workspace) {
@@ -758,6 +916,10 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     }
     
     public List<WorkspaceInfo> getWorkspaces() {
+        return proxyList( workspaceList(), WorkspaceInfo.class );
+    }
+
+    List<WorkspaceInfo> workspaceList() {
         ArrayList<WorkspaceInfo> ws = new ArrayList<WorkspaceInfo>();
         
         //strip out default namespace
@@ -769,13 +931,13 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
             ws.add( e.getValue() );
         }
         
-        return ModificationProxy.createList( ws, WorkspaceInfo.class );
+        return ws;
     }
     
     public WorkspaceInfo getWorkspace(String id) {
         for ( WorkspaceInfo ws : workspaces.values() ) {
             if ( id.equals( ws.getId() ) ) {
-                return ModificationProxy.create(ws,WorkspaceInfo.class);
+                return proxy(ws,WorkspaceInfo.class);
             }
         }
         
@@ -784,7 +946,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     
     public WorkspaceInfo getWorkspaceByName(String name) {
         return workspaces.containsKey(name) ? 
-                ModificationProxy.create( workspaces.get( name ), WorkspaceInfo.class ) : null;
+                proxy( workspaces.get( name ), WorkspaceInfo.class ) : null;
     }
     
     //
@@ -793,19 +955,33 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     public StyleInfo add(StyleInfo style) {
         resolve(style);
         synchronized(styles) {
-            styles.add(style);
+            append(styles, style);
+            index(style);
         }
         return ModificationProxy.create(style, StyleInfo.class);
     }
 
     public void remove(StyleInfo style) {
+        style = unwrap(style);
         synchronized(styles) {
-            styles.remove(unwrap(style));
+            discard(styles, style);
+            unindex(style);
         }
     }
 
     public void save(StyleInfo style) {
-        saved( style );
+        beforeSaved(style);
+        synchronized (styles) {
+            StyleInfo stored = stylesById.first(style.getId());
+            String oldName = stored != null ? stored.getName() : null;
+            String oldWorkspace = stored != null ? id(stored.getWorkspace()) : null;
+            commitProxy(style);
+            if (stored != null) {
+                move(stylesByName, stored, oldName, stored.getName());
+                move(stylesByWorkspace, stored, oldWorkspace, id(stored.getWorkspace()));
+            }
+        }
+        afterSaved(style);
     }
 
     public StyleInfo detach(StyleInfo style) {
@@ -813,21 +989,18 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     }
 
     public StyleInfo getStyle(String id) {
-        for (Iterator s = styles.iterator(); s.hasNext();) {
-            StyleInfo style = (StyleInfo) s.next();
-            if (id.equals(style.getId())) {
-                return ModificationProxy.create(style,StyleInfo.class);
-            }
+        StyleInfo style = stylesById.first(id);
+        if (style != null) {
+            return proxy(style,StyleInfo.class);
         }
 
         return null;
     }
 
     public StyleInfo getStyleByName(String name) {
-        for (Iterator s = styles.iterator(); s.hasNext();) {
-            StyleInfo style = (StyleInfo) s.next();
-            if (null == style.getWorkspace() && name.equals(style.getName())) {
-                return ModificationProxy.create(style, StyleInfo.class);
+        for (StyleInfo style : stylesByName.get(name)) {
+            if (null == style.getWorkspace()) {
+                return proxy(style, StyleInfo.class);
             }
         }
 
@@ -844,26 +1017,16 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         }
         if (workspace == ANY_WORKSPACE) {
             //do an exhaustive search through all workspaces
-            ArrayList<StyleInfo> matches = new ArrayList();
-            for (Iterator i = styles.iterator(); i.hasNext();) {
-                StyleInfo style = (StyleInfo) i.next();
-                if ( name.equals( style.getName() ) ) {
-                    matches.add( style );
-                }
-            }
-            
+            List<StyleInfo> matches = stylesByName.get(name);
             if ( matches.size() == 1 ) {
-                return ModificationProxy.create( matches.get( 0 ), StyleInfo.class);
+                return proxy( matches.get( 0 ), StyleInfo.class);
             }
         }
         else {
-            for (Iterator i = styles.iterator(); i.hasNext();) {
-                StyleInfo style = (StyleInfo) i.next();
-                if (name.equals(style.getName())) {
-                    if (style.getWorkspace() != null && style.getWorkspace().equals(workspace) || 
-                        style.getWorkspace() == null && workspace == NO_WORKSPACE) {
-                        return ModificationProxy.create( style, StyleInfo.class );
-                    }
+            for (StyleInfo style : stylesByName.get(name)) {
+                if (style.getWorkspace() != null && style.getWorkspace().equals(workspace) || 
+                    style.getWorkspace() == null && workspace == NO_WORKSPACE) {
+                    return proxy( style, StyleInfo.class );
                 }
             }
         }
@@ -871,7 +1034,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     }
     
     public List<StyleInfo> getStyles() {
-        return ModificationProxy.createList(new ArrayList<StyleInfo>(styles), StyleInfo.class);
+        return proxyList(new ArrayList<StyleInfo>(visible(styles)), StyleInfo.class);
     }
 
     public List<StyleInfo> getStylesByWorkspace(WorkspaceInfo workspace) {
@@ -883,7 +1046,9 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
 
         List<StyleInfo> matches = new ArrayList();
 
-        for (Iterator s = styles.iterator(); s.hasNext();) {
+        Iterable<StyleInfo> candidates = workspace == NO_WORKSPACE ? visible(styles)
+                : stylesByWorkspace.get(workspace.getId());
+        for (Iterator s = candidates.iterator(); s.hasNext();) {
             StyleInfo style = (StyleInfo) s.next();
             boolean match = false;
             if (workspace == NO_WORKSPACE) {
@@ -897,26 +1062,358 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
             }
         }
 
-        return ModificationProxy.createList(matches,StyleInfo.class);
+        return proxyList(matches,StyleInfo.class);
+    }
+
+    /**
+     * Wraps an object handed out by a lookup, in a shared read only view if the calling thread
+     * asked for {@link ReadOnlyCatalogAccess read only access}, or in a new modification proxy
+     */
+    <T> T proxy(T info, Class<T> clazz) {
+        if (ReadOnlyCatalogAccess.isEnabled()) {
+            return ReadOnlyProxy.create(info, clazz);
+        }
+        return ModificationProxy.create(info, clazz);
     }
 
-    <T> List<T> lookup(Class<T> clazz, MultiHashMap map) {
+    /**
+     * Wraps the objects in a list handed out by a lookup, see {@link #proxy(Object, Class)}
+     */
+    <T> List<T> proxyList(List<T> list, Class<T> clazz) {
+        if (ReadOnlyCatalogAccess.isEnabled()) {
+            return ReadOnlyProxy.createList(list, clazz);
+        }
+        return ModificationProxy.createList(list, clazz);
+    }
+
+    <T> List<T> lookup(Class<T> clazz, List<?> listing) {
         ArrayList<T> result = new ArrayList<T>();
-        for (Iterator k = map.keySet().iterator(); k.hasNext();) {
-            Class key = (Class) k.next();
-            if (clazz.isAssignableFrom(key)) {
-                Collection value = map.getCollection(key);
-                // the map could have been modified in the meantime and the collection removed,
-                // check before adding 
-                if(value != null) {
-                    result.addAll(value);
-                }
+        for (Object info : listing) {
+            if (clazz.isInstance(info)) {
+                result.add((T) info);
             }
         }
 
         return result;
     }
 
+    //
+    // Batches
+    //
+    /**
+     * Runs the specified catalog changes as a batch.
+     * <p>
+     * The objects added by the current thread while running the batch are indexed right away,
+     * so they can be looked up by id or name as usual, but are appended to the listings all at
+     * once at the end of the batch, rather than copying each listing once per added object.
+     * Until then the listings of other threads do not include them, while the current thread
+     * sees them as if they were already published. Nested batches are part of the outermost
+     * one. The objects added by a batch that fails are published anyways, as they would have
+     * been without a batch.
+     * </p>
+     */
+    public void batch(Runnable changes) {
+        Batch current = batch.get();
+        if (current != null) {
+            changes.run();
+            return;
+        }
+
+        current = new Batch();
+        batch.set(current);
+        try {
+            changes.run();
+        } finally {
+            batch.remove();
+            publish(current);
+        }
+    }
+
+    /**
+     * The objects added during a batch, by listing
+     */
+    static class Batch {
+        Map<List<?>, List<Object>> staged = new IdentityHashMap<List<?>, List<Object>>();
+
+        <T> List<T> staged(List<T> listing, boolean create) {
+            List<Object> result = staged.get(listing);
+            if (result == null && create) {
+                result = new ArrayList<Object>();
+                staged.put(listing, result);
+            }
+            return (List<T>) result;
+        }
+    }
+
+    /**
+     * Adds an object to a listing, or stages it if the current thread is running a batch
+     */
+    <T> void append(List<T> listing, T info) {
+        Batch current = batch.get();
+        if (current != null) {
+            current.staged(listing, true).add(info);
+        } else {
+            listing.add(info);
+        }
+    }
+
+    /**
+     * Removes an object from a listing, and from the current thread batch
+     */
+    <T> void discard(List<T> listing, T info) {
+        listing.remove(info);
+        Batch current = batch.get();
+        if (current != null && current.staged(listing, false) != null) {
+            current.staged(listing, false).remove(info);
+        }
+    }
+
+    /**
+     * The listing as seen by the current thread, including the objects staged by its batch
+     */
+    <T> List<T> visible(List<T> listing) {
+        Batch current = batch.get();
+        List<T> staged = current != null ? current.staged(listing, false) : null;
+        if (staged == null || staged.isEmpty()) {
+            return listing;
+        }
+        List<T> all = new ArrayList<T>(listing);
+        all.addAll(staged);
+        return all;
+    }
+
+    /**
+     * Appends the objects staged by a batch to the listings, one copy per listing. Objects
+     * removed by another thread meanwhile are skipped.
+     */
+    void publish(Batch batch) {
+        synchronized (stores) {
+            storeList.addAll(stillIndexed(batch.staged(storeList, false), storesById));
+        }
+        synchronized (resources) {
+            resourceList.addAll(stillIndexed(batch.staged(resourceList, false), resourcesById));
+        }
+        synchronized (layers) {
+            layers.addAll(stillIndexed(batch.staged(layers, false), layersById));
+        }
+        synchronized (layerGroups) {
+            layerGroups.addAll(stillIndexed(batch.staged(layerGroups, false), layerGroupsById));
+        }
+        synchronized (styles) {
+            styles.addAll(stillIndexed(batch.staged(styles, false), stylesById));
+        }
+    }
+
+    <T extends CatalogInfo> List<T> stillIndexed(List<T> staged,
+            CatalogInfoIndex<String, ? super T> byId) {
+        List<T> result = new ArrayList<T>();
+        if (staged != null) {
+            for (T info : staged) {
+                for (Object indexed : byId.get(info.getId())) {
+                    if (indexed == info) {
+                        result.add(info);
+                        break;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Indexes a store by id, name and workspace
+     */
+    void index(StoreInfo store) {
+        storesById.add(store.getId(), store);
+        storesByName.add(store.getName(), store);
+        storesByWorkspace.add(id(store.getWorkspace()), store);
+    }
+
+    void unindex(StoreInfo store) {
+        storesById.remove(store.getId(), store);
+        storesByName.remove(store.getName(), store);
+        storesByWorkspace.remove(id(store.getWorkspace()), store);
+    }
+
+    /**
+     * Indexes a resource by id, name and store
+     */
+    void index(ResourceInfo resource) {
+        resourcesById.add(resource.getId(), resource);
+        resourcesByName.add(resource.getName(), resource);
+        resourcesByStore.add(id(resource.getStore()), resource);
+    }
+
+    void unindex(ResourceInfo resource) {
+        resourcesById.remove(resource.getId(), resource);
+        resourcesByName.remove(resource.getName(), resource);
+        resourcesByStore.remove(id(resource.getStore()), resource);
+    }
+
+    /**
+     * Indexes a layer by id, resource and styles
+     */
+    void index(LayerInfo layer) {
+        layersById.add(layer.getId(), layer);
+        layersByResource.add(id(layer.getResource()), layer);
+        for (String styleId : styleIds(layer)) {
+            layersByStyle.add(styleId, layer);
+        }
+    }
+
+    void unindex(LayerInfo layer) {
+        layersById.remove(layer.getId(), layer);
+        layersByResource.remove(id(layer.getResource()), layer);
+        for (String styleId : styleIds(layer)) {
+            layersByStyle.remove(styleId, layer);
+        }
+    }
+
+    /**
+     * Indexes a layer group by id, name and workspace
+     */
+    void index(LayerGroupInfo layerGroup) {
+        layerGroupsById.add(layerGroup.getId(), layerGroup);
+        layerGroupsByName.add(layerGroup.getName(), layerGroup);
+        layerGroupsByWorkspace.add(id(layerGroup.getWorkspace()), layerGroup);
+    }
+
+    void unindex(LayerGroupInfo layerGroup) {
+        layerGroupsById.remove(layerGroup.getId(), layerGroup);
+        layerGroupsByName.remove(layerGroup.getName(), layerGroup);
+        layerGroupsByWorkspace.remove(id(layerGroup.getWorkspace()), layerGroup);
+    }
+
+    /**
+     * Indexes a style by id, name and workspace
+     */
+    void index(StyleInfo style) {
+        stylesById.add(style.getId(), style);
+        stylesByName.add(style.getName(), style);
+        stylesByWorkspace.add(id(style.getWorkspace()), style);
+    }
+
+    void unindex(StyleInfo style) {
+        stylesById.remove(style.getId(), style);
+        stylesByName.remove(style.getName(), style);
+        stylesByWorkspace.remove(id(style.getWorkspace()), style);
+    }
+
+    /**
+     * The id of a referenced object, or null if the reference is not set
+     */
+    static String id(CatalogInfo info) {
+        return info != null ? info.getId() : null;
+    }
+
+    /**
+     * The ids of the default and alternate styles of a layer, without duplicates
+     */
+    Set<String> styleIds(LayerInfo layer) {
+        Set<String> ids = new HashSet<String>();
+        if (layer.getDefaultStyle() != null) {
+            ids.add(layer.getDefaultStyle().getId());
+        }
+        if (layer.getStyles() != null) {
+            for (StyleInfo style : layer.getStyles()) {
+                if (style != null) {
+                    ids.add(style.getId());
+                }
+            }
+        }
+        ids.remove(null);
+        return ids;
+    }
+
+    /**
+     * Moves an object to a new key in an index, if its key changed. The object is added under
+     * the new key before being removed from the old one, so that lookups by the new key never
+     * miss it.
+     */
+    <T> void move(CatalogInfoIndex<String, T> index, T info, String oldKey, String newKey) {
+        if (oldKey == null ? newKey != null : !oldKey.equals(newKey)) {
+            index.add(newKey, info);
+            index.remove(oldKey, info);
+        }
+    }
+
+    /**
+     * Rebuilds all the lookup indexes from the catalog collections
+     */
+    void reindex() {
+        if (storesById == null) {
+            storesById = new CatalogInfoIndex<String, StoreInfo>();
+            storesByName = new CatalogInfoIndex<String, StoreInfo>(true);
+            storesByWorkspace = new CatalogInfoIndex<String, StoreInfo>();
+            resourcesById = new CatalogInfoIndex<String, ResourceInfo>();
+            resourcesByName = new CatalogInfoIndex<String, ResourceInfo>(true);
+            resourcesByStore = new CatalogInfoIndex<String, ResourceInfo>();
+            layersById = new CatalogInfoIndex<String, LayerInfo>();
+            layersByResource = new CatalogInfoIndex<String, LayerInfo>();
+            layersByStyle = new CatalogInfoIndex<String, LayerInfo>();
+            layerGroupsById = new CatalogInfoIndex<String, LayerGroupInfo>();
+            layerGroupsByName = new CatalogInfoIndex<String, LayerGroupInfo>(true);
+            layerGroupsByWorkspace = new CatalogInfoIndex<String, LayerGroupInfo>();
+            stylesById = new CatalogInfoIndex<String, StyleInfo>();
+            stylesByName = new CatalogInfoIndex<String, StyleInfo>(true);
+            stylesByWorkspace = new CatalogInfoIndex<String, StyleInfo>();
+        }
+        if (storeList == null) {
+            storeList = new CopyOnWriteArrayList<StoreInfo>();
+            resourceList = new CopyOnWriteArrayList<ResourceInfo>();
+            batch = new ThreadLocal<Batch>();
+        }
+
+        synchronized (stores) {
+            storesById.clear();
+            storesByName.clear();
+            storesByWorkspace.clear();
+            List<StoreInfo> all = new ArrayList<StoreInfo>();
+            for (Object o : stores.values()) {
+                all.add((StoreInfo) o);
+                index((StoreInfo) o);
+            }
+            storeList.clear();
+            storeList.addAll(all);
+        }
+        synchronized (resources) {
+            resourcesById.clear();
+            resourcesByName.clear();
+            resourcesByStore.clear();
+            List<ResourceInfo> all = new ArrayList<ResourceInfo>();
+            for (Object o : resources.values()) {
+                all.add((ResourceInfo) o);
+                index((ResourceInfo) o);
+            }
+            resourceList.clear();
+            resourceList.addAll(all);
+        }
+        synchronized (layers) {
+            layersById.clear();
+            layersByResource.clear();
+            layersByStyle.clear();
+            for (LayerInfo l : layers) {
+                index(l);
+            }
+        }
+        synchronized (layerGroups) {
+            layerGroupsById.clear();
+            layerGroupsByName.clear();
+            layerGroupsByWorkspace.clear();
+            for (LayerGroupInfo lg : layerGroups) {
+                index(lg);
+            }
+        }
+        synchronized (styles) {
+            stylesById.clear();
+            stylesByName.clear();
+            stylesByWorkspace.clear();
+            for (StyleInfo s : styles) {
+                index(s);
+            }
+        }
+    }
+
     public void dispose() {
         if ( stores != null ) stores.clear();
         if ( defaultStores != null ) defaultStores.clear();
@@ -927,6 +1424,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         if ( layerGroups != null ) layerGroups.clear();
         if ( maps != null ) maps.clear();
         if ( styles != null ) styles.clear();
+        if ( storesById != null ) reindex();
     }
     
     public void resolve() {
@@ -996,6 +1494,9 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         for ( MapInfo m : maps ) {
             resolve(m);
         }
+        
+        //resolving might have replaced references, rebuild the indexes from scratch
+        reindex();
     }
 
     public void syncTo(CatalogFacade dao) {
@@ -1012,6 +1513,24 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
             other.maps = maps;
             other.layerGroups = layerGroups;
             other.styles = styles;
+            
+            other.storesById = storesById;
+            other.storeList = storeList;
+            other.resourceList = resourceList;
+            other.storesByName = storesByName;
+            other.storesByWorkspace = storesByWorkspace;
+            other.resourcesById = resourcesById;
+            other.resourcesByName = resourcesByName;
+            other.resourcesByStore = resourcesByStore;
+            other.layersById = layersById;
+            other.layersByResource = layersByResource;
+            other.layersByStyle = layersByStyle;
+            other.layerGroupsById = layerGroupsById;
+            other.layerGroupsByName = layerGroupsByName;
+            other.layerGroupsByWorkspace = layerGroupsByWorkspace;
+            other.stylesById = stylesById;
+            other.stylesByName = stylesByName;
+            other.stylesByWorkspace = stylesByWorkspace;
         }
         else {
             //do a manual import
@@ -1066,7 +1585,8 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
 
     @Override
     public <T extends CatalogInfo> int count(final Class<T> of, final Filter filter) {
-        return Iterables.size(iterable(of, filter, null));
+        // no need to proxy the objects just to count them
+        return Iterables.size(select(of, filter, null));
     }
 
     /**
@@ -1143,59 +1663,323 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         return new CloseableIteratorAdapter<T>(iterator);
     }
 
+    /**
+     * Returns the objects of the specified type matching the filter, lazily wrapped in
+     * modification proxies, or read only views, as the iteration proceeds.
+     */
     public <T extends CatalogInfo> Iterable<T> iterable(final Class<? super T> of,
             final Filter filter, final SortBy[] sortByList) {
-        List<T> all;
+        // the objects of the requested type implement it, unless it's an implementation class
+        final Class<CatalogInfo> proxyInterface = (Class<CatalogInfo>) (of.isInterface() ? of
+                : CatalogInfo.class);
+        // the iteration might happen after the caller left read only mode
+        final boolean readOnly = ReadOnlyCatalogAccess.isEnabled();
+        Iterable<CatalogInfo> selected = select(of, filter, sortByList);
+        return (Iterable<T>) Iterables.transform(selected, new Function<CatalogInfo, CatalogInfo>() {
+            @Override
+            public CatalogInfo apply(CatalogInfo input) {
+                return readOnly ? ReadOnlyProxy.create(input, proxyInterface) : ModificationProxy
+                        .create(input, proxyInterface);
+            }
+        });
+    }
+
+    /**
+     * Selects the objects of the specified type matching the filter, in the requested order.
+     * <p>
+     * When the filter has a top level equality condition on an indexed property, only the
+     * objects in the matching index bucket are evaluated. When sorting by name only, or
+     * filtering by name prefix, the objects are walked in the order of the sorted name index
+     * instead of being sorted. In both cases the selection is lazy, objects are evaluated as the
+     * iteration proceeds, so that paging through the first results does not cost a full scan.
+     * The objects are evaluated and sorted as stored, the caller is responsible for proxying
+     * them.
+     * </p>
+     */
+    Iterable<CatalogInfo> select(final Class<?> of, final Filter filter,
+            final SortBy[] sortByList) {
+        if (Filter.EXCLUDE.equals(filter)) {
+            return Collections.emptyList();
+        }
+
+        SortBy nameOrder = null;
+        if (sortByList != null && sortByList.length == 1
+                && "name".equals(sortByList[0].getPropertyName().getPropertyName())) {
+            nameOrder = sortByList[0];
+        }
+        String prefix = namePrefix(filter);
+
+        boolean sorted = false;
+        Iterable<? extends CatalogInfo> candidates = indexed(of, filter);
+        if (candidates == null && (nameOrder != null || prefix != null)) {
+            boolean ascending = nameOrder == null
+                    || !SortOrder.DESCENDING.equals(nameOrder.getSortOrder());
+            candidates = byName(of, prefix, ascending);
+            sorted = candidates != null && nameOrder != null;
+        }
+        if (candidates == null) {
+            candidates = all(of);
+        }
+
+        Iterable<CatalogInfo> selected = Iterables.filter((Iterable<CatalogInfo>) candidates,
+                new Predicate<CatalogInfo>() {
+                    @Override
+                    public boolean apply(CatalogInfo input) {
+                        return of.isInstance(input) && filter.evaluate(input);
+                    }
+                });
+
+        if (sortByList != null && sortByList.length > 0 && !sorted) {
+            // only sort the matching objects
+            List<CatalogInfo> list = Lists.newArrayList(selected);
+            for (int i = sortByList.length - 1; i >= 0; i--) {
+                SortBy sortBy = sortByList[i];
+                Ordering<Object> ordering = Ordering.from(comparator(sortBy));
+                if (SortOrder.DESCENDING.equals(sortBy.getSortOrder())) {
+                    ordering = ordering.reverse();
+                }
+                list = ordering.sortedCopy(list);
+            }
+            selected = list;
+        }
 
-        T t = null;
+        return selected;
+    }
+
+    /**
+     * All the stored objects that might be of the specified type
+     */
+    Iterable<? extends CatalogInfo> all(Class<?> of) {
         if (NamespaceInfo.class.isAssignableFrom(of)) {
-            all = getNamespaces();
+            return namespaceList();
         } else if (WorkspaceInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) getWorkspaces();
+            return workspaceList();
         } else if (StoreInfo.class.isAssignableFrom(of)) {
-            all = getStores(of);
+            return visible(storeList);
         } else if (ResourceInfo.class.isAssignableFrom(of)) {
-            all = getResources(of);
+            return visible(resourceList);
         } else if (LayerInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) getLayers();
+            return visible(layers);
         } else if (LayerGroupInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) getLayerGroups();
+            return visible(layerGroups);
         } else if (PublishedInfo.class.isAssignableFrom(of)) {
-            all = new ArrayList<>();
-            all.addAll((List<T>) getLayers());
-            all.addAll((List<T>) getLayerGroups());
+            return Iterables.concat(visible(layers), visible(layerGroups));
         } else if (StyleInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) getStyles();
+            return visible(styles);
         } else if (MapInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) getMaps();
+            return new ArrayList<MapInfo>(maps);
         } else {
             throw new IllegalArgumentException("Unknown type: " + of);
         }
+    }
 
-        if (null != sortByList) {
-            for (int i = sortByList.length - 1; i >=0 ; i--) {
-            	SortBy sortBy = sortByList[i];
-	            Ordering<Object> ordering = Ordering.from(comparator(sortBy));
-	            if (SortOrder.DESCENDING.equals(sortBy.getSortOrder())) {
-	                ordering = ordering.reverse();
-	            }
-	            all = ordering.sortedCopy(all);
+    /**
+     * The objects of the specified type that might match the filter according to the indexes,
+     * or null if the filter does not constrain any indexed property
+     */
+    Iterable<? extends CatalogInfo> indexed(Class<?> of, Filter filter) {
+        String id = equalTo(filter, "id");
+        String name = equalTo(filter, "name");
+        if (StoreInfo.class.isAssignableFrom(of)) {
+            if (id != null) {
+                return storesById.get(id);
+            } else if (name != null) {
+                return storesByName.get(name);
+            }
+            String workspace = workspaceId(filter);
+            return workspace != null ? storesByWorkspace.get(workspace) : null;
+        } else if (ResourceInfo.class.isAssignableFrom(of)) {
+            if (id != null) {
+                return resourcesById.get(id);
+            } else if (name != null) {
+                return resourcesByName.get(name);
+            }
+            String store = equalTo(filter, "store.id");
+            return store != null ? resourcesByStore.get(store) : null;
+        } else if (LayerInfo.class.isAssignableFrom(of)) {
+            return lookupLayers(filter, id, name);
+        } else if (LayerGroupInfo.class.isAssignableFrom(of)) {
+            return lookupLayerGroups(filter, id, name);
+        } else if (PublishedInfo.class.isAssignableFrom(of)) {
+            Iterable<LayerInfo> layers = lookupLayers(filter, id, name);
+            Iterable<LayerGroupInfo> groups = lookupLayerGroups(filter, id, name);
+            if (layers == null || groups == null) {
+                // the index is of no use unless it applies to both
+                return null;
+            }
+            return Iterables.concat(layers, groups);
+        } else if (StyleInfo.class.isAssignableFrom(of)) {
+            if (id != null) {
+                return stylesById.get(id);
+            } else if (name != null) {
+                return stylesByName.get(name);
             }
+            String workspace = workspaceId(filter);
+            return workspace != null ? stylesByWorkspace.get(workspace) : null;
         }
+        return null;
+    }
 
-        if (Filter.INCLUDE.equals(filter)) {
-            return all;
+    Iterable<LayerInfo> lookupLayers(Filter filter, String id, String name) {
+        if (id != null) {
+            return layersById.get(id);
+        } else if (name != null) {
+            // the layer name is the resource name
+            return layersByResource(resourcesByName.get(name));
         }
+        String resource = equalTo(filter, "resource.id");
+        if (resource != null) {
+            return layersByResource.get(resource);
+        }
+        // only a superset of the matches, the style could be an alternate one
+        String style = equalTo(filter, "defaultStyle.id");
+        return style != null ? layersByStyle.get(style) : null;
+    }
 
-        com.google.common.base.Predicate<T> filterAdapter = new com.google.common.base.Predicate<T>() {
+    Iterable<LayerGroupInfo> lookupLayerGroups(Filter filter, String id, String name) {
+        if (id != null) {
+            return layerGroupsById.get(id);
+        } else if (name != null) {
+            return layerGroupsByName.get(name);
+        }
+        String workspace = workspaceId(filter);
+        return workspace != null ? layerGroupsByWorkspace.get(workspace) : null;
+    }
 
-            @Override
-            public boolean apply(T input) {
-                return filter.evaluate(input);
+    /**
+     * The objects of the specified type in name order, optionally limited to the names starting
+     * with the specified prefix, or null if the type has no name index
+     */
+    Iterable<? extends CatalogInfo> byName(Class<?> of, String prefix, boolean ascending) {
+        String from = prefix;
+        String to = prefix != null ? prefixEnd(prefix) : null;
+        if (StoreInfo.class.isAssignableFrom(of)) {
+            return storesByName.values(from, to, ascending);
+        } else if (ResourceInfo.class.isAssignableFrom(of)) {
+            return resourcesByName.values(from, to, ascending);
+        } else if (LayerInfo.class.isAssignableFrom(of)) {
+            return layersByResource(resourcesByName.values(from, to, ascending));
+        } else if (LayerGroupInfo.class.isAssignableFrom(of)) {
+            return layerGroupsByName.values(from, to, ascending);
+        } else if (StyleInfo.class.isAssignableFrom(of)) {
+            return stylesByName.values(from, to, ascending);
+        }
+        return null;
+    }
+
+    /**
+     * Lazily maps resources to the layers publishing them
+     */
+    Iterable<LayerInfo> layersByResource(Iterable<ResourceInfo> resources) {
+        return Iterables.concat(Iterables.transform(resources,
+                new Function<ResourceInfo, List<LayerInfo>>() {
+                    @Override
+                    public List<LayerInfo> apply(ResourceInfo resource) {
+                        return layersByResource.get(resource.getId());
+                    }
+                }));
+    }
+
+    /**
+     * The id of the workspace a filter requires, either by id or by name
+     */
+    String workspaceId(Filter filter) {
+        String id = equalTo(filter, "workspace.id");
+        if (id == null) {
+            String name = equalTo(filter, "workspace.name");
+            WorkspaceInfo workspace = name != null ? workspaces.get(name) : null;
+            if (workspace != null) {
+                id = workspace.getId();
+            } else if (name != null) {
+                // no such workspace, use a key that matches nothing
+                id = "";
             }
-        };
+        }
+        return id;
+    }
+
+    /**
+     * The top level conditions of a filter, that is, the children of a top level And, or the
+     * filter itself. All of them must hold for an object to match.
+     */
+    static List<Filter> conditions(Filter filter) {
+        if (filter instanceof And) {
+            return ((And) filter).getChildren();
+        }
+        return Collections.singletonList(filter);
+    }
+
+    /**
+     * Returns the value a top level condition of the filter requires the property to be equal
+     * to, or null if there is no such condition
+     */
+    static String equalTo(Filter filter, String property) {
+        for (Filter condition : conditions(filter)) {
+            if (!(condition instanceof PropertyIsEqualTo)
+                    || !((PropertyIsEqualTo) condition).isMatchingCase()) {
+                continue;
+            }
+            Expression e1 = ((PropertyIsEqualTo) condition).getExpression1();
+            Expression e2 = ((PropertyIsEqualTo) condition).getExpression2();
+            if (e2 instanceof PropertyName) {
+                Expression tmp = e1;
+                e1 = e2;
+                e2 = tmp;
+            }
+            if (e1 instanceof PropertyName
+                    && property.equals(((PropertyName) e1).getPropertyName())
+                    && e2 instanceof Literal && ((Literal) e2).getValue() instanceof String) {
+                return (String) ((Literal) e2).getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the prefix a top level case sensitive like condition requires the name to start
+     * with, or null if there is no such condition
+     */
+    static String namePrefix(Filter filter) {
+        for (Filter condition : conditions(filter)) {
+            if (!(condition instanceof PropertyIsLike)) {
+                continue;
+            }
+            PropertyIsLike like = (PropertyIsLike) condition;
+            if (!like.isMatchingCase() || !(like.getExpression() instanceof PropertyName)
+                    || !"name".equals(((PropertyName) like.getExpression()).getPropertyName())) {
+                continue;
+            }
+            String pattern = like.getLiteral();
+            String wildCard = like.getWildCard();
+            if (pattern == null || wildCard == null || wildCard.isEmpty()
+                    || !pattern.endsWith(wildCard)) {
+                continue;
+            }
+            String prefix = pattern.substring(0, pattern.length() - wildCard.length());
+            if (!prefix.isEmpty() && !contains(prefix, wildCard)
+                    && !contains(prefix, like.getSingleChar())
+                    && !contains(prefix, like.getEscape())) {
+                return prefix;
+            }
+        }
+        return null;
+    }
+
+    static boolean contains(String s, String token) {
+        return token != null && !token.isEmpty() && s.contains(token);
+    }
 
-        return Iterables.filter(all, filterAdapter);
+    /**
+     * The lowest string greater than all the strings starting with the prefix, or null if there
+     * is none
+     */
+    static String prefixEnd(String prefix) {
+        int last = prefix.length() - 1;
+        char c = prefix.charAt(last);
+        if (c == Character.MAX_VALUE) {
+            return null;
+        }
+        return prefix.substring(0, last) + (char) (c + 1);
     }
 
     private Comparator<Object> comparator(final SortBy sortOrder) {
@@ -0,0 +1,179 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog.impl;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.geoserver.catalog.Info;
+import org.geoserver.catalog.MetadataMap;
+import org.geoserver.catalog.ReadOnlyCatalogAccess;
+
+import com.google.common.base.Function;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Collections2;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+
+/**
+ * Read only view of a catalog object, handed out by the in memory catalog to the threads that
+ * asked for {@link ReadOnlyCatalogAccess read only access}.
+ * <p>
+ * Unlike a plain {@link ModificationProxy} the view does not record changes, setters throw an
+ * {@link UnsupportedOperationException}, and collections and maps are returned as unmodifiable
+ * live views rather than copies. Since there is no per caller state, a single view per catalog
+ * object is created and shared by all callers, so read only lookups do not allocate a new proxy
+ * each time. Catalog objects reachable from a view, directly or through collections, are
+ * returned as read only views as well; other mutable values, such as the ones stored in
+ * metadata maps, are returned as is and callers are trusted not to modify them.
+ * </p>
+ * <p>
+ * This class extends {@link ModificationProxy} so that code unwrapping or committing
+ * modification proxies handles the views transparently, saving a view is a no-op.
+ * </p>
+ */
+public class ReadOnlyProxy extends ModificationProxy {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The views handed out so far. Keys are weak, and compared by identity, so that removed
+     * catalog objects can be collected. Values are soft since they reference their key.
+     */
+    static final Cache<Object, Object> VIEWS = CacheBuilder.newBuilder().weakKeys().softValues()
+            .build();
+
+    static final Function<Object, Object> WRAP = new Function<Object, Object>() {
+        @Override
+        public Object apply(Object input) {
+            return wrap(input);
+        }
+    };
+
+    public ReadOnlyProxy(Object proxyObject) {
+        super(proxyObject);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getName().startsWith("set") && args != null && args.length == 1) {
+            throw new UnsupportedOperationException("Can't call " + method.getName()
+                    + ", the catalog object was looked up in read only mode");
+        }
+
+        Object result;
+        try {
+            result = method.invoke(proxyObject, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+        if (result == null) {
+            return null;
+        }
+
+        Class<?> type = method.getReturnType();
+        if (type == List.class) {
+            return Collections.unmodifiableList(Lists.transform((List) result, WRAP));
+        } else if (type == Set.class) {
+            return new ReadOnlySet((Set) result);
+        } else if (type == Collection.class) {
+            return Collections.unmodifiableCollection(Collections2.transform(
+                    (Collection) result, WRAP));
+        } else if (type == MetadataMap.class) {
+            MetadataMap metadata = (MetadataMap) result;
+            MetadataMap view = new MetadataMap(Collections.unmodifiableMap(metadata.getMap()));
+            view.setId(metadata.getId());
+            return view;
+        } else if (type == Map.class) {
+            return Collections.unmodifiableMap((Map) result);
+        }
+        return wrap(result);
+    }
+
+    /**
+     * Wraps the value in a read only view if it is a catalog object not proxied yet
+     */
+    static Object wrap(Object value) {
+        if (value instanceof Info && handler(value) == null) {
+            return create((Info) value, Info.class);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the read only view of an object. The view is created on the first call and
+     * shared by the following ones.
+     */
+    public static <T> T create(T object, Class<T> clazz) {
+        if (handler(object) != null) {
+            // already proxied, don't proxy twice
+            return object;
+        }
+        Object view = VIEWS.getIfPresent(object);
+        if (view == null || !clazz.isInstance(view)) {
+            // the view implements all the interfaces of the object, a single one is enough
+            view = ProxyUtils.createProxy(object, clazz, new ReadOnlyProxy(object));
+            VIEWS.put(object, view);
+        }
+        return (T) view;
+    }
+
+    /**
+     * Wraps a list in a decorator returning the read only views of its items
+     */
+    public static <T> List<T> createList(List<T> proxyList, Class<T> clazz) {
+        return new list(proxyList, clazz);
+    }
+
+    static class list<T> extends ProxyList {
+
+        list(List<T> list, Class<T> clazz) {
+            super(list, clazz);
+        }
+
+        protected <T> T createProxy(T proxyObject, Class<T> proxyInterface) {
+            return ReadOnlyProxy.create(proxyObject, proxyInterface);
+        }
+
+        protected <U> U unwrapProxy(U proxy, java.lang.Class<U> proxyInterface) {
+            return ModificationProxy.unwrap(proxy);
+        };
+    }
+
+    /**
+     * Unmodifiable view of a set, wrapping its items on the fly
+     */
+    static class ReadOnlySet extends AbstractSet<Object> {
+
+        Set<Object> set;
+
+        ReadOnlySet(Set<Object> set) {
+            this.set = set;
+        }
+
+        @Override
+        public Iterator<Object> iterator() {
+            return Iterators.unmodifiableIterator(Iterators.transform(set.iterator(), WRAP));
+        }
+
+        @Override
+        public int size() {
+            return set.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return set.contains(o) || set.contains(unwrap(o));
+        }
+    }
+}
@@ -0,0 +1,312 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.config;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import org.geoserver.config.util.XStreamPersister;
+import org.geotools.util.logging.Logging;
+
+import com.thoughtworks.xstream.io.binary.BinaryStreamReader;
+import com.thoughtworks.xstream.io.binary.BinaryStreamWriter;
+
+/**
+ * Binary snapshot of the catalog configuration files, used by {@link GeoServerLoader} to speed
+ * up restarts.
+ * <p>
+ * For each configuration file read while loading the catalog the snapshot records its last
+ * modification time, size and checksum, along with the parsed object encoded in the XStream
+ * binary format. On the next startup the files whose time and size did not change are decoded
+ * from the snapshot instead of being parsed again. File systems store the modification time
+ * with a limited resolution, so a file modified within {@link #MTIME_RESOLUTION} of being
+ * read could have been changed again without its time moving, for those files the checksum
+ * is verified as well. The binary encoding goes through the same
+ * {@link XStreamPersister} converters as the XML one, so references to other catalog objects
+ * are stored and resolved exactly as they are in the configuration files.
+ * </p>
+ * <p>
+ * The snapshot is only a cache, any entry that cannot be decoded is simply parsed again from
+ * the configuration file.
+ * </p>
+ */
+class CatalogSnapshot {
+
+    static final Logger LOGGER = Logging.getLogger(CatalogSnapshot.class);
+
+    static final int MAGIC = 0x47534353;
+
+    static final int VERSION = 2;
+
+    /**
+     * The coarsest modification time resolution of the common file systems (FAT uses two
+     * seconds, ext3 and HFS+ one second)
+     */
+    static final long MTIME_RESOLUTION = 2000;
+
+    /**
+     * The snapshot file name, in the data directory root
+     */
+    static final String FILE_NAME = "catalog.snapshot";
+
+    /**
+     * A configuration file, as seen when the snapshot was taken
+     */
+    static class Entry {
+        final long lastModified;
+
+        final long length;
+
+        final long checksum;
+
+        /**
+         * When the file was read
+         */
+        final long readTime;
+
+        final byte[] data;
+
+        Entry(long lastModified, long length, long checksum, long readTime, byte[] data) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.checksum = checksum;
+            this.readTime = readTime;
+            this.data = data;
+        }
+
+        /**
+         * Returns true if the file could have been modified again in the same modification
+         * time tick it was read in, in which case only the checksum can tell
+         */
+        boolean isAmbiguous() {
+            return readTime - lastModified < MTIME_RESOLUTION;
+        }
+    }
+
+    final File baseDirectory;
+
+    /**
+     * The entries read from disk
+     */
+    final Map<String, Entry> previous;
+
+    /**
+     * The entries of the snapshot being built while loading
+     */
+    final Map<String, Entry> current = new ConcurrentHashMap<String, Entry>();
+
+    final AtomicInteger hits = new AtomicInteger();
+
+    final AtomicInteger misses = new AtomicInteger();
+
+    CatalogSnapshot(File baseDirectory, Map<String, Entry> previous) {
+        this.baseDirectory = baseDirectory;
+        this.previous = previous;
+    }
+
+    /**
+     * Reads the snapshot stored in the base directory, returning an empty one if missing or
+     * unreadable
+     */
+    static CatalogSnapshot read(File baseDirectory) {
+        File file = new File(baseDirectory, FILE_NAME);
+        Map<String, Entry> entries = new HashMap<String, Entry>();
+        if (file.exists()) {
+            DataInputStream in = null;
+            try {
+                in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    LOGGER.info("Ignoring catalog snapshot with unknown format " + file);
+                } else {
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        String path = in.readUTF();
+                        long lastModified = in.readLong();
+                        long length = in.readLong();
+                        long checksum = in.readLong();
+                        long readTime = in.readLong();
+                        byte[] data = new byte[in.readInt()];
+                        in.readFully(data);
+                        entries.put(path, new Entry(lastModified, length, checksum, readTime,
+                                data));
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to read catalog snapshot " + file
+                        + ", loading the catalog from the configuration files", e);
+                entries.clear();
+            } finally {
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException e) {
+                        // ignore
+                    }
+                }
+            }
+        }
+
+        return new CatalogSnapshot(baseDirectory, entries);
+    }
+
+    /**
+     * Decodes the object stored for the specified file, provided the file did not change since
+     * the snapshot was taken.
+     *
+     * @return the object, or null if the file has to be parsed
+     */
+    <T> T load(XStreamPersister xp, File f, Class<T> clazz) {
+        String path = path(f);
+        Entry entry = previous.get(path);
+        if (entry == null || entry.lastModified != f.lastModified()
+                || entry.length != f.length()) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (entry.isAmbiguous()) {
+            long readTime = System.currentTimeMillis();
+            try {
+                if (checksum(f) != entry.checksum) {
+                    misses.incrementAndGet();
+                    return null;
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Failed to verify the checksum of " + path, e);
+                misses.incrementAndGet();
+                return null;
+            }
+            // verified now, the next load can trust the modification time if it's old enough
+            entry = new Entry(entry.lastModified, entry.length, entry.checksum, readTime,
+                    entry.data);
+        }
+
+        try {
+            Object obj = xp.getXStream().unmarshal(
+                    new BinaryStreamReader(new ByteArrayInputStream(entry.data)));
+            current.put(path, entry);
+            hits.incrementAndGet();
+            return clazz.cast(obj);
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Failed to decode " + path + " from the catalog snapshot", e);
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Records the object parsed from the specified file
+     *
+     * @param lastModified the file modification time, taken before reading it
+     * @param length the file size, taken before reading it
+     * @param checksum the {@link #checksum(byte[])} of the file contents that were parsed
+     * @param readTime the time the file was read
+     */
+    void record(XStreamPersister xp, File f, long lastModified, long length, long checksum,
+            long readTime, Object obj) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            BinaryStreamWriter writer = new BinaryStreamWriter(bytes);
+            xp.getXStream().marshal(XStreamPersister.unwrapProxies(obj), writer);
+            writer.close();
+            current.put(path(f), new Entry(lastModified, length, checksum, readTime,
+                    bytes.toByteArray()));
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Failed to encode " + f + " in the catalog snapshot", e);
+        }
+    }
+
+    /**
+     * Writes out the entries recorded during this load. The snapshot is written to a temporary
+     * file first, and then renamed, so that concurrent readers never see a partial snapshot.
+     */
+    void write() throws IOException {
+        File file = new File(baseDirectory, FILE_NAME);
+        File tmp = new File(baseDirectory, FILE_NAME + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            Map<String, Entry> entries = new HashMap<String, Entry>(current);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeLong(entry.lastModified);
+                out.writeLong(entry.length);
+                out.writeLong(entry.checksum);
+                out.writeLong(entry.readTime);
+                out.writeInt(entry.data.length);
+                out.write(entry.data);
+            }
+        } finally {
+            out.close();
+        }
+
+        if (file.exists() && !file.delete()) {
+            tmp.delete();
+            throw new IOException("Could not replace the catalog snapshot " + file);
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Could not rename " + tmp + " to " + file);
+        }
+    }
+
+    /**
+     * Checksum of the file contents
+     */
+    static long checksum(byte[] contents) {
+        CRC32 crc = new CRC32();
+        crc.update(contents, 0, contents.length);
+        return crc.getValue();
+    }
+
+    static long checksum(File f) throws IOException {
+        CRC32 crc = new CRC32();
+        InputStream in = new FileInputStream(f);
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Path of the file relative to the base directory, so that the snapshot survives the data
+     * directory being moved around
+     */
+    String path(File f) {
+        return baseDirectory.toURI().relativize(f.toURI()).getPath();
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    public int getMisses() {
+        return misses.get();
+    }
+}
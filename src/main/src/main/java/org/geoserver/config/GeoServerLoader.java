@@ -7,6 +7,7 @@ package org.geoserver.config;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -14,8 +15,14 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -24,7 +31,6 @@ import org.apache.commons.io.filefilter.DirectoryFileFilter;
 import org.apache.commons.io.filefilter.IOFileFilter;
 import org.apache.commons.io.filefilter.SuffixFileFilter;
 import org.geoserver.catalog.Catalog;
-import org.geoserver.catalog.CatalogFactory;
 import org.geoserver.catalog.CoverageInfo;
 import org.geoserver.catalog.CoverageStoreInfo;
 import org.geoserver.catalog.DataStoreInfo;
@@ -32,7 +38,9 @@ import org.geoserver.catalog.FeatureTypeInfo;
 import org.geoserver.catalog.LayerGroupInfo;
 import org.geoserver.catalog.LayerInfo;
 import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.ResourceInfo;
 import org.geoserver.catalog.ResourcePool;
+import org.geoserver.catalog.StoreInfo;
 import org.geoserver.catalog.StyleInfo;
 import org.geoserver.catalog.WMSLayerInfo;
 import org.geoserver.catalog.WMSStoreInfo;
@@ -40,6 +48,7 @@ import org.geoserver.catalog.WorkspaceInfo;
 import org.geoserver.catalog.Wrapper;
 import org.geoserver.catalog.event.CatalogListener;
 import org.geoserver.catalog.impl.CatalogImpl;
+import org.geoserver.catalog.impl.ResolvingProxy;
 import org.geoserver.catalog.util.LegacyCatalogImporter;
 import org.geoserver.catalog.util.LegacyCatalogReader;
 import org.geoserver.catalog.util.LegacyFeatureTypeInfoReader;
@@ -52,6 +61,7 @@ import org.geoserver.platform.GeoServerResourceLoader;
 import org.geotools.util.logging.Logging;
 import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContext;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 /**
  * Initializes GeoServer configuration and catalog on startup.
@@ -75,6 +85,39 @@ public abstract class GeoServerLoader {
     // this ugly hack can die
     static boolean legacy = false;
     
+    /**
+     * System/context property setting the number of threads used to parse the workspaces
+     * contents on startup. Defaults to 1, that is, sequential loading.
+     */
+    public static final String LOADING_THREADS = "GEOSERVER_LOADING_THREADS";
+    
+    /**
+     * Number of loading threads, overriding {@link #LOADING_THREADS} when set
+     */
+    Integer loadingThreads;
+    
+    /**
+     * System/context property enabling the binary catalog snapshot, used to avoid parsing again
+     * the configuration files that did not change since the last startup. Defaults to false.
+     */
+    public static final String CATALOG_SNAPSHOT = "GEOSERVER_CATALOG_SNAPSHOT";
+    
+    /**
+     * Enables the catalog snapshot, overriding {@link #CATALOG_SNAPSHOT} when set
+     */
+    Boolean catalogSnapshot;
+    
+    /**
+     * The snapshot in use while reading the catalog, if any
+     */
+    volatile CatalogSnapshot snapshot;
+
+    /**
+     * Number of configuration files decoded from the snapshot, and parsed, by the last catalog
+     * read
+     */
+    int snapshotHits, snapshotMisses;
+    
     public GeoServerLoader( GeoServerResourceLoader resourceLoader ) {
         this.resourceLoader = resourceLoader;
     }
@@ -91,6 +134,22 @@ public abstract class GeoServerLoader {
         GeoServerLoader.legacy = legacy;
     }
     
+    /**
+     * Sets the number of threads used to parse the catalog contents, overriding the 
+     * {@link #LOADING_THREADS} property
+     */
+    public void setLoadingThreads(Integer loadingThreads) {
+        this.loadingThreads = loadingThreads;
+    }
+    
+    /**
+     * Enables or disables the binary catalog snapshot, overriding the {@link #CATALOG_SNAPSHOT}
+     * property
+     */
+    public void setCatalogSnapshot(Boolean catalogSnapshot) {
+        this.catalogSnapshot = catalogSnapshot;
+    }
+    
     public final Object postProcessAfterInitialization(Object bean, String beanName)
             throws BeansException {
         return bean;
@@ -240,15 +299,69 @@ public abstract class GeoServerLoader {
      * Reads the catalog from disk.
      */
     Catalog readCatalog( XStreamPersister xp ) throws Exception {
-        CatalogImpl catalog = new CatalogImpl();
+        LoadingTimer timer = new LoadingTimer();
+        boolean useSnapshot = isCatalogSnapshotEnabled();
+        if (useSnapshot) {
+            snapshot = CatalogSnapshot.read(resourceLoader.getBaseDirectory());
+            timer.phase("reading the catalog snapshot");
+        }
+        try {
+            Catalog catalog = readCatalog(xp, timer);
+            
+            if (useSnapshot) {
+                snapshotHits = snapshot.getHits();
+                snapshotMisses = snapshot.getMisses();
+                LOGGER.info("Catalog snapshot used for " + snapshotHits + 
+                        " configuration files, " + snapshotMisses + " had to be parsed");
+                try {
+                    snapshot.write();
+                } catch(IOException e) {
+                    LOGGER.log(Level.WARNING, "Failed to write the catalog snapshot", e);
+                }
+                timer.phase("writing the catalog snapshot");
+            }
+            timer.done();
+            
+            return catalog;
+        } finally {
+            snapshot = null;
+        }
+    }
+    
+    Catalog readCatalog( final XStreamPersister xp, final LoadingTimer timer ) throws Exception {
+        final CatalogImpl catalog = new CatalogImpl();
         catalog.setResourceLoader(resourceLoader);
         xp.setCatalog( catalog );
         xp.setUnwrapNulls(false);
         
-        CatalogFactory factory = catalog.getFactory();
-       
+        //add everything in a single batch, so that the catalog listings are published once 
+        //instead of being copied on each addition
+        final Exception[] error = new Exception[1];
+        catalog.batch(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    loadCatalog(catalog, xp, timer);
+                } catch (Exception e) {
+                    error[0] = e;
+                }
+            }
+        });
+        if (error[0] != null) {
+            throw error[0];
+        }
+        
+        xp.setUnwrapNulls(true);
+        catalog.resolve();
+        timer.phase("resolve");
+        return catalog;
+    }
+    
+    void loadCatalog(CatalogImpl catalog, XStreamPersister xp, LoadingTimer timer) 
+        throws Exception {
         //global styles
         loadStyles(resourceLoader.find( "styles" ), catalog, xp);
+        timer.phase("global styles");
 
         //workspaces, stores, and resources
         File workspaces = resourceLoader.find( "workspaces" );
@@ -332,177 +445,12 @@ public abstract class GeoServerLoader {
                 }
             }
             
+            timer.phase("workspaces");
+            
+            loadStores(workspaces, catalog, xp, timer);
+            
+            //load the layer groups for each workspace, now that all the layers are around
             for ( File wsd : list(workspaces, DirectoryFileFilter.INSTANCE ) ) {
-                
-                //load the stores for this workspace
-                for ( File sd : list(wsd, DirectoryFileFilter.INSTANCE) ) {
-                    File f = new File( sd, "datastore.xml");
-                    if ( f.exists() ) {
-                        //load as a datastore
-                        DataStoreInfo ds = null;
-                        try {    
-                            ds = depersist( xp, f, DataStoreInfo.class );
-                            catalog.add( ds );
-                            
-                            LOGGER.info( "Loaded data store '" + ds.getName() +"'");
-                            
-                            if (ds.isEnabled()) {
-                                //connect to the datastore to determine if we should disable it
-                                try {
-                                    ds.getDataStore(null);
-                                }
-                                catch( Throwable t ) {
-                                    LOGGER.warning( "Error connecting to '" + ds.getName() + "'. Disabling." );
-                                    LOGGER.log( Level.INFO, "", t );
-                                    
-                                    ds.setError(t);
-                                    ds.setEnabled(false);
-                                }
-                            }
-                        }
-                        catch( Exception e ) {
-                            LOGGER.log( Level.WARNING, "Failed to load data store '" + sd.getName() +"'", e);
-                            continue;
-                        }
-                        
-                        //load feature types
-                        for ( File ftd : list(sd,DirectoryFileFilter.INSTANCE) ) {
-                            f = new File( ftd, "featuretype.xml" );
-                            if( f.exists() ) {
-                                FeatureTypeInfo ft = null;
-                                try {
-                                    ft = depersist(xp,f,FeatureTypeInfo.class);
-                                    catalog.add(ft);
-                                }
-                                catch( Exception e ) {
-                                    LOGGER.log( Level.WARNING, "Failed to load feature type '" + ftd.getName() +"'", e);
-                                    continue;
-                                }
-                                
-                                LOGGER.info( "Loaded feature type '" + ds.getName() +"'");
-                                
-                                f = new File( ftd, "layer.xml" );
-                                if ( f.exists() ) {
-                                    try {
-                                        LayerInfo l = depersist(xp, f, LayerInfo.class );
-                                        catalog.add( l );
-                                        
-                                        LOGGER.info( "Loaded layer '" + l.getName() + "'" );
-                                    }
-                                    catch( Exception e ) {
-                                        LOGGER.log( Level.WARNING, "Failed to load layer for feature type '" + ft.getName() +"'", e);
-                                    }
-                                }
-                            }
-                            else {
-                                LOGGER.warning( "Ignoring feature type directory " + ftd.getAbsolutePath() );
-                            }
-                        }
-                    } else {
-                        //look for a coverage store
-                        f = new File( sd, "coveragestore.xml" );
-                        if ( f.exists() ) {
-                            CoverageStoreInfo cs = null;
-                            try {
-                                cs = depersist( xp, f, CoverageStoreInfo.class );
-                                catalog.add( cs );
-                            
-                                LOGGER.info( "Loaded coverage store '" + cs.getName() +"'");
-                            }
-                            catch( Exception e ) {
-                                LOGGER.log( Level.WARNING, "Failed to load coverage store '" + sd.getName() +"'", e);
-                                continue;
-                            }
-                            
-                            //load coverages
-                            for ( File cd : list(sd,DirectoryFileFilter.INSTANCE) ) {
-                                f = new File( cd, "coverage.xml" );
-                                if( f.exists() ) {
-                                    CoverageInfo c = null;
-                                    try {
-                                        c = depersist(xp,f,CoverageInfo.class);
-                                        catalog.add( c );
-                                        
-                                        LOGGER.info( "Loaded coverage '" + cs.getName() +"'");
-                                    }
-                                    catch( Exception e ) {
-                                        LOGGER.log( Level.WARNING, "Failed to load coverage '" + cd.getName() +"'", e);
-                                        continue;
-                                    }
-                                    
-                                    f = new File( cd, "layer.xml" );
-                                    if ( f.exists() ) {
-                                        try {
-                                            LayerInfo l = depersist(xp, f, LayerInfo.class );
-                                            catalog.add( l );
-                                            
-                                            LOGGER.info( "Loaded layer '" + l.getName() + "'" );
-                                        }
-                                        catch( Exception e ) {
-                                            LOGGER.log( Level.WARNING, "Failed to load layer coverage '" + c.getName() +"'", e);
-                                        }
-                                    }
-                                }
-                                else {
-                                    LOGGER.warning( "Ignoring coverage directory " + cd.getAbsolutePath() );
-                                }
-                            }
-                        } else {
-                            f = new File( sd, "wmsstore.xml" );
-                            if(f.exists()) {
-                                WMSStoreInfo wms = null;
-                                try {
-                                    wms = depersist( xp, f, WMSStoreInfo.class );
-                                    catalog.add( wms );
-                                
-                                    LOGGER.info( "Loaded wmsstore '" + wms.getName() +"'");
-                                } catch( Exception e ) {
-                                    LOGGER.log( Level.WARNING, "Failed to load wms store '" + sd.getName() +"'", e);
-                                    continue;
-                                }
-                                
-                                //load wms layers
-                                for ( File cd : list(sd,DirectoryFileFilter.INSTANCE) ) {
-                                    f = new File( cd, "wmslayer.xml" );
-                                    if( f.exists() ) {
-                                        WMSLayerInfo wl = null;
-                                        try {
-                                            wl = depersist(xp,f,WMSLayerInfo.class);
-                                            catalog.add( wl );
-                                            
-                                            LOGGER.info( "Loaded wms layer'" + wl.getName() +"'");
-                                        }
-                                        catch( Exception e ) {
-                                            LOGGER.log( Level.WARNING, "Failed to load wms layer '" + cd.getName() +"'", e);
-                                            continue;
-                                        }
-                                        
-                                        f = new File( cd, "layer.xml" );
-                                        if ( f.exists() ) {
-                                            try {
-                                                LayerInfo l = depersist(xp, f, LayerInfo.class );
-                                                catalog.add( l );
-                                                
-                                                LOGGER.info( "Loaded layer '" + l.getName() + "'" );
-                                            }
-                                            catch( Exception e ) {
-                                                LOGGER.log( Level.WARNING, "Failed to load cascaded wms layer '" + wl.getName() +"'", e);
-                                            }
-                                        }
-                                    }
-                                    else {
-                                        LOGGER.warning( "Ignoring coverage directory " + cd.getAbsolutePath() );
-                                    }
-                                }
-                            } else if(!isConfigDirectory(sd)) {
-                                LOGGER.warning( "Ignoring store directory '" + sd.getName() +  "'");
-                                continue;
-                            }
-                        }
-                    }
-                }
-
-                //load hte layer groups for this workspace
                 File layergroups = resourceLoader.find(wsd, "layergroups");
                 if (layergroups != null) {
                     loadLayerGroups(layergroups, catalog, xp);
@@ -520,9 +468,284 @@ public abstract class GeoServerLoader {
         if ( layergroups != null ) {
            loadLayerGroups(layergroups, catalog, xp);
         }
-        xp.setUnwrapNulls(true);
-        catalog.resolve();
-        return catalog;
+        timer.phase("layer groups");
+    }
+    
+    /**
+     * Loads the stores, resources and layers of all workspaces. 
+     * <p>
+     * The store directories are parsed in parallel when more than one loading thread is 
+     * configured (see {@link #LOADING_THREADS}), the parsed objects are then added to the 
+     * catalog from the calling thread, in directory name order, so that the resulting catalog
+     * does not depend on the parsing order.
+     * </p>
+     */
+    void loadStores(File workspaces, final Catalog catalog, XStreamPersister xp, 
+            LoadingTimer timer) throws Exception {
+        ExecutorService executor = null;
+        int threads = getLoadingThreads();
+        if (threads > 1) {
+            executor = Executors.newFixedThreadPool(threads, 
+                    new CustomizableThreadFactory("GeoServerLoader-"));
+            LOGGER.info("Loading stores using " + threads + " threads");
+        }
+        
+        try {
+            //parse all the store directories, in parallel if possible. The catalog is only read
+            // during parsing, resolving the namespaces, so this is safe to do concurrently
+            List<Callable<StoreContents>> parsers = new ArrayList<Callable<StoreContents>>();
+            final ThreadLocal<XStreamPersister> persisters = 
+                    persisterPerThread(executor, catalog, xp);
+            for ( File wsd : sorted(list(workspaces, DirectoryFileFilter.INSTANCE )) ) {
+                for ( final File sd : sorted(list(wsd, DirectoryFileFilter.INSTANCE)) ) {
+                    parsers.add(new Callable<StoreContents>() {
+    
+                        @Override
+                        public StoreContents call() throws Exception {
+                            return readStore(sd, persisters.get());
+                        }
+                    });
+                }
+            }
+            List<StoreContents> contents = execute(executor, parsers);
+            timer.phase("parsing " + parsers.size() + " store directories");
+            
+            //add the stores
+            for (Iterator<StoreContents> it = contents.iterator(); it.hasNext(); ) {
+                StoreContents sc = it.next();
+                if (sc == null) {
+                    it.remove();
+                    continue;
+                }
+                try {
+                    catalog.add( sc.store );
+                    LOGGER.info( "Loaded " + sc.type.store + " '" + sc.store.getName() +"'");
+                }
+                catch( Exception e ) {
+                    LOGGER.log( Level.WARNING, "Failed to load " + sc.type.store + " '" + 
+                            sc.directory.getName() +"'", e);
+                    it.remove();
+                }
+            }
+            timer.phase("adding stores");
+            
+            //connect to the enabled data stores to determine if we should disable them
+            List<Callable<Void>> connectors = new ArrayList<Callable<Void>>();
+            for (StoreContents sc : contents) {
+                if (sc.store instanceof DataStoreInfo && sc.store.isEnabled()) {
+                    final DataStoreInfo ds = (DataStoreInfo) sc.store;
+                    connectors.add(new Callable<Void>() {
+    
+                        @Override
+                        public Void call() throws Exception {
+                            try {
+                                ds.getDataStore(null);
+                            }
+                            catch( Throwable t ) {
+                                LOGGER.warning( "Error connecting to '" + ds.getName() + "'. Disabling." );
+                                LOGGER.log( Level.INFO, "", t );
+                                
+                                ds.setError(t);
+                                ds.setEnabled(false);
+                            }
+                            return null;
+                        }
+                    });
+                }
+            }
+            execute(executor, connectors);
+            timer.phase("connecting to " + connectors.size() + " data stores");
+            
+            //add resources and layers
+            int layers = 0;
+            for (StoreContents sc : contents) {
+                for (ResourceContents rc : sc.resources) {
+                    ResourceInfo r = rc.resource;
+                    try {
+                        //the store was not in the catalog yet at parse time
+                        r.setStore(resolveReference(catalog, r.getStore()));
+                        catalog.add( r );
+                        
+                        LOGGER.info( "Loaded " + sc.type.resource + " '" + r.getName() +"'");
+                    }
+                    catch( Exception e ) {
+                        LOGGER.log( Level.WARNING, "Failed to load " + sc.type.resource + " '" + 
+                                rc.directory.getName() +"'", e);
+                        continue;
+                    }
+                    
+                    LayerInfo l = rc.layer;
+                    if (l != null) {
+                        try {
+                            l.setResource(resolveReference(catalog, l.getResource()));
+                            catalog.add( l );
+                            layers++;
+                            
+                            LOGGER.info( "Loaded layer '" + l.getName() + "'" );
+                        }
+                        catch( Exception e ) {
+                            LOGGER.log( Level.WARNING, "Failed to load layer for " + 
+                                    sc.type.resource + " '" + r.getName() +"'", e);
+                        }
+                    }
+                }
+            }
+            timer.phase("adding resources and " + layers + " layers");
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Reads a store directory along with the resources and layers it contains, without adding
+     * anything to the catalog.
+     * 
+     * @return the store contents, or null if the directory is not a store, or the store could
+     *         not be read
+     */
+    StoreContents readStore(File sd, XStreamPersister xp) {
+        StoreType type = null;
+        for (StoreType t : StoreType.values()) {
+            if (new File(sd, t.storeFile).exists()) {
+                type = t;
+                break;
+            }
+        }
+        if (type == null) {
+            if (!isConfigDirectory(sd)) {
+                LOGGER.warning( "Ignoring store directory '" + sd.getName() +  "'");
+            }
+            return null;
+        }
+        
+        StoreContents sc = new StoreContents(sd, type);
+        try {
+            sc.store = depersist( xp, new File( sd, type.storeFile ), type.storeClass );
+        }
+        catch( Exception e ) {
+            LOGGER.log( Level.WARNING, "Failed to load " + type.store + " '" + sd.getName() +"'", e);
+            return null;
+        }
+        
+        for ( File rd : sorted(list(sd,DirectoryFileFilter.INSTANCE)) ) {
+            File f = new File( rd, type.resourceFile );
+            if( !f.exists() ) {
+                LOGGER.warning( "Ignoring " + type.resource + " directory " + rd.getAbsolutePath() );
+                continue;
+            }
+            
+            ResourceContents rc = new ResourceContents(rd);
+            try {
+                rc.resource = depersist( xp, f, type.resourceClass );
+            }
+            catch( Exception e ) {
+                LOGGER.log( Level.WARNING, "Failed to load " + type.resource + " '" + 
+                        rd.getName() +"'", e);
+                continue;
+            }
+            sc.resources.add(rc);
+            
+            f = new File( rd, "layer.xml" );
+            if ( f.exists() ) {
+                try {
+                    rc.layer = depersist( xp, f, LayerInfo.class );
+                }
+                catch( Exception e ) {
+                    LOGGER.log( Level.WARNING, "Failed to load layer for " + type.resource + 
+                            " '" + rc.resource.getName() +"'", e);
+                }
+            }
+        }
+        
+        return sc;
+    }
+    
+    /**
+     * Returns the number of threads used to parse the store directories
+     */
+    int getLoadingThreads() {
+        if (loadingThreads != null) {
+            return loadingThreads;
+        }
+        String value = GeoServerExtensions.getProperty(LOADING_THREADS);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch(NumberFormatException e) {
+                LOGGER.warning("Invalid value for " + LOADING_THREADS + ": " + value 
+                        + ", loading the catalog sequentially");
+            }
+        }
+        return 1;
+    }
+    
+    /**
+     * Returns true if the binary catalog snapshot should be used
+     */
+    boolean isCatalogSnapshotEnabled() {
+        if (catalogSnapshot != null) {
+            return catalogSnapshot;
+        }
+        return Boolean.valueOf(GeoServerExtensions.getProperty(CATALOG_SNAPSHOT));
+    }
+    
+    /**
+     * XStreamPersister is not thread safe, give each loading thread its own 
+     */
+    ThreadLocal<XStreamPersister> persisterPerThread(ExecutorService executor, 
+            final Catalog catalog, final XStreamPersister xp) {
+        if (executor == null) {
+            return new ThreadLocal<XStreamPersister>() {
+                protected XStreamPersister initialValue() {
+                    return xp;
+                }
+            };
+        } else {
+            return new ThreadLocal<XStreamPersister>() {
+                protected XStreamPersister initialValue() {
+                    XStreamPersister persister = xpf.createXMLPersister();
+                    persister.setCatalog(catalog);
+                    persister.setUnwrapNulls(false);
+                    return persister;
+                }
+            };
+        }
+    }
+
+    /**
+     * Runs the tasks, in parallel if an executor is available, and returns their results in 
+     * the same order as the tasks
+     */
+    <T> List<T> execute(ExecutorService executor, List<Callable<T>> tasks) throws Exception {
+        List<T> results = new ArrayList<T>(tasks.size());
+        if (executor == null) {
+            for (Callable<T> task : tasks) {
+                results.add(task.call());
+            }
+        } else {
+            for (Future<T> future : executor.invokeAll(tasks)) {
+                try {
+                    results.add(future.get());
+                } catch(ExecutionException e) {
+                    if (e.getCause() instanceof Exception) {
+                        throw (Exception) e.getCause();
+                    }
+                    throw e;
+                }
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Resolves a reference that could not be resolved at parse time, returning the reference 
+     * itself if it still cannot be resolved
+     */
+    <T> T resolveReference(Catalog catalog, T ref) {
+        T resolved = ResolvingProxy.resolve(catalog, ref);
+        return resolved != null ? (T) CatalogImpl.unwrap(resolved) : ref;
     }
     
     /**
@@ -745,8 +968,32 @@ public abstract class GeoServerLoader {
 
     /**
      * Helper method which uses xstream to depersist an object as xml from disk.
+     * <p>
+     * While reading the catalog with the snapshot enabled, the object is decoded from the 
+     * snapshot instead if the file did not change.
+     * </p>
      */
     <T> T depersist( XStreamPersister xp, File f , Class<T> clazz ) throws IOException {
+        CatalogSnapshot snapshot = this.snapshot;
+        if (snapshot != null) {
+            T obj = snapshot.load(xp, f, clazz);
+            if (obj != null) {
+                return obj;
+            }
+        }
+        
+        if (snapshot != null) {
+            // the contents are read upfront to checksum exactly what gets parsed
+            long lastModified = f.lastModified();
+            long length = f.length();
+            long readTime = System.currentTimeMillis();
+            byte[] contents = FileUtils.readFileToByteArray(f);
+            T obj = xp.load(new ByteArrayInputStream(contents), clazz);
+            snapshot.record(xp, f, lastModified, length, CatalogSnapshot.checksum(contents),
+                    readTime, obj);
+            return obj;
+        }
+
         BufferedInputStream in = new BufferedInputStream( new FileInputStream( f ) );
         try {
             return xp.load( in, clazz );
@@ -756,6 +1003,15 @@ public abstract class GeoServerLoader {
         }
     }
 
+    /**
+     * Sorts files by name, to get a repeatable loading order
+     */
+    List<File> sorted(Collection<File> files) {
+        List<File> result = new ArrayList<File>(files);
+        Collections.sort(result);
+        return result;
+    }
+
     /**
      * Helper method for listing files in a directory.
      */
@@ -776,4 +1032,80 @@ public abstract class GeoServerLoader {
         //dispose
         geoserver.dispose();
     }
+    
+    /**
+     * The store flavours found in a workspace directory, along with the files and classes of
+     * their configuration
+     */
+    enum StoreType {
+        DATA("datastore.xml", DataStoreInfo.class, "data store", "featuretype.xml", 
+                FeatureTypeInfo.class, "feature type"),
+        COVERAGE("coveragestore.xml", CoverageStoreInfo.class, "coverage store", "coverage.xml", 
+                CoverageInfo.class, "coverage"),
+        WMS("wmsstore.xml", WMSStoreInfo.class, "wms store", "wmslayer.xml", 
+                WMSLayerInfo.class, "wms layer");
+        
+        final String storeFile;
+        final Class<? extends StoreInfo> storeClass;
+        final String store;
+        final String resourceFile;
+        final Class<? extends ResourceInfo> resourceClass;
+        final String resource;
+        
+        StoreType(String storeFile, Class<? extends StoreInfo> storeClass, String store,
+                String resourceFile, Class<? extends ResourceInfo> resourceClass, String resource) {
+            this.storeFile = storeFile;
+            this.storeClass = storeClass;
+            this.store = store;
+            this.resourceFile = resourceFile;
+            this.resourceClass = resourceClass;
+            this.resource = resource;
+        }
+    }
+    
+    /**
+     * A store read from disk, along with its resources, not yet added to the catalog
+     */
+    static class StoreContents {
+        final File directory;
+        final StoreType type;
+        StoreInfo store;
+        List<ResourceContents> resources = new ArrayList<ResourceContents>();
+        
+        StoreContents(File directory, StoreType type) {
+            this.directory = directory;
+            this.type = type;
+        }
+    }
+    
+    /**
+     * A resource read from disk, along with its layer, not yet added to the catalog
+     */
+    static class ResourceContents {
+        final File directory;
+        ResourceInfo resource;
+        LayerInfo layer;
+        
+        ResourceContents(File directory) {
+            this.directory = directory;
+        }
+    }
+    
+    /**
+     * Keeps track of the time spent in each catalog loading phase, and logs it
+     */
+    static class LoadingTimer {
+        final long start = System.currentTimeMillis();
+        long last = start;
+        
+        void phase(String name) {
+            long now = System.currentTimeMillis();
+            LOGGER.info("Catalog loading, " + name + " took " + (now - last) + "ms");
+            last = now;
+        }
+        
+        void done() {
+            LOGGER.info("Catalog loaded in " + (System.currentTimeMillis() - start) + "ms");
+        }
+    }
 }
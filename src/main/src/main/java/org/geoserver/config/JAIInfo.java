@@ -18,7 +18,7 @@ import javax.media.jai.TileCache;
  */
 public interface JAIInfo extends Cloneable, Serializable {
     
-    static enum PngEncoderType { JDK, NATIVE, PNGJ }; 
+    static enum PngEncoderType { JDK, NATIVE, PNGJ, PARALLEL }; 
 
     /**
      * Flag controlling image interpolation.
@@ -0,0 +1,73 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.ows;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.geoserver.catalog.ReadOnlyCatalogAccess;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.platform.Service;
+import org.geoserver.platform.ServiceException;
+
+/**
+ * Dispatcher callback enabling {@link ReadOnlyCatalogAccess read only catalog access} for the
+ * requests known not to modify the catalog objects they look up.
+ * <p>
+ * The requests are listed in the {@value #READONLY_REQUESTS} system property, environment
+ * variable or servlet context parameter, as a comma separated list of service and request
+ * names, such as <code>WMS.GetMap,WMS.GetFeatureInfo</code>. A service name alone covers all
+ * the requests of the service. By default no request is read only.
+ * </p>
+ */
+public class ReadOnlyCatalogCallback extends AbstractDispatcherCallback {
+
+    public static final String READONLY_REQUESTS = "GEOSERVER_READONLY_CATALOG_REQUESTS";
+
+    /**
+     * The read only services and requests, upper case
+     */
+    Set<String> requests;
+
+    public ReadOnlyCatalogCallback() {
+        this(GeoServerExtensions.getProperty(READONLY_REQUESTS));
+    }
+
+    ReadOnlyCatalogCallback(String requests) {
+        if (requests == null || requests.trim().isEmpty()) {
+            this.requests = Collections.emptySet();
+        } else {
+            this.requests = new HashSet<String>();
+            for (String request : requests.split(",")) {
+                if (!request.trim().isEmpty()) {
+                    this.requests.add(request.trim().toUpperCase());
+                }
+            }
+        }
+    }
+
+    @Override
+    public Service serviceDispatched(Request request, Service service) throws ServiceException {
+        if (!requests.isEmpty() && isReadOnly(service.getId(), request.getRequest())) {
+            ReadOnlyCatalogAccess.set(true);
+        }
+        return service;
+    }
+
+    boolean isReadOnly(String service, String request) {
+        if (service == null) {
+            return false;
+        }
+        service = service.toUpperCase();
+        return requests.contains(service)
+                || (request != null && requests.contains(service + "." + request.toUpperCase()));
+    }
+
+    @Override
+    public void finished(Request request) {
+        ReadOnlyCatalogAccess.remove();
+    }
+}
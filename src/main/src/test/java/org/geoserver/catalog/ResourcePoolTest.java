@@ -15,7 +15,17 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.media.jai.PlanarImage;
 import javax.xml.namespace.QName;
@@ -39,16 +49,18 @@ import org.geotools.data.DataAccess;
 import org.geotools.data.DataUtilities;
 import org.geotools.factory.GeoTools;
 import org.geotools.feature.NameImpl;
+import org.geotools.referencing.crs.DefaultEngineeringCRS;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
 import org.geotools.resources.image.ImageUtilities;
 import org.geotools.styling.PolygonSymbolizer;
 import org.geotools.styling.Style;
-import org.geotools.util.SoftValueHashMap;
 import org.geotools.util.Version;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.opengis.coverage.grid.GridCoverageReader;
 import org.opengis.feature.Feature;
 import org.opengis.feature.type.FeatureType;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.style.ExternalGraphic;
 import org.w3c.dom.Element;
 
@@ -223,9 +235,291 @@ public class ResourcePoolTest extends GeoServerSystemTestSupport {
         Catalog catalog = getCatalog();
         // we actually keep two versions of the feature type in the cache, so we need it 
         // twice as big
-        assertEquals(400, ((SoftValueHashMap)catalog.getResourcePool().getFeatureTypeCache()).getHardReferencesCount());
+        assertEquals(400, ((ResourceCacheMXBean)catalog.getResourcePool().getFeatureTypeCache()).getHardReferences());
+    }
+
+    ResourceCacheMXBean getCache(ResourcePool pool, String name) {
+        for (ResourceCacheMXBean cache : pool.getCaches()) {
+            if (cache.getName().equals(name)) {
+                return cache;
+            }
+        }
+        return null;
+    }
+
+    @Test public void testCacheStatistics() throws Exception {
+        ResourcePool pool = getCatalog().getResourcePool();
+        assertEquals(8, pool.getCaches().size());
+
+        StyleInfo info = getCatalog().getStyleByName("relative");
+        pool.clear(info);
+        ResourceCacheMXBean styles = getCache(pool, "styles");
+        long hits = styles.getHitCount();
+        long misses = styles.getMissCount();
+
+        pool.getStyle(info);
+        assertTrue(styles.getMissCount() > misses);
+        assertEquals(hits, styles.getHitCount());
+        pool.getStyle(info);
+        assertEquals(hits + 1, styles.getHitCount());
+        assertTrue(styles.getSize() > 0);
+    }
+
+    @Test public void testBoundedDataStoreCache() throws Exception {
+        final List<String> disposed = new ArrayList<String>();
+        System.setProperty("GEOSERVER_DATA_STORES_CACHE_MAX_ENTRIES", "1");
+        ResourcePool pool;
+        try {
+            pool = new ResourcePool() {
+                {
+                    dataStoreCache = new DataStoreCache() {
+                        @Override
+                        protected void dispose(String id, DataAccess dataStore) {
+                            disposed.add(id);
+                            super.dispose(id, dataStore);
+                        }
+                    };
+                }
+            };
+            pool.catalog = getCatalog();
+        } finally {
+            System.clearProperty("GEOSERVER_DATA_STORES_CACHE_MAX_ENTRIES");
+        }
+
+        List<DataStoreInfo> stores = getCatalog().getDataStores();
+        ResourceCacheMXBean cache = getCache(pool, "dataStores");
+        assertEquals(1, cache.getMaxEntries());
+        try {
+            // the least recently used store gets evicted and disposed
+            assertNotNull(pool.getDataStore(stores.get(0)));
+            assertNotNull(pool.getDataStore(stores.get(1)));
+            assertEquals(1, cache.getSize());
+            assertEquals(1, cache.getEvictionCount());
+            assertEquals(Arrays.asList(stores.get(0).getId()), disposed);
+        } finally {
+            pool.dispose();
+        }
+        assertEquals(2, disposed.size());
     }
     
+    @Test public void testDefaultCacheReferences() throws Exception {
+        ResourcePool pool = new ResourcePool();
+        assertEquals(100, getCache(pool, "dataStores").getHardReferences());
+        assertEquals(100, getCache(pool, "coverageReaders").getHardReferences());
+        assertEquals(100, getCache(pool, "wmsServers").getHardReferences());
+        assertEquals(-1, getCache(pool, "dataStores").getMaxEntries());
+        assertEquals(-1, getCache(pool, "dataStores").getExpiry());
+        // styles and crs are never softly referenced
+        assertEquals(-1, getCache(pool, "styles").getHardReferences());
+        assertEquals(-1, getCache(pool, "crs").getHardReferences());
+
+        System.setProperty("GEOSERVER_DATA_STORES_CACHE_MAX_WEIGHT", "10");
+        try {
+            pool = new ResourcePool();
+        } finally {
+            System.clearProperty("GEOSERVER_DATA_STORES_CACHE_MAX_WEIGHT");
+        }
+        assertEquals(-1, getCache(pool, "dataStores").getHardReferences());
+        assertEquals(10, getCache(pool, "dataStores").getMaxWeight());
+    }
+
+    @Test public void testSoftOverflowNotDisposed() throws Exception {
+        final List<String> disposed = new ArrayList<String>();
+        ResourcePool pool = new ResourcePool();
+        ResourcePool.CatalogResourceCache<String, String> cache = pool.new CatalogResourceCache<String, String>(
+                "test", 1) {
+            @Override
+            protected void dispose(String key, String value) {
+                disposed.add(key);
+            }
+        };
+
+        // past the hard references the older entry is kept softly, not disposed
+        cache.put("a", "A");
+        cache.put("b", "B");
+        assertTrue(disposed.isEmpty());
+        assertEquals(2, cache.getSize());
+        assertTrue(cache.containsKey("a"));
+        assertEquals(new HashSet<String>(Arrays.asList("a", "b")), cache.keySet());
+
+        // and found again when used
+        assertEquals("A", cache.get("a"));
+        assertEquals("B", cache.get("b"));
+        assertTrue(disposed.isEmpty());
+
+        // removed entries are disposed, in either tier
+        cache.remove("a");
+        assertEquals(Arrays.asList("a"), disposed);
+        cache.put("c", "C");
+        cache.clear();
+        assertEquals(3, disposed.size());
+        assertEquals(0, cache.getSize());
+    }
+    
+    @Test public void testSingleFlightLoading() throws Exception {
+        final ResourcePool pool = new ResourcePool();
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Callable<CoordinateReferenceSystem> slowLoader = new Callable<CoordinateReferenceSystem>() {
+            @Override
+            public CoordinateReferenceSystem call() throws Exception {
+                loads.incrementAndGet();
+                started.countDown();
+                release.await();
+                return DefaultGeographicCRS.WGS84;
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<CoordinateReferenceSystem>> results = new ArrayList<Future<CoordinateReferenceSystem>>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(new Callable<CoordinateReferenceSystem>() {
+                    @Override
+                    public CoordinateReferenceSystem call() throws Exception {
+                        return pool.load(pool.crsCache, "slow", slowLoader);
+                    }
+                }));
+            }
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            // another key is not blocked by the pending load
+            CoordinateReferenceSystem other = pool.load(pool.crsCache, "other",
+                    new Callable<CoordinateReferenceSystem>() {
+                        @Override
+                        public CoordinateReferenceSystem call() throws Exception {
+                            return DefaultEngineeringCRS.GENERIC_2D;
+                        }
+                    });
+            assertSame(DefaultEngineeringCRS.GENERIC_2D, other);
+
+            release.countDown();
+            for (Future<CoordinateReferenceSystem> result : results) {
+                assertSame(DefaultGeographicCRS.WGS84, result.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+        } finally {
+            release.countDown();
+            executor.shutdown();
+            pool.dispose();
+        }
+    }
+
+    /**
+     * Wraps a cache loader, counting its calls and holding them until released
+     */
+    static class BlockingLoader<V> implements Callable<V> {
+        final Callable<? extends V> delegate;
+
+        final AtomicInteger loads;
+
+        final CountDownLatch started;
+
+        final CountDownLatch release;
+
+        BlockingLoader(Callable<? extends V> delegate, AtomicInteger loads,
+                CountDownLatch started, CountDownLatch release) {
+            this.delegate = delegate;
+            this.loads = loads;
+            this.started = started;
+            this.release = release;
+        }
+
+        @Override
+        public V call() throws Exception {
+            loads.incrementAndGet();
+            started.countDown();
+            release.await();
+            return delegate.call();
+        }
+    }
+
+    @Test public void testSingleFlightStoreLoading() throws Exception {
+        final AtomicInteger storeLoads = new AtomicInteger();
+        final AtomicInteger readerLoads = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(2);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ResourcePool pool = new ResourcePool() {
+            {
+                dataStoreCache = new DataStoreCache() {
+                    @Override
+                    public DataAccess get(String key, Callable<? extends DataAccess> loader)
+                            throws Exception {
+                        return super.get(key, new BlockingLoader<DataAccess>(loader,
+                                storeLoads, started, release));
+                    }
+                };
+                coverageReaderCache = new CoverageReaderCache() {
+                    @Override
+                    public GridCoverageReader get(String key,
+                            Callable<? extends GridCoverageReader> loader) throws Exception {
+                        return super.get(key, new BlockingLoader<GridCoverageReader>(loader,
+                                readerLoads, started, release));
+                    }
+                };
+            }
+        };
+        pool.catalog = getCatalog();
+        final DataStoreInfo store = getCatalog().getDataStores().get(0);
+        final CoverageStoreInfo coverageStore = getCatalog().getCoverageByName(
+                getLayerId(MockData.TASMANIA_DEM)).getStore();
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Object>> results = new ArrayList<Future<Object>>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        return pool.getDataStore(store);
+                    }
+                }));
+                results.add(executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        return pool.getGridCoverageReader(coverageStore, null);
+                    }
+                }));
+            }
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            release.countDown();
+
+            // every caller gets the same instance, created only once
+            Object dataStore = results.get(0).get(10, TimeUnit.SECONDS);
+            Object reader = results.get(1).get(10, TimeUnit.SECONDS);
+            assertTrue(dataStore instanceof DataAccess);
+            assertTrue(reader instanceof GridCoverageReader);
+            for (int i = 0; i < results.size(); i += 2) {
+                assertSame(dataStore, results.get(i).get(10, TimeUnit.SECONDS));
+                assertSame(reader, results.get(i + 1).get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, storeLoads.get());
+            assertEquals(1, readerLoads.get());
+        } finally {
+            release.countDown();
+            executor.shutdown();
+            pool.dispose();
+        }
+    }
+
+    @Test public void testLoadFailure() throws Exception {
+        ResourcePool pool = new ResourcePool();
+        try {
+            pool.load(pool.crsCache, "failing", new Callable<CoordinateReferenceSystem>() {
+                @Override
+                public CoordinateReferenceSystem call() throws Exception {
+                    throw new IOException("failed");
+                }
+            });
+            fail("The load failure should have been propagated");
+        } catch (IOException e) {
+            assertEquals("failed", e.getMessage());
+        }
+        // failures are not cached
+        assertFalse(pool.crsCache.containsKey("failing"));
+    }
+
     @Test public void testDropCoverageStore() throws Exception {
         // build the store
         Catalog cat = getCatalog();
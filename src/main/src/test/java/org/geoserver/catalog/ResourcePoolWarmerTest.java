@@ -0,0 +1,83 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.geoserver.data.test.MockData;
+import org.geoserver.test.GeoServerSystemTestSupport;
+import org.junit.Test;
+
+public class ResourcePoolWarmerTest extends GeoServerSystemTestSupport {
+
+    @Test
+    public void testWarmupConfiguredLayers() throws Exception {
+        Catalog catalog = getCatalog();
+        catalog.getResourcePool().dispose();
+
+        ResourcePoolWarmer warmer = new ResourcePoolWarmer(catalog);
+        String layers = getLayerId(MockData.BUILDINGS) + ", notALayer ,"
+                + getLayerId(MockData.BRIDGES);
+        warmer.warmup(layers, Collections.<WarmupLayerSource> emptyList(), 100, 2);
+
+        assertEquals(2, warmer.getTotal());
+        assertEquals(2, warmer.getWarmed());
+        assertEquals(0, warmer.getFailed());
+        ResourcePool pool = catalog.getResourcePool();
+        FeatureTypeInfo buildings = catalog.getFeatureTypeByName(getLayerId(MockData.BUILDINGS));
+        assertTrue(pool.getDataStoreCache().containsKey(buildings.getStore().getId()));
+        assertFalse(pool.getStyleCache().isEmpty());
+    }
+
+    @Test
+    public void testWarmupFromSources() throws Exception {
+        ResourcePoolWarmer warmer = new ResourcePoolWarmer(getCatalog());
+        WarmupLayerSource source = new WarmupLayerSource() {
+            @Override
+            public boolean isEnabled() {
+                return true;
+            }
+
+            @Override
+            public List<String> getLayers(int max) throws Exception {
+                return Arrays.asList(getLayerId(MockData.LAKES), getLayerId(MockData.FORESTS),
+                        getLayerId(MockData.PONDS));
+            }
+        };
+        // the configured layers come first, the total is capped
+        warmer.warmup(getLayerId(MockData.PONDS), Arrays.asList(source), 2, 1);
+        assertEquals(2, warmer.getTotal());
+        assertEquals(2, warmer.getWarmed());
+    }
+
+    @Test
+    public void testStartOnlyWhenConfigured() throws Exception {
+        ResourcePoolWarmer warmer = new ResourcePoolWarmer(getCatalog());
+        warmer.initialize(getGeoServer());
+        assertNull(warmer.thread);
+
+        try {
+            // no existing layer, nothing to do
+            System.setProperty(ResourcePoolWarmer.WARMUP_LAYERS, "notALayer");
+            warmer.initialize(getGeoServer());
+            assertNull(warmer.thread);
+
+            // an invalid setting falls back on the default
+            System.setProperty(ResourcePoolWarmer.WARMUP_LAYERS, getLayerId(MockData.BUILDINGS));
+            System.setProperty(ResourcePoolWarmer.WARMUP_THREADS, "four");
+            warmer.initialize(getGeoServer());
+            assertNotNull(warmer.thread);
+            warmer.thread.join(10000);
+            assertEquals(1, warmer.getWarmed());
+        } finally {
+            System.clearProperty(ResourcePoolWarmer.WARMUP_LAYERS);
+            System.clearProperty(ResourcePoolWarmer.WARMUP_THREADS);
+        }
+    }
+}
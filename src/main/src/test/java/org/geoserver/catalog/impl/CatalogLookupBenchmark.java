@@ -0,0 +1,142 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog.impl;
+
+import java.util.Random;
+
+import org.geoserver.catalog.CatalogFactory;
+import org.geoserver.catalog.Predicates;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.util.CloseableIterator;
+import org.opengis.filter.Filter;
+
+/**
+ * Simple benchmark measuring the cost of the most common catalog lookups as the catalog grows.
+ * With the indexed {@link DefaultCatalogFacade} the time per lookup should stay flat regardless
+ * of the number of layers. The cost of listing the first page of layers sorted by name, as the
+ * layer list pages do, is measured as well.
+ * <p>
+ * Not a unit test, run it by hand with <code>main</code>, optionally passing the catalog sizes
+ * to test as arguments.
+ * </p>
+ */
+public class CatalogLookupBenchmark {
+
+    static final int LOOKUPS = 200000;
+
+    static final int PAGES = 2000;
+
+    public static void main(String[] args) {
+        int[] sizes = new int[] { 1000, 10000, 40000 };
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        for (int size : sizes) {
+            CatalogImpl catalog = build(size);
+            // warm up
+            lookup(catalog, size, LOOKUPS);
+
+            long start = System.nanoTime();
+            lookup(catalog, size, LOOKUPS);
+            long elapsed = System.nanoTime() - start;
+            System.out.println(String.format("%8d layers: %8.1f ns per lookup", size,
+                    (double) elapsed / LOOKUPS));
+
+            page(catalog, PAGES);
+            start = System.nanoTime();
+            page(catalog, PAGES);
+            elapsed = System.nanoTime() - start;
+            System.out.println(String.format("%8d layers: %8.1f us per page", size,
+                    (double) elapsed / PAGES / 1000));
+        }
+    }
+
+    static void page(CatalogImpl catalog, int pages) {
+        for (int i = 0; i < pages; i++) {
+            CloseableIterator<LayerInfo> it = catalog.list(LayerInfo.class, Filter.INCLUDE,
+                    i % 10 * 25, 25, Predicates.asc("name"));
+            try {
+                int count = 0;
+                while (it.hasNext()) {
+                    it.next();
+                    count++;
+                }
+                if (count != 25) {
+                    throw new IllegalStateException("Expected a full page, got " + count);
+                }
+            } finally {
+                it.close();
+            }
+        }
+    }
+
+    static void lookup(CatalogImpl catalog, int size, int lookups) {
+        Random random = new Random(size);
+        for (int i = 0; i < lookups; i++) {
+            int idx = random.nextInt(size);
+            // same calls a GetMap does to resolve a layer, plus the id and style lookups
+            LayerInfo layer = catalog.getLayerByName("ws:layer" + idx);
+            if (layer == null || catalog.getLayer(layer.getId()) == null
+                    || catalog.getStyleByName("style" + (idx % 100)) == null) {
+                throw new IllegalStateException("Could not find layer " + idx);
+            }
+        }
+    }
+
+    static CatalogImpl build(int size) {
+        CatalogImpl catalog = new CatalogImpl();
+        CatalogFactory factory = catalog.getFactory();
+
+        NamespaceInfo ns = factory.createNamespace();
+        ns.setPrefix("ws");
+        ns.setURI("http://ws");
+        catalog.add(ns);
+
+        WorkspaceInfo ws = factory.createWorkspace();
+        ws.setName("ws");
+        catalog.add(ws);
+
+        DataStoreInfo ds = factory.createDataStore();
+        ds.setName("ds");
+        ds.setWorkspace(ws);
+        ds.setEnabled(true);
+        catalog.add(ds);
+
+        StyleInfo[] styles = new StyleInfo[100];
+        for (int i = 0; i < styles.length; i++) {
+            styles[i] = factory.createStyle();
+            styles[i].setName("style" + i);
+            styles[i].setFilename("style" + i + ".sld");
+            catalog.add(styles[i]);
+        }
+
+        for (int i = 0; i < size; i++) {
+            FeatureTypeInfo ft = factory.createFeatureType();
+            ft.setName("layer" + i);
+            ft.setNativeName("layer" + i);
+            ft.setStore(ds);
+            ft.setNamespace(ns);
+            ft.setEnabled(true);
+            catalog.add(ft);
+
+            LayerInfo layer = factory.createLayer();
+            layer.setResource(ft);
+            layer.setDefaultStyle(styles[i % styles.length]);
+            layer.setEnabled(true);
+            catalog.add(layer);
+        }
+
+        return catalog;
+    }
+}
@@ -0,0 +1,395 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog.impl;
+
+import static org.geoserver.catalog.Predicates.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogFactory;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.LayerGroupInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.PublishedInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.util.CloseableIterator;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.filter.Filter;
+import org.opengis.filter.sort.SortBy;
+
+/**
+ * Checks the lookup indexes of {@link DefaultCatalogFacade} stay consistent with the catalog
+ * contents across add, save and remove, and that list queries using them return the same
+ * results as a full scan would
+ */
+public class DefaultCatalogFacadeTest {
+
+    CatalogImpl catalog;
+
+    DataStoreInfo ds;
+
+    NamespaceInfo ns;
+
+    StyleInfo s1;
+
+    StyleInfo s2;
+
+    @Before
+    public void setUp() {
+        catalog = new CatalogImpl();
+        CatalogFactory factory = catalog.getFactory();
+
+        ns = factory.createNamespace();
+        ns.setPrefix("wsName");
+        ns.setURI("nsURI");
+        catalog.add(ns);
+
+        WorkspaceInfo ws = factory.createWorkspace();
+        ws.setName("wsName");
+        catalog.add(ws);
+
+        ds = factory.createDataStore();
+        ds.setName("dsName");
+        ds.setWorkspace(ws);
+        ds.setEnabled(true);
+        catalog.add(ds);
+
+        s1 = factory.createStyle();
+        s1.setName("s1");
+        s1.setFilename("s1.sld");
+        catalog.add(s1);
+
+        s2 = factory.createStyle();
+        s2.setName("s2");
+        s2.setFilename("s2.sld");
+        catalog.add(s2);
+    }
+
+    LayerInfo addLayer(String name, StyleInfo style) {
+        CatalogFactory factory = catalog.getFactory();
+        FeatureTypeInfo ft = factory.createFeatureType();
+        ft.setName(name);
+        ft.setNativeName(name);
+        ft.setStore(ds);
+        ft.setNamespace(ns);
+        ft.setEnabled(true);
+        catalog.add(ft);
+
+        LayerInfo layer = factory.createLayer();
+        layer.setResource(ft);
+        layer.setDefaultStyle(style);
+        layer.setEnabled(true);
+        catalog.add(layer);
+        return layer;
+    }
+
+    @Test
+    public void testLookupById() {
+        LayerInfo layer = addLayer("foo", s1);
+
+        assertEquals(layer, catalog.getLayer(layer.getId()));
+        assertEquals(layer.getResource(),
+                catalog.getResource(layer.getResource().getId(), ResourceInfo.class));
+        assertEquals(layer.getResource(),
+                catalog.getResource(layer.getResource().getId(), FeatureTypeInfo.class));
+        assertEquals(ds, catalog.getDataStore(ds.getId()));
+        assertEquals(s1, catalog.getStyle(s1.getId()));
+        // wrong type
+        assertNull(catalog.getCoverage(layer.getResource().getId()));
+        assertNull(catalog.getCoverageStore(ds.getId()));
+        assertNull(catalog.getLayer("notThere"));
+    }
+
+    @Test
+    public void testRenameResource() {
+        LayerInfo layer = addLayer("foo", s1);
+        assertNotNull(catalog.getLayerByName("foo"));
+        assertNotNull(catalog.getLayerByName("wsName:foo"));
+
+        FeatureTypeInfo ft = catalog.getFeatureTypeByName("foo");
+        ft.setName("bar");
+        catalog.save(ft);
+
+        assertNull(catalog.getFeatureTypeByName("foo"));
+        assertNull(catalog.getLayerByName("foo"));
+        assertNotNull(catalog.getFeatureTypeByName("bar"));
+        assertEquals(layer.getId(), catalog.getLayerByName("bar").getId());
+        assertEquals(layer.getId(), catalog.getLayerByName("wsName:bar").getId());
+    }
+
+    @Test
+    public void testRenameThroughLayer() {
+        addLayer("foo", s1);
+
+        LayerInfo layer = catalog.getLayerByName("foo");
+        layer.setName("bar");
+        catalog.save(layer);
+
+        assertNull(catalog.getLayerByName("foo"));
+        assertNotNull(catalog.getLayerByName("bar"));
+        assertNotNull(catalog.getFeatureTypeByName("bar"));
+    }
+
+    @Test
+    public void testLayersByStyle() {
+        LayerInfo layer = addLayer("foo", s1);
+        assertEquals(1, catalog.getLayers(s1).size());
+        assertEquals(0, catalog.getLayers(s2).size());
+
+        layer = catalog.getLayer(layer.getId());
+        layer.setDefaultStyle(s2);
+        layer.getStyles().add(s1);
+        catalog.save(layer);
+        assertEquals(1, catalog.getLayers(s1).size());
+        assertEquals(1, catalog.getLayers(s2).size());
+
+        layer = catalog.getLayer(layer.getId());
+        layer.getStyles().clear();
+        catalog.save(layer);
+        assertEquals(0, catalog.getLayers(s1).size());
+        assertEquals(1, catalog.getLayers(s2).size());
+    }
+
+    @Test
+    public void testRemove() {
+        LayerInfo layer = addLayer("foo", s1);
+        ResourceInfo resource = layer.getResource();
+
+        catalog.remove(layer);
+        assertNull(catalog.getLayer(layer.getId()));
+        assertNull(catalog.getLayerByName("foo"));
+        assertTrue(catalog.getLayers(resource).isEmpty());
+        assertTrue(catalog.getLayers(s1).isEmpty());
+
+        catalog.remove(resource);
+        assertNull(catalog.getResource(resource.getId(), ResourceInfo.class));
+        assertNull(catalog.getFeatureTypeByName("foo"));
+    }
+
+    @Test
+    public void testRenameStyleAndLayerGroup() {
+        LayerInfo layer = addLayer("foo", s1);
+        LayerGroupInfo lg = catalog.getFactory().createLayerGroup();
+        lg.setName("group");
+        lg.getLayers().add(layer);
+        lg.getStyles().add(null);
+        catalog.add(lg);
+
+        StyleInfo style = catalog.getStyleByName("s1");
+        style.setName("s3");
+        catalog.save(style);
+        assertNull(catalog.getStyleByName("s1"));
+        assertEquals(s1.getId(), catalog.getStyleByName("s3").getId());
+        // the style to layer index does not depend on the style name
+        assertEquals(1, catalog.getLayers(catalog.getStyleByName("s3")).size());
+
+        LayerGroupInfo group = catalog.getLayerGroupByName("group");
+        group.setName("group2");
+        catalog.save(group);
+        assertNull(catalog.getLayerGroupByName("group"));
+        assertEquals(lg.getId(), catalog.getLayerGroupByName("group2").getId());
+    }
+
+    @Test
+    public void testSyncTo() {
+        LayerInfo layer = addLayer("foo", s1);
+
+        CatalogImpl other = new CatalogImpl();
+        other.sync(catalog);
+        assertEquals(layer.getId(), other.getLayerByName("foo").getId());
+        assertEquals(s1.getId(), other.getStyleByName("s1").getId());
+
+        Catalog same = catalog;
+        same.getFacade().resolve();
+        assertEquals(layer.getId(), same.getLayerByName("foo").getId());
+    }
+
+    @Test
+    public void testDispose() {
+        LayerInfo layer = addLayer("foo", s1);
+        catalog.getFacade().dispose();
+        assertNull(catalog.getLayer(layer.getId()));
+        assertNull(catalog.getLayerByName("foo"));
+        List<LayerInfo> layers = catalog.getLayers();
+        assertTrue(layers.isEmpty());
+    }
+
+    List<String> names(Filter filter, Integer offset, Integer count, SortBy sortBy) {
+        List<String> names = new ArrayList<String>();
+        CloseableIterator<LayerInfo> it = catalog.list(LayerInfo.class, filter, offset, count,
+                sortBy);
+        try {
+            while (it.hasNext()) {
+                LayerInfo layer = it.next();
+                // objects are still handed out wrapped in a modification proxy
+                assertNotNull(ModificationProxy.handler(layer));
+                names.add(layer.getName());
+            }
+        } finally {
+            it.close();
+        }
+        return names;
+    }
+
+    @Test
+    public void testListSortedByName() {
+        addLayer("c", s1);
+        addLayer("a", s2);
+        addLayer("b", s1);
+
+        assertEquals(Arrays.asList("a", "b", "c"), names(acceptAll(), null, null, asc("name")));
+        assertEquals(Arrays.asList("c", "b", "a"), names(acceptAll(), null, null, desc("name")));
+        assertEquals(Arrays.asList("b"), names(acceptAll(), 1, 1, asc("name")));
+        assertEquals(Arrays.asList("a", "b"), names(acceptAll(), 0, 2, asc("name")));
+        // indexed filter, sorted in memory
+        assertEquals(Arrays.asList("b", "c"),
+                names(equal("defaultStyle.id", s1.getId()), null, null, asc("name")));
+        assertEquals(Arrays.asList("c"),
+                names(equal("defaultStyle.id", s1.getId()), 0, 1, desc("name")));
+
+        // renames move the layer in the name order
+        FeatureTypeInfo ft = catalog.getFeatureTypeByName("a");
+        ft.setName("d");
+        catalog.save(ft);
+        assertEquals(Arrays.asList("b", "c", "d"), names(acceptAll(), null, null, asc("name")));
+    }
+
+    @Test
+    public void testListByNamePrefix() {
+        addLayer("foo", s1);
+        addLayer("fob", s1);
+        addLayer("bar", s1);
+
+        Filter startsWithFo = factory.like(factory.property("name"), "fo*", "*", "?", "\\", true);
+        assertEquals(Arrays.asList("fob", "foo"), names(startsWithFo, null, null, asc("name")));
+        assertEquals(Arrays.asList("foo", "fob"), names(startsWithFo, null, null, desc("name")));
+        assertEquals(2, catalog.count(ResourceInfo.class, startsWithFo));
+        // case insensitive, can't use the name index
+        assertEquals(2, catalog.count(LayerInfo.class, contains("name", "FO")));
+        assertEquals(Arrays.asList("foo"),
+                names(and(startsWithFo, equal("name", "foo")), null, null, asc("name")));
+    }
+
+    @Test
+    public void testListByIndexedProperties() {
+        LayerInfo layer = addLayer("foo", s1);
+        addLayer("bar", s2);
+
+        assertEquals(1, catalog.count(LayerInfo.class, equal("id", layer.getId())));
+        assertEquals(1, catalog.count(LayerInfo.class, equal("name", "foo")));
+        assertEquals(0, catalog.count(LayerInfo.class, equal("name", "notThere")));
+        assertEquals(1, catalog.count(LayerInfo.class,
+                and(equal("resource.id", layer.getResource().getId()), equal("enabled", true))));
+        assertEquals(1, catalog.count(PublishedInfo.class, equal("name", "foo")));
+        assertEquals(2, catalog.count(ResourceInfo.class, equal("store.id", ds.getId())));
+        assertEquals(1, catalog.count(StoreInfo.class, equal("workspace.name", "wsName")));
+        assertEquals(0, catalog.count(StoreInfo.class, equal("workspace.name", "notThere")));
+        assertEquals(0, catalog.count(DataStoreInfo.class, equal("id", s1.getId())));
+
+        // moving a resource to another store moves it in the store index
+        DataStoreInfo ds2 = catalog.getFactory().createDataStore();
+        ds2.setName("ds2");
+        ds2.setWorkspace(ds.getWorkspace());
+        ds2.setEnabled(true);
+        catalog.add(ds2);
+        FeatureTypeInfo ft = catalog.getFeatureTypeByName("foo");
+        ft.setStore(ds2);
+        catalog.save(ft);
+        assertEquals(1, catalog.count(ResourceInfo.class, equal("store.id", ds.getId())));
+        assertEquals(1, catalog.count(ResourceInfo.class, equal("store.id", ds2.getId())));
+        assertEquals(1, catalog.getResourcesByStore(ds2, ResourceInfo.class).size());
+        assertEquals(2, catalog.getStoresByWorkspace(ds.getWorkspace(), StoreInfo.class).size());
+    }
+
+    int otherThreadLayerCount() throws Exception {
+        final int[] count = new int[1];
+        Thread t = new Thread() {
+            public void run() {
+                count[0] = catalog.getLayers().size();
+            }
+        };
+        t.start();
+        t.join();
+        return count[0];
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        addLayer("foo", s1);
+        final List<Integer> seen = new ArrayList<Integer>();
+        catalog.batch(new Runnable() {
+            public void run() {
+                addLayer("bar", s1);
+                LayerInfo baz = addLayer("baz", s2);
+                // nested batches are part of the outer one
+                catalog.batch(new Runnable() {
+                    public void run() {
+                        addLayer("qux", s2);
+                    }
+                });
+                catalog.remove(baz);
+                try {
+                    seen.add(otherThreadLayerCount());
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+
+                // the batch thread sees its own changes, in listings and lookups alike
+                seen.add(catalog.getLayers().size());
+                assertNotNull(catalog.getLayerByName("bar"));
+                assertNull(catalog.getLayerByName("baz"));
+                assertEquals(1, catalog.getLayers(s2).size());
+                assertEquals(4, catalog.getResources(ResourceInfo.class).size());
+            }
+        });
+        assertEquals(Arrays.asList(1, 3), seen);
+
+        // once done, everybody sees them
+        assertEquals(3, otherThreadLayerCount());
+        assertEquals(Arrays.asList("bar", "foo", "qux"), names(acceptAll(), null, null,
+                asc("name")));
+    }
+
+    @Test
+    public void testFailedBatchPublishes() {
+        try {
+            catalog.batch(new Runnable() {
+                public void run() {
+                    addLayer("foo", s1);
+                    throw new IllegalStateException();
+                }
+            });
+            fail("The batch failure should be propagated");
+        } catch (IllegalStateException e) {
+            // fine
+        }
+        assertEquals(1, catalog.getLayers().size());
+        assertEquals(1, catalog.getResources(ResourceInfo.class).size());
+    }
+
+    @Test
+    public void testBatchThroughDecorator() throws Exception {
+        Catalog decorated = new AbstractCatalogDecorator(catalog);
+        int seen = CatalogImpl.batch(decorated, new Callable<Integer>() {
+            public Integer call() throws Exception {
+                addLayer("foo", s1);
+                return otherThreadLayerCount();
+            }
+        });
+        assertEquals(0, seen);
+        assertEquals(1, otherThreadLayerCount());
+    }
+}
@@ -0,0 +1,69 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog.impl;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.ReadOnlyCatalogAccess;
+
+/**
+ * Simple benchmark comparing the time and memory allocated by layer lookups returning
+ * modification proxies and read only views, performing the same calls a GetMap does to
+ * resolve a layer and its style.
+ * <p>
+ * Not a unit test, run it by hand with <code>main</code>, optionally passing the number of
+ * layers in the catalog. The allocation figures require a JVM exposing per thread allocation
+ * counters, such as the Oracle and OpenJDK ones.
+ * </p>
+ */
+public class ReadOnlyLookupBenchmark {
+
+    static final int LOOKUPS = 500000;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        CatalogImpl catalog = CatalogLookupBenchmark.build(size);
+
+        for (boolean readOnly : new boolean[] { false, true, false, true }) {
+            ReadOnlyCatalogAccess.set(readOnly);
+            try {
+                long allocated = allocatedBytes();
+                long start = System.nanoTime();
+                lookup(catalog, size, LOOKUPS);
+                long elapsed = System.nanoTime() - start;
+                allocated = allocatedBytes() - allocated;
+
+                System.out.println(String.format("%-20s %8.1f ns, %8.1f bytes per lookup",
+                        readOnly ? "read only views:" : "modification proxies:",
+                        (double) elapsed / LOOKUPS, (double) allocated / LOOKUPS));
+            } finally {
+                ReadOnlyCatalogAccess.remove();
+            }
+        }
+    }
+
+    static void lookup(CatalogImpl catalog, int size, int lookups) {
+        Random random = new Random(size);
+        for (int i = 0; i < lookups; i++) {
+            LayerInfo layer = catalog.getLayerByName("ws:layer" + random.nextInt(size));
+            if (layer == null || layer.getResource().getNativeName() == null
+                    || layer.getDefaultStyle().getFilename() == null || !layer.enabled()) {
+                throw new IllegalStateException("Unexpected lookup result");
+            }
+        }
+    }
+
+    static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread
+                    .currentThread().getId());
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,166 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.geoserver.catalog.CatalogFactory;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.ReadOnlyCatalogAccess;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReadOnlyProxyTest {
+
+    CatalogImpl catalog;
+
+    LayerInfo layer;
+
+    StyleInfo style;
+
+    @Before
+    public void setUp() {
+        catalog = new CatalogImpl();
+        CatalogFactory factory = catalog.getFactory();
+
+        NamespaceInfo ns = factory.createNamespace();
+        ns.setPrefix("wsName");
+        ns.setURI("nsURI");
+        catalog.add(ns);
+
+        WorkspaceInfo ws = factory.createWorkspace();
+        ws.setName("wsName");
+        catalog.add(ws);
+
+        DataStoreInfo ds = factory.createDataStore();
+        ds.setName("dsName");
+        ds.setWorkspace(ws);
+        ds.setEnabled(true);
+        catalog.add(ds);
+
+        style = factory.createStyle();
+        style.setName("style");
+        style.setFilename("style.sld");
+        catalog.add(style);
+
+        FeatureTypeInfo ft = factory.createFeatureType();
+        ft.setName("foo");
+        ft.setNativeName("foo");
+        ft.setStore(ds);
+        ft.setNamespace(ns);
+        ft.setEnabled(true);
+        catalog.add(ft);
+
+        layer = factory.createLayer();
+        layer.setResource(ft);
+        layer.setDefaultStyle(style);
+        layer.getStyles().add(style);
+        layer.setEnabled(true);
+        catalog.add(layer);
+    }
+
+    @After
+    public void tearDown() {
+        ReadOnlyCatalogAccess.remove();
+    }
+
+    @Test
+    public void testSharedViews() {
+        ReadOnlyCatalogAccess.set(true);
+        LayerInfo l1 = catalog.getLayerByName("foo");
+        LayerInfo l2 = catalog.getLayerByName("foo");
+        assertSame(l1, l2);
+        assertSame(l1, catalog.getLayer(layer.getId()));
+        assertTrue(ModificationProxy.handler(l1) instanceof ReadOnlyProxy);
+        assertEquals("foo", l1.getName());
+
+        // nested objects are shared read only views as well
+        assertSame(l1.getResource(), catalog.getFeatureTypeByName("foo"));
+        assertTrue(ModificationProxy.handler(l1.getResource()) instanceof ReadOnlyProxy);
+        assertTrue(ModificationProxy.handler(l1.getDefaultStyle()) instanceof ReadOnlyProxy);
+        StyleInfo alternate = l1.getStyles().iterator().next();
+        assertTrue(ModificationProxy.handler(alternate) instanceof ReadOnlyProxy);
+        assertTrue(l1.getStyles().contains(style));
+
+        // and they can be unwrapped as usual
+        assertSame(ModificationProxy.unwrap(layer), ModificationProxy.unwrap(l1));
+    }
+
+    @Test
+    public void testModificationsRejected() {
+        ReadOnlyCatalogAccess.set(true);
+        LayerInfo l = catalog.getLayerByName("foo");
+        try {
+            l.setPath("/foo");
+            fail("Setters should not be allowed");
+        } catch (UnsupportedOperationException e) {
+            // fine
+        }
+        try {
+            l.getResource().setTitle("foo");
+            fail("Setters should not be allowed on nested objects");
+        } catch (UnsupportedOperationException e) {
+            // fine
+        }
+        try {
+            l.getStyles().clear();
+            fail("Collections should be unmodifiable");
+        } catch (UnsupportedOperationException e) {
+            // fine
+        }
+        try {
+            l.getMetadata().put("foo", "bar");
+            fail("Metadata should be unmodifiable");
+        } catch (UnsupportedOperationException e) {
+            // fine
+        }
+        List<ResourceInfo> resources = catalog.getResources(ResourceInfo.class);
+        try {
+            resources.get(0).getKeywords().clear();
+            fail("Collections should be unmodifiable");
+        } catch (UnsupportedOperationException e) {
+            // fine
+        }
+
+        // saving a view is harmless
+        catalog.save(l);
+        assertEquals(1, catalog.getLayers().get(0).getStyles().size());
+    }
+
+    @Test
+    public void testViewsAreLive() {
+        ReadOnlyCatalogAccess.set(true);
+        LayerInfo view = catalog.getLayerByName("foo");
+
+        boolean previous = ReadOnlyCatalogAccess.set(false);
+        assertTrue(previous);
+        FeatureTypeInfo ft = catalog.getFeatureTypeByName("foo");
+        assertFalse(ModificationProxy.handler(ft) instanceof ReadOnlyProxy);
+        ft.setTitle("New title");
+        catalog.save(ft);
+
+        assertEquals("New title", view.getResource().getTitle());
+    }
+
+    @Test
+    public void testModificationProxyByDefault() {
+        LayerInfo l1 = catalog.getLayerByName("foo");
+        LayerInfo l2 = catalog.getLayerByName("foo");
+        assertNotSame(l1, l2);
+        assertFalse(ModificationProxy.handler(l1) instanceof ReadOnlyProxy);
+        l1.setPath("/foo");
+        catalog.save(l1);
+        assertEquals("/foo", catalog.getLayerByName("foo").getPath());
+    }
+}
@@ -7,11 +7,15 @@ package org.geoserver.config;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
 import java.net.URL;
 
+import org.apache.commons.io.FileUtils;
+
 import org.geoserver.catalog.Catalog;
 import org.geoserver.catalog.LayerGroupInfo;
 import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.StoreInfo;
 import org.geoserver.catalog.StyleInfo;
 import org.geoserver.catalog.impl.CatalogImpl;
 import org.geoserver.config.util.XStreamPersister;
@@ -76,4 +80,93 @@ public class DefaultGeoServerLoaderTest {
         assertNotNull(((LayerGroupInfo)nestedLayerGroup.getLayers().get(0)).getLayers());
         assertTrue(nestedLayerGroup.getLayers().get(1) instanceof LayerInfo);
     }
+    
+    @Test
+    public void testParallelLoading() throws Exception {
+        loader.readCatalog(catalog, xp);
+        
+        Catalog parallel = new CatalogImpl();
+        parallel.setResourceLoader(catalog.getResourceLoader());
+        loader.setLoadingThreads(4);
+        loader.readCatalog(parallel, new XStreamPersisterFactory().createXMLPersister());
+        
+        assertEquals(catalog.getStores(StoreInfo.class).size(), 
+                parallel.getStores(StoreInfo.class).size());
+        assertEquals(catalog.getLayers().size(), parallel.getLayers().size());
+        for (LayerInfo layer : catalog.getLayers()) {
+            LayerInfo other = parallel.getLayerByName(layer.prefixedName());
+            assertNotNull(other);
+            assertEquals(layer.getId(), other.getId());
+            assertEquals(layer.getResource().getStore().getId(), 
+                    other.getResource().getStore().getId());
+        }
+        assertNotNull(parallel.getLayerGroupByName("topp", "nestedgroup"));
+    }
+    
+    @Test
+    public void testCatalogSnapshot() throws Exception {
+        File dataDir = File.createTempFile("snapshot", "data", new File("target"));
+        dataDir.delete();
+        FileUtils.copyDirectory(catalog.getResourceLoader().getBaseDirectory(), dataDir);
+        try {
+            GeoServerResourceLoader resourceLoader = new GeoServerResourceLoader(dataDir);
+            DefaultGeoServerLoader snapshotLoader = new DefaultGeoServerLoader(resourceLoader);
+            snapshotLoader.setCatalogSnapshot(true);
+            
+            // first load writes out the snapshot
+            Catalog first = (Catalog) snapshotLoader.readCatalog(
+                    new XStreamPersisterFactory().createXMLPersister());
+            File snapshot = new File(dataDir, CatalogSnapshot.FILE_NAME);
+            assertTrue(snapshot.exists());
+            
+            assertEquals(0, snapshotLoader.snapshotHits);
+            int parsed = snapshotLoader.snapshotMisses;
+            assertTrue(parsed > 0);
+            
+            // second one uses it, without parsing any file
+            CatalogSnapshot cs = CatalogSnapshot.read(dataDir);
+            assertEquals(parsed, cs.previous.size());
+            Catalog second = (Catalog) snapshotLoader.readCatalog(
+                    new XStreamPersisterFactory().createXMLPersister());
+            assertEquals(parsed, snapshotLoader.snapshotHits);
+            assertEquals(0, snapshotLoader.snapshotMisses);
+            assertEquals(first.getLayers().size(), second.getLayers().size());
+            for (LayerInfo layer : first.getLayers()) {
+                LayerInfo other = second.getLayerByName(layer.prefixedName());
+                assertNotNull(other);
+                assertEquals(layer.getId(), other.getId());
+                assertEquals(layer.getResource().getId(), other.getResource().getId());
+                assertEquals(layer.getDefaultStyle(), other.getDefaultStyle());
+            }
+            assertNotNull(second.getLayerGroupByName("topp", "nestedgroup"));
+            
+            // a file that changed gets parsed again
+            File layerFile = new File(dataDir, "workspaces/topp/datastore/layer1/layer.xml");
+            layerFile.setLastModified(layerFile.lastModified() - 10000);
+            cs = CatalogSnapshot.read(dataDir);
+            assertNull(cs.load(new XStreamPersisterFactory().createXMLPersister(), layerFile, 
+                    LayerInfo.class));
+            assertEquals(1, cs.getMisses());
+            
+            // a file read in the same modification time tick it was written in gets its
+            // checksum verified, an edit keeping time and size is not missed
+            long lastModified = System.currentTimeMillis() / 1000 * 1000;
+            layerFile.setLastModified(lastModified);
+            snapshotLoader.readCatalog(new XStreamPersisterFactory().createXMLPersister());
+            cs = CatalogSnapshot.read(dataDir);
+            assertNotNull(cs.load(new XStreamPersisterFactory().createXMLPersister(), layerFile, 
+                    LayerInfo.class));
+            String contents = FileUtils.readFileToString(layerFile, "UTF-8");
+            FileUtils.writeStringToFile(layerFile, contents.replace("<logoWidth>0</logoWidth>",
+                    "<logoWidth>9</logoWidth>"), "UTF-8");
+            layerFile.setLastModified(lastModified);
+            assertEquals(contents.length(), layerFile.length());
+            cs = CatalogSnapshot.read(dataDir);
+            assertNull(cs.load(new XStreamPersisterFactory().createXMLPersister(), layerFile, 
+                    LayerInfo.class));
+            assertEquals(1, cs.getMisses());
+        } finally {
+            FileUtils.deleteQuietly(dataDir);
+        }
+    }
 }
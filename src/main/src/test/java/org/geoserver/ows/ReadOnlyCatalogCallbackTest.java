@@ -0,0 +1,52 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.ows;
+
+import static org.junit.Assert.*;
+
+import org.geoserver.catalog.ReadOnlyCatalogAccess;
+import org.geoserver.platform.Service;
+import org.junit.After;
+import org.junit.Test;
+
+public class ReadOnlyCatalogCallbackTest {
+
+    @After
+    public void tearDown() {
+        ReadOnlyCatalogAccess.remove();
+    }
+
+    Request request(String name) {
+        Request request = new Request();
+        request.setRequest(name);
+        return request;
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        ReadOnlyCatalogCallback callback = new ReadOnlyCatalogCallback(null);
+        callback.serviceDispatched(request("GetMap"), new Service("wms", null, null, null));
+        assertFalse(ReadOnlyCatalogAccess.isEnabled());
+    }
+
+    @Test
+    public void testConfiguredRequests() {
+        ReadOnlyCatalogCallback callback = new ReadOnlyCatalogCallback(" WMS.GetMap, wfs ");
+        Service wms = new Service("wms", null, null, null);
+
+        callback.serviceDispatched(request("GetFeatureInfo"), wms);
+        assertFalse(ReadOnlyCatalogAccess.isEnabled());
+
+        Request getMap = request("GetMap");
+        callback.serviceDispatched(getMap, wms);
+        assertTrue(ReadOnlyCatalogAccess.isEnabled());
+        callback.finished(getMap);
+        assertFalse(ReadOnlyCatalogAccess.isEnabled());
+
+        // a service name covers all its requests
+        callback.serviceDispatched(request("Transaction"), new Service("wfs", null, null, null));
+        assertTrue(ReadOnlyCatalogAccess.isEnabled());
+    }
+}
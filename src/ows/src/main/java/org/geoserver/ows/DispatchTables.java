@@ -0,0 +1,372 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.ows;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.geoserver.ows.util.KvpParsers;
+import org.geoserver.platform.ExtensionFilter;
+import org.geoserver.platform.ExtensionPriority;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.platform.Service;
+import org.geotools.util.Version;
+import org.springframework.context.ApplicationContext;
+
+/**
+ * Lookup tables used by the {@link Dispatcher} to find the services, request readers, responses
+ * and exception handlers of a request without scanning all the extensions every time.
+ * <p>
+ * The tables are built from the extensions found in the application context, services are keyed
+ * by id, xml readers by element name, kvp parsers by key, exception handlers by service, while
+ * kvp readers and responses are indexed lazily by request and result class. The dispatcher still
+ * performs the final version, namespace, output format and
+ * {@link Response#canHandle(org.geoserver.platform.Operation)} checks on the few candidates found.
+ * </p>
+ * <p>
+ * {@link ExtensionFilter} decisions can change from call to call, so the filters are consulted
+ * on each lookup, and beans that are not singletons, such as some responses, are created again
+ * from the application context whenever they are picked.
+ * </p>
+ */
+class DispatchTables {
+
+    /**
+     * An extension along with the bean name it was looked up with
+     */
+    static class Extension<T> {
+
+        /**
+         * The bean name, or null for extensions not coming from the application context
+         */
+        final String name;
+
+        final T bean;
+
+        /**
+         * The context to create a new bean from, if the bean is not a singleton, or null
+         */
+        final ApplicationContext prototype;
+
+        Extension(String name, T bean, ApplicationContext prototype) {
+            this.name = name;
+            this.bean = bean;
+            this.prototype = prototype;
+        }
+
+        /**
+         * Returns the extension to be used for a request
+         */
+        @SuppressWarnings("unchecked")
+        T get() {
+            return prototype != null ? (T) prototype.getBean(name) : bean;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(bean);
+        }
+    }
+
+    /**
+     * A response along with its output formats, lower cased
+     */
+    static class ResponseExtension extends Extension<Response> {
+
+        final Set<String> outputFormats;
+
+        ResponseExtension(Extension<Response> extension) {
+            super(extension.name, extension.bean, extension.prototype);
+            outputFormats = new HashSet<String>();
+            for (String outputFormat : bean.getOutputFormats()) {
+                outputFormats.add(outputFormat.toLowerCase());
+            }
+        }
+    }
+
+    final List<ExtensionFilter> filters;
+
+    final Map<String, List<Extension<Service>>> services;
+
+    final Map<Version, List<Extension<Service>>> servicesByVersion;
+
+    final List<Extension<KvpRequestReader>> kvpReaders;
+
+    final Map<Class, List<Extension<KvpRequestReader>>> kvpReadersByType = new ConcurrentHashMap<Class, List<Extension<KvpRequestReader>>>();
+
+    final List<Extension<XmlRequestReader>> xmlReaders;
+
+    final Map<String, List<Extension<XmlRequestReader>>> xmlReadersByElement;
+
+    final List<ResponseExtension> responses;
+
+    final Map<Class, List<ResponseExtension>> responsesByType = new ConcurrentHashMap<Class, List<ResponseExtension>>();
+
+    final Map<Service, List<Extension<ServiceExceptionHandler>>> exceptionHandlers;
+
+    final KvpParsers kvpParsers;
+
+    /**
+     * Builds the tables from the specified application context, or from the default one of
+     * {@link GeoServerExtensions} if null
+     */
+    DispatchTables(ApplicationContext context) {
+        filters = lookup(ExtensionFilter.class, context);
+
+        services = new HashMap<String, List<Extension<Service>>>();
+        servicesByVersion = new HashMap<Version, List<Extension<Service>>>();
+        for (Extension<Service> service : unique(Service.class, context,
+                "Two identical service descriptors found")) {
+            index(services, service.bean.getId().toLowerCase(), service);
+            if (service.bean.getVersion() != null) {
+                index(servicesByVersion, service.bean.getVersion(), service);
+            }
+        }
+
+        kvpReaders = unique(KvpRequestReader.class, context, "Two identical kvp readers found");
+
+        xmlReaders = unique(XmlRequestReader.class, context, "Two identical xml readers found");
+        xmlReadersByElement = new HashMap<String, List<Extension<XmlRequestReader>>>();
+        for (Extension<XmlRequestReader> reader : xmlReaders) {
+            index(xmlReadersByElement, reader.bean.getElement().getLocalPart().toLowerCase(),
+                    reader);
+        }
+
+        responses = new ArrayList<ResponseExtension>();
+        for (Extension<Response> response : extensions(Response.class, context)) {
+            responses.add(new ResponseExtension(response));
+        }
+
+        exceptionHandlers = new HashMap<Service, List<Extension<ServiceExceptionHandler>>>();
+        for (Extension<ServiceExceptionHandler> handler : extensions(
+                ServiceExceptionHandler.class, context)) {
+            for (Object service : handler.bean.getServices()) {
+                index(exceptionHandlers, (Service) service, handler);
+            }
+        }
+
+        // parsers are looked up for each kvp entry, the index is built once, the filters are
+        // consulted on each lookup as for the other extensions
+        List<KvpParser> parsers = new ArrayList<KvpParser>();
+        final Map<KvpParser, Extension<KvpParser>> parserExtensions =
+                new IdentityHashMap<KvpParser, Extension<KvpParser>>();
+        for (Extension<KvpParser> parser : extensions(KvpParser.class, context)) {
+            parsers.add(parser.bean);
+            parserExtensions.put(parser.bean, parser);
+        }
+        kvpParsers = new KvpParsers(parsers) {
+            @Override
+            protected boolean isEnabled(KvpParser parser) {
+                Extension<KvpParser> extension = parserExtensions.get(parser);
+                return extension == null || !excluded(extension);
+            }
+        };
+    }
+
+    /**
+     * Looks up the extensions of the specified type, keeping track of their bean names so that
+     * extension filters and non singleton beans can be handled on each lookup
+     */
+    @SuppressWarnings("unchecked")
+    static <T> List<Extension<T>> extensions(Class<T> type, ApplicationContext context) {
+        List<Extension<T>> result = new ArrayList<Extension<T>>();
+        Set<Class> classes = new HashSet<Class>();
+        if (context != null) {
+            for (String name : context.getBeanNamesForType(type)) {
+                T bean = (T) context.getBean(name);
+                result.add(new Extension<T>(name, bean, context.isSingleton(name) ? null : context));
+                classes.add(bean.getClass());
+            }
+        }
+        // extensions coming from extension providers and SPI, without a bean name. Filtering
+        // them here rather than on lookup is the best we can do, they have no identity
+        for (T bean : lookup(type, context)) {
+            if (!classes.contains(bean.getClass())) {
+                result.add(new Extension<T>(null, bean, null));
+            }
+        }
+
+        // same order as GeoServerExtensions
+        Collections.sort(result, new Comparator<Extension<T>>() {
+            public int compare(Extension<T> e1, Extension<T> e2) {
+                return priority(e1.bean) - priority(e2.bean);
+            }
+        });
+        return result;
+    }
+
+    static <T> List<T> lookup(Class<T> type, ApplicationContext context) {
+        if (context == null) {
+            return GeoServerExtensions.extensions(type);
+        }
+        return GeoServerExtensions.extensions(type, context);
+    }
+
+    static int priority(Object bean) {
+        if (bean instanceof ExtensionPriority) {
+            return ((ExtensionPriority) bean).getPriority();
+        }
+        return ExtensionPriority.LOWEST;
+    }
+
+    static <T> List<Extension<T>> unique(Class<T> type, ApplicationContext context,
+            String message) {
+        List<Extension<T>> extensions = extensions(type, context);
+        Set<T> beans = new HashSet<T>();
+        for (Extension<T> extension : extensions) {
+            if (!beans.add(extension.bean)) {
+                throw new IllegalStateException(message + ": " + extension);
+            }
+        }
+        return extensions;
+    }
+
+    static <K, T> void index(Map<K, List<T>> index, K key, T value) {
+        List<T> values = index.get(key);
+        if (values == null) {
+            values = new ArrayList<T>();
+            index.put(key, values);
+        }
+        values.add(value);
+    }
+
+    /**
+     * Returns whether an extension filter excludes the extension at the moment
+     */
+    boolean excluded(Extension<?> extension) {
+        if (extension.name == null) {
+            return false;
+        }
+        for (ExtensionFilter filter : filters) {
+            if (filter.exclude(extension.name, extension.bean)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the extensions not currently excluded by a filter, without creating them
+     */
+    <E extends Extension<?>> List<E> included(List<E> extensions) {
+        if (extensions == null || extensions.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<E> result = new ArrayList<E>(extensions.size());
+        for (E extension : extensions) {
+            if (!excluded(extension)) {
+                result.add(extension);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The services with the specified id, case insensitive
+     */
+    List<Service> services(String id) {
+        List<Service> result = new ArrayList<Service>();
+        for (Extension<Service> service : included(services.get(id.toLowerCase()))) {
+            result.add(service.get());
+        }
+        return result;
+    }
+
+    /**
+     * Returns true if a service with the specified version is available
+     */
+    boolean hasVersion(Version version) {
+        return !included(servicesByVersion.get(version)).isEmpty();
+    }
+
+    /**
+     * The kvp readers able to read a request of the specified type, best match first
+     */
+    KvpRequestReader kvpReader(Class type) {
+        List<Extension<KvpRequestReader>> matches = kvpReadersByType.get(type);
+        if (matches == null) {
+            matches = new ArrayList<Extension<KvpRequestReader>>();
+            for (Extension<KvpRequestReader> reader : kvpReaders) {
+                if (reader.bean.getRequestBean().isAssignableFrom(type)) {
+                    matches.add(reader);
+                }
+            }
+            // sort by class hierarchy
+            Collections.sort(matches, new Comparator<Extension<KvpRequestReader>>() {
+                public int compare(Extension<KvpRequestReader> kvp1,
+                        Extension<KvpRequestReader> kvp2) {
+                    if (kvp2.bean.getRequestBean().isAssignableFrom(kvp1.bean.getRequestBean())) {
+                        return -1;
+                    }
+                    return 1;
+                }
+            });
+            kvpReadersByType.put(type, matches);
+        }
+
+        List<Extension<KvpRequestReader>> included = included(matches);
+        return included.isEmpty() ? null : included.get(0).get();
+    }
+
+    /**
+     * The xml readers whose element has the specified local name, case insensitive
+     */
+    List<XmlRequestReader> xmlReaders(String element) {
+        List<XmlRequestReader> result = new ArrayList<XmlRequestReader>();
+        if (element != null) {
+            for (Extension<XmlRequestReader> reader : included(xmlReadersByElement.get(element
+                    .toLowerCase()))) {
+                result.add(reader.get());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The responses whose binding can encode the specified result class, and that handle the
+     * specified output format, if any
+     */
+    List<ResponseExtension> responses(Class type, String outputFormat) {
+        List<ResponseExtension> candidates = responsesByType.get(type);
+        if (candidates == null) {
+            candidates = new ArrayList<ResponseExtension>();
+            for (ResponseExtension response : responses) {
+                if (response.bean.getBinding().isAssignableFrom(type)) {
+                    candidates.add(response);
+                }
+            }
+            responsesByType.put(type, candidates);
+        }
+
+        List<ResponseExtension> result = included(candidates);
+        if (outputFormat != null) {
+            String format = outputFormat.toLowerCase();
+            for (int i = result.size() - 1; i >= 0; i--) {
+                Set<String> outputFormats = result.get(i).outputFormats;
+                if (!outputFormats.isEmpty() && !outputFormats.contains(format)) {
+                    result.remove(i);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The exception handler of the specified service, or null if it has none
+     */
+    ServiceExceptionHandler exceptionHandler(Service service) {
+        List<Extension<ServiceExceptionHandler>> handlers = included(exceptionHandlers
+                .get(service));
+        return handlers.isEmpty() ? null : handlers.get(0).get();
+    }
+}
@@ -49,6 +49,7 @@ import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.eclipse.emf.ecore.EObject;
+import org.geoserver.ows.DispatchTables.ResponseExtension;
 import org.geoserver.ows.util.CaseInsensitiveMap;
 import org.geoserver.ows.util.KvpMap;
 import org.geoserver.ows.util.KvpUtils;
@@ -63,6 +64,9 @@ import org.geotools.xml.EMFUtils;
 import org.geotools.xml.transform.TransformerBase;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.mvc.AbstractController;
 import org.w3c.dom.Document;
@@ -125,7 +129,7 @@ import org.xmlpull.v1.XmlPullParserFactory;
  * @author Justin Deoliveira, The Open Planning Project, jdeolive@openplans.org
  *
  */
-public class Dispatcher extends AbstractController {
+public class Dispatcher extends AbstractController implements ApplicationListener {
     /**
      * Logging instance
      */
@@ -154,6 +158,27 @@ public class Dispatcher extends AbstractController {
      */
     List<DispatcherCallback> callbacks = Collections.EMPTY_LIST;
 
+    /**
+     * whether the request phase timings are collected for all requests
+     */
+    boolean collectTimings;
+
+    /**
+     * whether the request phase timings are returned in the Server-Timing header
+     */
+    boolean serverTiming;
+
+    /**
+     * the context the extensions are looked up from, null when not running in a container
+     */
+    ApplicationContext context;
+
+    /**
+     * lookup tables of the extensions, built on first use and dropped when the context is
+     * refreshed
+     */
+    volatile DispatchTables tables;
+
     /** SOAP namespace */
     static final String SOAP_NS = "http://www.w3.org/2003/05/soap-envelope";
     
@@ -196,6 +221,9 @@ public class Dispatcher extends AbstractController {
 
     @Override
     protected void initApplicationContext(ApplicationContext context) {
+        this.context = context;
+        this.tables = null;
+
         //load life cycle callbacks
         callbacks = GeoServerExtensions.extensions( DispatcherCallback.class, context);
         
@@ -213,6 +241,12 @@ public class Dispatcher extends AbstractController {
                         "will use " + XML_LOOKAHEAD + " instead");
             }
         }
+
+        // setup the request timings
+        serverTiming = Boolean.parseBoolean(GeoServerExtensions.getProperty(
+                RequestTimings.SERVER_TIMING, context));
+        collectTimings = serverTiming || Boolean.parseBoolean(GeoServerExtensions.getProperty(
+                RequestTimings.REQUEST_TIMINGS, context));
     }
     
     protected void preprocessRequest(HttpServletRequest request)
@@ -232,6 +266,34 @@ public class Dispatcher extends AbstractController {
         request.setCharacterEncoding(charSet.name());
     }
 
+    public void onApplicationEvent(ApplicationEvent event) {
+        if (event instanceof ContextRefreshedEvent) {
+            // extensions might have been added or removed
+            tables = null;
+        }
+    }
+
+    /**
+     * Returns the lookup tables of services, readers, responses and exception handlers
+     */
+    DispatchTables tables() {
+        if (context == null) {
+            // not running in a container, look up the extensions every time
+            return new DispatchTables(null);
+        }
+        DispatchTables result = tables;
+        if (result == null) {
+            synchronized (this) {
+                result = tables;
+                if (result == null) {
+                    result = new DispatchTables(context);
+                    tables = result;
+                }
+            }
+        }
+        return result;
+    }
+
     protected ModelAndView handleRequestInternal(HttpServletRequest httpRequest,
         HttpServletResponse httpResponse) throws Exception {
         preprocessRequest(httpRequest);
@@ -242,17 +304,23 @@ public class Dispatcher extends AbstractController {
         //set request / response
         request.setHttpRequest(httpRequest);
         request.setHttpResponse(httpResponse);
+        if (collectTimings) {
+            request.setTimings(new RequestTimings());
+        }
 
         Service service = null;
 
         try {
             // initialize the request and allow callbacks to override it
+            long start = System.nanoTime();
             request = init(request);
+            record(request, RequestTimings.PARSE, start);
 
             // store it in the thread local
             REQUEST.set(request);
             
             //find the service
+            start = System.nanoTime();
             try {
                 service = service(request);
             } catch (Throwable t) {
@@ -260,15 +328,18 @@ public class Dispatcher extends AbstractController {
 
                 return null;
             }
+            record(request, RequestTimings.SERVICE, start);
             
             //throw any outstanding errors
             if (request.getError() != null) {
                 throw request.getError();
             }
 
-            //dispatch the operation
+            //dispatch the operation, this is where the request object gets parsed
+            start = System.nanoTime();
             Operation operation = dispatch(request, service);
             request.setOperation(operation);
+            record(request, RequestTimings.PARSE, start);
 
             if (request.isSOAP()) {
                 //let the request object know that this is a SOAP request, since it effects
@@ -277,7 +348,9 @@ public class Dispatcher extends AbstractController {
             }
 
             //execute it
+            start = System.nanoTime();
             Object result = execute(request, operation);
+            record(request, RequestTimings.EXECUTE, start);
 
             //write the response
             if (result != null) {
@@ -296,6 +369,16 @@ public class Dispatcher extends AbstractController {
         return null;
     }
 
+    /**
+     * Adds the time elapsed since start to the request phase, if timings are being collected
+     */
+    void record(Request req, String phase, long start) {
+        RequestTimings timings = req.getTimings();
+        if (timings != null) {
+            timings.record(phase, start);
+        }
+    }
+
     void flagAsSOAP(Operation op) {
         for (Object reqObj : op.getParameters()) {
             if (OwsUtils.has(reqObj, "formatOptions")) {
@@ -757,20 +840,7 @@ public class Dispatcher extends AbstractController {
                     }
 
                     //make sure the versoin actually exists
-                    boolean found = false;
-                    Version version = new Version(req.getVersion());
-
-                    for (Iterator s = loadServices().iterator(); s.hasNext();) {
-                        Service service = (Service) s.next();
-
-                        if (version.equals(service.getVersion())) {
-                            found = true;
-
-                            break;
-                        }
-                    }
-
-                    if (!found) {
+                    if (!tables().hasVersion(new Version(req.getVersion()))) {
                         throw new ServiceException("Invalid version: " + req.getVersion(),
                             "InvalidParameterValue", "version");
                     }
@@ -860,36 +930,13 @@ public class Dispatcher extends AbstractController {
         throws Throwable {
         //step 6: write response
         if (result != null) {
-            //look up respones
-            List responses = GeoServerExtensions.extensions(Response.class);
-
-            //first filter by binding, and canHandle
-         O: for (Iterator itr = responses.iterator(); itr.hasNext();) {
-                Response response = (Response) itr.next();
-
-                Class binding = response.getBinding();
+            //look up the responses with a matching binding and output format
+            List<ResponseExtension> responses = tables().responses(result.getClass(),
+                    req.getOutputFormat());
 
-                if (!binding.isAssignableFrom(result.getClass())
-                        || !response.canHandle(opDescriptor)) {
-                    itr.remove();
-
-                    continue;
-                }
-
-                //filter by output format
-                Set outputFormats = response.getOutputFormats();
-
-                if ((req.getOutputFormat() != null) && (!outputFormats.isEmpty())
-                        && !outputFormats.contains(req.getOutputFormat())) {
-                    
-                    //must do a case insensitive check
-                    for ( Iterator of = outputFormats.iterator(); of.hasNext(); ) {
-                        String outputFormat = (String) of.next();
-                        if( req.getOutputFormat().equalsIgnoreCase( outputFormat ) ) {
-                            continue O;
-                        }
-                    }
-                    
+            //then filter by canHandle
+            for (Iterator<ResponseExtension> itr = responses.iterator(); itr.hasNext();) {
+                if (!itr.next().bean.canHandle(opDescriptor)) {
                     itr.remove();
                 }
             }
@@ -914,10 +961,10 @@ public class Dispatcher extends AbstractController {
             if (responses.size() > 1) {
                 //sort by class hierarchy
                 Collections.sort(responses,
-                    new Comparator() {
-                        public int compare(Object o1, Object o2) {
-                            Class c1 = ((Response) o1).getBinding();
-                            Class c2 = ((Response) o2).getBinding();
+                    new Comparator<ResponseExtension>() {
+                        public int compare(ResponseExtension o1, ResponseExtension o2) {
+                            Class c1 = o1.bean.getBinding();
+                            Class c2 = o2.bean.getBinding();
 
                             if (c1.equals(c2)) {
                                 return 0;
@@ -936,8 +983,8 @@ public class Dispatcher extends AbstractController {
                     });
 
                 //check first two and make sure bindings are not equal
-                Response r1 = (Response) responses.get(0);
-                Response r2 = (Response) responses.get(1);
+                Response r1 = responses.get(0).bean;
+                Response r2 = responses.get(1).bean;
 
                 if (r1.getBinding().equals(r2.getBinding())) {
                     String msg = "Multiple responses: (" + result.getClass() + "): " + r1 + ", " + r2;
@@ -945,7 +992,8 @@ public class Dispatcher extends AbstractController {
                 }
             }
 
-            Response response = (Response) responses.get(0);
+            //non singleton responses are created anew
+            Response response = responses.get(0).get();
             response = fireResponseDispatchedCallback(req,opDescriptor,result,response);
 
             //load the output strategy to be used
@@ -974,6 +1022,13 @@ public class Dispatcher extends AbstractController {
             
             setHeaders(req,opDescriptor,result,response);
             
+            // only the phases before the response gets committed can make it into the header
+            if (serverTiming && req.getTimings() != null) {
+                req.getHttpResponse().addHeader("Server-Timing",
+                        req.getTimings().toServerTiming());
+            }
+            
+            long start = System.nanoTime();
             OutputStream output = outputStrategy.getDestination(req.getHttpResponse());
 
             if (req.isSOAP()) {
@@ -993,6 +1048,8 @@ public class Dispatcher extends AbstractController {
                 //SOAP request, start the SOAP wrapper
                 endSOAPEnvelope(output);
             }
+            record(req, RequestTimings.ENCODE, start);
+            start = System.nanoTime();
 
             // flush the output with detection of client shutting the door in our face
             try {
@@ -1003,6 +1060,7 @@ public class Dispatcher extends AbstractController {
 
             //flush the underlying out stream for good meaure
             req.getHttpResponse().getOutputStream().flush();
+            record(req, RequestTimings.FLUSH, start);
         }
     }
     
@@ -1083,20 +1141,8 @@ public class Dispatcher extends AbstractController {
         return response;
     }
     
-    Collection loadServices() {
-        Collection services = GeoServerExtensions.extensions(Service.class);
-
-        if (!(new HashSet(services).size() == services.size())) {
-            String msg = "Two identical service descriptors found";
-            throw new IllegalStateException(msg);
-        }
-
-        return services;
-    }
-
     Service findService(String id, String ver, String namespace) throws ServiceException {
         Version version = (ver != null) ? new Version(ver) : null;
-        Collection services = loadServices();
         
         // the id is actually the pathinfo, in case workspace specific services
         // are active we want to skip the workspace part in the path and go directly to the
@@ -1106,15 +1152,7 @@ public class Dispatcher extends AbstractController {
         }
 
         //first just match on service,request
-        List matches = new ArrayList();
-
-        for (Iterator itr = services.iterator(); itr.hasNext();) {
-            Service sBean = (Service) itr.next();
-
-            if (sBean.getId().equalsIgnoreCase(id)) {
-                matches.add(sBean);
-            }
-        }
+        List matches = tables().services(id);
 
         if (matches.isEmpty()) {
             return null;
@@ -1238,32 +1276,9 @@ public class Dispatcher extends AbstractController {
         return (KvpRequestReader) matches.get(0);
     }
 
-    Collection loadXmlReaders() {
-        List<XmlRequestReader> xmlReaders = GeoServerExtensions.extensions(XmlRequestReader.class);
-
-        if (!(new HashSet<XmlRequestReader>(xmlReaders).size() == xmlReaders.size())) {
-        
-            String msg = "Two identical xml readers found";
-            for (int i = 0; i < xmlReaders.size(); i++) {
-                XmlRequestReader r1 = xmlReaders.get(i);
-                for (int j = i + 1; j < xmlReaders.size(); j++) {
-                    XmlRequestReader r2 = xmlReaders.get(j);
-                    if(r1.equals(r2)) {
-                        msg += ": " + r1 + " and " + r2;
-                        break;
-                    }
-                }
-                
-            }
-            
-            throw new IllegalStateException(msg);
-        }
-
-        return xmlReaders;
-    }
-
     XmlRequestReader findXmlReader(String namespace, String element, String serviceId, String ver) {
-        Collection xmlReaders = loadXmlReaders();
+        // the readers with the same element name, regardless of case and namespace
+        Collection xmlReaders = tables().xmlReaders(element);
 
         //first just match on namespace, element
         List matches = new ArrayList();
@@ -1464,7 +1479,7 @@ public class Dispatcher extends AbstractController {
     }
 
     Map parseKVP(Request req, Map kvp) {
-        List<Throwable> errors = KvpUtils.parse(kvp);
+        List<Throwable> errors = KvpUtils.parse(kvp, tables().kvpParsers);
         if ( !errors.isEmpty() ) {
             req.setError(errors.get(0));
         }
@@ -1473,7 +1488,7 @@ public class Dispatcher extends AbstractController {
 
     Object parseRequestKVP(Class type, Request request)
         throws Exception {
-        KvpRequestReader kvpReader = findKvpRequestReader(type);
+        KvpRequestReader kvpReader = tables().kvpReader(type);
 
         if (kvpReader != null) {
             //check for http request awareness
@@ -1689,17 +1704,7 @@ public class Dispatcher extends AbstractController {
 
         if (service != null) {
             //look up the service exception handler
-            Collection handlers = GeoServerExtensions.extensions(ServiceExceptionHandler.class);
-            for (Iterator h = handlers.iterator(); h.hasNext();) {
-                ServiceExceptionHandler seh = (ServiceExceptionHandler) h.next();
-
-                if (seh.getServices().contains(service)) {
-                    //found one,
-                    handler = seh;
-
-                    break;
-                }
-            }
+            handler = tables().exceptionHandler(service);
         }
 
         if (handler == null) {
@@ -114,6 +114,11 @@ public class Request {
      */
     protected UUID identifier;
 
+    /**
+     * The time spent in the request processing phases, null if timings are not collected
+     */
+    protected RequestTimings timings;
+
     public Request() {
         timestamp = new Date(); 
         identifier = UUID.randomUUID();
@@ -144,6 +149,7 @@ public class Request {
         this.timestamp = other.timestamp;
         this.operation = other.operation;
         this.identifier = other.identifier;
+        this.timings = other.timings;
     }
 
     /**
@@ -466,6 +472,23 @@ public class Request {
     public void setTimestamp(Date timestamp) {
         this.timestamp = timestamp;
     }
+
+    /**
+     * The time spent in the request processing phases, or null if the {@link Dispatcher} is not
+     * collecting timings
+     * @return
+     */
+    public RequestTimings getTimings() {
+        return timings;
+    }
+
+    /**
+     * Sets the request timings
+     * @param timings
+     */
+    public void setTimings(RequestTimings timings) {
+        this.timings = timings;
+    }
     
     @Override
     public int hashCode() {
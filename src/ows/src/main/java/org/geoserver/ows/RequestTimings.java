@@ -0,0 +1,135 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.ows;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The time spent by a request in each of its processing phases.
+ * <p>
+ * The {@link Dispatcher} records the {@link #PARSE}, {@link #SERVICE}, {@link #EXECUTE},
+ * {@link #ENCODE} and {@link #FLUSH} phases, services can record finer grained ones (e.g., the
+ * rendering of a map) using the timings of the current request, see {@link #current()}. The same
+ * phase can be recorded more than once, times add up. Phases are not required to be disjoint, a
+ * service phase is usually part of the {@link #EXECUTE} or {@link #ENCODE} ones.
+ * </p>
+ * <p>
+ * Timings are attached to the request only when collecting them has been enabled, either with the
+ * {@link #REQUEST_TIMINGS} property or by a {@link DispatcherCallback} setting them in
+ * {@link DispatcherCallback#init(Request)}.
+ * </p>
+ */
+public class RequestTimings {
+
+    /**
+     * Property enabling the collection of the timings for all requests
+     */
+    public static final String REQUEST_TIMINGS = "GEOSERVER_REQUEST_TIMINGS";
+
+    /**
+     * Property enabling the <code>Server-Timing</code> response header, implies
+     * {@link #REQUEST_TIMINGS}
+     */
+    public static final String SERVER_TIMING = "GEOSERVER_SERVER_TIMING";
+
+    /**
+     * Parsing of the KVP parameters and XML body into the request object
+     */
+    public static final String PARSE = "parse";
+
+    /**
+     * Lookup of the service and operation
+     */
+    public static final String SERVICE = "service";
+
+    /**
+     * Execution of the operation
+     */
+    public static final String EXECUTE = "execute";
+
+    /**
+     * Encoding of the operation result into the response
+     */
+    public static final String ENCODE = "encode";
+
+    /**
+     * Flushing of the response to the client
+     */
+    public static final String FLUSH = "flush";
+
+    Map<String, Long> phases = new LinkedHashMap<String, Long>();
+
+    /**
+     * Returns the timings of the request being dispatched in the current thread, or null if
+     * timings are not being collected
+     */
+    public static RequestTimings current() {
+        Request request = Dispatcher.REQUEST.get();
+        return request == null ? null : request.getTimings();
+    }
+
+    /**
+     * Adds the time elapsed since <code>start</code>, as returned by {@link System#nanoTime()}, to
+     * the phase
+     */
+    public void record(String phase, long start) {
+        add(phase, System.nanoTime() - start);
+    }
+
+    /**
+     * Adds the specified amount of nanoseconds to the phase
+     */
+    public synchronized void add(String phase, long nanos) {
+        Long current = phases.get(phase);
+        phases.put(phase, current == null ? nanos : current + nanos);
+    }
+
+    /**
+     * Returns the time spent in the phase, in nanoseconds, or -1 if the phase was not recorded
+     */
+    public synchronized long getNanos(String phase) {
+        Long nanos = phases.get(phase);
+        return nanos == null ? -1 : nanos;
+    }
+
+    /**
+     * Returns the time spent in each phase, in milliseconds, in the order the phases were first
+     * recorded
+     */
+    public synchronized Map<String, Double> getMillis() {
+        Map<String, Double> result = new LinkedHashMap<String, Double>();
+        for (Map.Entry<String, Long> entry : phases.entrySet()) {
+            result.put(entry.getKey(), toMillis(entry.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the phases recorded so far as a <code>Server-Timing</code> header value, e.g.
+     * <code>parse;dur=0.52, service;dur=0.03, execute;dur=125.4</code>
+     */
+    public synchronized String toServerTiming() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> entry : phases.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(entry.getKey()).append(";dur=")
+                    .append(String.format(Locale.ENGLISH, "%.2f", toMillis(entry.getValue())));
+        }
+        return sb.toString();
+    }
+
+    static double toMillis(long nanos) {
+        return nanos / 1000000d;
+    }
+
+    @Override
+    public String toString() {
+        return "RequestTimings" + getMillis();
+    }
+}
@@ -11,6 +11,9 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Provides lookup information about java bean properties in a class.
@@ -24,9 +27,27 @@ public class ClassProperties {
 
     private static final Set<String> COMMON_DERIVED_PROPERTIES = new HashSet<>(
             Arrays.asList("prefixedName"));
+    /**
+     * Marks a lookup that found no method
+     */
+    private static final Object NONE = new Object();
+
+    /**
+     * Maximum number of lookups cached per class, property names may come from requests
+     */
+    static final int MAX_LOOKUPS = 1024;
+
     List<Method> methods;
     List<Method> getters;
     List<Method> setters;
+
+    /**
+     * The results of the setter, getter and method lookups, so that binding a request bean
+     * does not scan the methods again
+     */
+    final ConcurrentMap<Lookup, Object> lookups = new ConcurrentHashMap<Lookup, Object>();
+
+    final AtomicInteger lookupCount = new AtomicInteger();
     
     public ClassProperties(Class clazz) {
         methods = Arrays.asList(clazz.getMethods());
@@ -78,6 +99,10 @@ public class ClassProperties {
      * @return The setter for the property, or null if it does not exist.
      */
     public Method setter(String property, Class type) {
+        return lookup(Lookup.SETTER, property, type);
+    }
+
+    Method findSetter(String property, Class type) {
         for (Method setter : setters) {
             if(setter.getName().substring(3).equalsIgnoreCase(property)) {
                 if(type == null) {
@@ -96,7 +121,7 @@ public class ClassProperties {
         // could not be found, try again with a more lax match
         String lax = lax(property);
         if (!lax.equals(property)) {
-            return setter(lax, type);
+            return findSetter(lax, type);
         }
         
         return null;
@@ -113,6 +138,10 @@ public class ClassProperties {
      * @return The getter for the property, or null if it does not exist.
      */
     public Method getter(String property, Class type) {
+        return lookup(Lookup.GETTER, property, type);
+    }
+
+    Method findGetter(String property, Class type) {
         for (Method getter : getters) {
             if(gp(getter).equalsIgnoreCase(property)) {
                 if(type == null) {
@@ -131,12 +160,74 @@ public class ClassProperties {
         // could not be found, try again with a more lax match
         String lax = lax(property);
         if (!lax.equals(property)) {
-            return getter(lax, type);
+            return findGetter(lax, type);
         }
         
         return null;
     }
     
+    /**
+     * Returns the cached result of a lookup, performing it if needed
+     */
+    Method lookup(int kind, String name, Class type) {
+        Lookup key = new Lookup(kind, name, type);
+        Object result = lookups.get(key);
+        if (result == null) {
+            Method method;
+            if (kind == Lookup.SETTER) {
+                method = findSetter(name, type);
+            } else if (kind == Lookup.GETTER) {
+                method = findGetter(name, type);
+            } else {
+                method = findMethod(name);
+            }
+            // past the limit we just stop caching, no need to be exact
+            if (lookupCount.get() < MAX_LOOKUPS) {
+                lookupCount.incrementAndGet();
+                lookups.put(key, method != null ? method : NONE);
+            }
+            return method;
+        }
+        return result == NONE ? null : (Method) result;
+    }
+
+    /**
+     * Key of a cached method lookup
+     */
+    static final class Lookup {
+        static final int SETTER = 0;
+
+        static final int GETTER = 1;
+
+        static final int METHOD = 2;
+
+        final int kind;
+
+        final String name;
+
+        final Class type;
+
+        Lookup(int kind, String name, Class type) {
+            this.kind = kind;
+            this.name = name;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Lookup)) {
+                return false;
+            }
+            Lookup other = (Lookup) obj;
+            return kind == other.kind && name.equals(other.name) && type == other.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return (name.hashCode() * 31 + kind) * 31 + (type != null ? type.hashCode() : 0);
+        }
+    }
+
     /**
      * Does some checks on the property name to turn it into a java bean property.
      * <p>
@@ -186,6 +277,10 @@ public class ClassProperties {
     * Looks up a method by name.
     */
     public Method method(String name) {
+        return lookup(Lookup.METHOD, name, null);
+    }
+
+    Method findMethod(String name) {
         for(Method method : methods) {
             if(method.getName().equalsIgnoreCase(name))
                 return method;
@@ -0,0 +1,95 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.ows.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.geoserver.ows.KvpParser;
+
+/**
+ * A set of {@link KvpParser} indexed by key, so that finding the parser of a kvp entry only
+ * looks at the parsers declaring that key instead of all the registered ones.
+ * <p>
+ * The index is immutable and can be shared among requests, see
+ * {@link KvpUtils#parse(Map, KvpParsers)}. Subclasses can still disable parsers from lookup
+ * to lookup, see {@link #isEnabled(KvpParser)}.
+ * </p>
+ */
+public class KvpParsers {
+
+    /**
+     * The parsers by upper case key, in registration order
+     */
+    final Map<String, List<KvpParser>> parsers = new HashMap<String, List<KvpParser>>();
+
+    public KvpParsers(Collection<KvpParser> parsers) {
+        for (KvpParser parser : parsers) {
+            if (parser.getKey() == null) {
+                continue;
+            }
+            String key = parser.getKey().toUpperCase();
+            List<KvpParser> list = this.parsers.get(key);
+            if (list == null) {
+                list = new ArrayList<KvpParser>(1);
+                this.parsers.put(key, list);
+            }
+            list.add(parser);
+        }
+    }
+
+    /**
+     * Finds the parser for the specified key, with the same rules as
+     * {@link KvpUtils#purgeParsers(List, String, String, String)} and
+     * {@link KvpUtils#findParser(String, String, String, String, Collection)}.
+     *
+     * @param key the key matching the value to parse
+     * @param service the service parameter from the kvp (can be null)
+     * @param version the version parameter from the kvp (can be null)
+     * @param request the request parameter from the kvp (can be null)
+     * @return the found parser or null (if no parser is found)
+     * @throws IllegalStateException if more than one candidate parser is found
+     */
+    public KvpParser find(String key, String service, String version, String request) {
+        // kvp maps keys are upper case already, no new string in the common case
+        List<KvpParser> candidates = parsers.get(key.toUpperCase());
+        if (candidates == null) {
+            return null;
+        }
+        if (candidates.size() == 1) {
+            KvpParser parser = candidates.get(0);
+            return isEnabled(parser) && KvpUtils.matches(parser, service, version, request)
+                    ? parser : null;
+        }
+
+        List<KvpParser> matching = new ArrayList<KvpParser>(candidates.size());
+        for (KvpParser parser : candidates) {
+            if (isEnabled(parser)) {
+                matching.add(parser);
+            }
+        }
+        KvpUtils.purgeParsers(matching, service, version, request);
+        return KvpUtils.findParser(key, service, request, version, matching);
+    }
+
+    /**
+     * Returns whether the parser can be used, checked on each lookup. All parsers are enabled
+     * by default, the dispatcher uses this to apply the extension filters, whose decisions can
+     * change over time.
+     */
+    protected boolean isEnabled(KvpParser parser) {
+        return true;
+    }
+
+    /**
+     * The number of distinct keys having a parser
+     */
+    public int size() {
+        return parsers.size();
+    }
+}
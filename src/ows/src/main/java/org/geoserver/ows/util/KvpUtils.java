@@ -337,6 +337,10 @@ public class KvpUtils {
 
             if (entry.getValue() instanceof String) {
                 value = trim((String) entry.getValue());
+            } else if (entry.getValue() instanceof String[]
+                    && ((String[]) entry.getValue()).length == 1) {
+                // the common case for servlet parameters, no need to check for repetitions
+                value = trim(((String[]) entry.getValue())[0]);
             } else if (entry.getValue() instanceof String[]) {
                 String[] values = (String[]) entry.getValue();
                 // we use a set so that mere value repetition (a common error for which the OWS spec
@@ -357,8 +361,9 @@ public class KvpUtils {
                 }
             }
             
-            //convert key to lowercase 
-            normalizedKvp.put(key.toLowerCase(), value);
+            //the map is case insensitive and stores the keys upper case, converting them 
+            //here avoids creating another string in put
+            normalizedKvp.put(key.toUpperCase(), value);
         }
         
         return normalizedKvp;
@@ -392,16 +397,26 @@ public class KvpUtils {
      * @return A list of errors that occured.
      */
     public static List<Throwable> parse(Map kvp) {
-
         // look up parser objects
-        List<KvpParser> parsers = GeoServerExtensions.extensions(KvpParser.class);
+        return parse(kvp, new KvpParsers(GeoServerExtensions.extensions(KvpParser.class)));
+    }
 
-        //strip out parsers which do not match current service/request/version
+    /**
+     * Parses a map of key value pairs using the specified parsers, see {@link #parse(Map)}.
+     * <p>
+     * Callers parsing many requests can build the {@link KvpParsers} index once and share it.
+     * </p>
+     * 
+     * @param kvp raw or unparsed kvp.
+     * @param parsers the parsers indexed by key.
+     * 
+     * @return A list of errors that occured.
+     */
+    public static List<Throwable> parse(Map kvp, KvpParsers parsers) {
+        //parsers not matching current service/request/version are skipped on lookup
         String service = KvpUtils.getSingleValue(kvp, "service");
         String version = KvpUtils.getSingleValue(kvp, "version");
         String request = KvpUtils.getSingleValue(kvp, "request");
-        
-        purgeParsers(parsers, service, version, request);
 
         // parser the kvp's
         ArrayList<Throwable> errors = new ArrayList<Throwable>();
@@ -410,7 +425,7 @@ public class KvpUtils {
             String key = (String) entry.getKey();
 
             // find the parser for this key value pair
-            KvpParser parser = findParser(key, service, request, version, parsers);
+            KvpParser parser = parsers.find(key, service, version, request);
 
             // parse the value
             Object parsed = null;
@@ -455,20 +470,29 @@ public class KvpUtils {
     public static void purgeParsers(List<KvpParser> parsers, final String service,
             final String version, final String request) {
         for (Iterator<KvpParser> p = parsers.iterator(); p.hasNext();) {
-            KvpParser parser = p.next();
-
-            if (parser.getService() != null && !parser.getService().equalsIgnoreCase(service)) {
-                p.remove();
-            } else if (parser.getVersion() != null
-                    && !parser.getVersion().toString().equals(version)) {
-                p.remove();
-            } else if (parser.getRequest() != null
-                    && !parser.getRequest().equalsIgnoreCase(request)) {
+            if (!matches(p.next(), service, version, request)) {
                 p.remove();
             }
         }
     }
 
+    /**
+     * Returns true if the parser can be used for the current service/request/version
+     */
+    static boolean matches(KvpParser parser, final String service, final String version,
+            final String request) {
+        if (parser.getService() != null && !parser.getService().equalsIgnoreCase(service)) {
+            return false;
+        } else if (parser.getVersion() != null
+                && !parser.getVersion().toString().equals(version)) {
+            return false;
+        } else if (parser.getRequest() != null
+                && !parser.getRequest().equalsIgnoreCase(request)) {
+            return false;
+        }
+        return true;
+    }
+
     /**
      * Find a parser for the passed key into registered parsers ({@link KvpParser})
      * 
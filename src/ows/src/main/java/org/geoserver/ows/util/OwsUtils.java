@@ -14,9 +14,10 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.geoserver.platform.ServiceException;
-import org.geotools.util.SoftValueHashMap;
 
 
 /**
@@ -76,19 +77,23 @@ public class OwsUtils {
     }
     
     /**
-     * Cache of reflection information about a class, keyed by class.
+     * Cache of reflection information about a class, keyed by class. The entries are small and
+     * the classes few, they are kept for the lifetime of the application so that binding
+     * request beans never goes back to reflection lookups.
      */
-    static Map<Class, ClassProperties> classPropertiesCache = new SoftValueHashMap<Class, ClassProperties>();
+    static ConcurrentMap<Class, ClassProperties> classPropertiesCache = new ConcurrentHashMap<Class, ClassProperties>();
     
     /**
      * Accessor for the class to property info cache.
      */
     static ClassProperties classProperties(Class clazz) {
-        // SoftValueHashMap is thread safe, no need to synch
         ClassProperties properties = classPropertiesCache.get(clazz);
         if(properties == null) {
             properties = new ClassProperties(clazz);
-            classPropertiesCache.put(clazz, properties);
+            ClassProperties existing = classPropertiesCache.putIfAbsent(clazz, properties);
+            if (existing != null) {
+                properties = existing;
+            }
         }
         return properties;
     }
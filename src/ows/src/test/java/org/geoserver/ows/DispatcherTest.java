@@ -9,7 +9,10 @@ import java.io.*;
 import java.lang.reflect.Method;
 import java.net.URL;
 import java.rmi.ServerException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -23,11 +26,13 @@ import javax.servlet.http.HttpServletResponse;
 
 import junit.framework.TestCase;
 
+import org.geoserver.platform.ExtensionFilter;
 import org.geoserver.platform.Operation;
 import org.geoserver.platform.Service;
 import org.geoserver.platform.ServiceException;
 import org.geoserver.test.CodeExpectingHttpServletResponse;
 import org.geotools.util.Version;
+import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.support.FileSystemXmlApplicationContext;
 import org.springframework.web.servlet.ModelAndView;
 
@@ -689,4 +694,94 @@ public class DispatcherTest extends TestCase {
 
         assertEquals("Hello world!", response.getOutputStreamContent());
     }
+
+    public void testDispatchTables() throws Exception {
+        URL url = getClass().getResource("applicationContext.xml");
+        FileSystemXmlApplicationContext context = new FileSystemXmlApplicationContext(url.toString());
+        Dispatcher dispatcher = (Dispatcher) context.getBean("dispatcher");
+
+        DispatchTables tables = dispatcher.tables();
+        assertSame(tables, dispatcher.tables());
+        assertNotNull(dispatcher.findService("HELLO", null, null));
+        assertTrue(tables.hasVersion(new Version("1.0.0")));
+        assertFalse(tables.hasVersion(new Version("1.1.0")));
+        assertTrue(tables.kvpReader(Message.class) instanceof MessageKvpRequestReader);
+        assertEquals(1, tables.xmlReaders("hello").size());
+        assertEquals(1, tables.responses(Message.class, null).size());
+
+        // filters are consulted on each lookup
+        final AtomicBoolean exclude = new AtomicBoolean(true);
+        context.getBeanFactory().registerSingleton("messageFilter", new ExtensionFilter() {
+            public boolean exclude(String beanId, Object bean) {
+                return exclude.get() && "messageKvpReader".equals(beanId);
+            }
+        });
+        context.publishEvent(new ContextRefreshedEvent(context));
+        assertNotSame(tables, dispatcher.tables());
+        tables = dispatcher.tables();
+        assertNull(tables.kvpReader(Message.class));
+        exclude.set(false);
+        assertTrue(tables.kvpReader(Message.class) instanceof MessageKvpRequestReader);
+    }
+
+    public void testRequestTimings() throws Exception {
+        URL url = getClass().getResource("applicationContext.xml");
+        FileSystemXmlApplicationContext context = new FileSystemXmlApplicationContext(url.toString());
+        Dispatcher dispatcher = (Dispatcher) context.getBean("dispatcher");
+        dispatcher.collectTimings = true;
+        dispatcher.serverTiming = true;
+
+        MockHttpServletRequest request = new MockHttpServletRequest() {
+                String encoding;
+
+                public int getServerPort() {
+                    return 8080;
+                }
+
+                public String getCharacterEncoding() {
+                    return encoding;
+                }
+
+                public void setCharacterEncoding(String encoding) {
+                    this.encoding = encoding;
+                }
+            };
+        request.setScheme("http");
+        request.setServerName("localhost");
+        request.setContextPath("/geoserver");
+        request.setMethod("GET");
+        request.setupAddParameter("service", "hello");
+        request.setupAddParameter("request", "Hello");
+        request.setupAddParameter("version", "1.0.0");
+        request.setupAddParameter("message", "Hello world!");
+        request.setRequestURI(
+            "http://localhost/geoserver/ows?service=hello&request=hello&message=HelloWorld");
+        request.setQueryString("service=hello&request=hello&message=HelloWorld");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        final List<RequestTimings> timings = new ArrayList<RequestTimings>();
+        dispatcher.callbacks.add(new AbstractDispatcherCallback() {
+            @Override
+            public void finished(Request request) {
+                timings.add(request.getTimings());
+            }
+        });
+
+        dispatcher.handleRequest(request, response);
+        assertEquals("Hello world!", response.getOutputStreamContent());
+
+        // the header only contains the phases before the response is written
+        String header = response.getHeader("Server-Timing");
+        assertNotNull(header);
+        assertTrue(header.startsWith("parse;dur="));
+        assertTrue(header.contains("service;dur="));
+        assertTrue(header.contains("execute;dur="));
+        assertFalse(header.contains("encode"));
+
+        // while the request has them all
+        assertEquals(1, timings.size());
+        assertEquals(Arrays.asList(RequestTimings.PARSE, RequestTimings.SERVICE,
+                RequestTimings.EXECUTE, RequestTimings.ENCODE, RequestTimings.FLUSH),
+                new ArrayList<String>(timings.get(0).getMillis().keySet()));
+    }
 }
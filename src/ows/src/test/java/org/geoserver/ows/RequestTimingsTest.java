@@ -0,0 +1,71 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.ows;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class RequestTimingsTest {
+
+    @After
+    public void clearRequest() {
+        Dispatcher.REQUEST.remove();
+    }
+
+    @Test
+    public void testAccumulate() {
+        RequestTimings timings = new RequestTimings();
+        assertEquals(-1, timings.getNanos(RequestTimings.PARSE));
+
+        timings.add(RequestTimings.PARSE, 1000000);
+        timings.add(RequestTimings.EXECUTE, 5000000);
+        timings.add(RequestTimings.PARSE, 500000);
+        assertEquals(1500000, timings.getNanos(RequestTimings.PARSE));
+
+        // phases are kept in the order they were first recorded
+        Map<String, Double> millis = timings.getMillis();
+        assertArrayEquals(new String[] { RequestTimings.PARSE, RequestTimings.EXECUTE }, millis
+                .keySet().toArray());
+        assertEquals(1.5, millis.get(RequestTimings.PARSE), 0d);
+        assertEquals(5, millis.get(RequestTimings.EXECUTE), 0d);
+    }
+
+    @Test
+    public void testRecord() {
+        RequestTimings timings = new RequestTimings();
+        long start = System.nanoTime();
+        timings.record(RequestTimings.SERVICE, start);
+        assertTrue(timings.getNanos(RequestTimings.SERVICE) >= 0);
+    }
+
+    @Test
+    public void testServerTiming() {
+        RequestTimings timings = new RequestTimings();
+        assertEquals("", timings.toServerTiming());
+
+        timings.add(RequestTimings.PARSE, 520000);
+        timings.add("wms-render", 125400000);
+        assertEquals("parse;dur=0.52, wms-render;dur=125.40", timings.toServerTiming());
+    }
+
+    @Test
+    public void testCurrent() {
+        assertNull(RequestTimings.current());
+
+        Request request = new Request();
+        Dispatcher.REQUEST.set(request);
+        assertNull(RequestTimings.current());
+
+        RequestTimings timings = new RequestTimings();
+        request.setTimings(timings);
+        assertSame(timings, RequestTimings.current());
+        // copies share the timings
+        assertSame(timings, new Request(request).getTimings());
+    }
+}
@@ -0,0 +1,138 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.ows.kvp;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.geoserver.ows.KvpParser;
+import org.geoserver.ows.util.KvpMap;
+import org.geoserver.ows.util.KvpParsers;
+import org.geoserver.ows.util.KvpUtils;
+
+/**
+ * Simple benchmark measuring the time and memory allocated to normalize and parse the kvp of
+ * typical GetMap and GetFeature requests, comparing a scan of all the registered parsers with
+ * a shared {@link KvpParsers} index.
+ * <p>
+ * Not a unit test, run it by hand with <code>main</code>, optionally passing the number of
+ * registered parsers, a full GeoServer registers a couple hundred of them. The allocation
+ * figures require a JVM exposing per thread allocation counters, such as the Oracle and OpenJDK
+ * ones.
+ * </p>
+ */
+public class KvpParseBenchmark {
+
+    static final int REQUESTS = 200000;
+
+    static final String GETMAP = "service=WMS&version=1.1.1&request=GetMap&layers=topp:states"
+            + "&styles=&bbox=-124.73,24.96,-66.97,49.37&width=768&height=330&srs=EPSG:4326"
+            + "&format=image/png&transparent=true&tiled=true&format_options=antialias:none";
+
+    static final String GETFEATURE = "service=WFS&version=1.0.0&request=GetFeature"
+            + "&typeName=topp:states&maxFeatures=50&outputFormat=application/json"
+            + "&srsName=EPSG:4326&propertyName=STATE_NAME,PERSONS&startIndex=0";
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        List<KvpParser> parsers = parsers(size);
+        KvpParsers index = new KvpParsers(parsers);
+
+        for (int i = 0; i < 2; i++) {
+            for (String query : new String[] { GETMAP, GETFEATURE }) {
+                Map<String, String[]> raw = raw(query);
+                String name = query.substring(query.indexOf("request=") + 8,
+                        query.indexOf('&', query.indexOf("request=")));
+
+                long allocated = allocatedBytes();
+                long start = System.nanoTime();
+                for (int j = 0; j < REQUESTS; j++) {
+                    scan(KvpUtils.normalize(raw), parsers);
+                }
+                report(name + ", scan:", start, allocated);
+
+                allocated = allocatedBytes();
+                start = System.nanoTime();
+                for (int j = 0; j < REQUESTS; j++) {
+                    KvpUtils.parse(KvpUtils.normalize(raw), index);
+                }
+                report(name + ", index:", start, allocated);
+            }
+        }
+    }
+
+    /**
+     * Builds the registered parsers, the ones used by the requests plus others bound to
+     * specific services, as a real setup would have
+     */
+    static List<KvpParser> parsers(int size) {
+        List<KvpParser> parsers = new ArrayList<KvpParser>();
+        String[] integers = { "width", "height", "maxFeatures", "startIndex" };
+        for (String key : integers) {
+            parsers.add(new IntegerKvpParser(key));
+        }
+        parsers.add(new BooleanKvpParser("transparent"));
+        parsers.add(new BooleanKvpParser("tiled"));
+        for (int i = parsers.size(); i < size; i++) {
+            IntegerKvpParser parser = new IntegerKvpParser("key" + i);
+            parser.setService(i % 2 == 0 ? "WMS" : "WFS");
+            parsers.add(parser);
+        }
+        return parsers;
+    }
+
+    /**
+     * The query string as the servlet parameter map would hold it
+     */
+    static Map<String, String[]> raw(String query) {
+        Map<String, String[]> raw = new HashMap<String, String[]>();
+        for (String kvp : query.split("&")) {
+            int idx = kvp.indexOf('=');
+            raw.put(kvp.substring(0, idx), new String[] { kvp.substring(idx + 1) });
+        }
+        return raw;
+    }
+
+    /**
+     * Parses looking through all the parsers, the way the dispatcher used to
+     */
+    static void scan(KvpMap kvp, List<KvpParser> registered) throws Exception {
+        String service = KvpUtils.getSingleValue(kvp, "service");
+        String version = KvpUtils.getSingleValue(kvp, "version");
+        String request = KvpUtils.getSingleValue(kvp, "request");
+        List<KvpParser> parsers = new ArrayList<KvpParser>(registered);
+        KvpUtils.purgeParsers(parsers, service, version, request);
+
+        for (Iterator<Map.Entry<Object, Object>> it = kvp.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<Object, Object> entry = it.next();
+            KvpParser parser = KvpUtils.findParser((String) entry.getKey(), service, request,
+                    version, parsers);
+            if (parser != null) {
+                entry.setValue(parser.parse((String) entry.getValue()));
+            }
+        }
+    }
+
+    static void report(String label, long start, long allocated) {
+        long elapsed = System.nanoTime() - start;
+        allocated = allocatedBytes() - allocated;
+        System.out.println(String.format("%-20s %8.1f ns, %8.1f bytes per request", label,
+                (double) elapsed / REQUESTS, (double) allocated / REQUESTS));
+    }
+
+    static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread
+                    .currentThread().getId());
+        }
+        return 0;
+    }
+}
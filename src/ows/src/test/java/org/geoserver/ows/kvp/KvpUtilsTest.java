@@ -6,11 +6,17 @@
 package org.geoserver.ows.kvp;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import junit.framework.TestCase;
 
+import org.geoserver.ows.KvpParser;
+import org.geoserver.ows.util.KvpMap;
+import org.geoserver.ows.util.KvpParsers;
 import org.geoserver.ows.util.KvpUtils;
 
 public class KvpUtilsTest extends TestCase {
@@ -178,5 +184,71 @@ public class KvpUtilsTest extends TestCase {
         assertEquals("NAME='geoserver'", kvp.get("CQL_FILTER"));
     }
 
-    
+    public void testNormalize() {
+        Map<String, Object> raw = new HashMap<String, Object>();
+        raw.put("service", new String[] { " WMS " });
+        raw.put("Layers", new String[] { "a", "a" });
+        raw.put("styles", new String[] { "a", "b" });
+        raw.put("format", "image/png");
+
+        KvpMap kvp = KvpUtils.normalize(raw);
+        assertEquals("WMS", kvp.get("service"));
+        assertEquals("a", kvp.get("layers"));
+        assertTrue(Arrays.equals(new String[] { "a", "b" }, (String[]) kvp.get("STYLES")));
+        assertEquals("image/png", kvp.get("Format"));
+    }
+
+    public void testParseWithIndex() {
+        IntegerKvpParser width = new IntegerKvpParser("width");
+        IntegerKvpParser wmsWidth = new IntegerKvpParser("width");
+        wmsWidth.setService("WMS");
+        BooleanKvpParser wfsTransparent = new BooleanKvpParser("transparent");
+        wfsTransparent.setService("WFS");
+        KvpParsers parsers = new KvpParsers(Arrays.<KvpParser> asList(width, wmsWidth,
+                wfsTransparent));
+        assertEquals(2, parsers.size());
+
+        assertSame(wmsWidth, parsers.find("WIDTH", "wms", null, "GetMap"));
+        assertSame(width, parsers.find("WIDTH", "wfs", null, "GetFeature"));
+        assertNull(parsers.find("TRANSPARENT", "wms", null, "GetMap"));
+        assertNull(parsers.find("HEIGHT", "wms", null, "GetMap"));
+
+        Map<String, Object> raw = new HashMap<String, Object>();
+        raw.put("service", "WMS");
+        raw.put("width", "256");
+        raw.put("transparent", "true");
+        raw.put("height", "abc");
+        KvpMap kvp = KvpUtils.normalize(raw);
+        List<Throwable> errors = KvpUtils.parse(kvp, parsers);
+        assertTrue(errors.isEmpty());
+        assertEquals(256, kvp.get("width"));
+        // no parser for these
+        assertEquals("true", kvp.get("transparent"));
+        assertEquals("abc", kvp.get("height"));
+
+        kvp.put("width", "abc");
+        errors = KvpUtils.parse(kvp, parsers);
+        assertEquals(1, errors.size());
+        assertEquals("abc", kvp.get("width"));
+    }
+
+    public void testParsersDisabledOnLookup() {
+        IntegerKvpParser width = new IntegerKvpParser("width");
+        final IntegerKvpParser wmsWidth = new IntegerKvpParser("width");
+        wmsWidth.setService("WMS");
+        final Set<KvpParser> disabled = new HashSet<KvpParser>();
+        KvpParsers parsers = new KvpParsers(Arrays.<KvpParser> asList(width, wmsWidth)) {
+            @Override
+            protected boolean isEnabled(KvpParser parser) {
+                return !disabled.contains(parser);
+            }
+        };
+        assertSame(wmsWidth, parsers.find("WIDTH", "wms", null, "GetMap"));
+        disabled.add(wmsWidth);
+        assertSame(width, parsers.find("WIDTH", "wms", null, "GetMap"));
+        disabled.add(width);
+        assertNull(parsers.find("WIDTH", "wms", null, "GetMap"));
+        disabled.clear();
+        assertSame(wmsWidth, parsers.find("WIDTH", "wms", null, "GetMap"));
+    }
 }
@@ -5,6 +5,7 @@
  */
 package org.geoserver.ows.util;
 
+import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -64,6 +65,28 @@ public class OwsUtilsTest extends TestCase {
         assertEquals("v", baz.map.get("k"));
     }
 
+    public void testCachedLookups() throws Exception {
+        ClassProperties properties = OwsUtils.getClassProperties(Foo.class);
+        assertSame(properties, OwsUtils.getClassProperties(Foo.class));
+
+        Method setter = OwsUtils.setter(Foo.class, "B", Integer.class);
+        assertNotNull(setter);
+        assertSame(setter, OwsUtils.setter(Foo.class, "B", Integer.class));
+        // lax match and primitive types are still honored
+        assertEquals(setter, OwsUtils.setter(Foo.class, "_b", Integer.class));
+        assertEquals("setC", OwsUtils.setter(Foo.class, "c", Float.class).getName());
+        // misses are cached too
+        assertNull(OwsUtils.setter(Foo.class, "b", String.class));
+        assertNull(OwsUtils.setter(Foo.class, "b", String.class));
+
+        // past the limit lookups keep working, without being cached
+        for (int i = 0; i < ClassProperties.MAX_LOOKUPS; i++) {
+            assertNull(properties.getter("x" + i, null));
+        }
+        assertEquals(ClassProperties.MAX_LOOKUPS, properties.lookups.size());
+        assertNotNull(properties.getter("a", String.class));
+    }
+
     class Foo {
         String a;
         Integer b;
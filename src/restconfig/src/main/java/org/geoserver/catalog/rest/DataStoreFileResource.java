@@ -17,6 +17,7 @@ import java.net.URL;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -30,6 +31,7 @@ import org.geoserver.catalog.DataStoreInfo;
 import org.geoserver.catalog.FeatureTypeInfo;
 import org.geoserver.catalog.LayerInfo;
 import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.impl.CatalogImpl;
 import org.geoserver.rest.RestletException;
 import org.geoserver.rest.format.StreamDataFormat;
 import org.geoserver.rest.util.RESTUtils;
@@ -382,82 +384,9 @@ public class DataStoreFileResource extends StoreFileResource {
                 return;
             }
             
-            //load the target datastore
-            //DataStore ds = (DataStore) info.getDataStore(null);
-            Map<String, FeatureTypeInfo> featureTypesByNativeName =
-                new HashMap<String, FeatureTypeInfo>();
-            for (FeatureTypeInfo ftInfo : catalog.getFeatureTypesByDataStore(info)) {
-                featureTypesByNativeName.put(ftInfo.getNativeName(), ftInfo);
-            }
-            
-            String[] featureTypeNames = source.getTypeNames();
-            for ( int i = 0; i < featureTypeNames.length; i++ ) {
-                
-                //unless configure specified "all", only configure the first feature type
-                if ( !"all".equalsIgnoreCase( configure ) && i > 0 ) {
-                    break;
-                }
-                
-                FeatureSource fs = ds.getFeatureSource(featureTypeNames[i]); 
-                FeatureTypeInfo ftinfo = featureTypesByNativeName.get(featureTypeNames[i]);
-                
-                if ( ftinfo == null) {
-                    //auto configure the feature type as well
-                    ftinfo = builder.buildFeatureType(fs);
-                    builder.lookupSRS(ftinfo, true);
-                    builder.setupBounds(ftinfo);
-                }
-                
-                //update the bounds
-                ReferencedEnvelope bounds = fs.getBounds();
-                ftinfo.setNativeBoundingBox( bounds );
-                
-                //TODO: set lat lon bounding box
-                
-                if ( ftinfo.getId() == null ) {
-                    
-                    //do a check for a type already named this name in the catalog, if it is already
-                    // there try to rename it
-                    if (catalog.getFeatureTypeByName(namespace, ftinfo.getName()) != null) {
-                        LOGGER.warning(String.format("Feature type %s already exists in namespace %s, " +
-                            "attempting to rename", ftinfo.getName(), namespace.getPrefix()));
-                        int x = 1;
-                        String originalName = ftinfo.getName();
-                        do {
-                            ftinfo.setName(originalName + i);
-                            i++;
-                        }
-                        while(i < 10 && catalog.getFeatureTypeByName(namespace, ftinfo.getName()) != null);
-                    }
-                    catalog.validate(ftinfo, true).throwIfInvalid();
-                    catalog.add( ftinfo );
-                    
-                    //add a layer for the feature type as well
-                    LayerInfo layer = builder.buildLayer(ftinfo);
-
-                    boolean valid = true;
-                    try { 
-                        if (!catalog.validate(layer, true).isValid()) {
-                            valid = false;
-                        }
-                    } catch (Exception e) {
-                        valid = false;
-                    }
-                    
-                    layer.setEnabled(valid);
-                    catalog.add(layer);
-                    
-                    LOGGER.info("Added feature type " + ftinfo.getName());
-                   
-                }
-                else {
-                    LOGGER.info("Updated feature type " + ftinfo.getName());
-                    catalog.validate(ftinfo, false).throwIfInvalid();
-                    catalog.save( ftinfo );
-                }
-                
-                getResponse().setStatus( Status.SUCCESS_CREATED );
-            }
+            //configure the feature types in a single catalog batch, so that they are published
+            // at once rather than one at a time
+            configureFeatureTypes(source, ds, info, namespace, builder, configure);
             //}
         } 
         catch (Exception e) {
@@ -496,6 +425,94 @@ public class DataStoreFileResource extends StoreFileResource {
         }
     }
     
+    /**
+     * Configures the feature types of the uploaded data as a single catalog batch
+     */
+    void configureFeatureTypes(final DataStore source, final DataStore ds,
+            final DataStoreInfo info, final NamespaceInfo namespace, final CatalogBuilder builder,
+            final String configure) throws Exception {
+        CatalogImpl.batch(catalog, new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                Map<String, FeatureTypeInfo> featureTypesByNativeName =
+                    new HashMap<String, FeatureTypeInfo>();
+                for (FeatureTypeInfo ftInfo : catalog.getFeatureTypesByDataStore(info)) {
+                    featureTypesByNativeName.put(ftInfo.getNativeName(), ftInfo);
+                }
+        
+                String[] featureTypeNames = source.getTypeNames();
+                for ( int i = 0; i < featureTypeNames.length; i++ ) {
+            
+                    //unless configure specified "all", only configure the first feature type
+                    if ( !"all".equalsIgnoreCase( configure ) && i > 0 ) {
+                        break;
+                    }
+            
+                    FeatureSource fs = ds.getFeatureSource(featureTypeNames[i]); 
+                    FeatureTypeInfo ftinfo = featureTypesByNativeName.get(featureTypeNames[i]);
+            
+                    if ( ftinfo == null) {
+                        //auto configure the feature type as well
+                        ftinfo = builder.buildFeatureType(fs);
+                        builder.lookupSRS(ftinfo, true);
+                        builder.setupBounds(ftinfo);
+                    }
+            
+                    //update the bounds
+                    ReferencedEnvelope bounds = fs.getBounds();
+                    ftinfo.setNativeBoundingBox( bounds );
+            
+                    //TODO: set lat lon bounding box
+            
+                    if ( ftinfo.getId() == null ) {
+                
+                        //do a check for a type already named this name in the catalog, if it is already
+                        // there try to rename it
+                        if (catalog.getFeatureTypeByName(namespace, ftinfo.getName()) != null) {
+                            LOGGER.warning(String.format("Feature type %s already exists in namespace %s, " +
+                                "attempting to rename", ftinfo.getName(), namespace.getPrefix()));
+                            int x = 1;
+                            String originalName = ftinfo.getName();
+                            do {
+                                ftinfo.setName(originalName + i);
+                                i++;
+                            }
+                            while(i < 10 && catalog.getFeatureTypeByName(namespace, ftinfo.getName()) != null);
+                        }
+                        catalog.validate(ftinfo, true).throwIfInvalid();
+                        catalog.add( ftinfo );
+                
+                        //add a layer for the feature type as well
+                        LayerInfo layer = builder.buildLayer(ftinfo);
+
+                        boolean valid = true;
+                        try { 
+                            if (!catalog.validate(layer, true).isValid()) {
+                                valid = false;
+                            }
+                        } catch (Exception e) {
+                            valid = false;
+                        }
+                
+                        layer.setEnabled(valid);
+                        catalog.add(layer);
+                
+                        LOGGER.info("Added feature type " + ftinfo.getName());
+               
+                    }
+                    else {
+                        LOGGER.info("Updated feature type " + ftinfo.getName());
+                        catalog.validate(ftinfo, false).throwIfInvalid();
+                        catalog.save( ftinfo );
+                    }
+            
+                    getResponse().setStatus( Status.SUCCESS_CREATED );
+                }
+                return null;
+            }
+        });
+    }
+
     void updateParameters(DataStoreInfo info, NamespaceInfo namespace, DataStoreFactorySpi factory, File uploadedFile) {
         Map connectionParameters = info.getConnectionParameters();
         updateParameters(connectionParameters, factory, uploadedFile);
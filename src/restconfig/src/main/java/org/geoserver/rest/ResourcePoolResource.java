@@ -0,0 +1,61 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.rest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.ResourceCacheMXBean;
+import org.geoserver.rest.format.DataFormat;
+import org.geoserver.rest.format.MapJSONFormat;
+import org.geoserver.rest.format.MapXMLFormat;
+import org.restlet.data.Request;
+import org.restlet.data.Response;
+
+/**
+ * Lists the configuration and usage statistics of the {@link org.geoserver.catalog.ResourcePool}
+ * caches, keyed by cache name.
+ */
+public class ResourcePoolResource extends MapResource {
+
+    Catalog catalog;
+
+    public ResourcePoolResource(Catalog catalog) {
+        this.catalog = catalog;
+    }
+
+    @Override
+    protected List<DataFormat> createSupportedFormats(Request request, Response response) {
+        List<DataFormat> formats = new ArrayList<DataFormat>();
+        formats.add(new MapXMLFormat("resourcePool"));
+        formats.add(new MapJSONFormat());
+        return formats;
+    }
+
+    @Override
+    public Map getMap() throws Exception {
+        Map<String, Object> caches = new LinkedHashMap<String, Object>();
+        for (ResourceCacheMXBean cache : catalog.getResourcePool().getCaches()) {
+            Map<String, Object> stats = new LinkedHashMap<String, Object>();
+            stats.put("size", cache.getSize());
+            stats.put("hardReferences", cache.getHardReferences());
+            stats.put("maxEntries", cache.getMaxEntries());
+            stats.put("maxWeight", cache.getMaxWeight());
+            stats.put("expiry", cache.getExpiry());
+            stats.put("hitCount", cache.getHitCount());
+            stats.put("missCount", cache.getMissCount());
+            stats.put("hitRate", cache.getHitRate());
+            stats.put("evictionCount", cache.getEvictionCount());
+            caches.put(cache.getName(), stats);
+        }
+
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("caches", caches);
+        return map;
+    }
+}
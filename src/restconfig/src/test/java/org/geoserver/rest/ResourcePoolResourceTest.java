@@ -0,0 +1,36 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.rest;
+
+import static org.junit.Assert.*;
+
+import net.sf.json.JSON;
+import net.sf.json.JSONObject;
+
+import org.geoserver.test.GeoServerSystemTestSupport;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public class ResourcePoolResourceTest extends GeoServerSystemTestSupport {
+
+    @Test
+    public void testGetAsXML() throws Exception {
+        Document dom = getAsDOM("/rest/resourcepool.xml");
+        assertEquals("resourcePool", dom.getDocumentElement().getNodeName());
+        assertNotNull(getFirstElementByTagName(dom, "dataStores"));
+        assertNotNull(getFirstElementByTagName(dom, "featureTypes"));
+        assertNotNull(getFirstElementByTagName(dom, "hitCount"));
+    }
+
+    @Test
+    public void testGetAsJSON() throws Exception {
+        JSON json = getAsJSON("/rest/resourcepool.json");
+        assertTrue(json instanceof JSONObject);
+        JSONObject caches = ((JSONObject) json).getJSONObject("caches");
+        JSONObject styles = caches.getJSONObject("styles");
+        assertEquals(-1, styles.getLong("maxEntries"));
+        assertTrue(styles.has("evictionCount"));
+    }
+}
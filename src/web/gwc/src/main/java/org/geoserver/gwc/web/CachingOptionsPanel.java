@@ -29,6 +29,7 @@ import org.apache.wicket.model.ResourceModel;
 import org.apache.wicket.validation.IValidatable;
 import org.apache.wicket.validation.IValidator;
 import org.apache.wicket.validation.ValidationError;
+import org.geoserver.gwc.VectorTileMime;
 import org.geoserver.gwc.config.GWCConfig;
 import org.geoserver.web.GeoServerApplication;
 import org.geoserver.web.wicket.LocalizedChoiceRenderer;
@@ -112,13 +113,16 @@ public class CachingOptionsPanel extends Panel {
 
         final List<String> formats = Arrays.asList("image/png", "image/png8", "image/jpeg",
                 "image/gif");
+        // vector tiles only make sense for vector layers and groups
+        final List<String> vectorFormats = Arrays.asList("image/png", "image/png8", "image/jpeg",
+                "image/gif", VectorTileMime.MAPBOX_VECTOR.getFormat());
 
         {
             IModel<List<String>> vectorFormatsModel = new PropertyModel<List<String>>(
                     gwcConfigModel, "defaultVectorCacheFormats");
             vectorFormatsGroup = new CheckGroup<String>("vectorFormatsGroup", vectorFormatsModel);
             configs.add(vectorFormatsGroup);
-            ListView<String> formatsList = new ListView<String>("vectorFromats", formats) {
+            ListView<String> formatsList = new ListView<String>("vectorFromats", vectorFormats) {
                 private static final long serialVersionUID = 1L;
 
                 @Override
@@ -153,7 +157,7 @@ public class CachingOptionsPanel extends Panel {
                     gwcConfigModel, "defaultOtherCacheFormats");
             otherFormatsGroup = new CheckGroup<String>("otherFormatsGroup", otherFormatsModel);
             configs.add(otherFormatsGroup);
-            ListView<String> formatsList = new ListView<String>("otherFromats", formats) {
+            ListView<String> formatsList = new ListView<String>("otherFromats", vectorFormats) {
                 private static final long serialVersionUID = 1L;
 
                 @Override
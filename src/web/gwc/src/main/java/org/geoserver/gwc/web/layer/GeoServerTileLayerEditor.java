@@ -38,6 +38,7 @@ import org.geoserver.catalog.MetadataMap;
 import org.geoserver.catalog.ResourceInfo;
 import org.geoserver.catalog.impl.ModificationProxy;
 import org.geoserver.gwc.GWC;
+import org.geoserver.gwc.VectorTileMime;
 import org.geoserver.gwc.layer.CatalogLayerEventListener;
 import org.geoserver.gwc.layer.GeoServerTileLayer;
 import org.geoserver.gwc.layer.GeoServerTileLayerInfo;
@@ -233,7 +234,7 @@ class GeoServerTileLayerEditor extends FormComponentPanel<GeoServerTileLayerInfo
         configs.add(cacheFormats);
 
         final List<String> formats = Arrays.asList("image/png", "image/png8", "image/jpeg",
-                "image/gif");
+                "image/gif", VectorTileMime.MAPBOX_VECTOR.getFormat());
 
         ListView<String> cacheFormatsList = new ListView<String>("cacheFormats", formats) {
             private static final long serialVersionUID = 1L;
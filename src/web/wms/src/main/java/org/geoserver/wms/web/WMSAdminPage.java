@@ -169,6 +169,28 @@ public class WMSAdminPage extends BaseServiceAdminPage<WMSInfo> {
         CheckBox loopContinuouslyField = new CheckBox("anim.loopcontinuously", loopContinuously);
         form.add(loopContinuouslyField);
         
+        // rendering pool
+        MapModel renderingParallelism = defaultedModel(metadataModel, WMS.RENDERING_PARALLELISM, WMS.RENDERING_PARALLELISM_DEFAULT);
+        TextField<Integer> renderingParallelismField = new TextField<Integer>("renderingPool.parallelism", renderingParallelism, Integer.class);
+        renderingParallelismField.add(new MinimumValidator<Integer>(1));
+        form.add(renderingParallelismField);
+        MapModel poolCoreSize = defaultedModel(metadataModel, WMS.RENDERING_POOL_CORE_SIZE, WMS.RENDERING_POOL_CORE_SIZE_DEFAULT);
+        TextField<Integer> poolCoreSizeField = new TextField<Integer>("renderingPool.coreSize", poolCoreSize, Integer.class);
+        poolCoreSizeField.add(new MinimumValidator<Integer>(0));
+        form.add(poolCoreSizeField);
+        MapModel poolMaxSize = defaultedModel(metadataModel, WMS.RENDERING_POOL_MAX_SIZE, WMS.RENDERING_POOL_MAX_SIZE_DEFAULT);
+        TextField<Integer> poolMaxSizeField = new TextField<Integer>("renderingPool.maxSize", poolMaxSize, Integer.class);
+        poolMaxSizeField.add(new MinimumValidator<Integer>(0));
+        form.add(poolMaxSizeField);
+        MapModel poolQueueSize = defaultedModel(metadataModel, WMS.RENDERING_POOL_QUEUE_SIZE, WMS.RENDERING_POOL_QUEUE_SIZE_DEFAULT);
+        TextField<Integer> poolQueueSizeField = new TextField<Integer>("renderingPool.queueSize", poolQueueSize, Integer.class);
+        poolQueueSizeField.add(new MinimumValidator<Integer>(0));
+        form.add(poolQueueSizeField);
+        MapModel surfacePoolSize = defaultedModel(metadataModel, WMS.DRAWING_SURFACE_POOL_SIZE, WMS.DRAWING_SURFACE_POOL_SIZE_DEFAULT);
+        TextField<Integer> surfacePoolSizeField = new TextField<Integer>("renderingPool.surfacePoolSize", surfacePoolSize, Integer.class);
+        surfacePoolSizeField.add(new MinimumValidator<Integer>(0));
+        form.add(surfacePoolSizeField);
+        
         // kml handling
         MapModel kmlReflectorMode = defaultedModel(metadataModel, WMS.KML_REFLECTOR_MODE, WMS.KML_REFLECTOR_MODE_DEFAULT);
         form.add(new DropDownChoice("kml.defaultReflectorMode", kmlReflectorMode, KML_REFLECTOR_MODES));
@@ -16,7 +16,11 @@ import org.apache.wicket.markup.html.form.ValidationErrorFeedback;
 import org.apache.wicket.util.tester.FormTester;
 import org.geoserver.web.GeoServerHomePage;
 import org.geoserver.web.GeoServerWicketTestSupport;
+import org.geoserver.wms.DefaultWebMapService;
+import org.geoserver.wms.RenderingPool;
+import org.geoserver.wms.WMS;
 import org.geoserver.wms.WMSInfo;
+import org.geoserver.wms.map.DrawingSurfacePool;
 import org.geoserver.wms.web.WMSAdminPage;
 import org.junit.Before;
 import org.junit.Test;
@@ -79,4 +83,50 @@ public class WMSAdminPageTest extends GeoServerWicketTestSupport {
         ft.submit("submit");
         assertTrue(wms.isBBOXForEachCRS());
     }
+
+    @Test
+    public void testRenderingPool() throws Exception {
+        tester.startPage(WMSAdminPage.class);
+        FormTester ft = tester.newFormTester("form");
+        ft.setValue("renderingPool.coreSize", "2");
+        ft.setValue("renderingPool.maxSize", "4");
+        ft.setValue("renderingPool.queueSize", "10");
+        ft.submit("submit");
+        tester.assertNoErrorMessage();
+        try {
+            wms = getGeoServerApplication().getGeoServer().getService(WMSInfo.class);
+            assertEquals(Integer.valueOf(4),
+                    wms.getMetadata().get(WMS.RENDERING_POOL_MAX_SIZE, Integer.class));
+
+            // the shared pool follows the configuration
+            RenderingPool pool = (RenderingPool) DefaultWebMapService.getRenderingPool();
+            assertEquals(2, pool.getCorePoolSize());
+            assertEquals(4, pool.getMaximumPoolSize());
+            assertEquals(10, pool.getQueueCapacity());
+        } finally {
+            DefaultWebMapService.configureRenderingPool(0, 0, 0);
+        }
+    }
+
+    @Test
+    public void testDrawingSurfacePool() throws Exception {
+        assertNull(DefaultWebMapService.getDrawingSurfacePool());
+
+        tester.startPage(WMSAdminPage.class);
+        FormTester ft = tester.newFormTester("form");
+        ft.setValue("renderingPool.surfacePoolSize", "65536");
+        ft.submit("submit");
+        tester.assertNoErrorMessage();
+        try {
+            wms = getGeoServerApplication().getGeoServer().getService(WMSInfo.class);
+            assertEquals(Integer.valueOf(65536),
+                    wms.getMetadata().get(WMS.DRAWING_SURFACE_POOL_SIZE, Integer.class));
+
+            // the shared pool follows the configuration
+            DrawingSurfacePool pool = DefaultWebMapService.getDrawingSurfacePool();
+            assertEquals(65536 * 1024L, pool.getMaxMemory());
+        } finally {
+            DefaultWebMapService.configureDrawingSurfacePool(0);
+        }
+    }
 }
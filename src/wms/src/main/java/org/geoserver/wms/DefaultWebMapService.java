@@ -9,7 +9,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import net.opengis.wfs.FeatureCollectionType;
@@ -22,6 +21,7 @@ import org.geoserver.wms.animate.Animator;
 import org.geoserver.wms.capabilities.Capabilities_1_3_0_Transformer;
 import org.geoserver.wms.capabilities.GetCapabilitiesTransformer;
 import org.geoserver.wms.describelayer.DescribeLayerModel;
+import org.geoserver.wms.map.DrawingSurfacePool;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
 import org.geotools.referencing.crs.DefaultGeographicCRS;
@@ -98,9 +98,14 @@ public class DefaultWebMapService implements WebMapService, ApplicationContextAw
     public static Boolean TRANSPARENT = Boolean.TRUE;
 
     /**
-     * default for 'transparent' parameter.
+     * The rendering pool shared by all renderers, see {@link #getRenderingPool()}
+     */
+    public static volatile ExecutorService RENDERING_POOL;
+
+    /**
+     * The pool of GetMap drawing surfaces, see {@link #getDrawingSurfacePool()}
      */
-    public static ExecutorService RENDERING_POOL;
+    public static volatile DrawingSurfacePool DRAWING_SURFACE_POOL;
 
     /**
      * default for 'bbox' paramter
@@ -143,6 +148,15 @@ public class DefaultWebMapService implements WebMapService, ApplicationContextAw
      */
     private static Boolean USE_GLOBAL_RENDERING_POOL = null;
 
+    /**
+     * The rendering pool size limits, see {@link #configureRenderingPool(int, int, int)}
+     */
+    private static int RENDERING_POOL_CORE_SIZE = WMS.RENDERING_POOL_CORE_SIZE_DEFAULT;
+
+    private static int RENDERING_POOL_MAX_SIZE = WMS.RENDERING_POOL_MAX_SIZE_DEFAULT;
+
+    private static int RENDERING_POOL_QUEUE_SIZE = WMS.RENDERING_POOL_QUEUE_SIZE_DEFAULT;
+
     private GetCapabilities getCapabilities;
 
     private DescribeLayer describeLayer;
@@ -698,7 +712,8 @@ public class DefaultWebMapService implements WebMapService, ApplicationContextAw
     }
 
     /**
-     * Returns a app wide cached rendering pool that can be used for parallelized rendering
+     * Returns a app wide rendering pool that can be used for parallelized rendering, sized
+     * according to {@link #configureRenderingPool(int, int, int)}
      * 
      * @return
      */
@@ -706,7 +721,8 @@ public class DefaultWebMapService implements WebMapService, ApplicationContextAw
         if(USE_GLOBAL_RENDERING_POOL && RENDERING_POOL == null) {
             synchronized (DefaultWebMapService.class) {
                 if(RENDERING_POOL == null) {
-                    RENDERING_POOL = Executors.newCachedThreadPool();
+                    RENDERING_POOL = new RenderingPool(RENDERING_POOL_CORE_SIZE,
+                            RENDERING_POOL_MAX_SIZE, RENDERING_POOL_QUEUE_SIZE);
                 }
             }
         }
@@ -714,7 +730,58 @@ public class DefaultWebMapService implements WebMapService, ApplicationContextAw
         return RENDERING_POOL;
     }
 
+    /**
+     * Sets the size limits of the rendering pool, see {@link RenderingPool} for their meaning. The
+     * pool is resized in place when possible, otherwise it's replaced, and the old one is shut
+     * down once the tasks already submitted complete.
+     */
+    public static synchronized void configureRenderingPool(int coreSize, int maxSize,
+            int queueSize) {
+        RENDERING_POOL_CORE_SIZE = coreSize;
+        RENDERING_POOL_MAX_SIZE = maxSize;
+        RENDERING_POOL_QUEUE_SIZE = queueSize;
+
+        ExecutorService pool = RENDERING_POOL;
+        if (pool == null) {
+            // will be created on first use
+            return;
+        }
+        if (pool instanceof RenderingPool
+                && ((RenderingPool) pool).resize(coreSize, maxSize, queueSize)) {
+            return;
+        }
+        RENDERING_POOL = new RenderingPool(coreSize, maxSize, queueSize);
+        pool.shutdown();
+    }
+
+    /**
+     * Returns the pool of the images GetMap draws on, or null if the surfaces are not pooled, see
+     * {@link #configureDrawingSurfacePool(long)}
+     */
+    public static DrawingSurfacePool getDrawingSurfacePool() {
+        return DRAWING_SURFACE_POOL;
+    }
+
+    /**
+     * Sets the max amount of memory, in bytes, the idle drawing surfaces can use, zero or less
+     * disables pooling. The surfaces pooled so far are dropped when the limit changes.
+     */
+    public static synchronized void configureDrawingSurfacePool(long maxMemory) {
+        DrawingSurfacePool pool = DRAWING_SURFACE_POOL;
+        if (pool != null && pool.getMaxMemory() == maxMemory) {
+            return;
+        }
+        DRAWING_SURFACE_POOL = maxMemory > 0 ? new DrawingSurfacePool(maxMemory) : null;
+        if (pool != null) {
+            pool.dispose();
+        }
+    }
+
     public void destroy() throws Exception {
+        if (DRAWING_SURFACE_POOL != null) {
+            DRAWING_SURFACE_POOL.dispose();
+            DRAWING_SURFACE_POOL = null;
+        }
         if (RENDERING_POOL != null) {
             RENDERING_POOL.shutdown();
             RENDERING_POOL.awaitTermination(10, TimeUnit.SECONDS);
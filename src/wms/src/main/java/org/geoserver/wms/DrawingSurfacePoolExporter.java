@@ -0,0 +1,112 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms;
+
+import java.lang.management.ManagementFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.geoserver.wms.map.DrawingSurfacePool;
+import org.geotools.util.logging.Logging;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * Registers the GetMap drawing surface pool state in the platform MBean server, as
+ * <code>org.geoserver:type=DrawingSurfacePool</code>.
+ * <p>
+ * The registered bean looks up the pool on each call, so it keeps working when the pool is
+ * replaced after a configuration change. All values are zero while pooling is disabled.
+ * </p>
+ */
+public class DrawingSurfacePoolExporter implements InitializingBean, DisposableBean,
+        DrawingSurfacePoolMXBean {
+
+    static final Logger LOGGER = Logging.getLogger(DrawingSurfacePoolExporter.class);
+
+    ObjectName name;
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        try {
+            ObjectName name = new ObjectName("org.geoserver:type=DrawingSurfacePool");
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            this.name = name;
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Unable to register the drawing surface pool state in JMX",
+                    e);
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (name != null) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                LOGGER.log(Level.FINE, "Unable to unregister " + name + " from JMX", e);
+            }
+            name = null;
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return DefaultWebMapService.getDrawingSurfacePool() != null;
+    }
+
+    @Override
+    public long getMaxMemory() {
+        DrawingSurfacePool pool = DefaultWebMapService.getDrawingSurfacePool();
+        return pool == null ? 0 : pool.getMaxMemory();
+    }
+
+    @Override
+    public long getIdleMemory() {
+        DrawingSurfacePool pool = DefaultWebMapService.getDrawingSurfacePool();
+        return pool == null ? 0 : pool.getIdleMemory();
+    }
+
+    @Override
+    public int getIdleCount() {
+        DrawingSurfacePool pool = DefaultWebMapService.getDrawingSurfacePool();
+        return pool == null ? 0 : pool.getIdleCount();
+    }
+
+    @Override
+    public long getHitCount() {
+        DrawingSurfacePool pool = DefaultWebMapService.getDrawingSurfacePool();
+        return pool == null ? 0 : pool.getHitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        DrawingSurfacePool pool = DefaultWebMapService.getDrawingSurfacePool();
+        return pool == null ? 0 : pool.getMissCount();
+    }
+
+    @Override
+    public double getHitRate() {
+        DrawingSurfacePool pool = DefaultWebMapService.getDrawingSurfacePool();
+        return pool == null ? 0 : pool.getHitRate();
+    }
+
+    @Override
+    public long getReleaseCount() {
+        DrawingSurfacePool pool = DefaultWebMapService.getDrawingSurfacePool();
+        return pool == null ? 0 : pool.getReleaseCount();
+    }
+
+    @Override
+    public long getDiscardCount() {
+        DrawingSurfacePool pool = DefaultWebMapService.getDrawingSurfacePool();
+        return pool == null ? 0 : pool.getDiscardCount();
+    }
+}
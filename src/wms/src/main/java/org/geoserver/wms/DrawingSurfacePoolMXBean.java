@@ -0,0 +1,63 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms;
+
+import org.geoserver.wms.map.DrawingSurfacePool;
+
+/**
+ * Configuration and usage statistics of the GetMap {@link DrawingSurfacePool}, exposed in JMX by
+ * {@link DrawingSurfacePoolExporter}.
+ * <p>
+ * The statistics are cumulative since the pool was created, a pool is created again when its
+ * memory limit is changed.
+ * </p>
+ */
+public interface DrawingSurfacePoolMXBean {
+
+    /**
+     * Whether the drawing surfaces are pooled at all
+     */
+    boolean isEnabled();
+
+    /**
+     * The max amount of memory, in bytes, used by the idle surfaces
+     */
+    long getMaxMemory();
+
+    /**
+     * The memory, in bytes, currently used by the idle surfaces
+     */
+    long getIdleMemory();
+
+    /**
+     * The number of idle surfaces
+     */
+    int getIdleCount();
+
+    /**
+     * The number of maps drawn on a reused surface
+     */
+    long getHitCount();
+
+    /**
+     * The number of maps that needed a new surface
+     */
+    long getMissCount();
+
+    /**
+     * The fraction of maps drawn on a reused surface, between 0 and 1
+     */
+    double getHitRate();
+
+    /**
+     * The number of surfaces given back to the pool
+     */
+    long getReleaseCount();
+
+    /**
+     * The number of surfaces dropped to stay within the memory limit
+     */
+    long getDiscardCount();
+}
@@ -45,10 +45,7 @@ import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.map.FeatureLayer;
 import org.geotools.map.WMSLayer;
 import org.geotools.referencing.crs.DefaultGeographicCRS;
-import org.geotools.renderer.lite.MetaBufferEstimator;
 import org.geotools.styling.FeatureTypeConstraint;
-import org.geotools.styling.FeatureTypeStyle;
-import org.geotools.styling.Rule;
 import org.geotools.styling.Style;
 import org.geotools.util.logging.Logging;
 import org.opengis.feature.Feature;
@@ -572,19 +569,8 @@ public class GetMap {
      * @return
      */
     static int computeLayerBuffer(Style style, double scaleDenominator) {
-        final double TOLERANCE = 1e-6;
-        MetaBufferEstimator estimator = new MetaBufferEstimator();
-        for (FeatureTypeStyle fts : style.featureTypeStyles()) {
-            for (Rule rule : fts.rules()) {
-                if (((rule.getMinScaleDenominator() - TOLERANCE) <= scaleDenominator)
-                        && ((rule.getMaxScaleDenominator() + TOLERANCE) > scaleDenominator)) {
-                    estimator.visit(rule);
-                }
-            }
-        }
-
         // we get any estimate, it's better than nothing...
-        return estimator.getBuffer();
+        return StyleAnalysis.get(style).getBuffer(scaleDenominator);
     }
 
     /**
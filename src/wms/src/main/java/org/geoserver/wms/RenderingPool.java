@@ -0,0 +1,219 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The thread pool used by the WMS renderers, keeping track of how long the tasks wait in the queue
+ * and how long they take to run.
+ * <p>
+ * The pool follows the {@link ThreadPoolExecutor} sizing rules: a new thread is started for each
+ * task until there are <code>coreSize</code> threads, then tasks are queued, and only when the
+ * queue is full new threads are started, up to <code>maxSize</code>. Tasks submitted when both
+ * the threads and the queue are exhausted are rejected with a {@link RejectedExecutionException}.
+ * </p>
+ * <p>
+ * A max size of zero or less means no limit on the number of threads, a queue size of zero or
+ * less means tasks are handed off directly to the threads without queuing, so the default
+ * <code>RenderingPool(0, 0, 0)</code> behaves like a cached thread pool.
+ * </p>
+ * <p>
+ * A queued pool with no core threads would run a single thread until the queue fills up, so in
+ * that case the core size is raised to the max one and the core threads are let go when idle:
+ * threads are started up to the max size before queuing, and none is kept around doing nothing.
+ * </p>
+ */
+public class RenderingPool extends ThreadPoolExecutor {
+
+    static final long KEEP_ALIVE_SECONDS = 60;
+
+    final int queueCapacity;
+
+    final AtomicLong rejectedCount = new AtomicLong();
+
+    final AtomicLong timedCount = new AtomicLong();
+
+    final AtomicLong queueNanos = new AtomicLong();
+
+    final AtomicLong runNanos = new AtomicLong();
+
+    final AtomicLong maxRunNanos = new AtomicLong();
+
+    public RenderingPool(int coreSize, int maxSize, int queueSize) {
+        super(coreSize(coreSize, maxSize, queueSize), maxSize(maxSize), KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, queue(queueSize), new RenderingThreadFactory());
+        this.queueCapacity = Math.max(0, queueSize);
+        allowCoreThreadTimeOut(isElastic(coreSize, queueCapacity));
+        setRejectedExecutionHandler(new RejectedExecutionHandler() {
+
+            public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                rejectedCount.incrementAndGet();
+                throw new RejectedExecutionException("The rendering pool is saturated, "
+                        + getActiveCount() + " threads busy and " + getQueue().size()
+                        + " tasks queued");
+            }
+        });
+    }
+
+    static int maxSize(int maxSize) {
+        return maxSize <= 0 ? Integer.MAX_VALUE : maxSize;
+    }
+
+    static int coreSize(int coreSize, int maxSize, int queueSize) {
+        if (isElastic(coreSize, queueSize)) {
+            return maxSize(maxSize);
+        }
+        return Math.min(Math.max(0, coreSize), maxSize(maxSize));
+    }
+
+    /**
+     * Returns true if a pool with no core threads queues tasks, its threads have to be all core
+     * ones timing out
+     */
+    static boolean isElastic(int coreSize, int queueSize) {
+        return coreSize <= 0 && queueSize > 0;
+    }
+
+    static BlockingQueue<Runnable> queue(int queueSize) {
+        if (queueSize <= 0) {
+            return new SynchronousQueue<Runnable>();
+        } else {
+            return new LinkedBlockingQueue<Runnable>(queueSize);
+        }
+    }
+
+    /**
+     * Changes the pool size limits in place, if possible.
+     *
+     * @return false if the queue size differs from the current one, in that case the pool cannot be
+     *         resized and has to be replaced
+     */
+    public synchronized boolean resize(int coreSize, int maxSize, int queueSize) {
+        if (Math.max(0, queueSize) != queueCapacity) {
+            return false;
+        }
+        int core = coreSize(coreSize, maxSize, queueCapacity);
+        int max = maxSize(maxSize);
+        // the core size cannot be raised above the max one, and vice versa
+        if (max < getCorePoolSize()) {
+            setCorePoolSize(core);
+            setMaximumPoolSize(max);
+        } else {
+            setMaximumPoolSize(max);
+            setCorePoolSize(core);
+        }
+        allowCoreThreadTimeOut(isElastic(coreSize, queueCapacity));
+        return true;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        super.execute(new TimedTask(command));
+    }
+
+    /**
+     * The max number of tasks that can wait in the queue, 0 if tasks are not queued
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * The number of tasks rejected because the pool was saturated
+     */
+    public long getRejectedTaskCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * The average time, in milliseconds, tasks waited in the queue before running
+     */
+    public double getAverageQueueTime() {
+        return average(queueNanos.get());
+    }
+
+    /**
+     * The average time, in milliseconds, tasks took to run
+     */
+    public double getAverageTaskTime() {
+        return average(runNanos.get());
+    }
+
+    /**
+     * The longest time, in milliseconds, a task took to run
+     */
+    public double getMaxTaskTime() {
+        return maxRunNanos.get() / 1000000d;
+    }
+
+    double average(long nanos) {
+        long count = timedCount.get();
+        return count == 0 ? 0 : nanos / 1000000d / count;
+    }
+
+    void taskCompleted(long queued, long run) {
+        queueNanos.addAndGet(queued);
+        runNanos.addAndGet(run);
+        timedCount.incrementAndGet();
+        long max = maxRunNanos.get();
+        while (run > max && !maxRunNanos.compareAndSet(max, run)) {
+            max = maxRunNanos.get();
+        }
+    }
+
+    /**
+     * Wraps the submitted tasks to time their queuing and execution
+     */
+    class TimedTask implements Runnable {
+
+        Runnable delegate;
+
+        long submitted = System.nanoTime();
+
+        TimedTask(Runnable delegate) {
+            this.delegate = delegate;
+        }
+
+        public void run() {
+            long start = System.nanoTime();
+            try {
+                delegate.run();
+            } finally {
+                taskCompleted(start - submitted, System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Names the rendering threads, so that they can be recognized in thread dumps
+     */
+    static class RenderingThreadFactory implements ThreadFactory {
+
+        static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+        final AtomicInteger threadCount = new AtomicInteger();
+
+        final String prefix = "rendering-pool-" + POOL_COUNT.incrementAndGet() + "-thread-";
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
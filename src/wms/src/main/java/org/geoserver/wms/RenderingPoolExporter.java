@@ -0,0 +1,138 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms;
+
+import java.lang.management.ManagementFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.geotools.util.logging.Logging;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * Registers the WMS rendering pool state in the platform MBean server, as
+ * <code>org.geoserver:type=RenderingPool</code>.
+ * <p>
+ * The registered bean looks up the pool on each call, so it keeps working when the pool is
+ * replaced after a configuration change. All values are zero until the pool is first used.
+ * </p>
+ */
+public class RenderingPoolExporter implements InitializingBean, DisposableBean,
+        RenderingPoolMXBean {
+
+    static final Logger LOGGER = Logging.getLogger(RenderingPoolExporter.class);
+
+    ObjectName name;
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        try {
+            ObjectName name = new ObjectName("org.geoserver:type=RenderingPool");
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            this.name = name;
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Unable to register the rendering pool state in JMX", e);
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (name != null) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                LOGGER.log(Level.FINE, "Unable to unregister " + name + " from JMX", e);
+            }
+            name = null;
+        }
+    }
+
+    RenderingPool pool() {
+        // the pool might also be a plain executor set by someone else, or not be there at all
+        Object pool = DefaultWebMapService.RENDERING_POOL;
+        return pool instanceof RenderingPool ? (RenderingPool) pool : null;
+    }
+
+    @Override
+    public int getCorePoolSize() {
+        RenderingPool pool = pool();
+        return pool == null ? 0 : pool.getCorePoolSize();
+    }
+
+    @Override
+    public int getMaximumPoolSize() {
+        RenderingPool pool = pool();
+        if (pool == null || pool.getMaximumPoolSize() == Integer.MAX_VALUE) {
+            return -1;
+        }
+        return pool.getMaximumPoolSize();
+    }
+
+    @Override
+    public int getQueueCapacity() {
+        RenderingPool pool = pool();
+        return pool == null ? 0 : pool.getQueueCapacity();
+    }
+
+    @Override
+    public int getPoolSize() {
+        RenderingPool pool = pool();
+        return pool == null ? 0 : pool.getPoolSize();
+    }
+
+    @Override
+    public int getLargestPoolSize() {
+        RenderingPool pool = pool();
+        return pool == null ? 0 : pool.getLargestPoolSize();
+    }
+
+    @Override
+    public int getActiveCount() {
+        RenderingPool pool = pool();
+        return pool == null ? 0 : pool.getActiveCount();
+    }
+
+    @Override
+    public int getQueueSize() {
+        RenderingPool pool = pool();
+        return pool == null ? 0 : pool.getQueue().size();
+    }
+
+    @Override
+    public long getCompletedTaskCount() {
+        RenderingPool pool = pool();
+        return pool == null ? 0 : pool.getCompletedTaskCount();
+    }
+
+    @Override
+    public long getRejectedTaskCount() {
+        RenderingPool pool = pool();
+        return pool == null ? 0 : pool.getRejectedTaskCount();
+    }
+
+    @Override
+    public double getAverageQueueTime() {
+        RenderingPool pool = pool();
+        return pool == null ? 0 : pool.getAverageQueueTime();
+    }
+
+    @Override
+    public double getAverageTaskTime() {
+        RenderingPool pool = pool();
+        return pool == null ? 0 : pool.getAverageTaskTime();
+    }
+
+    @Override
+    public double getMaxTaskTime() {
+        RenderingPool pool = pool();
+        return pool == null ? 0 : pool.getMaxTaskTime();
+    }
+}
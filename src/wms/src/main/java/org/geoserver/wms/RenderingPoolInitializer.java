@@ -0,0 +1,51 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms;
+
+import org.geoserver.config.ConfigurationListenerAdapter;
+import org.geoserver.config.GeoServer;
+import org.geoserver.config.GeoServerInitializer;
+import org.geoserver.config.ServiceInfo;
+
+/**
+ * Sizes the WMS rendering pool and the drawing surface pool from configuration, and keeps them in
+ * synch with the global WMS settings.
+ * 
+ * @see DefaultWebMapService#configureRenderingPool(int, int, int)
+ * @see DefaultWebMapService#configureDrawingSurfacePool(long)
+ */
+public class RenderingPoolInitializer implements GeoServerInitializer {
+
+    WMS wms;
+
+    public RenderingPoolInitializer(WMS wms) {
+        this.wms = wms;
+    }
+
+    public void initialize(GeoServer geoServer) throws Exception {
+        configure();
+
+        geoServer.addListener(new ConfigurationListenerAdapter() {
+            @Override
+            public void handlePostServiceChange(ServiceInfo service) {
+                // the pool is shared, only the global settings apply
+                if (service instanceof WMSInfo && service.getWorkspace() == null) {
+                    configure();
+                }
+            }
+
+            @Override
+            public void reloaded() {
+                configure();
+            }
+        });
+    }
+
+    void configure() {
+        DefaultWebMapService.configureRenderingPool(wms.getRenderingPoolCoreSize(),
+                wms.getRenderingPoolMaxSize(), wms.getRenderingPoolQueueSize());
+        DefaultWebMapService.configureDrawingSurfacePool(wms.getDrawingSurfacePoolSize() * 1024L);
+    }
+}
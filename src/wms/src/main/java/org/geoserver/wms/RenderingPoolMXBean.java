@@ -0,0 +1,76 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms;
+
+/**
+ * Configuration and usage statistics of the WMS {@link RenderingPool}, exposed in JMX by
+ * {@link RenderingPoolExporter}.
+ * <p>
+ * The statistics are cumulative since the pool was created, a pool is created again when its
+ * queue size is changed.
+ * </p>
+ */
+public interface RenderingPoolMXBean {
+
+    /**
+     * The number of threads kept alive even when idle
+     */
+    int getCorePoolSize();
+
+    /**
+     * The maximum number of threads, or -1 if not bounded
+     */
+    int getMaximumPoolSize();
+
+    /**
+     * The max number of tasks that can wait in the queue, 0 if tasks are not queued
+     */
+    int getQueueCapacity();
+
+    /**
+     * The current number of threads
+     */
+    int getPoolSize();
+
+    /**
+     * The largest number of threads that have ever been in the pool at the same time
+     */
+    int getLargestPoolSize();
+
+    /**
+     * The number of threads actively running tasks
+     */
+    int getActiveCount();
+
+    /**
+     * The number of tasks waiting in the queue
+     */
+    int getQueueSize();
+
+    /**
+     * The number of tasks that completed execution
+     */
+    long getCompletedTaskCount();
+
+    /**
+     * The number of tasks rejected because the pool was saturated
+     */
+    long getRejectedTaskCount();
+
+    /**
+     * The average time, in milliseconds, tasks waited in the queue before running
+     */
+    double getAverageQueueTime();
+
+    /**
+     * The average time, in milliseconds, tasks took to run
+     */
+    double getAverageTaskTime();
+
+    /**
+     * The longest time, in milliseconds, a task took to run
+     */
+    double getMaxTaskTime();
+}
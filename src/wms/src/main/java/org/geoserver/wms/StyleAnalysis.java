@@ -0,0 +1,197 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.geotools.renderer.lite.MetaBufferEstimator;
+import org.geotools.styling.FeatureTypeStyle;
+import org.geotools.styling.Rule;
+import org.geotools.styling.Style;
+import org.geotools.styling.StyleAttributeExtractor;
+import org.opengis.filter.expression.PropertyName;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * The result of analyzing a {@link Style} once: the rules active in each scale range, the
+ * rendering buffer they need, and the attributes the style uses.
+ * <p>
+ * Styles coming from the catalog are parsed once and shared by all requests, see
+ * {@link org.geoserver.catalog.ResourcePool#getStyle(org.geoserver.catalog.StyleInfo)}, so
+ * {@link #get(Style)} caches the analysis by style identity and GetMap and GetFeatureInfo
+ * requests look up the active rules and buffer of a scale without visiting the style again.
+ * The analysis is computed when the style is first used, a style must not be modified after
+ * that; the catalog does not modify the shared styles, it parses them again when they change.
+ * </p>
+ */
+public class StyleAnalysis {
+
+    /**
+     * Tolerance used when comparing the scale denominator with the rule scale ranges
+     */
+    static final double TOLERANCE = 1e-6;
+
+    /**
+     * The analyses, weak keys make the lookups use identity, and let a style and its analysis go
+     * away together
+     */
+    static final Cache<Style, StyleAnalysis> ANALYSES = CacheBuilder.newBuilder().weakKeys()
+            .softValues().build();
+
+    /**
+     * Returns the analysis of the specified style, computing it if needed
+     */
+    public static StyleAnalysis get(final Style style) {
+        try {
+            return ANALYSES.get(style, new Callable<StyleAnalysis>() {
+                @Override
+                public StyleAnalysis call() throws Exception {
+                    return new StyleAnalysis(style);
+                }
+            });
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    /**
+     * The sorted scale denominators at which the set of active rules changes
+     */
+    final double[] breaks;
+
+    /**
+     * The rules active between two consecutive breaks, the first range ends at the first break
+     * and the last one starts at the last break
+     */
+    final List<List<Rule>> ranges;
+
+    /**
+     * The buffer needed by the rules of each range
+     */
+    final int[] buffers;
+
+    /**
+     * Whether the buffer of each range is an accurate estimate
+     */
+    final boolean[] accurate;
+
+    final Set<PropertyName> attributes;
+
+    final boolean transformation;
+
+    StyleAnalysis(Style style) {
+        List<Rule> rules = new ArrayList<Rule>();
+        TreeSet<Double> scales = new TreeSet<Double>();
+        boolean transformation = false;
+        for (FeatureTypeStyle fts : style.featureTypeStyles()) {
+            transformation |= fts.getTransformation() != null;
+            for (Rule rule : fts.rules()) {
+                if (rule.getSymbolizers() != null && rule.getSymbolizers().length > 0) {
+                    rules.add(rule);
+                    scales.add(rule.getMinScaleDenominator() - TOLERANCE);
+                    scales.add(rule.getMaxScaleDenominator() + TOLERANCE);
+                }
+            }
+        }
+        this.transformation = transformation;
+
+        breaks = new double[scales.size()];
+        int i = 0;
+        for (Double scale : scales) {
+            breaks[i++] = scale;
+        }
+
+        // the rules in each range are the ones active at its start, nothing changes in between
+        ranges = new ArrayList<List<Rule>>(breaks.length + 1);
+        buffers = new int[breaks.length + 1];
+        accurate = new boolean[breaks.length + 1];
+        for (i = 0; i <= breaks.length; i++) {
+            double scale = i == 0 ? Double.NEGATIVE_INFINITY : breaks[i - 1];
+            List<Rule> active = new ArrayList<Rule>();
+            MetaBufferEstimator estimator = new MetaBufferEstimator();
+            for (Rule rule : rules) {
+                if (isActive(rule, scale)) {
+                    active.add(rule);
+                    estimator.visit(rule);
+                }
+            }
+            ranges.add(Collections.unmodifiableList(active));
+            buffers[i] = estimator.getBuffer();
+            accurate[i] = estimator.isEstimateAccurate();
+        }
+
+        StyleAttributeExtractor extractor = new StyleAttributeExtractor();
+        extractor.visit(style);
+        attributes = Collections.unmodifiableSet(extractor.getAttributes());
+    }
+
+    static boolean isActive(Rule rule, double scaleDenominator) {
+        return rule.getMinScaleDenominator() - TOLERANCE <= scaleDenominator
+                && rule.getMaxScaleDenominator() + TOLERANCE > scaleDenominator;
+    }
+
+    /**
+     * Returns the index of the range containing the scale denominator, or -1 if no rule can be
+     * active at it
+     */
+    int range(double scaleDenominator) {
+        if (Double.isNaN(scaleDenominator)) {
+            return -1;
+        }
+        int idx = Arrays.binarySearch(breaks, scaleDenominator);
+        return idx >= 0 ? idx + 1 : -idx - 1;
+    }
+
+    /**
+     * The rules with symbolizers active at the specified scale denominator, in painting order.
+     * The list is shared and cannot be modified.
+     */
+    public List<Rule> getActiveRules(double scaleDenominator) {
+        int range = range(scaleDenominator);
+        return range < 0 ? Collections.<Rule> emptyList() : ranges.get(range);
+    }
+
+    /**
+     * The rendering buffer needed by the rules active at the specified scale denominator, as
+     * estimated by {@link MetaBufferEstimator}
+     */
+    public int getBuffer(double scaleDenominator) {
+        int range = range(scaleDenominator);
+        return range < 0 ? 0 : buffers[range];
+    }
+
+    /**
+     * Whether {@link #getBuffer(double)} is accurate at the specified scale denominator, or just
+     * a best effort because some sizes depend on the features
+     */
+    public boolean isBufferAccurate(double scaleDenominator) {
+        int range = range(scaleDenominator);
+        return range < 0 || accurate[range];
+    }
+
+    /**
+     * The attributes used by the style, at any scale
+     */
+    public Set<PropertyName> getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * Whether any feature type style has a rendering transformation
+     */
+    public boolean hasTransformation() {
+        return transformation;
+    }
+}
@@ -122,6 +122,26 @@ public class WMS implements ApplicationContextAware {
     public static final String SCALEHINT_MAPUNITS_PIXEL = "scalehintMapunitsPixel";
     
     public static final Boolean SCALEHINT_MAPUNITS_PIXEL_DEFAULT = Boolean.FALSE;
+
+    public static final String RENDERING_PARALLELISM = "renderingParallelism";
+
+    public static final int RENDERING_PARALLELISM_DEFAULT = 1;
+
+    public static final String RENDERING_POOL_CORE_SIZE = "renderingPoolCoreSize";
+
+    public static final int RENDERING_POOL_CORE_SIZE_DEFAULT = 0;
+
+    public static final String RENDERING_POOL_MAX_SIZE = "renderingPoolMaxSize";
+
+    public static final int RENDERING_POOL_MAX_SIZE_DEFAULT = 0;
+
+    public static final String RENDERING_POOL_QUEUE_SIZE = "renderingPoolQueueSize";
+
+    public static final int RENDERING_POOL_QUEUE_SIZE_DEFAULT = 0;
+
+    public static final String DRAWING_SURFACE_POOL_SIZE = "drawingSurfacePoolSize";
+
+    public static final int DRAWING_SURFACE_POOL_SIZE_DEFAULT = 0;
     
     static final Logger LOGGER = Logging.getLogger(WMS.class);
 
@@ -496,6 +516,50 @@ public class WMS implements ApplicationContextAware {
         return getMetadataValue(SCALEHINT_MAPUNITS_PIXEL, SCALEHINT_MAPUNITS_PIXEL_DEFAULT, Boolean.class);
     }
 
+    /**
+     * Returns the maximum number of layer groups a single map is split into to be rendered in
+     * parallel, 1 means the layers are rendered sequentially
+     */
+    public int getRenderingParallelism() {
+        Integer parallelism = getMetadataValue(RENDERING_PARALLELISM,
+                RENDERING_PARALLELISM_DEFAULT, Integer.class);
+        return Math.max(1, parallelism);
+    }
+
+    /**
+     * Returns the number of threads the rendering pool keeps alive even when idle
+     */
+    public int getRenderingPoolCoreSize() {
+        return getMetadataValue(RENDERING_POOL_CORE_SIZE, RENDERING_POOL_CORE_SIZE_DEFAULT,
+                Integer.class);
+    }
+
+    /**
+     * Returns the maximum number of threads of the rendering pool, 0 means no limit
+     */
+    public int getRenderingPoolMaxSize() {
+        return getMetadataValue(RENDERING_POOL_MAX_SIZE, RENDERING_POOL_MAX_SIZE_DEFAULT,
+                Integer.class);
+    }
+
+    /**
+     * Returns the number of rendering tasks that can wait for a free thread of the rendering pool,
+     * 0 means tasks are not queued
+     */
+    public int getRenderingPoolQueueSize() {
+        return getMetadataValue(RENDERING_POOL_QUEUE_SIZE, RENDERING_POOL_QUEUE_SIZE_DEFAULT,
+                Integer.class);
+    }
+
+    /**
+     * Returns the max memory, in kilobytes, the idle GetMap drawing surfaces kept for reuse can
+     * use, 0 means the surfaces are not reused
+     */
+    public int getDrawingSurfacePoolSize() {
+        return getMetadataValue(DRAWING_SURFACE_POOL_SIZE, DRAWING_SURFACE_POOL_SIZE_DEFAULT,
+                Integer.class);
+    }
+
     int getMetadataPercentage(MetadataMap metadata, String key, int defaultValue) {
         Integer parsedValue = Converters.convert(metadata.get(key), Integer.class);
         if (parsedValue == null)
@@ -9,14 +9,12 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.geoserver.wms.MapLayerInfo;
-import org.geotools.styling.FeatureTypeStyle;
+import org.geoserver.wms.StyleAnalysis;
 import org.geotools.styling.Rule;
 import org.geotools.styling.Style;
 
 abstract class AbstractVectorLayerIdentifier implements LayerIdentifier {
 
-    private static final double TOLERANCE = 1e-6;
-
     public boolean canHandle(MapLayerInfo layer) {
         int type = layer.getType();
         return type == MapLayerInfo.TYPE_VECTOR || type == MapLayerInfo.TYPE_REMOTE_VECTOR;
@@ -30,18 +28,8 @@ abstract class AbstractVectorLayerIdentifier implements LayerIdentifier {
      * @return
      */
     protected List<Rule> getActiveRules(Style style, double scaleDenominator) {
-        List<Rule> result = new ArrayList<Rule>();
-
-        for (FeatureTypeStyle fts : style.featureTypeStyles()) {
-            for (Rule r : fts.rules()) {
-                if ((r.getMinScaleDenominator() - TOLERANCE <= scaleDenominator)
-                        && (r.getMaxScaleDenominator() + TOLERANCE > scaleDenominator) 
-                        && r.getSymbolizers() != null && r.getSymbolizers().length > 0) {
-                    result.add(r);
-                }
-            }
-        }
-        return result;
+        // a copy, callers are free to modify it
+        return new ArrayList<Rule>(StyleAnalysis.get(style).getActiveRules(scaleDenominator));
     }
 
 }
@@ -16,6 +16,7 @@ import org.geoserver.catalog.LayerInfo;
 import org.geoserver.platform.ServiceException;
 import org.geoserver.wms.FeatureInfoRequestParameters;
 import org.geoserver.wms.MapLayerInfo;
+import org.geoserver.wms.StyleAnalysis;
 import org.geoserver.wms.WMS;
 import org.geotools.data.FeatureSource;
 import org.geotools.data.Query;
@@ -28,7 +29,6 @@ import org.geotools.filter.visitor.SimplifyingFilterVisitor;
 import org.geotools.geometry.jts.JTS;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
-import org.geotools.renderer.lite.MetaBufferEstimator;
 import org.geotools.styling.FeatureTypeStyle;
 import org.geotools.styling.Rule;
 import org.geotools.styling.Style;
@@ -77,7 +77,7 @@ public class VectorBasicLayerIdentifier extends AbstractVectorLayerIdentifier {
         }
 
         // compute the request radius
-        double radius = getSearchRadius(params, layer, rules);
+        double radius = getSearchRadius(params, layer);
 
         // compute the bbox for the request 
         ReferencedEnvelope queryEnvelope = getEnvelopeFilter(params, radius);
@@ -159,8 +159,7 @@ public class VectorBasicLayerIdentifier extends AbstractVectorLayerIdentifier {
 
     }
 
-    private double getSearchRadius(FeatureInfoRequestParameters params, final MapLayerInfo layer,
-            final List<Rule> rules) {
+    private double getSearchRadius(FeatureInfoRequestParameters params, final MapLayerInfo layer) {
         double radius;
         int buffer = params.getBuffer();
         if (buffer <= 0) {
@@ -173,12 +172,8 @@ public class VectorBasicLayerIdentifier extends AbstractVectorLayerIdentifier {
                 radius = layerBuffer / 2.0;
             } else {
                 // estimate the radius given the currently active rules
-                MetaBufferEstimator estimator = new MetaBufferEstimator();
-                for (Rule rule : rules) {
-                    rule.accept(estimator);
-                }
-
-                int estimatedRadius = estimator.getBuffer() / 2;
+                int estimatedRadius = StyleAnalysis.get(params.getStyle()).getBuffer(
+                        params.getScaleDenominator()) / 2;
                 if (estimatedRadius < MIN_BUFFER_SIZE) {
                     radius = MIN_BUFFER_SIZE;
                 } else {
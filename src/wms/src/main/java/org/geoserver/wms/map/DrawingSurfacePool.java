@@ -0,0 +1,323 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A pool of the rasters backing the images GetMap draws on, allowing to reuse them across
+ * requests instead of allocating several megabytes for each map or meta tile.
+ * <p>
+ * {@link #borrow(int, int, IndexColorModel, boolean)} returns an image with the same structure as
+ * {@link ImageUtils#createImage(int, int, IndexColorModel, boolean)}, but backed by an idle raster
+ * of the same size and layout when available. The image contents are undefined, the caller has to
+ * paint the whole background, as {@link ImageUtils#prepareTransparency} does. Once the image is
+ * no longer used, {@link #release(RenderedImage)} makes its raster available again.
+ * </p>
+ * <p>
+ * The idle rasters are kept within a memory limit, when returning a raster would exceed it the
+ * rasters of the least recently used sizes are dropped. Images that are never released, for
+ * example because the rendering failed, are simply left to the garbage collector.
+ * </p>
+ */
+public class DrawingSurfacePool {
+
+    static final ColorModel ABGR = new BufferedImage(1, 1, BufferedImage.TYPE_4BYTE_ABGR)
+            .getColorModel();
+
+    static final ColorModel BGR = new BufferedImage(1, 1, BufferedImage.TYPE_3BYTE_BGR)
+            .getColorModel();
+
+    final long maxMemory;
+
+    /**
+     * The idle rasters by layout, in least recently used order
+     */
+    final LinkedHashMap<Key, Deque<WritableRaster>> idle = new LinkedHashMap<Key, Deque<WritableRaster>>(
+            16, 0.75f, true);
+
+    long idleMemory;
+
+    int idleCount;
+
+    long hits;
+
+    long misses;
+
+    long releases;
+
+    long discards;
+
+    boolean disposed;
+
+    /**
+     * @param maxMemory the max amount of memory, in bytes, used by the idle rasters
+     */
+    public DrawingSurfacePool(long maxMemory) {
+        this.maxMemory = maxMemory;
+    }
+
+    /**
+     * Returns an image of size <code>width x height</code> with the layout chosen by
+     * {@link ImageUtils#createImage(int, int, IndexColorModel, boolean)}, reusing an idle raster
+     * if possible.
+     */
+    public BufferedImage borrow(int width, int height, IndexColorModel palette,
+            boolean transparent) {
+        Key key = new Key(width, height, palette, transparent);
+        WritableRaster raster = null;
+        synchronized (this) {
+            Deque<WritableRaster> rasters = idle.get(key);
+            if (rasters != null) {
+                raster = rasters.poll();
+                if (rasters.isEmpty()) {
+                    idle.remove(key);
+                }
+                idleCount--;
+                idleMemory -= key.getMemory();
+                hits++;
+            } else {
+                misses++;
+            }
+        }
+        if (raster == null) {
+            raster = key.createRaster();
+        }
+        ColorModel cm = palette != null ? palette : (transparent ? ABGR : BGR);
+        return new PooledImage(this, key, cm, raster);
+    }
+
+    /**
+     * Makes the raster of an image obtained from {@link #borrow} available again. Images not
+     * coming from this pool, and images already released, are ignored.
+     *
+     * @return true if the image came from this pool
+     */
+    public boolean release(RenderedImage image) {
+        if (!(image instanceof PooledImage) || ((PooledImage) image).pool != this) {
+            return false;
+        }
+        PooledImage pooled = (PooledImage) image;
+        Key key = pooled.key;
+        long memory = key.getMemory();
+        synchronized (this) {
+            if (pooled.released) {
+                return true;
+            }
+            pooled.released = true;
+            releases++;
+            if (disposed || memory > maxMemory) {
+                discards++;
+                return true;
+            }
+            // make room dropping the rasters of the least recently used layouts
+            Iterator<Map.Entry<Key, Deque<WritableRaster>>> it = idle.entrySet().iterator();
+            while (idleMemory + memory > maxMemory && it.hasNext()) {
+                Map.Entry<Key, Deque<WritableRaster>> entry = it.next();
+                Deque<WritableRaster> rasters = entry.getValue();
+                while (idleMemory + memory > maxMemory && !rasters.isEmpty()) {
+                    // the most recently returned rasters are at the head
+                    rasters.pollLast();
+                    idleCount--;
+                    idleMemory -= entry.getKey().getMemory();
+                    discards++;
+                }
+                if (rasters.isEmpty()) {
+                    it.remove();
+                }
+            }
+            Deque<WritableRaster> rasters = idle.get(key);
+            if (rasters == null) {
+                rasters = new ArrayDeque<WritableRaster>();
+                idle.put(key, rasters);
+            }
+            rasters.push(pooled.getRaster());
+            idleCount++;
+            idleMemory += memory;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the image to the pool it was borrowed from, if any
+     *
+     * @return true if the image was borrowed from a pool
+     */
+    public static boolean releaseImage(RenderedImage image) {
+        if (image instanceof PooledImage) {
+            return ((PooledImage) image).pool.release(image);
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the image was borrowed from a pool and can be released
+     */
+    public static boolean isPooled(RenderedImage image) {
+        return image instanceof PooledImage;
+    }
+
+    /**
+     * Drops all the idle rasters, the images still borrowed are dropped as well once released
+     */
+    public synchronized void dispose() {
+        disposed = true;
+        idle.clear();
+        idleCount = 0;
+        idleMemory = 0;
+    }
+
+    /**
+     * The max amount of memory, in bytes, used by the idle rasters
+     */
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * The memory, in bytes, currently used by the idle rasters
+     */
+    public synchronized long getIdleMemory() {
+        return idleMemory;
+    }
+
+    /**
+     * The number of idle rasters
+     */
+    public synchronized int getIdleCount() {
+        return idleCount;
+    }
+
+    /**
+     * The number of images backed by a reused raster
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * The number of images that needed a new raster
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * The fraction of images backed by a reused raster, between 0 and 1
+     */
+    public synchronized double getHitRate() {
+        long borrows = hits + misses;
+        return borrows == 0 ? 0 : hits / (double) borrows;
+    }
+
+    /**
+     * The number of images given back to the pool
+     */
+    public synchronized long getReleaseCount() {
+        return releases;
+    }
+
+    /**
+     * The number of rasters dropped to stay within the memory limit
+     */
+    public synchronized long getDiscardCount() {
+        return discards;
+    }
+
+    /**
+     * Identifies the rasters that can be shared, rasters depend only on the palette transfer type,
+     * not on the palette itself
+     */
+    static final class Key {
+
+        final int width;
+
+        final int height;
+
+        /**
+         * The palette transfer type, or -1 for ABGR and -2 for BGR
+         */
+        final int type;
+
+        Key(int width, int height, IndexColorModel palette, boolean transparent) {
+            this.width = width;
+            this.height = height;
+            if (palette != null) {
+                this.type = palette.getTransferType();
+            } else {
+                this.type = transparent ? -1 : -2;
+            }
+        }
+
+        long getMemory() {
+            long pixels = (long) width * height;
+            if (type == -1) {
+                return pixels * 4;
+            } else if (type == -2) {
+                return pixels * 3;
+            } else {
+                return pixels * DataBuffer.getDataTypeSize(type) / 8;
+            }
+        }
+
+        /**
+         * Creates a raster laid out as the ones of {@link ImageUtils#createImage}
+         */
+        WritableRaster createRaster() {
+            if (type == -1) {
+                return Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE, width, height,
+                        width * 4, 4, new int[] { 3, 2, 1, 0 }, null);
+            } else if (type == -2) {
+                return Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE, width, height,
+                        width * 3, 3, new int[] { 2, 1, 0 }, null);
+            } else {
+                return Raster.createInterleavedRaster(type, width, height, 1, null);
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return (width * 31 + height) * 31 + type;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return width == other.width && height == other.height && type == other.type;
+        }
+    }
+
+    /**
+     * An image backed by a pooled raster
+     */
+    static final class PooledImage extends BufferedImage {
+
+        final DrawingSurfacePool pool;
+
+        final Key key;
+
+        boolean released;
+
+        PooledImage(DrawingSurfacePool pool, Key key, ColorModel cm, WritableRaster raster) {
+            super(cm, raster, false, null);
+            this.pool = pool;
+            this.key = key;
+        }
+    }
+}
@@ -41,6 +41,7 @@ import org.geoserver.platform.ServiceException;
 import org.geoserver.util.EntityResolverProvider;
 import org.geoserver.wms.GetMapRequest;
 import org.geoserver.wms.MapLayerInfo;
+import org.geoserver.wms.StyleAnalysis;
 import org.geoserver.wms.WMS;
 import org.geoserver.wms.WMSErrorCode;
 import org.geotools.coverage.grid.io.GridCoverage2DReader;
@@ -57,12 +58,10 @@ import org.geotools.feature.FeatureTypes;
 import org.geotools.referencing.CRS;
 import org.geotools.referencing.crs.DefaultGeographicCRS;
 import org.geotools.styling.FeatureTypeConstraint;
-import org.geotools.styling.FeatureTypeStyle;
 import org.geotools.styling.NamedLayer;
 import org.geotools.styling.NamedStyle;
 import org.geotools.styling.RemoteOWS;
 import org.geotools.styling.Style;
-import org.geotools.styling.StyleAttributeExtractor;
 import org.geotools.styling.StyleFactory;
 import org.geotools.styling.StyledLayer;
 import org.geotools.styling.StyledLayerDescriptor;
@@ -1115,13 +1114,12 @@ public class GetMapKvpRequestReader extends KvpRequestReader implements HttpServ
             return;
         }
         // if a rendering transform is present don't check the attributes, since they may be changed
-        if (hasTransformation(style)) 
+        StyleAnalysis analysis = StyleAnalysis.get(style);
+        if (analysis.hasTransformation()) 
             return;  
 
         // extract attributes used in the style
-        StyleAttributeExtractor sae = new StyleAttributeExtractor();
-        sae.visit(style);
-        Set<PropertyName> styleAttributes = sae.getAttributes();
+        Set<PropertyName> styleAttributes = analysis.getAttributes();
 
         // see if we can collect any attribute out of the provided layer
        // Set attributes = new HashSet();
@@ -1149,21 +1147,6 @@ public class GetMapKvpRequestReader extends KvpRequestReader implements HttpServ
             }
         }
     }
-
-    /**
-     * Tests whether a style contains a Rendering Transformation.
-     * 
-     * @param style the style to check
-     * @return true if the style contains a rendering transformation
-     */
-    private static boolean hasTransformation(Style style)
-    {
-        for (FeatureTypeStyle fs : style.featureTypeStyles()) {
-            if (fs.getTransformation() != null) 
-                return true;
-        }
-        return false;
-    }
     /**
      * Method to initialize a user layer which contains inline features.
      * 
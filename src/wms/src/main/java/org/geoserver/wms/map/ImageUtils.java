@@ -100,7 +100,7 @@ public class ImageUtils {
     public static BufferedImage createImage(final int width, final int height,
             final IndexColorModel palette, final boolean transparent) {
         // WARNING: whenever this method is changed, change getDrawingSurfaceMemoryUse
-        // accordingly
+        // and the rasters created by DrawingSurfacePool accordingly
         if (palette != null) {
             // unfortunately we can't use packed rasters because line rendering
             // gets completely
@@ -15,12 +15,14 @@ import java.util.logging.Logger;
 import org.geoserver.config.JAIInfo;
 import org.geoserver.platform.Operation;
 import org.geoserver.platform.ServiceException;
+import org.geoserver.wms.DefaultWebMapService;
 import org.geoserver.wms.GetMapRequest;
 import org.geoserver.wms.MapProducerCapabilities;
 import org.geoserver.wms.RasterCleaner;
 import org.geoserver.wms.WMS;
 import org.geoserver.wms.WMSMapContent;
 import org.geoserver.wms.map.png.PNGJWriter;
+import org.geoserver.wms.map.png.ParallelPNGWriter;
 import org.geotools.image.ImageWorker;
 import org.geotools.image.palette.ColorIndexerDescriptor;
 import org.geotools.util.logging.Logging;
@@ -105,7 +107,12 @@ public class PNGMapResponse extends RenderedImageMapResponse {
         image = applyPalette(image, mapContent, "image/png8", true);
         float quality = (100 - wms.getPngCompression()) / 100.0f;
         JAIInfo.PngEncoderType encoder = wms.getPNGEncoderType();
-        if(encoder == JAIInfo.PngEncoderType.PNGJ) {
+        if (encoder == JAIInfo.PngEncoderType.PARALLEL && ParallelPNGWriter.isSupported(image)) {
+            new ParallelPNGWriter(DefaultWebMapService.getRenderingPool()).writePNG(image,
+                    outStream, quality);
+            RasterCleaner.addImage(image);
+        } else if (encoder == JAIInfo.PngEncoderType.PNGJ
+                || encoder == JAIInfo.PngEncoderType.PARALLEL) {
             image = new PNGJWriter().writePNG(image, outStream, quality, mapContent);
             RasterCleaner.addImage(image);
         } else {
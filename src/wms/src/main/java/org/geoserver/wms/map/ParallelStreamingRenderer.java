@@ -0,0 +1,401 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geoserver.wms.CachedGridReaderLayer;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.map.FeatureLayer;
+import org.geotools.map.GridReaderLayer;
+import org.geotools.map.Layer;
+import org.geotools.map.MapContent;
+import org.geotools.renderer.RenderListener;
+import org.geotools.renderer.lite.StreamingRenderer;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.simple.SimpleFeature;
+
+/**
+ * A {@link StreamingRenderer} splitting the map layers in groups of adjacent layers and rendering
+ * the groups in parallel, each one with its own renderer, compositing the results in the original
+ * layer order.
+ * <p>
+ * The first group is painted directly on the target graphics by the calling thread, the others are
+ * painted on transparent images by the tasks submitted to the thread pool, and then drawn over the
+ * first one. The map takes about the time of the slowest group, instead of the sum of all layers,
+ * at the price of one extra image for each group past the first. Groups still waiting in the pool
+ * queue when the calling thread gets to them, or rejected by a saturated pool, are painted by the
+ * calling thread, so a busy pool degrades to sequential rendering instead of stalling the request.
+ * No thread is ever started outside of the pool, when the pool cannot take the painting thread of
+ * the calling thread either the rendering fails with a {@link RejectedExecutionException}, as the
+ * sequential one does.
+ * </p>
+ * <p>
+ * Each group resolves its own labels conflicts and paints its labels on top of its own layers,
+ * labels of different groups can thus overlap, and the labels of a group are covered by the layers
+ * of the groups above it.
+ * </p>
+ * <p>
+ * The render listeners, java2d and renderer hints are shared with the group renderers, the events
+ * fired by the group renderers are serialized, so listeners do not have to be thread safe. The
+ * group renderers run their painting threads in the same pool as the groups, see
+ * {@link PainterExecutor}.
+ * Only maps made of feature and grid reader layers are split, others are rendered sequentially.
+ * </p>
+ */
+public class ParallelStreamingRenderer extends StreamingRenderer {
+
+    static final Logger LOGGER = Logging.getLogger(ParallelStreamingRenderer.class);
+
+    ExecutorService executor;
+
+    ExecutorService painters;
+
+    int parallelism;
+
+    List<RenderListener> listeners = new CopyOnWriteArrayList<RenderListener>();
+
+    List<StreamingRenderer> renderers = new CopyOnWriteArrayList<StreamingRenderer>();
+
+    volatile boolean stopped;
+
+    /**
+     * @param executor the pool running the group renderers
+     * @param parallelism the maximum number of groups the layers are split into
+     */
+    public ParallelStreamingRenderer(ExecutorService executor, int parallelism) {
+        this.executor = executor;
+        this.painters = executor != null ? new PainterExecutor(executor) : null;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns the number of groups the layers of the map content will be split into, or 1 if the
+     * map cannot be split
+     */
+    public int getGroupCount() {
+        MapContent content = getMapContent();
+        if (content == null || executor == null) {
+            return 1;
+        }
+        for (Layer layer : content.layers()) {
+            if (!(layer instanceof FeatureLayer || layer instanceof GridReaderLayer)) {
+                return 1;
+            }
+        }
+        return Math.max(1, Math.min(parallelism, content.layers().size()));
+    }
+
+    @Override
+    public void addRenderListener(RenderListener listener) {
+        super.addRenderListener(listener);
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeRenderListener(RenderListener listener) {
+        super.removeRenderListener(listener);
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void stopRendering() {
+        stopped = true;
+        super.stopRendering();
+        for (StreamingRenderer renderer : renderers) {
+            renderer.stopRendering();
+        }
+    }
+
+    @Override
+    public void paint(final Graphics2D graphics, final Rectangle paintArea,
+            final ReferencedEnvelope mapArea, final AffineTransform worldToScreen) {
+        int groupCount = getGroupCount();
+        if (groupCount <= 1) {
+            super.paint(graphics, paintArea, mapArea, worldToScreen);
+            return;
+        }
+
+        // split the layers in groups of adjacent ones, the first groups get the extra layers
+        List<Layer> layers = getMapContent().layers();
+        List<List<Layer>> groups = new ArrayList<List<Layer>>();
+        int base = layers.size() / groupCount;
+        int extra = layers.size() % groupCount;
+        int from = 0;
+        for (int i = 0; i < groupCount; i++) {
+            int to = from + base + (i < extra ? 1 : 0);
+            groups.add(new ArrayList<Layer>(layers.subList(from, to)));
+            from = to;
+        }
+
+        // the groups above the first one are painted in parallel on their own images
+        final RenderingHints java2dHints = (RenderingHints) graphics.getRenderingHints();
+        final Thread caller = Thread.currentThread();
+        List<GroupTask> tasks = new ArrayList<GroupTask>();
+        List<FutureTask<BufferedImage>> futures = new ArrayList<FutureTask<BufferedImage>>();
+        for (List<Layer> group : groups.subList(1, groups.size())) {
+            GroupTask task = new GroupTask(group, caller, java2dHints, paintArea, mapArea,
+                    worldToScreen);
+            FutureTask<BufferedImage> future = new FutureTask<BufferedImage>(task);
+            tasks.add(task);
+            futures.add(future);
+            try {
+                executor.execute(future);
+            } catch (RejectedExecutionException e) {
+                // the pool is saturated, the group will be painted by the calling thread
+                LOGGER.log(Level.FINE, "Rendering pool saturated, painting group sequentially", e);
+            }
+        }
+
+        // meanwhile paint the first group directly, then stack the others in order
+        try {
+            paintGroup(groups.get(0), graphics, paintArea, mapArea, worldToScreen, executor);
+            for (int i = 0; i < futures.size(); i++) {
+                if (stopped) {
+                    break;
+                }
+                // a group still waiting in the pool queue, or rejected, is painted right here
+                FutureTask<BufferedImage> future = futures.get(i);
+                future.run();
+                BufferedImage image = getGroupImage(future, tasks.get(i));
+                if (image != null && !stopped) {
+                    graphics.drawImage(image, paintArea.x, paintArea.y, null);
+                }
+            }
+        } finally {
+            for (FutureTask<BufferedImage> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    BufferedImage getGroupImage(Future<BufferedImage> future, GroupTask task) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            stopRendering();
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RejectedExecutionException) {
+                // no pool thread could paint it, the calling thread paints it, or fails as the
+                // sequential rendering would
+                LOGGER.log(Level.FINE, "Rendering pool saturated, painting group sequentially",
+                        cause);
+                return task.paint();
+            }
+            LOGGER.log(Level.FINE, "Failed to render a layer group", cause);
+            fireError(cause instanceof Exception ? (Exception) cause : new RuntimeException(cause));
+        }
+        return null;
+    }
+
+    /**
+     * Paints a group past the first one on a transparent image
+     */
+    class GroupTask implements Callable<BufferedImage> {
+
+        final List<Layer> group;
+
+        final Thread caller;
+
+        final RenderingHints java2dHints;
+
+        final Rectangle paintArea;
+
+        final ReferencedEnvelope mapArea;
+
+        final AffineTransform worldToScreen;
+
+        GroupTask(List<Layer> group, Thread caller, RenderingHints java2dHints,
+                Rectangle paintArea, ReferencedEnvelope mapArea, AffineTransform worldToScreen) {
+            this.group = group;
+            this.caller = caller;
+            this.java2dHints = java2dHints;
+            this.paintArea = paintArea;
+            this.mapArea = mapArea;
+            this.worldToScreen = worldToScreen;
+        }
+
+        public BufferedImage call() {
+            return paint();
+        }
+
+        BufferedImage paint() {
+            BufferedImage image = new BufferedImage(paintArea.width, paintArea.height,
+                    BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g = image.createGraphics();
+            try {
+                g.setRenderingHints(java2dHints);
+                g.translate(-paintArea.x, -paintArea.y);
+                // the calling thread can wait for its painting thread in the queue, a pool thread
+                // cannot
+                paintGroup(group, g, paintArea, mapArea, worldToScreen,
+                        Thread.currentThread() == caller ? executor : painters);
+            } finally {
+                g.dispose();
+            }
+            return image;
+        }
+    }
+
+    /**
+     * Paints the layers with a dedicated renderer configured as this one
+     */
+    void paintGroup(List<Layer> group, Graphics2D graphics, Rectangle paintArea,
+            ReferencedEnvelope mapArea, AffineTransform worldToScreen, ExecutorService painters) {
+        // the group map content disposes its layers, give it copies not owning the data sources
+        MapContent content = new MapContent();
+        content.getViewport().setBounds(mapArea);
+        for (Layer layer : group) {
+            content.addLayer(copy(layer));
+        }
+
+        StreamingRenderer renderer = createGroupRenderer(painters);
+        renderer.setMapContent(content);
+        renderers.add(renderer);
+        try {
+            if (!stopped) {
+                renderer.paint(graphics, paintArea, mapArea, worldToScreen);
+            }
+        } finally {
+            renderers.remove(renderer);
+            content.dispose();
+        }
+    }
+
+    Layer copy(Layer layer) {
+        Layer copy;
+        if (layer instanceof FeatureLayer) {
+            FeatureLayer fl = (FeatureLayer) layer;
+            FeatureLayer featureLayer = new FeatureLayer(fl.getFeatureSource(), fl.getStyle(),
+                    fl.getTitle());
+            featureLayer.setQuery(fl.getQuery());
+            copy = featureLayer;
+        } else {
+            GridReaderLayer gl = (GridReaderLayer) layer;
+            copy = new CachedGridReaderLayer(gl.getReader(), gl.getStyle(), gl.getTitle(),
+                    gl.getParams());
+        }
+        copy.setVisible(layer.isVisible());
+        copy.getUserData().putAll(layer.getUserData());
+        return copy;
+    }
+
+    StreamingRenderer createGroupRenderer(ExecutorService painters) {
+        StreamingRenderer renderer = new StreamingRenderer();
+        renderer.setThreadPool(painters);
+        renderer.setJava2DHints(getJava2DHints());
+        Map hints = getRendererHints();
+        if (hints != null) {
+            hints = new HashMap(hints);
+            // a label cache cannot be shared among renderers working in parallel
+            hints.remove(LABEL_CACHE_KEY);
+            renderer.setRendererHints(hints);
+        }
+        renderer.addRenderListener(new RenderListener() {
+
+            public void featureRenderer(SimpleFeature feature) {
+                synchronized (ParallelStreamingRenderer.this) {
+                    for (RenderListener listener : listeners) {
+                        listener.featureRenderer(feature);
+                    }
+                }
+            }
+
+            public void errorOccurred(Exception e) {
+                fireError(e);
+            }
+        });
+        return renderer;
+    }
+
+    synchronized void fireError(Exception e) {
+        for (RenderListener listener : listeners) {
+            listener.errorOccurred(e);
+        }
+    }
+
+    /**
+     * Runs the painting threads of the group renderers painting in the rendering pool, when a pool
+     * thread can take them right away, and rejects them otherwise. A group renderer waits for its
+     * painting thread while holding a pool thread, a painting thread left in the queue behind it
+     * could wait forever. The rejected groups are painted again by the calling thread.
+     */
+    static class PainterExecutor extends AbstractExecutorService {
+
+        final ExecutorService pool;
+
+        PainterExecutor(ExecutorService pool) {
+            this.pool = pool;
+        }
+
+        public void execute(Runnable command) {
+            if (!canRunNow()) {
+                throw new RejectedExecutionException(
+                        "No rendering pool thread available for the painting thread");
+            }
+            pool.execute(command);
+        }
+
+        /**
+         * Returns true if the pool would run the task right away or reject it, instead of queuing
+         */
+        boolean canRunNow() {
+            if (!(pool instanceof ThreadPoolExecutor)) {
+                return true;
+            }
+            ThreadPoolExecutor tpe = (ThreadPoolExecutor) pool;
+            if (tpe.getQueue().remainingCapacity() == 0) {
+                // direct hand off, or a full queue
+                return true;
+            }
+            return tpe.getQueue().isEmpty() && (tpe.getPoolSize() < tpe.getCorePoolSize()
+                    || tpe.getActiveCount() < tpe.getPoolSize());
+        }
+
+        // the pool is shared, its life cycle is not ours to manage
+
+        public void shutdown() {
+            throw new UnsupportedOperationException("The rendering pool is shared");
+        }
+
+        public List<Runnable> shutdownNow() {
+            throw new UnsupportedOperationException("The rendering pool is shared");
+        }
+
+        public boolean isShutdown() {
+            return pool.isShutdown();
+        }
+
+        public boolean isTerminated() {
+            return pool.isTerminated();
+        }
+
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return pool.awaitTermination(timeout, unit);
+        }
+    }
+}
@@ -24,6 +24,8 @@ public class RenderedImageMap extends WebMap {
 
     private List<GridCoverage2D> renderedCoverages;
 
+    private RenderedImage drawingSurface;
+
     public RenderedImageMap(final WMSMapContent mapContent, final RenderedImage image,
             final String mimeType) {
         super(mapContent);
@@ -38,6 +40,19 @@ public class RenderedImageMap extends WebMap {
     @Override
     protected void disposeInternal() {
         image = null;
+        if (drawingSurface != null) {
+            DrawingSurfacePool.releaseImage(drawingSurface);
+            drawingSurface = null;
+        }
+    }
+
+    /**
+     * Sets the pooled image the map was drawn on, which might be the map image itself or one of
+     * its sources, so that it's given back to its {@link DrawingSurfacePool} when the map is
+     * disposed, that is, once the map has been encoded
+     */
+    public void setDrawingSurface(RenderedImage drawingSurface) {
+        this.drawingSurface = drawingSurface;
     }
 
     /**
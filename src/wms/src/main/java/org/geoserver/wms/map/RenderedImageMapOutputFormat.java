@@ -26,6 +26,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -45,6 +46,7 @@ import javax.media.jai.operator.FormatDescriptor;
 import javax.media.jai.operator.LookupDescriptor;
 import javax.media.jai.operator.MosaicDescriptor;
 
+import org.geoserver.ows.RequestTimings;
 import org.geoserver.platform.GeoServerResourceLoader;
 import org.geoserver.platform.ServiceException;
 import org.geoserver.platform.resource.Resource;
@@ -166,6 +168,19 @@ public class RenderedImageMapOutputFormat extends AbstractMapOutputFormat {
     /** A logger for this class. */
     private static final Logger LOGGER = Logging.getLogger(RenderedImageMapOutputFormat.class);
 
+    /**
+     * The request phase reading the coverages to be rendered, when they are read before rendering
+     * (in the streaming rendering the data access is interleaved with the drawing, and part of the
+     * {@link #RENDER_PHASE})
+     */
+    public static final String QUERY_PHASE = "wms-query";
+
+    /** The request phase rendering the map, including the data access */
+    public static final String RENDER_PHASE = "wms-render";
+
+    /** The request phase encoding the map image, see {@link RenderedImageMapResponse} */
+    public static final String ENCODE_PHASE = "wms-encode";
+
     /** Which format to encode the image in if one is not supplied */
     private static final String DEFAULT_MAP_FORMAT = "image/png";
 
@@ -315,6 +330,13 @@ public class RenderedImageMapOutputFormat extends AbstractMapOutputFormat {
             throw new ServiceException("Rendering request would use " + kbUsed + "KB, whilst the "
                     + "maximum memory allowed is " + kbMax + "KB");
         }
+        // ... and see how many layer groups can be rendered in parallel, each one past the
+        // first uses its own image
+        int layerGroups = Math.min(wms.getRenderingParallelism(), mapContent.layers().size());
+        if (layerGroups > 1 && maxMemory > 0) {
+            long groupMemory = 4L * paintArea.width * paintArea.height;
+            layerGroups = (int) Math.min(layerGroups, 1 + (maxMemory - memory) / groupMemory);
+        }
         
         final MapDecorationLayout layout = findDecorationLayout(request, tiled);
 
@@ -326,16 +348,22 @@ public class RenderedImageMapOutputFormat extends AbstractMapOutputFormat {
         // TODO: how to handle timeout here? I guess we need to move it into the dispatcher?
 
         RenderedImage image = null;
+        final RequestTimings timings = RequestTimings.current();
         // fast path for pure coverage rendering
         if (DefaultWebMapService.isDirectRasterPathEnabled() && 
                 mapContent.layers().size() == 1 
                 && mapContent.getAngle() == 0.0
                 && (layout == null || layout.isEmpty())) {
             List<GridCoverage2D> renderedCoverages = new ArrayList<GridCoverage2D>(2);
+            long start = System.nanoTime();
             try {
                 image = directRasterRender(mapContent, 0, renderedCoverages);
             } catch (Exception e) {
                 throw new ServiceException("Error rendering coverage on the fast path", e);
+            } finally {
+                if (timings != null) {
+                    timings.record(RENDER_PHASE, start);
+                }
             }
 
             if (image != null) {
@@ -400,7 +428,13 @@ public class RenderedImageMapOutputFormat extends AbstractMapOutputFormat {
         graphic.setRenderingHints(hintsMap);
 
         RenderingHints hints = new RenderingHints(hintsMap);
-        StreamingRenderer renderer = new StreamingRenderer();
+        StreamingRenderer renderer;
+        if (layerGroups > 1) {
+            renderer = new ParallelStreamingRenderer(DefaultWebMapService.getRenderingPool(),
+                    layerGroups);
+        } else {
+            renderer = new StreamingRenderer();
+        }
         renderer .setThreadPool(DefaultWebMapService.getRenderingPool());
         renderer.setMapContent(mapContent);
         renderer.setJava2DHints(hints);
@@ -489,6 +523,7 @@ public class RenderedImageMapOutputFormat extends AbstractMapOutputFormat {
         RenderingTimeoutEnforcer timeout = new RenderingTimeoutEnforcer(maxRenderingTime, renderer,
                 graphic);
         timeout.start();
+        long start = System.nanoTime();
         try {
             // finally render the image;
             renderer.paint(graphic, paintArea, mapContent.getRenderingArea(),
@@ -502,9 +537,16 @@ public class RenderedImageMapOutputFormat extends AbstractMapOutputFormat {
                     throw new ServiceException("Problem occurred while trying to watermark data", e);
                 }
             }
+        } catch (RejectedExecutionException e) {
+            // the bounded rendering pool could not take the painting task
+            throw new ServiceException("The server is too busy to render the map, "
+                    + "please try again later", e);
         } finally {
             timeout.stop();
             graphic.dispose();
+            if (timings != null) {
+                timings.record(RENDER_PHASE, start);
+            }
         }
 
         // check if the request did timeout
@@ -534,6 +576,10 @@ public class RenderedImageMapOutputFormat extends AbstractMapOutputFormat {
         }
 
         RenderedImageMap map = buildMap(mapContent, image);
+        if (DrawingSurfacePool.isPooled(preparedImage)) {
+            // give the surface back to the pool once the map has been encoded
+            map.setDrawingSurface(preparedImage);
+        }
         return map;
     }
 
@@ -660,7 +706,8 @@ public class RenderedImageMapOutputFormat extends AbstractMapOutputFormat {
     /**
      * Sets up a {@link BufferedImage#TYPE_4BYTE_ABGR} if the paletteInverter is not provided, or a
      * indexed image otherwise. Subclasses may override this method should they need a special kind
-     * of image
+     * of image. The image is borrowed from the {@link DefaultWebMapService#getDrawingSurfacePool()
+     * drawing surface pool}, when enabled, and given back when the map is disposed.
      * 
      * @param width
      * @param height
@@ -669,8 +716,13 @@ public class RenderedImageMapOutputFormat extends AbstractMapOutputFormat {
      */
     protected RenderedImage prepareImage(int width, int height, IndexColorModel palette,
             boolean transparent) {
-        return ImageUtils.createImage(width, height, isPaletteSupported() ? palette : null,
-                transparent && isTransparencySupported());
+        IndexColorModel cm = isPaletteSupported() ? palette : null;
+        boolean alpha = transparent && isTransparencySupported();
+        DrawingSurfacePool pool = DefaultWebMapService.getDrawingSurfacePool();
+        if (pool != null) {
+            return pool.borrow(width, height, cm, alpha);
+        }
+        return ImageUtils.createImage(width, height, cm, alpha);
     }
 
     /**
@@ -1303,7 +1355,15 @@ public class RenderedImageMapOutputFormat extends AbstractMapOutputFormat {
         GeneralParameterValue[] readParams = getReadParameters(params, envelope,
                 requestedRasterArea, interpolation, bgColor);
 
-        coverage = reader.read(readParams);
+        long start = System.nanoTime();
+        try {
+            coverage = reader.read(readParams);
+        } finally {
+            RequestTimings timings = RequestTimings.current();
+            if (timings != null) {
+                timings.record(QUERY_PHASE, start);
+            }
+        }
 
         return coverage;
     }
@@ -12,6 +12,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.List;
 
+import org.geoserver.ows.RequestTimings;
 import org.geoserver.platform.Operation;
 import org.geoserver.platform.ServiceException;
 import org.geoserver.wms.GetMapOutputFormat;
@@ -119,10 +120,15 @@ public abstract class RenderedImageMapResponse extends AbstractMapResponse {
             final RenderedImage image = imageMap.getImage();
             final List<GridCoverage2D> renderedCoverages = imageMap.getRenderedCoverages();
             final WMSMapContent mapContent = imageMap.getMapContext();
+            final RequestTimings timings = RequestTimings.current();
+            final long start = System.nanoTime();
             try {
                 formatImageOutputStream(image, output, mapContent);
                 output.flush();
             } finally {
+                if (timings != null) {
+                    timings.record(RenderedImageMapOutputFormat.ENCODE_PHASE, start);
+                }
                 // let go of the coverages created for rendering
                 for (GridCoverage2D coverage : renderedCoverages) {
                     RasterCleaner.addCoverage(coverage);
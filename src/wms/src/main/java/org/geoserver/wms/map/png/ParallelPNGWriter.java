@@ -0,0 +1,624 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map.png;
+
+import java.awt.Rectangle;
+import java.awt.color.ColorSpace;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A PNG encoder compressing bands of rows in parallel, in the style of <code>pigz</code>.
+ * <p>
+ * Each band is filtered and deflated independently, ending with a sync flush so that the
+ * compressed bands can be concatenated in a single zlib stream. Each band is primed with the last
+ * 32KB of the previous band as a preset dictionary, so the compression ratio is very close to the
+ * one of a single threaded encoder.
+ * </p>
+ * <p>
+ * The filter of each row is chosen adaptively. Rows made of flat runs of color, typical of vector
+ * maps, are not filtered, as deflate already finds long matches in them and filtering would only
+ * scatter the repeated sequences. The other rows, typical of continuous raster data, use the
+ * filter minimizing the sum of the absolute differences, as suggested by the PNG specification,
+ * among none, sub and up (average and paeth rarely pay off on maps, and cost more).
+ * </p>
+ * <p>
+ * The quality sets the speed/size trade-off, lower qualities use higher deflate levels.
+ * </p>
+ * <p>
+ * Only 8 bit gray, gray/alpha, RGB and RGBA images and 1, 2, 4 and 8 bit paletted images are
+ * supported, see {@link #isSupported(RenderedImage)}.
+ * </p>
+ */
+public class ParallelPNGWriter {
+
+    static final byte[] SIGNATURE = { (byte) 137, 80, 78, 71, 13, 10, 26, 10 };
+
+    static final int FILTER_NONE = 0;
+
+    static final int FILTER_SUB = 1;
+
+    static final int FILTER_UP = 2;
+
+    static final int COLOR_GRAY = 0;
+
+    static final int COLOR_RGB = 2;
+
+    static final int COLOR_PALETTE = 3;
+
+    static final int COLOR_GRAY_ALPHA = 4;
+
+    static final int COLOR_RGBA = 6;
+
+    /**
+     * The deflate window size, and thus the max dictionary size
+     */
+    static final int WINDOW_SIZE = 32768;
+
+    /**
+     * The percentage of pixels equal to their left neighbour making a row flat, and thus not
+     * filtered
+     */
+    static final int FLAT_PERCENTAGE = 30;
+
+    /**
+     * The amount of uncompressed data targeted by each band
+     */
+    static final int DEFAULT_BAND_SIZE = 128 * 1024;
+
+    ExecutorService executor;
+
+    int bandSize = DEFAULT_BAND_SIZE;
+
+    /**
+     * @param executor the pool compressing the bands, if null the bands are compressed by the
+     *        calling thread
+     */
+    public ParallelPNGWriter(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Sets the amount of uncompressed bytes each band is made of, smaller bands mean more
+     * parallelism but worse compression
+     */
+    public void setBandSize(int bandSize) {
+        this.bandSize = bandSize;
+    }
+
+    /**
+     * Returns true if the image can be encoded by this writer
+     */
+    public static boolean isSupported(RenderedImage image) {
+        return getColorType(image) >= 0;
+    }
+
+    static int getColorType(RenderedImage image) {
+        ColorModel cm = image.getColorModel();
+        SampleModel sm = image.getSampleModel();
+        if (cm == null || sm == null) {
+            return -1;
+        }
+        if (cm instanceof IndexColorModel) {
+            int bits = sm.getSampleSize(0);
+            boolean validBits = bits == 1 || bits == 2 || bits == 4 || bits == 8;
+            return sm.getNumBands() == 1 && validBits ? COLOR_PALETTE : -1;
+        }
+        if (cm.isAlphaPremultiplied() || cm.getNumComponents() != sm.getNumBands()) {
+            return -1;
+        }
+        for (int size : sm.getSampleSize()) {
+            if (size != 8) {
+                return -1;
+            }
+        }
+        int csType = cm.getColorSpace().getType();
+        switch (cm.getNumComponents()) {
+        case 1:
+            return csType == ColorSpace.TYPE_GRAY ? COLOR_GRAY : -1;
+        case 2:
+            return csType == ColorSpace.TYPE_GRAY && cm.hasAlpha() ? COLOR_GRAY_ALPHA : -1;
+        case 3:
+            return csType == ColorSpace.TYPE_RGB && !cm.hasAlpha() ? COLOR_RGB : -1;
+        case 4:
+            return csType == ColorSpace.TYPE_RGB && cm.hasAlpha() ? COLOR_RGBA : -1;
+        default:
+            return -1;
+        }
+    }
+
+    /**
+     * Maps a PNG quality, between 0 and 1, to a deflate level
+     */
+    static int getDeflateLevel(float quality) {
+        int level = Math.round((1 - quality) * 9);
+        return Math.max(Deflater.BEST_SPEED, Math.min(Deflater.BEST_COMPRESSION, level));
+    }
+
+    /**
+     * Encodes the image as a PNG
+     *
+     * @param quality the speed/size trade-off, 1 is the fastest, 0 the smallest
+     * @throws IllegalArgumentException if the image is not supported
+     */
+    public void writePNG(RenderedImage image, OutputStream outStream, float quality)
+            throws IOException {
+        int colorType = getColorType(image);
+        if (colorType < 0) {
+            throw new IllegalArgumentException("Unsupported image layout, color model is "
+                    + image.getColorModel() + " and sample model is " + image.getSampleModel());
+        }
+        int bitDepth = image.getSampleModel().getSampleSize(0);
+        int level = getDeflateLevel(quality);
+        ImageLayout layout = new ImageLayout(image, colorType, bitDepth, level);
+
+        DataOutputStream out = new DataOutputStream(outStream);
+        out.write(SIGNATURE);
+        writeHeader(out, image, colorType, bitDepth);
+        if (colorType == COLOR_PALETTE) {
+            writePalette(out, (IndexColorModel) image.getColorModel(), bitDepth);
+        }
+        writeData(out, layout);
+        writeChunk(out, "IEND", new byte[0], 0);
+        out.flush();
+    }
+
+    void writeHeader(DataOutputStream out, RenderedImage image, int colorType, int bitDepth)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(13);
+        DataOutputStream header = new DataOutputStream(bytes);
+        header.writeInt(image.getWidth());
+        header.writeInt(image.getHeight());
+        header.writeByte(bitDepth);
+        header.writeByte(colorType);
+        header.writeByte(0); // deflate compression
+        header.writeByte(0); // adaptive filtering
+        header.writeByte(0); // no interlacing
+        writeChunk(out, "IHDR", bytes.toByteArray(), bytes.size());
+    }
+
+    void writePalette(DataOutputStream out, IndexColorModel icm, int bitDepth)
+            throws IOException {
+        int size = Math.min(icm.getMapSize(), 1 << bitDepth);
+        byte[] rgb = new byte[size * 3];
+        byte[] alpha = new byte[size];
+        int alphaSize = 0;
+        for (int i = 0; i < size; i++) {
+            rgb[i * 3] = (byte) icm.getRed(i);
+            rgb[i * 3 + 1] = (byte) icm.getGreen(i);
+            rgb[i * 3 + 2] = (byte) icm.getBlue(i);
+            alpha[i] = (byte) icm.getAlpha(i);
+            if (icm.getAlpha(i) != 255) {
+                alphaSize = i + 1;
+            }
+        }
+        writeChunk(out, "PLTE", rgb, rgb.length);
+        // entries past the last translucent one are opaque by default
+        if (alphaSize > 0) {
+            writeChunk(out, "tRNS", alpha, alphaSize);
+        }
+    }
+
+    void writeData(DataOutputStream out, ImageLayout layout) throws IOException {
+        int height = layout.height;
+        int rowsPerBand = Math.max(1, bandSize / (layout.rowBytes + 1));
+        int bandCount = (height + rowsPerBand - 1) / rowsPerBand;
+
+        // the zlib header, there is no preset dictionary for the stream as a whole
+        int cmf = 0x78;
+        int flevel = layout.level < 2 ? 0 : layout.level < 6 ? 1 : layout.level == 6 ? 2 : 3;
+        int flg = flevel << 6;
+        flg += 31 - ((cmf << 8) + flg) % 31;
+        byte[] zlibHeader = new byte[] { (byte) cmf, (byte) flg };
+        writeChunk(out, "IDAT", zlibHeader, zlibHeader.length);
+
+        // compress the bands keeping a bounded number of them in flight, and write them in order
+        int window = executor == null ? 1 : Math.max(2, Runtime.getRuntime()
+                .availableProcessors() * 2);
+        List<FutureTask<Band>> futures = new ArrayList<FutureTask<Band>>();
+        long adler = 1;
+        try {
+            for (int i = 0; i < bandCount; i++) {
+                while (futures.size() < window && i + futures.size() < bandCount) {
+                    int band = i + futures.size();
+                    int start = band * rowsPerBand;
+                    int end = Math.min(height, start + rowsPerBand);
+                    futures.add(submit(new BandEncoder(layout, start, end, band == bandCount - 1)));
+                }
+                FutureTask<Band> future = futures.remove(0);
+                // a band still waiting in the pool queue, or rejected, is compressed right here
+                future.run();
+                Band band = getBand(future);
+                writeChunk(out, "IDAT", band.data, band.length);
+                adler = combineAdler32(adler, band.adler, band.uncompressed);
+            }
+        } finally {
+            for (FutureTask<Band> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        byte[] trailer = new byte[4];
+        trailer[0] = (byte) (adler >>> 24);
+        trailer[1] = (byte) (adler >>> 16);
+        trailer[2] = (byte) (adler >>> 8);
+        trailer[3] = (byte) adler;
+        writeChunk(out, "IDAT", trailer, trailer.length);
+    }
+
+    FutureTask<Band> submit(Callable<Band> encoder) {
+        FutureTask<Band> future = new FutureTask<Band>(encoder);
+        if (executor != null) {
+            try {
+                executor.execute(future);
+            } catch (RejectedExecutionException e) {
+                // the pool is saturated, the calling thread will do the work
+            }
+        }
+        return future;
+    }
+
+    Band getBand(FutureTask<Band> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while encoding the PNG");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("Failed to encode the PNG", cause);
+        }
+    }
+
+    void writeChunk(DataOutputStream out, String type, byte[] data, int length)
+            throws IOException {
+        byte[] typeBytes = type.getBytes("US-ASCII");
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Combines the Adler-32 checksums of two consecutive sequences, same as zlib
+     * <code>adler32_combine</code>
+     *
+     * @param adler1 the checksum of the first sequence
+     * @param adler2 the checksum of the second sequence
+     * @param length2 the length of the second sequence
+     */
+    static long combineAdler32(long adler1, long adler2, long length2) {
+        final long base = 65521;
+        long rem = length2 % base;
+        long sum1 = adler1 & 0xffff;
+        long sum2 = (rem * sum1) % base;
+        sum1 += (adler2 & 0xffff) + base - 1;
+        sum2 += ((adler1 >>> 16) & 0xffff) + ((adler2 >>> 16) & 0xffff) + base - rem;
+        if (sum1 >= base) {
+            sum1 -= base;
+        }
+        if (sum1 >= base) {
+            sum1 -= base;
+        }
+        if (sum2 >= (base << 1)) {
+            sum2 -= (base << 1);
+        }
+        if (sum2 >= base) {
+            sum2 -= base;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    /**
+     * The image properties driving the row extraction and filtering
+     */
+    static class ImageLayout {
+
+        RenderedImage image;
+
+        int colorType;
+
+        int bitDepth;
+
+        int level;
+
+        int width;
+
+        int height;
+
+        int samplesPerPixel;
+
+        /**
+         * Bytes per complete pixel, rounded up to one for sub-byte depths, the distance used by the
+         * filters
+         */
+        int bytesPerPixel;
+
+        int rowBytes;
+
+        /**
+         * Whether the rows can be read as bytes directly from the raster
+         */
+        boolean byteSamples;
+
+        /**
+         * Whether the filters should be chosen adaptively, otherwise rows are not filtered
+         */
+        boolean adaptive;
+
+        ImageLayout(RenderedImage image, int colorType, int bitDepth, int level) {
+            this.image = image;
+            this.colorType = colorType;
+            this.bitDepth = bitDepth;
+            this.level = level;
+            this.width = image.getWidth();
+            this.height = image.getHeight();
+            this.samplesPerPixel = image.getSampleModel().getNumBands();
+            this.bytesPerPixel = Math.max(1, samplesPerPixel * bitDepth / 8);
+            this.rowBytes = (width * samplesPerPixel * bitDepth + 7) / 8;
+            SampleModel sm = image.getSampleModel();
+            this.byteSamples = bitDepth == 8 && sm instanceof ComponentSampleModel
+                    && sm.getDataType() == DataBuffer.TYPE_BYTE;
+            // the PNG specification recommends no filtering for paletted images
+            this.adaptive = colorType != COLOR_PALETTE && bitDepth == 8;
+        }
+    }
+
+    /**
+     * A compressed band of rows
+     */
+    static class Band {
+
+        byte[] data;
+
+        int length;
+
+        long adler;
+
+        long uncompressed;
+    }
+
+    /**
+     * Filters and deflates a band of rows
+     */
+    static class BandEncoder implements Callable<Band> {
+
+        ImageLayout layout;
+
+        int start;
+
+        int end;
+
+        boolean last;
+
+        BandEncoder(ImageLayout layout, int start, int end, boolean last) {
+            this.layout = layout;
+            this.start = start;
+            this.end = end;
+            this.last = last;
+        }
+
+        public Band call() throws Exception {
+            // the rows preceding the band feed the dictionary, and the one before them is needed
+            // to filter the first of them
+            int filteredRowBytes = layout.rowBytes + 1;
+            int dictionaryRows = Math.min(start, (WINDOW_SIZE + filteredRowBytes - 1)
+                    / filteredRowBytes);
+            int first = start - dictionaryRows;
+            int readStart = Math.max(0, first - 1);
+            RenderedImage image = layout.image;
+            Raster raster = image.getData(new Rectangle(image.getMinX(), image.getMinY()
+                    + readStart, layout.width, end - readStart));
+
+            byte[] filtered = new byte[(end - first) * filteredRowBytes];
+            byte[] previous = new byte[layout.rowBytes];
+            byte[] current = new byte[layout.rowBytes];
+            RowFilter filter = new RowFilter(layout);
+            RowReader reader = new RowReader(layout, raster);
+            if (readStart < first) {
+                reader.read(image.getMinY() + readStart, previous);
+            }
+            for (int row = first, offset = 0; row < end; row++, offset += filteredRowBytes) {
+                reader.read(image.getMinY() + row, current);
+                filter.filter(current, previous, filtered, offset);
+                byte[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+
+            int dictionaryLength = Math.min(WINDOW_SIZE, dictionaryRows * filteredRowBytes);
+            int dataOffset = dictionaryRows * filteredRowBytes;
+            int dataLength = filtered.length - dataOffset;
+
+            Adler32 adler = new Adler32();
+            adler.update(filtered, dataOffset, dataLength);
+
+            Deflater deflater = new Deflater(layout.level, true);
+            try {
+                if (dictionaryLength > 0) {
+                    deflater.setDictionary(filtered, dataOffset - dictionaryLength,
+                            dictionaryLength);
+                }
+                deflater.setInput(filtered, dataOffset, dataLength);
+                ByteArrayOutputStream bos = new ByteArrayOutputStream(dataLength / 2 + 64);
+                byte[] buffer = new byte[16384];
+                if (last) {
+                    deflater.finish();
+                    while (!deflater.finished()) {
+                        int count = deflater.deflate(buffer);
+                        bos.write(buffer, 0, count);
+                    }
+                } else {
+                    // a sync flush ends the band on a byte boundary without closing the stream
+                    int count;
+                    do {
+                        count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                        bos.write(buffer, 0, count);
+                    } while (count == buffer.length);
+                }
+
+                Band band = new Band();
+                band.data = bos.toByteArray();
+                band.length = band.data.length;
+                band.adler = adler.getValue();
+                band.uncompressed = dataLength;
+                return band;
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Reads the rows of a raster as PNG scanlines, packing sub-byte samples
+     */
+    static class RowReader {
+
+        ImageLayout layout;
+
+        Raster raster;
+
+        int[] samples;
+
+        RowReader(ImageLayout layout, Raster raster) {
+            this.layout = layout;
+            this.raster = raster;
+            if (!layout.byteSamples) {
+                samples = new int[layout.width * layout.samplesPerPixel];
+            }
+        }
+
+        void read(int y, byte[] row) {
+            int x = raster.getMinX();
+            if (layout.byteSamples) {
+                raster.getDataElements(x, y, layout.width, 1, row);
+                return;
+            }
+            raster.getPixels(x, y, layout.width, 1, samples);
+            int bitDepth = layout.bitDepth;
+            if (bitDepth == 8) {
+                for (int i = 0; i < samples.length; i++) {
+                    row[i] = (byte) samples[i];
+                }
+            } else {
+                // pack the samples most significant bits first
+                int samplesPerByte = 8 / bitDepth;
+                int mask = (1 << bitDepth) - 1;
+                for (int i = 0, b = 0; i < samples.length; b++) {
+                    int value = 0;
+                    for (int j = 0; j < samplesPerByte; j++, i++) {
+                        value <<= bitDepth;
+                        if (i < samples.length) {
+                            value |= samples[i] & mask;
+                        }
+                    }
+                    row[b] = (byte) value;
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies the PNG filter best suited to each row, see the class documentation
+     */
+    static class RowFilter {
+
+        ImageLayout layout;
+
+        byte[][] candidates;
+
+        RowFilter(ImageLayout layout) {
+            this.layout = layout;
+            this.candidates = new byte[FILTER_UP + 1][layout.rowBytes];
+        }
+
+        void filter(byte[] row, byte[] previous, byte[] target, int offset) {
+            int length = layout.rowBytes;
+            if (!layout.adaptive || isFlat(row)) {
+                target[offset] = FILTER_NONE;
+                System.arraycopy(row, 0, target, offset + 1, length);
+                return;
+            }
+
+            int bpp = layout.bytesPerPixel;
+            long best = Long.MAX_VALUE;
+            int bestFilter = FILTER_NONE;
+            for (int filter = FILTER_NONE; filter <= FILTER_UP; filter++) {
+                byte[] out = candidates[filter];
+                long sum = 0;
+                for (int i = 0; i < length; i++) {
+                    int value = row[i];
+                    if (filter == FILTER_SUB) {
+                        value -= i >= bpp ? row[i - bpp] : 0;
+                    } else if (filter == FILTER_UP) {
+                        value -= previous[i];
+                    }
+                    out[i] = (byte) value;
+                    sum += Math.abs(out[i]);
+                    // no point in going on, this filter is already worse than the best one
+                    if (sum >= best) {
+                        break;
+                    }
+                }
+                if (sum < best) {
+                    best = sum;
+                    bestFilter = filter;
+                }
+            }
+
+            target[offset] = (byte) bestFilter;
+            System.arraycopy(candidates[bestFilter], 0, target, offset + 1, length);
+        }
+
+        /**
+         * Checks if enough pixels are equal to their left neighbour
+         */
+        boolean isFlat(byte[] row) {
+            int bpp = layout.bytesPerPixel;
+            int threshold = layout.width * FLAT_PERCENTAGE / 100;
+            int equal = 0;
+            for (int i = bpp; i < layout.rowBytes; i += bpp) {
+                int j = 0;
+                while (j < bpp && row[i + j] == row[i + j - bpp]) {
+                    j++;
+                }
+                if (j == bpp && ++equal >= threshold) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
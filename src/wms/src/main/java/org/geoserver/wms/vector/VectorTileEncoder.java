@@ -0,0 +1,523 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.vector;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.util.logging.Logging;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.TopologyException;
+import com.vividsolutions.jts.geom.util.LinearComponentExtracter;
+import com.vividsolutions.jts.geom.util.PointExtracter;
+import com.vividsolutions.jts.geom.util.PolygonExtracter;
+import com.vividsolutions.jts.simplify.DouglasPeuckerSimplifier;
+
+/**
+ * Encodes features in the <a href="https://github.com/mapbox/vector-tile-spec">Mapbox vector
+ * tile</a> format, version 2, a protocol buffers message holding a set of named layers.
+ * <p>
+ * Geometries are expected in tile coordinates, with the origin in the upper left corner of the
+ * tile and the y axis pointing down, the tile covering <code>[0, extent]</code> on both axes.
+ * Each geometry is simplified, clipped to the tile extent expanded by the buffer, and snapped to
+ * the integer tile grid, parts that collapse are dropped. Polygon rings are oriented as the
+ * specification requires, exterior rings clockwise and holes counter clockwise.
+ * </p>
+ * <p>
+ * Attribute keys and values are shared by all the features of a layer, null values are skipped.
+ * Integral numbers, floats, doubles and booleans are encoded with their own type, any other value
+ * as a string.
+ * </p>
+ */
+public class VectorTileEncoder {
+
+    /**
+     * The default tile extent, in tile units
+     */
+    public static final int DEFAULT_EXTENT = 4096;
+
+    static final int MOVE_TO = 1;
+
+    static final int LINE_TO = 2;
+
+    static final int CLOSE_PATH = 7;
+
+    static final int POINT = 1;
+
+    static final int LINESTRING = 2;
+
+    static final int POLYGON = 3;
+
+    static final Logger LOGGER = Logging.getLogger(VectorTileEncoder.class);
+
+    final int extent;
+
+    final double tolerance;
+
+    final Envelope clipEnvelope;
+
+    final Geometry clipGeometry;
+
+    final Map<String, TileLayer> layers = new LinkedHashMap<String, TileLayer>();
+
+    /**
+     * @param extent the tile size, in tile units
+     * @param buffer the area around the tile kept when clipping, in tile units
+     * @param tolerance the simplification distance tolerance, in tile units, 0 to disable
+     */
+    public VectorTileEncoder(int extent, int buffer, double tolerance) {
+        this.extent = extent;
+        this.tolerance = tolerance;
+        this.clipEnvelope = new Envelope(-buffer, extent + buffer, -buffer, extent + buffer);
+        this.clipGeometry = new GeometryFactory().toGeometry(clipEnvelope);
+    }
+
+    /**
+     * Returns the tile size, in tile units
+     */
+    public int getExtent() {
+        return extent;
+    }
+
+    /**
+     * Adds a feature to the named layer, layers are encoded in the order they are first used
+     *
+     * @param layerName the layer name
+     * @param id the feature id, or a negative number if the feature has none
+     * @param attributes the feature attributes
+     * @param geometry the feature geometry, in tile coordinates
+     * @return true if the feature was added, false if its geometry falls outside of the tile or
+     *         collapses once simplified and snapped to the tile grid
+     */
+    public boolean addFeature(String layerName, long id, Map<String, ?> attributes,
+            Geometry geometry) {
+        if (geometry == null || geometry.isEmpty()) {
+            return false;
+        }
+        int dimension = geometry.getDimension();
+        geometry = clip(simplify(geometry, dimension));
+        if (geometry == null) {
+            return false;
+        }
+
+        List<Integer> commands = new ArrayList<Integer>();
+        int type;
+        if (dimension == 0) {
+            type = POINT;
+            encodePoints(geometry, commands);
+        } else if (dimension == 1) {
+            type = LINESTRING;
+            encodeLines(geometry, commands);
+        } else {
+            type = POLYGON;
+            encodePolygons(geometry, commands);
+        }
+        if (commands.isEmpty()) {
+            return false;
+        }
+
+        TileLayer layer = layers.get(layerName);
+        if (layer == null) {
+            layer = new TileLayer(layerName);
+            layers.put(layerName, layer);
+        }
+        layer.addFeature(id, attributes, type, commands);
+        return true;
+    }
+
+    Geometry simplify(Geometry geometry, int dimension) {
+        if (tolerance <= 0 || dimension == 0) {
+            return geometry;
+        }
+        // validity does not matter for display, and restoring it is expensive
+        DouglasPeuckerSimplifier simplifier = new DouglasPeuckerSimplifier(geometry);
+        simplifier.setDistanceTolerance(tolerance);
+        simplifier.setEnsureValid(false);
+        return simplifier.getResultGeometry();
+    }
+
+    Geometry clip(Geometry geometry) {
+        Envelope envelope = geometry.getEnvelopeInternal();
+        if (clipEnvelope.contains(envelope)) {
+            return geometry;
+        } else if (!clipEnvelope.intersects(envelope)) {
+            return null;
+        } else if (geometry.getDimension() == 0) {
+            // points are filtered while encoding
+            return geometry;
+        }
+        try {
+            return intersect(geometry);
+        } catch (TopologyException e) {
+            if (geometry.getDimension() == 2) {
+                // self intersecting polygon, the zero buffer rebuilds a valid one
+                try {
+                    return intersect(geometry.buffer(0));
+                } catch (TopologyException e2) {
+                    e = e2;
+                }
+            }
+            // sending it unclipped would overflow the tile coordinates
+            LOGGER.log(Level.FINE, "Skipping feature, failed to clip its geometry to the tile", e);
+            return null;
+        }
+    }
+
+    Geometry intersect(Geometry geometry) {
+        Geometry clipped = clipGeometry.intersection(geometry);
+        return clipped.isEmpty() ? null : clipped;
+    }
+
+    void encodePoints(Geometry geometry, List<Integer> commands) {
+        Cursor cursor = new Cursor();
+        List<int[]> points = new ArrayList<int[]>();
+        for (Object o : PointExtracter.getPoints(geometry)) {
+            Coordinate c = ((Point) o).getCoordinate();
+            if (c != null && clipEnvelope.contains(c)) {
+                points.add(snap(c));
+            }
+        }
+        if (!points.isEmpty()) {
+            commands.add(command(MOVE_TO, points.size()));
+            for (int[] point : points) {
+                cursor.moveTo(point, commands);
+            }
+        }
+    }
+
+    void encodeLines(Geometry geometry, List<Integer> commands) {
+        Cursor cursor = new Cursor();
+        for (Object o : LinearComponentExtracter.getLines(geometry)) {
+            List<int[]> points = snap(((LineString) o).getCoordinates());
+            if (points.size() >= 2) {
+                cursor.path(points, commands, false);
+            }
+        }
+    }
+
+    void encodePolygons(Geometry geometry, List<Integer> commands) {
+        Cursor cursor = new Cursor();
+        for (Object o : PolygonExtracter.getPolygons(geometry)) {
+            Polygon polygon = (Polygon) o;
+            List<int[]> shell = ring(polygon.getExteriorRing(), true);
+            if (shell == null) {
+                // the holes of a collapsed polygon would be read as part of the previous one
+                continue;
+            }
+            cursor.path(shell, commands, true);
+            for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+                List<int[]> hole = ring(polygon.getInteriorRingN(i), false);
+                if (hole != null) {
+                    cursor.path(hole, commands, true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Snaps a ring, dropping the closing point, and orients it, returns null if it collapses
+     */
+    List<int[]> ring(LineString ring, boolean exterior) {
+        List<int[]> points = snap(ring.getCoordinates());
+        if (points.size() > 1 && equals(points.get(0), points.get(points.size() - 1))) {
+            points.remove(points.size() - 1);
+        }
+        if (points.size() < 3) {
+            return null;
+        }
+        // the surveyor's formula, positive for clockwise rings as the y axis points down
+        long area = 0;
+        for (int i = 0; i < points.size(); i++) {
+            int[] p1 = points.get(i);
+            int[] p2 = points.get((i + 1) % points.size());
+            area += (long) p1[0] * p2[1] - (long) p2[0] * p1[1];
+        }
+        if (area == 0) {
+            return null;
+        }
+        if ((area > 0) != exterior) {
+            // keep the first point, reverse the others
+            List<int[]> reversed = new ArrayList<int[]>(points.size());
+            reversed.add(points.get(0));
+            for (int i = points.size() - 1; i > 0; i--) {
+                reversed.add(points.get(i));
+            }
+            points = reversed;
+        }
+        return points;
+    }
+
+    /**
+     * Snaps the coordinates to the tile grid, removing the repeated points
+     */
+    List<int[]> snap(Coordinate[] coordinates) {
+        List<int[]> points = new ArrayList<int[]>(coordinates.length);
+        int[] last = null;
+        for (Coordinate c : coordinates) {
+            int[] point = snap(c);
+            if (last == null || !equals(last, point)) {
+                points.add(point);
+                last = point;
+            }
+        }
+        return points;
+    }
+
+    int[] snap(Coordinate c) {
+        return new int[] { (int) Math.round(c.x), (int) Math.round(c.y) };
+    }
+
+    static boolean equals(int[] p1, int[] p2) {
+        return p1[0] == p2[0] && p1[1] == p2[1];
+    }
+
+    static int command(int id, int count) {
+        return (id & 0x7) | (count << 3);
+    }
+
+    static int zigZag(int n) {
+        return (n << 1) ^ (n >> 31);
+    }
+
+    /**
+     * Returns true if no feature has been added
+     */
+    public boolean isEmpty() {
+        return layers.isEmpty();
+    }
+
+    /**
+     * Encodes the layers added so far
+     */
+    public byte[] encode() {
+        ProtobufWriter tile = new ProtobufWriter();
+        for (TileLayer layer : layers.values()) {
+            // Tile.layers
+            tile.writeMessage(3, layer.encode(extent));
+        }
+        return tile.toByteArray();
+    }
+
+    /**
+     * Tracks the position of the pen, geometry commands are relative to the previous position,
+     * including across parts
+     */
+    static final class Cursor {
+
+        int x;
+
+        int y;
+
+        void moveTo(int[] point, List<Integer> commands) {
+            commands.add(zigZag(point[0] - x));
+            commands.add(zigZag(point[1] - y));
+            x = point[0];
+            y = point[1];
+        }
+
+        void path(List<int[]> points, List<Integer> commands, boolean close) {
+            commands.add(command(MOVE_TO, 1));
+            moveTo(points.get(0), commands);
+            commands.add(command(LINE_TO, points.size() - 1));
+            for (int i = 1; i < points.size(); i++) {
+                moveTo(points.get(i), commands);
+            }
+            if (close) {
+                commands.add(command(CLOSE_PATH, 1));
+            }
+        }
+    }
+
+    /**
+     * A layer of the tile, with its shared attribute keys and values
+     */
+    static final class TileLayer {
+
+        final String name;
+
+        final Map<String, Integer> keys = new LinkedHashMap<String, Integer>();
+
+        final Map<Object, Integer> values = new LinkedHashMap<Object, Integer>();
+
+        final ProtobufWriter features = new ProtobufWriter();
+
+        TileLayer(String name) {
+            this.name = name;
+        }
+
+        void addFeature(long id, Map<String, ?> attributes, int type, List<Integer> commands) {
+            List<Integer> tags = new ArrayList<Integer>();
+            for (Map.Entry<String, ?> entry : attributes.entrySet()) {
+                Object value = normalize(entry.getValue());
+                if (value == null) {
+                    continue;
+                }
+                tags.add(index(keys, entry.getKey()));
+                tags.add(index(values, value));
+            }
+
+            ProtobufWriter feature = new ProtobufWriter();
+            if (id >= 0) {
+                feature.writeVarint(1, id);
+            }
+            feature.writePacked(2, tags);
+            feature.writeVarint(3, type);
+            feature.writePacked(4, commands);
+            // Layer.features
+            features.writeMessage(2, feature.toByteArray());
+        }
+
+        static <T> int index(Map<T, Integer> map, T key) {
+            Integer index = map.get(key);
+            if (index == null) {
+                index = map.size();
+                map.put(key, index);
+            }
+            return index;
+        }
+
+        /**
+         * Maps the values to the types the tile can hold, so that equal values are shared
+         */
+        static Object normalize(Object value) {
+            if (value == null || value instanceof String || value instanceof Boolean
+                    || value instanceof Float || value instanceof Double || value instanceof Long) {
+                return value;
+            } else if (value instanceof Integer || value instanceof Short
+                    || value instanceof Byte) {
+                return ((Number) value).longValue();
+            } else if (value instanceof Number) {
+                return ((Number) value).doubleValue();
+            } else {
+                return value.toString();
+            }
+        }
+
+        byte[] encode(int extent) {
+            ProtobufWriter layer = new ProtobufWriter();
+            layer.writeVarint(15, 2);
+            layer.writeString(1, name);
+            layer.writeRaw(features);
+            for (String key : keys.keySet()) {
+                layer.writeString(3, key);
+            }
+            for (Object value : values.keySet()) {
+                layer.writeMessage(4, encodeValue(value));
+            }
+            layer.writeVarint(5, extent);
+            return layer.toByteArray();
+        }
+
+        static byte[] encodeValue(Object value) {
+            ProtobufWriter writer = new ProtobufWriter();
+            if (value instanceof String) {
+                writer.writeString(1, (String) value);
+            } else if (value instanceof Float) {
+                writer.writeFixed32(2, Float.floatToIntBits((Float) value));
+            } else if (value instanceof Double) {
+                writer.writeFixed64(3, Double.doubleToLongBits((Double) value));
+            } else if (value instanceof Long) {
+                long n = (Long) value;
+                if (n >= 0) {
+                    writer.writeVarint(4, n);
+                } else {
+                    // sint_value, zig zag encoded
+                    writer.writeVarint(6, (n << 1) ^ (n >> 63));
+                }
+            } else {
+                writer.writeVarint(7, ((Boolean) value) ? 1 : 0);
+            }
+            return writer.toByteArray();
+        }
+    }
+
+    /**
+     * The few bits of the protocol buffers wire format the tiles need
+     */
+    static final class ProtobufWriter extends ByteArrayOutputStream {
+
+        static final int VARINT = 0;
+
+        static final int FIXED64 = 1;
+
+        static final int LENGTH_DELIMITED = 2;
+
+        static final int FIXED32 = 5;
+
+        void writeTag(int field, int wireType) {
+            writeVarint((field << 3) | wireType);
+        }
+
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeVarint(int field, long value) {
+            writeTag(field, VARINT);
+            writeVarint(value);
+        }
+
+        void writeFixed32(int field, int value) {
+            writeTag(field, FIXED32);
+            for (int i = 0; i < 4; i++) {
+                write((value >>> (8 * i)) & 0xFF);
+            }
+        }
+
+        void writeFixed64(int field, long value) {
+            writeTag(field, FIXED64);
+            for (int i = 0; i < 8; i++) {
+                write((int) ((value >>> (8 * i)) & 0xFF));
+            }
+        }
+
+        void writeMessage(int field, byte[] bytes) {
+            writeTag(field, LENGTH_DELIMITED);
+            writeVarint(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        void writeString(int field, String value) {
+            try {
+                writeMessage(field, value.getBytes("UTF-8"));
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void writePacked(int field, List<Integer> values) {
+            if (values.isEmpty()) {
+                return;
+            }
+            ProtobufWriter packed = new ProtobufWriter();
+            for (int value : values) {
+                // uint32 values, commands and tags are never negative
+                packed.writeVarint(value & 0xFFFFFFFFL);
+            }
+            writeMessage(field, packed.toByteArray());
+        }
+
+        void writeRaw(ProtobufWriter other) {
+            write(other.buf, 0, other.count);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.vector;
+
+import java.awt.geom.AffineTransform;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geoserver.platform.ServiceException;
+import org.geoserver.wms.GetMapOutputFormat;
+import org.geoserver.wms.MapProducerCapabilities;
+import org.geoserver.wms.StyleAnalysis;
+import org.geoserver.wms.WMS;
+import org.geoserver.wms.WMSMapContent;
+import org.geoserver.wms.map.RawMap;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.Query;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.map.FeatureLayer;
+import org.geotools.map.Layer;
+import org.geotools.referencing.CRS;
+import org.geotools.styling.Rule;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.util.AffineTransformation;
+
+/**
+ * Handles a GetMap request that expects a map in the Mapbox vector tile format, see
+ * {@link VectorTileEncoder}.
+ * <p>
+ * Instead of being rendered, the features of each vector layer are reprojected to the map CRS,
+ * transformed to tile coordinates and encoded along with their attributes, leaving the styling
+ * to the client. The tile covers the whole requested map, the width and height only determine
+ * the buffer around the tile and the simplification tolerance, as the tile coordinates do not
+ * depend on them. The style is used to select the features, only the ones matched by the rules
+ * active at the map scale are included, and to size the buffer. Raster layers are skipped.
+ * </p>
+ */
+public class VectorTileMapOutputFormat implements GetMapOutputFormat {
+
+    static final Logger LOGGER = Logging.getLogger(VectorTileMapOutputFormat.class);
+
+    /**
+     * The mime type of the vector tiles
+     */
+    public static final String MIME_TYPE = "application/x-protobuf;type=mapbox-vector";
+
+    static final Set<String> OUTPUT_FORMATS = Collections.unmodifiableSet(new LinkedHashSet<String>(
+            Arrays.asList(MIME_TYPE, "application/vnd.mapbox-vector-tile", "pbf")));
+
+    /**
+     * The minimum buffer around the tile, in pixels, so that lines and polygon edges crossing the
+     * tile boundary do not show up as seams in the client
+     */
+    static final int DEFAULT_BUFFER = 8;
+
+    /**
+     * The simplification tolerance, in pixels
+     */
+    static final double SIMPLIFICATION_TOLERANCE = 0.25;
+
+    /**
+     * Default capabilities for vector tiles.
+     *
+     * <p>
+     * <ol>
+     * <li>tiled = supported</li>
+     * <li>multipleValues = unsupported</li>
+     * <li>paletteSupported = unsupported</li>
+     * <li>transparency = supported</li>
+     * </ol>
+     */
+    private static MapProducerCapabilities CAPABILITIES = new MapProducerCapabilities(true, false,
+            false, true, null);
+
+    FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2();
+
+    /**
+     * @return {@code ["application/x-protobuf;type=mapbox-vector",
+     *         "application/vnd.mapbox-vector-tile", "pbf"]}
+     * @see org.geoserver.wms.GetMapOutputFormat#getOutputFormatNames()
+     */
+    public Set<String> getOutputFormatNames() {
+        return OUTPUT_FORMATS;
+    }
+
+    /**
+     * @return {@code "application/x-protobuf;type=mapbox-vector"}
+     * @see org.geoserver.wms.GetMapOutputFormat#getMimeType()
+     */
+    public String getMimeType() {
+        return MIME_TYPE;
+    }
+
+    public MapProducerCapabilities getCapabilities(String format) {
+        return CAPABILITIES;
+    }
+
+    /**
+     *
+     * @see org.geoserver.wms.GetMapOutputFormat#produceMap(org.geoserver.wms.WMSMapContent)
+     */
+    public RawMap produceMap(WMSMapContent mapContent) throws ServiceException, IOException {
+        int extent = VectorTileEncoder.DEFAULT_EXTENT;
+        double unitsPerPixel = extent / (double) Math.max(mapContent.getMapWidth(),
+                mapContent.getMapHeight());
+        ReferencedEnvelope area = mapContent.getRenderingArea();
+        double scaleDenominator = mapContent.getScaleDenominator();
+
+        // the buffer is shared by all layers, so that they are clipped in the same way
+        int buffer = Math.max(DEFAULT_BUFFER, mapContent.getBuffer());
+        List<FeatureLayer> layers = new ArrayList<FeatureLayer>();
+        for (Layer layer : mapContent.layers()) {
+            if (!(layer instanceof FeatureLayer)) {
+                LOGGER.fine("Skipping layer " + layer.getTitle()
+                        + ", only vector layers can be encoded in vector tiles");
+                continue;
+            }
+            layers.add((FeatureLayer) layer);
+            if (mapContent.getBuffer() <= 0) {
+                buffer = Math.max(buffer,
+                        StyleAnalysis.get(layer.getStyle()).getBuffer(scaleDenominator));
+            }
+        }
+
+        VectorTileEncoder encoder = new VectorTileEncoder(extent,
+                (int) Math.ceil(buffer * unitsPerPixel), SIMPLIFICATION_TOLERANCE * unitsPerPixel);
+        AffineTransform at = WMS.worldToScreenTransform(area, extent, extent);
+        AffineTransformation toTile = new AffineTransformation(at.getScaleX(),
+                at.getShearX(), at.getTranslateX(), at.getShearY(), at.getScaleY(),
+                at.getTranslateY());
+        ReferencedEnvelope queryArea = new ReferencedEnvelope(area);
+        queryArea.expandBy(buffer * Math.max(area.getWidth() / mapContent.getMapWidth(),
+                area.getHeight() / mapContent.getMapHeight()));
+
+        for (FeatureLayer layer : layers) {
+            if (layer.isVisible()) {
+                encodeLayer(encoder, layer, queryArea, scaleDenominator, toTile);
+            }
+        }
+
+        return new RawMap(mapContent, encoder.encode(), MIME_TYPE);
+    }
+
+    void encodeLayer(VectorTileEncoder encoder, FeatureLayer layer, ReferencedEnvelope queryArea,
+            double scaleDenominator, AffineTransformation toTile) throws IOException {
+        Filter styleFilter = getStyleFilter(layer, scaleDenominator);
+        if (styleFilter == Filter.EXCLUDE) {
+            return;
+        }
+
+        SimpleFeatureSource source = (SimpleFeatureSource) layer.getFeatureSource();
+        SimpleFeatureType schema = source.getSchema();
+        GeometryDescriptor geometry = schema.getGeometryDescriptor();
+        if (geometry == null) {
+            return;
+        }
+        String layerName = layer.getTitle() != null ? layer.getTitle() : schema.getTypeName();
+
+        // the area filter has to be expressed in the native CRS
+        CoordinateReferenceSystem mapCrs = queryArea.getCoordinateReferenceSystem();
+        CoordinateReferenceSystem nativeCrs = geometry.getCoordinateReferenceSystem();
+        ReferencedEnvelope nativeArea = queryArea;
+        boolean reproject = mapCrs != null && nativeCrs != null
+                && !CRS.equalsIgnoreMetadata(mapCrs, nativeCrs);
+        if (reproject) {
+            try {
+                nativeArea = queryArea.transform(nativeCrs, true);
+            } catch (Exception e) {
+                throw new ServiceException("Failed to reproject the map area to the CRS of "
+                        + layerName, e);
+            }
+        }
+
+        Filter filter = ff.bbox(ff.property(geometry.getLocalName()), nativeArea);
+        if (styleFilter != Filter.INCLUDE) {
+            filter = ff.and(filter, styleFilter);
+        }
+        Query definitionQuery = layer.getQuery();
+        Query query = new Query(DataUtilities.mixQueries(definitionQuery,
+                new Query(schema.getTypeName(), filter), "vectorTileEncoder"));
+        query.setHints(definitionQuery.getHints());
+        query.setSortBy(definitionQuery.getSortBy());
+        query.setStartIndex(definitionQuery.getStartIndex());
+        if (reproject) {
+            query.setCoordinateSystemReproject(mapCrs);
+        }
+
+        SimpleFeatureIterator features = source.getFeatures(query).features();
+        int count = 0;
+        try {
+            while (features.hasNext()) {
+                SimpleFeature feature = features.next();
+                Geometry g = (Geometry) feature.getDefaultGeometry();
+                if (g == null) {
+                    continue;
+                }
+                Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+                for (AttributeDescriptor ad : feature.getFeatureType().getAttributeDescriptors()) {
+                    if (!(ad instanceof GeometryDescriptor)) {
+                        attributes.put(ad.getLocalName(), feature.getAttribute(ad.getName()));
+                    }
+                }
+                if (encoder.addFeature(layerName, getId(feature.getID()), attributes,
+                        toTile.transform(g))) {
+                    count++;
+                }
+            }
+        } finally {
+            features.close();
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Encoded " + count + " features of " + layerName + " in the vector tile");
+        }
+    }
+
+    /**
+     * Returns the filter selecting the features the style would paint at the specified scale,
+     * {@link Filter#EXCLUDE} if the style paints nothing
+     */
+    Filter getStyleFilter(FeatureLayer layer, double scaleDenominator) {
+        List<Rule> rules = StyleAnalysis.get(layer.getStyle()).getActiveRules(scaleDenominator);
+        if (rules.isEmpty()) {
+            return Filter.EXCLUDE;
+        }
+        List<Filter> filters = new ArrayList<Filter>();
+        for (Rule rule : rules) {
+            if (rule.isElseFilter() || rule.getFilter() == null
+                    || rule.getFilter() == Filter.INCLUDE) {
+                return Filter.INCLUDE;
+            }
+            filters.add(rule.getFilter());
+        }
+        return filters.size() == 1 ? filters.get(0) : ff.or(filters);
+    }
+
+    /**
+     * Extracts the numeric part of feature ids such as <code>states.12</code>, the id of vector
+     * tile features is a number
+     *
+     * @return the trailing number of the feature id, or -1 if there is none
+     */
+    static long getId(String fid) {
+        if (fid == null) {
+            return -1;
+        }
+        int start = fid.length();
+        while (start > 0 && Character.isDigit(fid.charAt(start - 1))) {
+            start--;
+        }
+        if (start == fid.length() || fid.length() - start > 18) {
+            return -1;
+        }
+        return Long.parseLong(fid.substring(start));
+    }
+}
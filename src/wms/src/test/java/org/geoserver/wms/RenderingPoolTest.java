@@ -0,0 +1,115 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class RenderingPoolTest {
+
+    RenderingPool pool;
+
+    @After
+    public void shutdown() throws Exception {
+        if (pool != null) {
+            pool.shutdownNow();
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testDefaults() {
+        // same as a cached thread pool
+        pool = new RenderingPool(0, 0, 0);
+        assertEquals(0, pool.getCorePoolSize());
+        assertEquals(Integer.MAX_VALUE, pool.getMaximumPoolSize());
+        assertEquals(0, pool.getQueueCapacity());
+        assertTrue(pool.getQueue() instanceof SynchronousQueue);
+    }
+
+    @Test
+    public void testCoreLimitedByMax() {
+        pool = new RenderingPool(8, 4, 10);
+        assertEquals(4, pool.getCorePoolSize());
+        assertEquals(4, pool.getMaximumPoolSize());
+        assertEquals(10, pool.getQueue().remainingCapacity());
+    }
+
+    @Test
+    public void testQueueWithoutCore() {
+        // threads are started up to the max before queuing, and go away when idle
+        pool = new RenderingPool(0, 4, 10);
+        assertEquals(4, pool.getCorePoolSize());
+        assertTrue(pool.allowsCoreThreadTimeOut());
+
+        assertTrue(pool.resize(2, 4, 10));
+        assertEquals(2, pool.getCorePoolSize());
+        assertFalse(pool.allowsCoreThreadTimeOut());
+    }
+
+    @Test
+    public void testSaturation() throws Exception {
+        pool = new RenderingPool(1, 1, 1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        Runnable blocking = new Runnable() {
+
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        // one running, one queued, the third does not fit
+        pool.execute(blocking);
+        started.await();
+        pool.execute(blocking);
+        assertEquals(1, pool.getActiveCount());
+        assertEquals(1, pool.getQueue().size());
+        try {
+            pool.execute(blocking);
+            fail("The task should have been rejected");
+        } catch (RejectedExecutionException e) {
+            // fine
+        }
+        assertEquals(1, pool.getRejectedTaskCount());
+
+        release.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(2, pool.getCompletedTaskCount());
+        assertTrue(pool.getAverageQueueTime() > 0);
+        assertTrue(pool.getAverageTaskTime() > 0);
+        assertTrue(pool.getMaxTaskTime() >= pool.getAverageTaskTime());
+    }
+
+    @Test
+    public void testResize() {
+        pool = new RenderingPool(1, 2, 5);
+        assertTrue(pool.resize(4, 8, 5));
+        assertEquals(4, pool.getCorePoolSize());
+        assertEquals(8, pool.getMaximumPoolSize());
+
+        // shrinking below the current core size
+        assertTrue(pool.resize(1, 2, 5));
+        assertEquals(1, pool.getCorePoolSize());
+        assertEquals(2, pool.getMaximumPoolSize());
+
+        // the queue cannot be resized
+        assertFalse(pool.resize(1, 2, 10));
+        assertEquals(5, pool.getQueueCapacity());
+    }
+}
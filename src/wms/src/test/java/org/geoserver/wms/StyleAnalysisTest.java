@@ -0,0 +1,97 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.geotools.styling.LineSymbolizer;
+import org.geotools.styling.Rule;
+import org.geotools.styling.Style;
+import org.geotools.styling.StyleBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StyleAnalysisTest {
+
+    StyleBuilder sb = new StyleBuilder();
+
+    Style style;
+
+    Rule close;
+
+    Rule all;
+
+    Rule far;
+
+    @Before
+    public void setUp() {
+        close = sb.createRule(sb.createLineSymbolizer(Color.RED, 10));
+        close.setMaxScaleDenominator(10000);
+        all = sb.createRule(sb.createLineSymbolizer(Color.BLUE, 2));
+        far = sb.createRule(sb.createLineSymbolizer(Color.GREEN, 4));
+        far.setMinScaleDenominator(10000);
+        far.setMaxScaleDenominator(1000000);
+        // no symbolizers, never reported as active
+        Rule empty = sb.createRule(new LineSymbolizer[0]);
+
+        style = sb.createStyle();
+        style.featureTypeStyles().add(
+                sb.createFeatureTypeStyle("Feature", new Rule[] { close, all, far, empty }));
+    }
+
+    @Test
+    public void testActiveRules() {
+        StyleAnalysis analysis = StyleAnalysis.get(style);
+        assertEquals(Arrays.asList(close, all), analysis.getActiveRules(5000));
+        // the ranges are compared with a tolerance, both rules are active at the boundary
+        assertEquals(Arrays.asList(close, all, far), analysis.getActiveRules(10000));
+        assertEquals(Arrays.asList(all, far), analysis.getActiveRules(500000));
+        assertEquals(Arrays.asList(all), analysis.getActiveRules(2000000));
+        assertEquals(Arrays.asList(all), analysis.getActiveRules(Double.MAX_VALUE));
+        assertEquals(Collections.emptyList(), analysis.getActiveRules(-1));
+        assertEquals(Collections.emptyList(), analysis.getActiveRules(Double.NaN));
+    }
+
+    @Test
+    public void testBuffer() {
+        StyleAnalysis analysis = StyleAnalysis.get(style);
+        assertEquals(10, analysis.getBuffer(5000));
+        assertEquals(4, analysis.getBuffer(20000));
+        assertEquals(2, analysis.getBuffer(2000000));
+        assertTrue(analysis.isBufferAccurate(5000));
+
+        // the estimate is the same as visiting the style
+        assertEquals(GetMap.computeLayerBuffer(style, 20000), analysis.getBuffer(20000));
+    }
+
+    @Test
+    public void testDynamicBuffer() {
+        Rule rule = sb.createRule(sb.createLineSymbolizer(sb.createStroke(
+                sb.colorExpression(Color.BLACK), sb.attributeExpression("width"))));
+        Style dynamic = sb.createStyle();
+        dynamic.featureTypeStyles().add(sb.createFeatureTypeStyle("Feature", rule));
+
+        StyleAnalysis analysis = StyleAnalysis.get(dynamic);
+        assertFalse(analysis.isBufferAccurate(1000));
+        assertEquals(1, analysis.getAttributes().size());
+        assertEquals("width", analysis.getAttributes().iterator().next().getPropertyName());
+        assertFalse(analysis.hasTransformation());
+    }
+
+    @Test
+    public void testShared() {
+        assertSame(StyleAnalysis.get(style), StyleAnalysis.get(style));
+        try {
+            StyleAnalysis.get(style).getActiveRules(5000).clear();
+            fail("The active rules should not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // fine
+        }
+    }
+}
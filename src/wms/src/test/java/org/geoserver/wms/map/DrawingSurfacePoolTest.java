@@ -0,0 +1,145 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+
+import org.junit.Test;
+
+public class DrawingSurfacePoolTest {
+
+    static final long MB = 1024 * 1024;
+
+    @Test
+    public void testSameLayoutAsCreateImage() {
+        DrawingSurfacePool pool = new DrawingSurfacePool(16 * MB);
+        IndexColorModel palette = new IndexColorModel(8, 2, new byte[] { 0, (byte) 255 },
+                new byte[] { 0, (byte) 255 }, new byte[] { 0, (byte) 255 });
+
+        assertSameLayout(ImageUtils.createImage(100, 50, null, true),
+                pool.borrow(100, 50, null, true));
+        assertSameLayout(ImageUtils.createImage(100, 50, null, false),
+                pool.borrow(100, 50, null, false));
+        assertSameLayout(ImageUtils.createImage(100, 50, palette, false),
+                pool.borrow(100, 50, palette, false));
+    }
+
+    void assertSameLayout(BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        assertEquals(expected.getColorModel(), actual.getColorModel());
+        assertEquals(expected.getSampleModel(), actual.getSampleModel());
+        assertTrue(DrawingSurfacePool.isPooled(actual));
+    }
+
+    @Test
+    public void testReuse() {
+        DrawingSurfacePool pool = new DrawingSurfacePool(16 * MB);
+        BufferedImage first = pool.borrow(256, 256, null, true);
+        DataBuffer buffer = first.getRaster().getDataBuffer();
+        assertEquals(0, pool.getHitCount());
+        assertEquals(1, pool.getMissCount());
+
+        assertTrue(pool.release(first));
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(256 * 256 * 4, pool.getIdleMemory());
+
+        // a different layout does not get the idle raster
+        BufferedImage opaque = pool.borrow(256, 256, null, false);
+        assertNotSame(buffer, opaque.getRaster().getDataBuffer());
+
+        // the same layout does
+        BufferedImage second = pool.borrow(256, 256, null, true);
+        assertNotSame(first, second);
+        assertSame(buffer, second.getRaster().getDataBuffer());
+        assertEquals(1, pool.getHitCount());
+        assertEquals(2, pool.getMissCount());
+        assertEquals(1 / 3d, pool.getHitRate(), 1e-9);
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(0, pool.getIdleMemory());
+    }
+
+    @Test
+    public void testPalettesShareRasters() {
+        DrawingSurfacePool pool = new DrawingSurfacePool(16 * MB);
+        IndexColorModel black = new IndexColorModel(8, 1, new byte[1], new byte[1], new byte[1]);
+        IndexColorModel white = new IndexColorModel(8, 1, new byte[] { (byte) 255 },
+                new byte[] { (byte) 255 }, new byte[] { (byte) 255 });
+        BufferedImage first = pool.borrow(10, 10, black, false);
+        pool.release(first);
+
+        BufferedImage second = pool.borrow(10, 10, white, false);
+        assertSame(first.getRaster().getDataBuffer(), second.getRaster().getDataBuffer());
+        assertSame(white, second.getColorModel());
+    }
+
+    @Test
+    public void testReleaseOnce() {
+        DrawingSurfacePool pool = new DrawingSurfacePool(16 * MB);
+        BufferedImage image = pool.borrow(10, 10, null, true);
+        assertTrue(DrawingSurfacePool.releaseImage(image));
+        assertTrue(pool.release(image));
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(1, pool.getReleaseCount());
+
+        // foreign images are ignored
+        assertFalse(pool.release(new BufferedImage(10, 10, BufferedImage.TYPE_4BYTE_ABGR)));
+        assertFalse(new DrawingSurfacePool(MB).release(pool.borrow(10, 10, null, true)));
+        assertFalse(DrawingSurfacePool.releaseImage(new BufferedImage(10, 10,
+                BufferedImage.TYPE_4BYTE_ABGR)));
+        assertEquals(1, pool.getReleaseCount());
+    }
+
+    @Test
+    public void testMemoryLimit() {
+        // room for two 256x256 ABGR rasters
+        DrawingSurfacePool pool = new DrawingSurfacePool(2 * 256 * 256 * 4);
+        BufferedImage small1 = pool.borrow(256, 256, null, true);
+        BufferedImage small2 = pool.borrow(256, 256, null, true);
+        BufferedImage large = pool.borrow(512, 512, null, true);
+
+        // too large for the pool altogether
+        pool.release(large);
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(1, pool.getDiscardCount());
+
+        pool.release(small1);
+        pool.release(small2);
+        assertEquals(2, pool.getIdleCount());
+        assertEquals(2 * 256 * 256 * 4, pool.getIdleMemory());
+
+        // a new layout pushes out the least recently used one
+        BufferedImage other = pool.borrow(256, 128, null, true);
+        pool.release(other);
+        assertEquals(2, pool.getIdleCount());
+        assertEquals(256 * 256 * 4 + 256 * 128 * 4, pool.getIdleMemory());
+        assertEquals(2, pool.getDiscardCount());
+
+        assertSame(other.getRaster().getDataBuffer(), pool.borrow(256, 128, null, true)
+                .getRaster().getDataBuffer());
+        assertSame(small2.getRaster().getDataBuffer(), pool.borrow(256, 256, null, true)
+                .getRaster().getDataBuffer());
+    }
+
+    @Test
+    public void testDispose() {
+        DrawingSurfacePool pool = new DrawingSurfacePool(16 * MB);
+        BufferedImage idle = pool.borrow(10, 10, null, true);
+        BufferedImage borrowed = pool.borrow(10, 10, null, true);
+        pool.release(idle);
+        pool.dispose();
+        assertEquals(0, pool.getIdleCount());
+
+        // images borrowed before the pool was disposed are dropped
+        pool.release(borrowed);
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(0, pool.getIdleMemory());
+    }
+}
@@ -6,16 +6,25 @@
 package org.geoserver.wms.map;
 
 import static org.geoserver.data.test.SystemTestData.STREAMS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.awt.Color;
+import java.awt.Graphics2D;
 import java.awt.geom.NoninvertibleTransformException;
 import java.awt.image.BufferedImage;
 import java.awt.image.RenderedImage;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -28,8 +37,11 @@ import org.geoserver.catalog.StyleInfo;
 import org.geoserver.data.test.MockData;
 import org.geoserver.platform.ServiceException;
 import org.geoserver.security.decorators.DecoratingFeatureSource;
+import org.geoserver.wms.DefaultWebMapService;
 import org.geoserver.wms.GetMapRequest;
+import org.geoserver.wms.RenderingPool;
 import org.geoserver.wms.WMS;
+import org.geoserver.wms.WMSInfo;
 import org.geoserver.wms.WMSMapContent;
 import org.geoserver.wms.WMSTestSupport;
 import org.geotools.data.FeatureSource;
@@ -41,6 +53,7 @@ import org.geotools.filter.IllegalFilterException;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.map.FeatureLayer;
 import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.geotools.renderer.lite.StreamingRenderer;
 import org.geotools.styling.Style;
 import org.geotools.util.logging.Logging;
 import org.junit.After;
@@ -60,6 +73,12 @@ public class RenderedImageMapOutputFormatTest extends WMSTestSupport {
 
     private String mapFormat = "image/gif";
 
+    private static final QName[] POLYGONS = { MockData.FORESTS, MockData.LAKES, MockData.PONDS,
+            MockData.BUILDINGS, MockData.MAP_NEATLINE };
+
+    private static final QName[] REVERSED_POLYGONS = { MockData.MAP_NEATLINE, MockData.BUILDINGS,
+            MockData.PONDS, MockData.LAKES, MockData.FORESTS };
+
     @Before
     public void setRasterMapProducer() throws Exception {
         Logging.getLogger("org.geotools.rendering").setLevel(Level.OFF);
@@ -162,6 +181,187 @@ public class RenderedImageMapOutputFormatTest extends WMSTestSupport {
         assertNotBlank("testBlueLake", image);
     }
 
+    @Test
+    public void testParallelRendering() throws Exception {
+        DummyRasterMapProducer producer = new DummyRasterMapProducer(getWMS());
+        BufferedImage sequential = renderPolygons(producer, POLYGONS);
+        // the opaque fills overlap, the stacking order shows
+        BufferedImage reversed = renderPolygons(producer, REVERSED_POLYGONS);
+        assertFalse(sameImages(sequential, reversed));
+
+        WMSInfo wms = getGeoServer().getService(WMSInfo.class);
+        wms.getMetadata().put(WMS.RENDERING_PARALLELISM, 3);
+        getGeoServer().save(wms);
+        try {
+            BufferedImage parallel = renderPolygons(producer, POLYGONS);
+            assertTrue(producer.renderer instanceof ParallelStreamingRenderer);
+            assertEquals(3, ((ParallelStreamingRenderer) producer.renderer).parallelism);
+
+            // the layers are stacked in the same order
+            assertNotBlank("testParallelRendering", parallel);
+            assertImagesEqual(sequential, parallel);
+            assertImagesEqual(reversed, renderPolygons(producer, REVERSED_POLYGONS));
+
+            // errors in the groups rendered in background are reported as well
+            try {
+                forceRenderingError(new IOException("fake IO exception"), MockData.LAKES,
+                        MockData.FORESTS);
+                fail("Expected WMSException");
+            } catch (ServiceException e) {
+                assertTrue(true);
+            }
+        } finally {
+            wms.getMetadata().remove(WMS.RENDERING_PARALLELISM);
+            getGeoServer().save(wms);
+        }
+    }
+
+    @Test
+    public void testParallelRenderingSaturatedPool() throws Exception {
+        DummyRasterMapProducer producer = new DummyRasterMapProducer(getWMS());
+        BufferedImage sequential = renderPolygons(producer, POLYGONS);
+
+        WMSInfo wms = getGeoServer().getService(WMSInfo.class);
+        wms.getMetadata().put(WMS.RENDERING_PARALLELISM, 3);
+        getGeoServer().save(wms);
+        ExecutorService defaultPool = DefaultWebMapService.RENDERING_POOL;
+        final CountDownLatch release = new CountDownLatch(1);
+        Runnable blocking = new Runnable() {
+
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        try {
+            // a saturated pool fails the map as the sequential rendering does, no thread is
+            // started outside of it
+            RenderingPool rejecting = new RenderingPool(1, 1, 0);
+            rejecting.execute(blocking);
+            DefaultWebMapService.RENDERING_POOL = rejecting;
+            long started = threads.getTotalStartedThreadCount();
+            try {
+                renderPolygons(producer, POLYGONS);
+                fail("Expected ServiceException");
+            } catch (ServiceException e) {
+                assertTrue(e.getCause() instanceof RejectedExecutionException);
+                assertTrue(producer.renderer instanceof ParallelStreamingRenderer);
+                assertTrue(rejecting.getRejectedTaskCount() >= 3);
+                assertEquals(started, threads.getTotalStartedThreadCount());
+            } finally {
+                rejecting.shutdownNow();
+            }
+
+            // a single thread pool with a queue, the groups and painting threads the pool
+            // cannot take are painted by the request thread, none waits in the queue for good
+            RenderingPool queuing = new RenderingPool(1, 1, 4);
+            queuing.prestartAllCoreThreads();
+            DefaultWebMapService.RENDERING_POOL = queuing;
+            started = threads.getTotalStartedThreadCount();
+            try {
+                assertImagesEqual(sequential, renderPolygons(producer, POLYGONS));
+                assertTrue(producer.renderer instanceof ParallelStreamingRenderer);
+                assertEquals(started, threads.getTotalStartedThreadCount());
+                assertEquals(1, queuing.getLargestPoolSize());
+            } finally {
+                queuing.shutdownNow();
+            }
+        } finally {
+            release.countDown();
+            DefaultWebMapService.RENDERING_POOL = defaultPool;
+            wms.getMetadata().remove(WMS.RENDERING_PARALLELISM);
+            getGeoServer().save(wms);
+        }
+    }
+
+    private boolean sameImages(BufferedImage expected, BufferedImage actual) {
+        for (int x = 0; x < expected.getWidth(); x++) {
+            for (int y = 0; y < expected.getHeight(); y++) {
+                if (expected.getRGB(x, y) != actual.getRGB(x, y)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void assertImagesEqual(BufferedImage expected, BufferedImage actual) {
+        for (int x = 0; x < expected.getWidth(); x++) {
+            for (int y = 0; y < expected.getHeight(); y++) {
+                assertEquals("Pixel " + x + "," + y + " differs", expected.getRGB(x, y),
+                        actual.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testDrawingSurfacePool() throws Exception {
+        BufferedImage expected = renderPolygons();
+
+        DefaultWebMapService.configureDrawingSurfacePool(16 * 1024 * 1024);
+        try {
+            DrawingSurfacePool pool = DefaultWebMapService.getDrawingSurfacePool();
+            BufferedImage first = renderPolygons();
+            // disposing the map gave the surface back
+            assertEquals(1, pool.getMissCount());
+            assertEquals(1, pool.getIdleCount());
+
+            // dirty the idle surface, the next map has to paint over all of it
+            Graphics2D g = first.createGraphics();
+            g.setColor(Color.GREEN);
+            g.fillRect(0, 0, first.getWidth(), first.getHeight());
+            g.dispose();
+
+            BufferedImage second = renderPolygons();
+            assertEquals(1, pool.getHitCount());
+            assertSame(first.getRaster().getDataBuffer(), second.getRaster().getDataBuffer());
+            for (int x = 0; x < expected.getWidth(); x++) {
+                for (int y = 0; y < expected.getHeight(); y++) {
+                    assertEquals("Pixel " + x + "," + y + " differs", expected.getRGB(x, y),
+                            second.getRGB(x, y));
+                }
+            }
+        } finally {
+            DefaultWebMapService.configureDrawingSurfacePool(0);
+        }
+    }
+
+    private BufferedImage renderPolygons() throws Exception {
+        return renderPolygons(rasterMapProducer, POLYGONS);
+    }
+
+    private BufferedImage renderPolygons(RenderedImageMapOutputFormat producer, QName... layers)
+            throws Exception {
+        Envelope env = getCatalog().getFeatureTypeByName(MockData.LAKES.getNamespaceURI(),
+                MockData.LAKES.getLocalPart()).getFeatureSource(null, null).getBounds();
+
+        GetMapRequest request = new GetMapRequest();
+        // no antialiasing, for an exact comparison
+        request.getFormatOptions().put("antialias", "none");
+        final WMSMapContent map = new WMSMapContent();
+        map.setMapWidth(300);
+        map.setMapHeight(300);
+        map.setBgColor(BG_COLOR);
+        map.setTransparent(false);
+        map.setRequest(request);
+
+        for (QName layer : layers) {
+            addToMap(map, layer);
+        }
+
+        map.getViewport().setBounds(new ReferencedEnvelope(env, DefaultGeographicCRS.WGS84));
+
+        request.setFormat(getMapFormat());
+        RenderedImageMap imageMap = producer.produceMap(map);
+        BufferedImage image = (BufferedImage) imageMap.getImage();
+        imageMap.dispose();
+        return image;
+    }
+
     private void addToMap(final WMSMapContent map, final QName typeName) throws IOException {
         final FeatureTypeInfo ftInfo = getCatalog().getFeatureTypeByName(
                 typeName.getNamespaceURI(), typeName.getLocalPart());
@@ -262,8 +462,8 @@ public class RenderedImageMapOutputFormatTest extends WMSTestSupport {
      * </p>
      */
     @SuppressWarnings("unchecked")
-    private RenderedImage forceRenderingError(final Exception renderExceptionToThrow)
-            throws Exception {
+    private RenderedImage forceRenderingError(final Exception renderExceptionToThrow,
+            QName... otherLayers) throws Exception {
 
         GetMapRequest request = new GetMapRequest();
         final WMSMapContent map = new WMSMapContent();
@@ -290,6 +490,9 @@ public class RenderedImageMapOutputFormatTest extends WMSTestSupport {
             }
         };
 
+        for (QName layer : otherLayers) {
+            addToMap(map, layer);
+        }
         StyleInfo someStyle = getCatalog().getStyleByName("line");
         map.addLayer(new FeatureLayer(source, someStyle.getStyle()));
         request.setFormat(getMapFormat());
@@ -310,9 +513,16 @@ public class RenderedImageMapOutputFormatTest extends WMSTestSupport {
      */
     private static class DummyRasterMapProducer extends RenderedImageMapOutputFormat {
 
+        StreamingRenderer renderer;
+
         public DummyRasterMapProducer(WMS wms) {
             super("image/gif", new String[] { "image/gif" }, wms);
         }
+
+        @Override
+        protected void onBeforeRender(StreamingRenderer renderer) {
+            this.renderer = renderer;
+        }
     }
 
 }
@@ -0,0 +1,128 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map.png;
+
+import it.geosolutions.imageio.plugins.png.PNGWriter;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import ar.com.hjg.pngj.FilterType;
+
+/**
+ * Simple benchmark comparing the time and output size of the PNGJ based encoder used by
+ * {@link PNGJWriter} with the {@link ParallelPNGWriter}, on map-like RGBA and paletted images,
+ * at a few PNG compression levels.
+ * <p>
+ * Not a unit test, run it by hand with <code>main</code>, optionally passing the image size in
+ * pixels (default 2048) and the number of threads of the parallel encoder (default the number of
+ * processors).
+ * </p>
+ */
+public class PNGEncoderBenchmark {
+
+    static final int LOOPS = 20;
+
+    static final int[] COMPRESSIONS = { 10, 25, 90 };
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 2048;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime()
+                .availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            BufferedImage rgba = paint(new BufferedImage(size, size,
+                    BufferedImage.TYPE_4BYTE_ABGR));
+            BufferedImage paletted = paint(new BufferedImage(size, size,
+                    BufferedImage.TYPE_BYTE_INDEXED, palette()));
+
+            // the first round warms up the JIT
+            for (int i = 0; i < 2; i++) {
+                System.out.println(i == 0 ? "Warm up" : "Benchmark, " + threads + " threads");
+                for (int compression : COMPRESSIONS) {
+                    float quality = (100 - compression) / 100.0f;
+                    run("rgba, " + compression + ", pngj", rgba, quality, null);
+                    run("rgba, " + compression + ", parallel", rgba, quality, executor);
+                    run("paletted, " + compression + ", pngj", paletted, quality, null);
+                    run("paletted, " + compression + ", parallel", paletted, quality, executor);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    static void run(String name, RenderedImage image, float quality, ExecutorService executor)
+            throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOPS; i++) {
+            bos.reset();
+            if (executor == null) {
+                // same as PNGJWriter on a vector map
+                new PNGWriter().writePNG(image, bos, quality, FilterType.FILTER_NONE);
+            } else {
+                new ParallelPNGWriter(executor).writePNG(image, bos, quality);
+            }
+        }
+        double millis = (System.nanoTime() - start) / 1000000d / LOOPS;
+        System.out.println(String.format(Locale.ENGLISH, "%-24s %8.1f ms %10d bytes", name,
+                millis, bos.size()));
+    }
+
+    static IndexColorModel palette() {
+        byte[] r = new byte[256], g = new byte[256], b = new byte[256];
+        for (int i = 0; i < 256; i++) {
+            r[i] = (byte) ((i >> 5) * 36);
+            g[i] = (byte) (((i >> 2) & 7) * 36);
+            b[i] = (byte) ((i & 3) * 85);
+        }
+        return new IndexColorModel(8, 256, r, g, b);
+    }
+
+    /**
+     * Paints a random set of antialiased polygons, lines and labels, like a vector base map
+     */
+    static BufferedImage paint(BufferedImage image) {
+        int size = image.getWidth();
+        Random random = new Random(0);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        for (int i = 0; i < 200; i++) {
+            g.setColor(new Color(random.nextInt(0xffffff)));
+            int[] xs = new int[6], ys = new int[6];
+            int cx = random.nextInt(size), cy = random.nextInt(size);
+            for (int j = 0; j < 6; j++) {
+                xs[j] = cx + random.nextInt(size / 4) - size / 8;
+                ys[j] = cy + random.nextInt(size / 4) - size / 8;
+            }
+            g.fillPolygon(xs, ys, 6);
+        }
+        g.setStroke(new BasicStroke(2));
+        for (int i = 0; i < 500; i++) {
+            g.setColor(new Color(random.nextInt(0xffffff)));
+            g.drawLine(random.nextInt(size), random.nextInt(size), random.nextInt(size),
+                    random.nextInt(size));
+        }
+        g.setFont(new Font("Serif", Font.PLAIN, 12));
+        g.setColor(Color.BLACK);
+        for (int i = 0; i < 500; i++) {
+            g.drawString("Label " + i, random.nextInt(size), random.nextInt(size));
+        }
+        g.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,170 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map.png;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Adler32;
+
+import javax.imageio.ImageIO;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ParallelPNGWriterTest {
+
+    static ExecutorService executor;
+
+    @BeforeClass
+    public static void createExecutor() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterClass
+    public static void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testRGBA() throws Exception {
+        assertRoundTrip(paint(new BufferedImage(300, 200, BufferedImage.TYPE_4BYTE_ABGR)));
+    }
+
+    @Test
+    public void testRGB() throws Exception {
+        assertRoundTrip(paint(new BufferedImage(300, 200, BufferedImage.TYPE_3BYTE_BGR)));
+    }
+
+    @Test
+    public void testIntARGB() throws Exception {
+        assertRoundTrip(paint(new BufferedImage(300, 200, BufferedImage.TYPE_INT_ARGB)));
+    }
+
+    @Test
+    public void testGray() throws Exception {
+        assertRoundTrip(paint(new BufferedImage(300, 200, BufferedImage.TYPE_BYTE_GRAY)));
+    }
+
+    @Test
+    public void testPaletted() throws Exception {
+        // a translucent palette exercises the tRNS chunk
+        byte[] r = new byte[256], g = new byte[256], b = new byte[256], a = new byte[256];
+        for (int i = 0; i < 256; i++) {
+            r[i] = (byte) i;
+            g[i] = (byte) (255 - i);
+            b[i] = (byte) (i * 7);
+            a[i] = (byte) (i < 16 ? i * 16 : 255);
+        }
+        IndexColorModel icm = new IndexColorModel(8, 256, r, g, b, a);
+        assertRoundTrip(paint(new BufferedImage(300, 200, BufferedImage.TYPE_BYTE_INDEXED, icm)));
+    }
+
+    @Test
+    public void testSubBytePaletted() throws Exception {
+        for (int bits : new int[] { 1, 2, 4 }) {
+            int size = 1 << bits;
+            byte[] r = new byte[size], g = new byte[size], b = new byte[size];
+            for (int i = 0; i < size; i++) {
+                r[i] = (byte) (i * 255 / (size - 1));
+                g[i] = (byte) (255 - i * 255 / (size - 1));
+            }
+            IndexColorModel icm = new IndexColorModel(bits, size, r, g, b);
+            // odd width, the last byte of each row is partially used
+            assertRoundTrip(paint(new BufferedImage(301, 200, BufferedImage.TYPE_BYTE_BINARY,
+                    icm)));
+        }
+    }
+
+    @Test
+    public void testUnsupported() {
+        assertFalse(ParallelPNGWriter.isSupported(new BufferedImage(10, 10,
+                BufferedImage.TYPE_INT_ARGB_PRE)));
+        assertFalse(ParallelPNGWriter.isSupported(new BufferedImage(10, 10,
+                BufferedImage.TYPE_USHORT_GRAY)));
+        assertTrue(ParallelPNGWriter.isSupported(new BufferedImage(10, 10,
+                BufferedImage.TYPE_INT_RGB)));
+    }
+
+    @Test
+    public void testCompressionLevels() throws Exception {
+        BufferedImage image = paint(new BufferedImage(512, 512, BufferedImage.TYPE_4BYTE_ABGR));
+        byte[] fast = encode(image, new ParallelPNGWriter(executor), 1f);
+        byte[] small = encode(image, new ParallelPNGWriter(executor), 0f);
+        assertTrue(small.length <= fast.length);
+        assertEqualPixels(image, ImageIO.read(new ByteArrayInputStream(small)));
+    }
+
+    @Test
+    public void testCombineAdler32() {
+        byte[] data = new byte[100000];
+        new Random(0).nextBytes(data);
+        Adler32 full = new Adler32();
+        full.update(data);
+        Adler32 head = new Adler32();
+        head.update(data, 0, 30000);
+        Adler32 tail = new Adler32();
+        tail.update(data, 30000, 70000);
+        assertEquals(full.getValue(),
+                ParallelPNGWriter.combineAdler32(head.getValue(), tail.getValue(), 70000));
+    }
+
+    void assertRoundTrip(BufferedImage image) throws Exception {
+        assertTrue(ParallelPNGWriter.isSupported(image));
+        // one band, several bands, one or two rows per band, with and without executor
+        for (int bandSize : new int[] { ParallelPNGWriter.DEFAULT_BAND_SIZE, 4096, 500 }) {
+            for (ExecutorService es : new ExecutorService[] { null, executor }) {
+                ParallelPNGWriter writer = new ParallelPNGWriter(es);
+                writer.setBandSize(bandSize);
+                byte[] png = encode(image, writer, 0.75f);
+                BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(png));
+                assertEqualPixels(image, decoded);
+            }
+        }
+    }
+
+    byte[] encode(BufferedImage image, ParallelPNGWriter writer, float quality) throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        writer.writePNG(image, bos, quality);
+        return bos.toByteArray();
+    }
+
+    void assertEqualPixels(BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals("Pixel " + x + "," + y, expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+    }
+
+    BufferedImage paint(BufferedImage image) {
+        // a mix of flat areas, antialiased shapes and noise
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(Color.ORANGE);
+        g.fillRect(0, 0, image.getWidth() / 2, image.getHeight());
+        g.setColor(new Color(0, 0, 255, 128));
+        g.fillOval(20, 20, image.getWidth() - 40, image.getHeight() - 40);
+        g.dispose();
+        Random random = new Random(0);
+        for (int i = 0; i < 2000; i++) {
+            image.setRGB(random.nextInt(image.getWidth()), random.nextInt(image.getHeight()),
+                    random.nextInt());
+        }
+        return image;
+    }
+}
@@ -0,0 +1,381 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.vector;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.WKTReader;
+
+public class VectorTileEncoderTest {
+
+    static final int EXTENT = 4096;
+
+    WKTReader reader = new WKTReader();
+
+    Geometry geom(String wkt) throws Exception {
+        return reader.read(wkt);
+    }
+
+    @Test
+    public void testPoint() throws Exception {
+        VectorTileEncoder encoder = new VectorTileEncoder(EXTENT, 64, 0);
+        Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+        attributes.put("name", "first");
+        attributes.put("count", 3);
+        attributes.put("missing", null);
+        assertTrue(encoder.addFeature("points", 12, attributes, geom("POINT(25.2 17.7)")));
+
+        List<DecodedLayer> layers = decode(encoder.encode());
+        assertEquals(1, layers.size());
+        DecodedLayer layer = layers.get(0);
+        assertEquals("points", layer.name);
+        assertEquals(2, layer.version);
+        assertEquals(EXTENT, layer.extent);
+        assertEquals(Arrays.asList("name", "count"), layer.keys);
+        assertEquals(Arrays.<Object> asList("first", 3L), layer.values);
+
+        DecodedFeature feature = layer.features.get(0);
+        assertEquals(12, feature.id);
+        assertEquals(VectorTileEncoder.POINT, feature.type);
+        assertEquals(Arrays.asList(0, 0, 1, 1), feature.tags);
+        // MoveTo(1), zig zag encoded 25, 18
+        assertEquals(Arrays.asList(9, 50, 36), feature.geometry);
+    }
+
+    @Test
+    public void testMultiLineCursor() throws Exception {
+        VectorTileEncoder encoder = new VectorTileEncoder(EXTENT, 64, 0);
+        encoder.addFeature("lines", -1, new LinkedHashMap<String, Object>(),
+                geom("MULTILINESTRING((2 2, 2 10, 10 10), (1 1, 3 5))"));
+
+        DecodedFeature feature = decode(encoder.encode()).get(0).features.get(0);
+        assertEquals(-1, feature.id);
+        assertEquals(VectorTileEncoder.LINESTRING, feature.type);
+        // the second part starts relative to the end of the first one
+        assertEquals(Arrays.asList(9, 4, 4, 18, 0, 16, 16, 0, 9, 17, 17, 10, 4, 8),
+                feature.geometry);
+    }
+
+    @Test
+    public void testPolygonWinding() throws Exception {
+        VectorTileEncoder encoder = new VectorTileEncoder(EXTENT, 64, 0);
+        // counter clockwise shell and clockwise hole in y down coordinates, both get reversed
+        encoder.addFeature("polygons", 1, new LinkedHashMap<String, Object>(),
+                geom("POLYGON((0 0, 0 10, 10 10, 10 0, 0 0), (2 2, 8 2, 8 8, 2 8, 2 2))"));
+
+        DecodedFeature feature = decode(encoder.encode()).get(0).features.get(0);
+        assertEquals(VectorTileEncoder.POLYGON, feature.type);
+        List<int[]> shell = rings(feature.geometry).get(0);
+        List<int[]> hole = rings(feature.geometry).get(1);
+        assertEquals(4, shell.size());
+        assertTrue(area(shell) > 0);
+        assertTrue(area(hole) < 0);
+        assertArrayEquals(new int[] { 0, 0 }, shell.get(0));
+        assertArrayEquals(new int[] { 10, 0 }, shell.get(1));
+    }
+
+    @Test
+    public void testClip() throws Exception {
+        VectorTileEncoder encoder = new VectorTileEncoder(EXTENT, 64, 0);
+        assertFalse(encoder.addFeature("lines", 1, new LinkedHashMap<String, Object>(),
+                geom("LINESTRING(5000 5000, 6000 6000)")));
+        assertFalse(encoder.addFeature("points", 1, new LinkedHashMap<String, Object>(),
+                geom("MULTIPOINT(-100 10, 4200 10)")));
+        assertTrue(encoder.isEmpty());
+
+        // a large polygon is cut to the buffered tile
+        encoder.addFeature("polygons", 1, new LinkedHashMap<String, Object>(),
+                geom("POLYGON((-10000 -10000, -10000 10000, 10000 10000, 10000 -10000, "
+                        + "-10000 -10000))"));
+        List<int[]> shell = rings(decode(encoder.encode()).get(0).features.get(0).geometry).get(0);
+        assertEquals(4, shell.size());
+        for (int[] point : shell) {
+            assertTrue(point[0] == -64 || point[0] == EXTENT + 64);
+            assertTrue(point[1] == -64 || point[1] == EXTENT + 64);
+        }
+    }
+
+    @Test
+    public void testClipInvalid() throws Exception {
+        VectorTileEncoder encoder = new VectorTileEncoder(EXTENT, 64, 0);
+        // self intersecting polygon crossing the tile edges, repaired before clipping
+        assertTrue(encoder.addFeature("polygons", 1, new LinkedHashMap<String, Object>(),
+                geom("POLYGON((-1000 0, 5000 0, 5000 1000, 2000 1000, 2000 -500, 3000 -500, "
+                        + "3000 2000, -1000 2000, -1000 0))")));
+        for (List<int[]> ring : rings(decode(encoder.encode()).get(0).features.get(0).geometry)) {
+            for (int[] point : ring) {
+                assertTrue(point[0] >= -64 && point[0] <= EXTENT + 64);
+                assertTrue(point[1] >= -64 && point[1] <= EXTENT + 64);
+            }
+        }
+    }
+
+    @Test
+    public void testCollapse() throws Exception {
+        VectorTileEncoder encoder = new VectorTileEncoder(EXTENT, 64, 0);
+        // sub unit polygons and lines disappear once snapped to the grid
+        assertFalse(encoder.addFeature("polygons", 1, new LinkedHashMap<String, Object>(),
+                geom("POLYGON((1 1, 1 1.2, 1.2 1.2, 1.2 1, 1 1))")));
+        assertFalse(encoder.addFeature("lines", 1, new LinkedHashMap<String, Object>(),
+                geom("LINESTRING(1 1, 1.1 1.2, 1.3 0.9)")));
+        assertTrue(encoder.isEmpty());
+    }
+
+    @Test
+    public void testSimplify() throws Exception {
+        VectorTileEncoder encoder = new VectorTileEncoder(EXTENT, 64, 2);
+        encoder.addFeature("lines", 1, new LinkedHashMap<String, Object>(),
+                geom("LINESTRING(0 0, 100 1, 200 0, 300 1, 400 0)"));
+        DecodedFeature feature = decode(encoder.encode()).get(0).features.get(0);
+        // MoveTo(1) 0 0, LineTo(1) 400 0
+        assertEquals(Arrays.asList(9, 0, 0, 10, 800, 0), feature.geometry);
+    }
+
+    @Test
+    public void testSharedValues() throws Exception {
+        VectorTileEncoder encoder = new VectorTileEncoder(EXTENT, 64, 0);
+        for (int i = 0; i < 3; i++) {
+            Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+            attributes.put("kind", i < 2 ? "road" : "path");
+            attributes.put("lanes", i < 2 ? 2 : -1);
+            attributes.put("speed", 1.5f);
+            attributes.put("length", 10.25d);
+            attributes.put("paved", Boolean.TRUE);
+            encoder.addFeature("lines", i, attributes, geom("LINESTRING(0 0, 10 10)"));
+        }
+
+        DecodedLayer layer = decode(encoder.encode()).get(0);
+        assertEquals(3, layer.features.size());
+        assertEquals(Arrays.asList("kind", "lanes", "speed", "length", "paved"), layer.keys);
+        assertEquals(Arrays.<Object> asList("road", 2L, 1.5f, 10.25d, true, "path", -1L),
+                layer.values);
+        assertEquals(layer.features.get(0).tags, layer.features.get(1).tags);
+        assertEquals(Arrays.asList(0, 5, 1, 6, 2, 2, 3, 3, 4, 4), layer.features.get(2).tags);
+    }
+
+    static double area(List<int[]> ring) {
+        long area = 0;
+        for (int i = 0; i < ring.size(); i++) {
+            int[] p1 = ring.get(i);
+            int[] p2 = ring.get((i + 1) % ring.size());
+            area += (long) p1[0] * p2[1] - (long) p2[0] * p1[1];
+        }
+        return area;
+    }
+
+    /**
+     * Decodes the rings of a polygon geometry
+     */
+    static List<List<int[]>> rings(List<Integer> geometry) {
+        List<List<int[]>> rings = new ArrayList<List<int[]>>();
+        List<int[]> ring = null;
+        int x = 0, y = 0;
+        int i = 0;
+        while (i < geometry.size()) {
+            int command = geometry.get(i++);
+            int id = command & 0x7;
+            int count = command >> 3;
+            if (id == VectorTileEncoder.CLOSE_PATH) {
+                continue;
+            }
+            if (id == VectorTileEncoder.MOVE_TO) {
+                ring = new ArrayList<int[]>();
+                rings.add(ring);
+            }
+            for (int j = 0; j < count; j++) {
+                x += unZigZag(geometry.get(i++));
+                y += unZigZag(geometry.get(i++));
+                ring.add(new int[] { x, y });
+            }
+        }
+        return rings;
+    }
+
+    static int unZigZag(int n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    static class DecodedLayer {
+        String name;
+
+        int version;
+
+        int extent = 4096;
+
+        List<String> keys = new ArrayList<String>();
+
+        List<Object> values = new ArrayList<Object>();
+
+        List<DecodedFeature> features = new ArrayList<DecodedFeature>();
+    }
+
+    static class DecodedFeature {
+        long id = -1;
+
+        int type;
+
+        List<Integer> tags = new ArrayList<Integer>();
+
+        List<Integer> geometry = new ArrayList<Integer>();
+    }
+
+    /**
+     * A minimal reader of the protocol buffers messages written by the encoder
+     */
+    static class ProtobufReader {
+        byte[] bytes;
+
+        int pos;
+
+        int end;
+
+        ProtobufReader(byte[] bytes, int pos, int end) {
+            this.bytes = bytes;
+            this.pos = pos;
+            this.end = end;
+        }
+
+        boolean hasNext() {
+            return pos < end;
+        }
+
+        long varint() {
+            long result = 0;
+            int shift = 0;
+            while (true) {
+                byte b = bytes[pos++];
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+                shift += 7;
+            }
+        }
+
+        long fixed(int size) {
+            long result = 0;
+            for (int i = 0; i < size; i++) {
+                result |= (long) (bytes[pos++] & 0xFF) << (8 * i);
+            }
+            return result;
+        }
+
+        ProtobufReader message() {
+            int length = (int) varint();
+            ProtobufReader reader = new ProtobufReader(bytes, pos, pos + length);
+            pos += length;
+            return reader;
+        }
+
+        String string() throws Exception {
+            ProtobufReader m = message();
+            return new String(bytes, m.pos, m.end - m.pos, "UTF-8");
+        }
+
+        List<Integer> packed() {
+            List<Integer> values = new ArrayList<Integer>();
+            ProtobufReader m = message();
+            while (m.hasNext()) {
+                values.add((int) m.varint());
+            }
+            return values;
+        }
+    }
+
+    static List<DecodedLayer> decode(byte[] tile) throws Exception {
+        List<DecodedLayer> layers = new ArrayList<DecodedLayer>();
+        ProtobufReader reader = new ProtobufReader(tile, 0, tile.length);
+        while (reader.hasNext()) {
+            assertEquals((3 << 3) | 2, reader.varint());
+            layers.add(decodeLayer(reader.message()));
+        }
+        return layers;
+    }
+
+    static DecodedLayer decodeLayer(ProtobufReader reader) throws Exception {
+        DecodedLayer layer = new DecodedLayer();
+        while (reader.hasNext()) {
+            int tag = (int) reader.varint();
+            switch (tag >> 3) {
+            case 1:
+                layer.name = reader.string();
+                break;
+            case 2:
+                layer.features.add(decodeFeature(reader.message()));
+                break;
+            case 3:
+                layer.keys.add(reader.string());
+                break;
+            case 4:
+                layer.values.add(decodeValue(reader.message()));
+                break;
+            case 5:
+                layer.extent = (int) reader.varint();
+                break;
+            case 15:
+                layer.version = (int) reader.varint();
+                break;
+            default:
+                fail("Unexpected layer field " + (tag >> 3));
+            }
+        }
+        return layer;
+    }
+
+    static DecodedFeature decodeFeature(ProtobufReader reader) {
+        DecodedFeature feature = new DecodedFeature();
+        while (reader.hasNext()) {
+            int tag = (int) reader.varint();
+            switch (tag >> 3) {
+            case 1:
+                feature.id = reader.varint();
+                break;
+            case 2:
+                feature.tags = reader.packed();
+                break;
+            case 3:
+                feature.type = (int) reader.varint();
+                break;
+            case 4:
+                feature.geometry = reader.packed();
+                break;
+            default:
+                fail("Unexpected feature field " + (tag >> 3));
+            }
+        }
+        return feature;
+    }
+
+    static Object decodeValue(ProtobufReader reader) throws Exception {
+        int tag = (int) reader.varint();
+        switch (tag >> 3) {
+        case 1:
+            return reader.string();
+        case 2:
+            return Float.intBitsToFloat((int) reader.fixed(4));
+        case 3:
+            return Double.longBitsToDouble(reader.fixed(8));
+        case 4:
+            return reader.varint();
+        case 6:
+            long n = reader.varint();
+            return (n >>> 1) ^ -(n & 1);
+        case 7:
+            return reader.varint() == 1;
+        default:
+            fail("Unexpected value field " + (tag >> 3));
+            return null;
+        }
+    }
+}
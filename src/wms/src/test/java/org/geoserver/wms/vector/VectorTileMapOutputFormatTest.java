@@ -0,0 +1,74 @@
+/* (c) 2015 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.vector;
+
+import static org.junit.Assert.*;
+
+import java.net.URLEncoder;
+import java.util.List;
+
+import org.geoserver.data.test.MockData;
+import org.geoserver.wms.WMSTestSupport;
+import org.geoserver.wms.vector.VectorTileEncoderTest.DecodedLayer;
+import org.junit.Test;
+
+import com.mockrunner.mock.web.MockHttpServletResponse;
+
+public class VectorTileMapOutputFormatTest extends WMSTestSupport {
+
+    List<DecodedLayer> getTile(String format, String layers, String extra) throws Exception {
+        MockHttpServletResponse response = getAsServletResponse("wms?request=getmap"
+                + "&service=wms&version=1.1.1&format=" + URLEncoder.encode(format, "UTF-8")
+                + "&layers=" + layers + "&styles="
+                + "&height=256&width=256&bbox=-180,-90,180,90&srs=EPSG:4326" + extra);
+        assertEquals(VectorTileMapOutputFormat.MIME_TYPE, response.getContentType());
+        return VectorTileEncoderTest.decode(getBinary(response));
+    }
+
+    @Test
+    public void testLayers() throws Exception {
+        List<DecodedLayer> layers = getTile(VectorTileMapOutputFormat.MIME_TYPE,
+                getLayerId(MockData.BASIC_POLYGONS) + "," + getLayerId(MockData.POINTS), "");
+        assertEquals(2, layers.size());
+
+        DecodedLayer polygons = layers.get(0);
+        assertEquals(getLayerId(MockData.BASIC_POLYGONS), polygons.name);
+        assertEquals(VectorTileEncoder.DEFAULT_EXTENT, polygons.extent);
+        assertEquals(3, polygons.features.size());
+        assertEquals(VectorTileEncoder.POLYGON, polygons.features.get(0).type);
+
+        // reprojected from UTM, with the attributes for client side styling
+        DecodedLayer points = layers.get(1);
+        assertEquals(getLayerId(MockData.POINTS), points.name);
+        assertEquals(1, points.features.size());
+        assertEquals(VectorTileEncoder.POINT, points.features.get(0).type);
+        assertTrue(points.keys.contains("altitude"));
+        assertTrue(points.values.contains(500L));
+    }
+
+    @Test
+    public void testFeatureId() throws Exception {
+        List<DecodedLayer> layers = getTile("pbf", getLayerId(MockData.BASIC_POLYGONS),
+                "&featureid=BasicPolygons.1107531493643");
+        assertEquals(1, layers.get(0).features.size());
+        assertEquals(1107531493643L, layers.get(0).features.get(0).id);
+    }
+
+    @Test
+    public void testRasterLayersSkipped() throws Exception {
+        List<DecodedLayer> layers = getTile("application/vnd.mapbox-vector-tile",
+                getLayerId(MockData.TASMANIA_DEM) + "," + getLayerId(MockData.BASIC_POLYGONS), "");
+        assertEquals(1, layers.size());
+        assertEquals(getLayerId(MockData.BASIC_POLYGONS), layers.get(0).name);
+    }
+
+    @Test
+    public void testId() {
+        assertEquals(12, VectorTileMapOutputFormat.getId("states.12"));
+        assertEquals(-1, VectorTileMapOutputFormat.getId("states"));
+        assertEquals(-1, VectorTileMapOutputFormat.getId(null));
+        assertEquals(-1, VectorTileMapOutputFormat.getId("states.12345678901234567890"));
+    }
+}